@@ -1,25 +1,18 @@
 package cloud.cleo.chimesma.squareup;
 
+import cloud.cleo.squareup.hours.SquareStoreHours;
+import cloud.cleo.squareup.hours.StoreHoursSchedule;
 import com.squareup.square.LocationsClient;
 import com.squareup.square.SquareClient;
 import com.squareup.square.core.Environment;
-import com.squareup.square.types.BusinessHoursPeriod;
 import com.squareup.square.types.GetLocationsRequest;
 import com.squareup.square.types.Location;
 
-import java.time.DayOfWeek;
-import static java.time.DayOfWeek.*;
 import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 
-import lombok.Data;
 import lombok.extern.log4j.Log4j2;
 
 /**
@@ -28,6 +21,9 @@ import lombok.extern.log4j.Log4j2;
  *
  * Also distinguishes an "extended closed" period when the location has no business hours configured at all.
  *
+ * The hours are compiled into a {@link StoreHoursSchedule} once per location load (same engine and boundary rules as
+ * the Spring AI StoreHours tool), so the status check on each call is just a lookup.
+ *
  * SnapStart-friendly, no Spring.
  *
  * @author sjensen
@@ -67,7 +63,7 @@ public class SquareHours {
 
     // Cached location result and metadata
     private volatile Location loc;
-    private volatile ZoneId tz;
+    private volatile StoreHoursSchedule schedule;
     private volatile Instant locLastFetched;
 
     // Lock for synchronizing access to location data
@@ -129,17 +125,14 @@ public class SquareHours {
 
             if (res.getLocation() != null && res.getLocation().isPresent()) {
                 Location loaded = res.getLocation().get();
-                loc = loaded;
-                locLastFetched = now;
 
-                // Resolve timezone; fall back if missing
-                var tzOpt = loaded.getTimezone();
-                if (tzOpt != null && tzOpt.isPresent() && !tzOpt.get().isBlank()) {
-                    tz = ZoneId.of(tzOpt.get());
-                } else {
+                // Timezone falls back to the default if missing
+                if (loaded.getTimezone().filter(tz -> !tz.isBlank()).isEmpty()) {
                     log.error("Square Location has no timezone; using default {}", DEFAULT_ZONE);
-                    tz = DEFAULT_ZONE;
                 }
+                schedule = SquareStoreHours.compile(loaded, DEFAULT_ZONE);
+                loc = loaded;
+                locLastFetched = now;
 
                 return loaded;
             } else {
@@ -192,93 +185,17 @@ public class SquareHours {
         }
 
         Location location = getLocation();
-        if (location == null) {
+        final var current = schedule;
+        if (location == null || current == null) {
             // Can't reach Square and no cached location
             return StoreStatus.CLOSED;
         }
 
-        BusinessHours bh = new BusinessHours(location);
-
-        if (!bh.hasAny()) {
+        if (!current.hasHours()) {
             // Location exists but has no business hours defined
             return StoreStatus.EXTENDED_CLOSED;
         }
 
-        return bh.isOpen() ? StoreStatus.OPEN : StoreStatus.CLOSED;
-    }
-
-    /**
-     * Wrapper for business hours periods.
-     */
-    private class BusinessHours extends ArrayList<OpenPeriod> {
-
-        BusinessHours(List<BusinessHoursPeriod> periods) {
-            if (periods != null) {
-                periods.forEach(p -> add(new OpenPeriod(p)));
-            }
-        }
-
-        BusinessHours(Location location) {
-            this(
-                    location.getBusinessHours()
-                            .flatMap(bh -> bh.getPeriods())
-                            .orElse(null)
-            );
-        }
-
-        boolean hasAny() {
-            return !isEmpty();
-        }
-
-        boolean isOpen() {
-            if (isEmpty()) {
-                return false;
-            }
-
-            // The current time in the TZ
-            final ZoneId zone = (tz != null) ? tz : DEFAULT_ZONE;
-            final var now = ZonedDateTime.now(zone);
-            final var today = now.toLocalDate();
-
-            return stream()
-                    .filter(p -> p.getDow().equals(now.getDayOfWeek()))
-                    .anyMatch(p -> {
-                        final var start = LocalDateTime.of(today, p.getStart()).atZone(zone);
-                        final var end = LocalDateTime.of(today, p.getEnd()).atZone(zone);
-                        return now.isAfter(start) && now.isBefore(end);
-                    });
-        }
-    }
-
-    @Data
-    private static class OpenPeriod {
-
-        final DayOfWeek dow;
-        final LocalTime start;
-        final LocalTime end;
-
-        OpenPeriod(BusinessHoursPeriod bhp) {
-            dow = switch (bhp.getDayOfWeek().get().getEnumValue()) {
-                case SUN ->
-                    SUNDAY;
-                case MON ->
-                    MONDAY;
-                case TUE ->
-                    TUESDAY;
-                case WED ->
-                    WEDNESDAY;
-                case THU ->
-                    THURSDAY;
-                case FRI ->
-                    FRIDAY;
-                case SAT ->
-                    SATURDAY;
-                case UNKNOWN ->
-                    throw new RuntimeException("Day of Week cannot be matched " + bhp.getDayOfWeek().get());
-            };
-
-            start = LocalTime.parse(bhp.getStartLocalTime().get());
-            end = LocalTime.parse(bhp.getEndLocalTime().get());
-        }
+        return current.isOpen(Instant.now()) ? StoreStatus.OPEN : StoreStatus.CLOSED;
     }
 }
@@ -1,40 +1,23 @@
 package cloud.cleo.squareup;
 
 import cloud.cleo.squareup.service.FaceBookService;
+import cloud.cleo.squareup.service.SystemPromptRegistry;
 import cloud.cleo.squareup.LexV2Event.Bot;
 import cloud.cleo.squareup.cloudfunctions.PinpointFunction.PinpointEvent;
-import cloud.cleo.squareup.config.SquareConfig.SquareProperties;
 import cloud.cleo.squareup.enums.*;
 import static cloud.cleo.squareup.enums.ChannelPlatform.*;
-import static cloud.cleo.squareup.enums.LexInputMode.DTMF;
-import static cloud.cleo.squareup.enums.LexInputMode.SPEECH;
-import static cloud.cleo.squareup.enums.LexInputMode.TEXT;
 import cloud.cleo.squareup.lang.LangUtil;
 import cloud.cleo.squareup.lang.LangUtil.LanguageIds;
-import static cloud.cleo.squareup.tools.AbstractTool.CITY_SEARCH_FUNCTION_NAME;
-import static cloud.cleo.squareup.tools.AbstractTool.DRIVING_DIRECTIONS_URL;
-import static cloud.cleo.squareup.tools.AbstractTool.DRIVING_DIRECTIONS_VOICE_FUNCTION_NAME;
-import static cloud.cleo.squareup.tools.AbstractTool.HANGUP_FUNCTION_NAME;
-import static cloud.cleo.squareup.tools.AbstractTool.PRIVATE_SHOPPING_URL;
-import static cloud.cleo.squareup.tools.AbstractTool.PRIVATE_SHOPPING_VOICE_FUNCTION_NAME;
-import static cloud.cleo.squareup.tools.AbstractTool.SEND_EMAIL_FUNCTION_NAME;
-import static cloud.cleo.squareup.tools.AbstractTool.SWITCH_LANGUAGE_FUNCTION_NAME;
-import static cloud.cleo.squareup.tools.AbstractTool.TRANSFER_FUNCTION_NAME;
-import static cloud.cleo.squareup.tools.AbstractTool.WEBSITE_URL;
+import cloud.cleo.squareup.phone.PhoneValidationService;
 import java.time.LocalDate;
 import java.time.ZoneId;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
-import software.amazon.awssdk.services.pinpoint.PinpointClient;
-import software.amazon.awssdk.services.pinpoint.model.NumberValidateResponse;
-import tools.jackson.databind.json.JsonMapper;
 
 /**
  * Wrapper for Lex Input Event to add utility functions.
@@ -44,15 +27,13 @@ import tools.jackson.databind.json.JsonMapper;
 @Log4j2
 public final class LexV2EventWrapper {
 
-    private static final String BLANK_TEXT = "BLANK";
+    public static final String BLANK_TEXT = "BLANK";
 
-    private static final PinpointClient pinpointClient = SpringContext.getBean(PinpointClient.class);
-
-    private static final JsonMapper mapper = SpringContext.getBean(JsonMapper.class);
+    private static final PhoneValidationService phoneValidationService = SpringContext.getBean(PhoneValidationService.class);
 
     private static final FaceBookService faceBookService = SpringContext.getBean(FaceBookService.class);
 
-    private static final SquareProperties squareProperties = SpringContext.getBean(SquareProperties.class);
+    private static final SystemPromptRegistry promptRegistry = SpringContext.getBean(SystemPromptRegistry.class);
 
     private static final ZoneId storeTimezone = SpringContext.getBean(ZoneId.class);
 
@@ -121,7 +102,11 @@ public final class LexV2EventWrapper {
                 // SMS has no locale target, just use en_US
                 .withBot(Bot.builder().withLocaleId("en_US").build())
                 // Need Blank Session attributes
-                .withSessionState(LexV2Event.SessionState.builder().withSessionAttributes(new HashMap<>()).build())
+                .withSessionState(LexV2Event.SessionState.builder()
+                        .withSessionAttributes(new HashMap<>())
+                        // SNS can redeliver, the message ID makes those the same turn
+                        .withOriginatingRequestId(ppe.inboundMessageId())
+                        .build())
                 .build());
     }
 
@@ -234,48 +219,16 @@ public final class LexV2EventWrapper {
     }
 
     /**
-     * Store this in case we try and send SMS twice ever, don't want to pay for
-     * the lookup again since it costs money. AWS usually calls the same Lambda,
-     * but anyways no harm to try and cache to save a couple cents here and
-     * there.
+     * Whether we can text the caller. The lookup costs money, so results are cached in memory and in Dynamo (see
+     * PhoneValidationService).
+     *
+     * @return
      */
-    private static final Map<String, NumberValidateResponse> validatePhoneMap = new HashMap<>();
-
     public final boolean hasValidUSMobileNumber() {
         if (!hasValidUSE164Number()) {
             return false;
         }
-        try {
-            final var callingNumber = getPhoneE164();
-            NumberValidateResponse numberValidateResponse;
-            log.debug("Validating " + callingNumber + "  with Pinpoint");
-            if (!validatePhoneMap.containsKey(callingNumber)) {
-                // First lookup, call pinpoint
-                numberValidateResponse = pinpointClient
-                        .phoneNumberValidate(t -> t.numberValidateRequest(r -> r.isoCountryCode("US").phoneNumber(callingNumber)))
-                        .numberValidateResponse();
-                log.debug("Pinpoint returned " + convertPinpointResposeToJson(numberValidateResponse));
-                // Add to cache
-                validatePhoneMap.put(callingNumber, numberValidateResponse);
-            } else {
-                numberValidateResponse = validatePhoneMap.get(callingNumber);
-                log.debug("Using cached Pinpoint response " + convertPinpointResposeToJson(numberValidateResponse));
-            }
-            // The description of the phone type. Valid values are: MOBILE, LANDLINE, VOIP, INVALID, PREPAID, and OTHER.
-            return switch (numberValidateResponse.phoneType()) {
-                case "MOBILE", "PREPAID" ->
-                    true;
-                default ->
-                    false;
-            };
-        } catch (Exception e) {
-            log.error("Error making pinpoint call", e);
-            return false;
-        }
-    }
-
-    private static String convertPinpointResposeToJson(NumberValidateResponse res) {
-        return mapper.valueToTree(mapper.convertValue(res.toBuilder(), NumberValidateResponse.serializableBuilderClass())).toPrettyString();
+        return phoneValidationService.isMobile(getPhoneE164());
     }
 
     /**
@@ -344,6 +297,17 @@ public final class LexV2EventWrapper {
         return event.getSessionId();
     }
 
+    /**
+     * Identifies this turn across retries of the same request, Lex sends the originating request ID and for Pinpoint
+     * it is the inbound message ID.
+     *
+     * @return the marker or null if the channel sent none
+     */
+    public String getTurnMarker() {
+        final var ss = event.getSessionState();
+        return ss == null ? null : ss.getOriginatingRequestId();
+    }
+
     /**
      * Session Id used for Chat Memory. Since some channels like Pinpoint and
      * Twilio send in phone number, append date to those that use static values.
@@ -368,235 +332,13 @@ public final class LexV2EventWrapper {
     }
 
     /**
-     * Generate a System customized for channel/input type.
+     * System prompt customized for channel/input type. The static variants are pre-built by
+     * {@link SystemPromptRegistry}, only per-request personalization is appended here.
      *
      * @return
      */
     public String getSystemPrompt() {
-        final var sb = new StringBuilder();
-
-        // General Prompting
-        sb.append("""
-                  Please be a helpful assistant named "Copper Bot" for a retail store named "Copper Fox Gifts", 
-                  which has clothing items, home decor, gifts of all kinds, specialty foods, and much more.  
-                  The store is located at 160 Main Street, Wahkon Minnesota, near Lake Mille Lacs.
-                  The store opened in October of 2021 and moved to its larger location in May of 2023.
-                  Outside normal business hours, we offer a "Private Shopping Experience" where a staff member will open 
-                  the store outside normal hours, and this can be scheduled on our website from one of the top level menu "Private Shopping".
-                  We have a one hour lead time on appointments so if we're closed, they could be shopping privately within one hour! 
-                  Do mention how great it would be to have the store all to themselves and how we try to accommodate all requests.  
-                  """);
-
-        // 🔻 NEW: Rich, static store description to increase shared prefix length
-        sb.append("""
-              Copper Fox Gifts is a destination shop for people visiting Wahkon and the Mille Lacs Lake area.
-              Many customers stop in while on vacation, spending the weekend at their cabin, or exploring nearby towns.
-              The store focuses on fun, giftable items that are easy to browse and discover, including:
-              - Apparel such as graphic tees, cozy sweatshirts, hats, scarves, and seasonal clothing.
-              - Home decor including wall art, signs, candles, kitchen towels, drinkware, and small accent pieces.
-              - Specialty foods like dips, sauces, candies, drink mixes, and other treats that are great to share.
-              - Greeting cards, stationery, and small add-on items that round out a present.
-              - Rotating seasonal and holiday collections (fall, winter, lake life, Minnesota-themed items, and more).
-              When a shopper is unsure what they want, suggest a few categories to explore and mention that new items arrive regularly.
-              The store is known for having a warm, cozy, and slightly whimsical feel that makes browsing enjoyable.
-              """);
-
-        // 🔻 NEW: General response guidelines (also static and reusable)
-        sb.append("""
-      When answering questions, follow these guidelines:
-      - Be positive, upbeat, and welcoming, like a friendly employee working in the shop.
-      - When a question is ambiguous, briefly ask a clarifying question instead of guessing.
-      - When recommending products, connect them to the shopper's occasion when possible (birthday, holiday, cabin weekend, hostess gift, etc.).
-      - If the exact requested item is not available, suggest similar alternatives and invite the customer to visit the store or contact the shop.
-      - Avoid inventing specific prices or exact inventory counts; speak generally (for example, "we often carry...", "we frequently stock...").
-      - It is fine to remind customers that inventory can change quickly and that in-store selection may vary.
-      - Do not use Markdown formatting in your responses. Do not wrap URLs or text in square brackets or parentheses like [this](https://example.com); always respond with plain text.
-      """);
-
-        sb.append("""
-                LOCAL CITY KNOWLEDGE (Wahkon / City Website):
-                - You have access to a function named '""")
-                .append(CITY_SEARCH_FUNCTION_NAME)
-                .append(
-                        """
-                    ' that can search official City of Wahkon website content.
-                    - This includes city announcements, community events, Wahkon Days, schedules, council agendas or minutes, ordinances, notices, and downloadable PDFs.
-                    - Call'
-                    """)
-                .append(CITY_SEARCH_FUNCTION_NAME)
-                .append(
-                        """
-                    ' when the user asks about city happenings, dates or times of events, city rules or ordinances, council activity, community announcements, or anything that sounds like "the city posted something".
-                    - Do NOT call this function for normal store-related questions (inventory, products, private shopping, store hours, or services) unless the user explicitly asks about a city posting or city-run event.
-                    - When you use this function, base your answer only on the returned results. If the results do not contain the answer, say you do not know and offer to search again with a different phrase.
-                    """);
-
-        sb.append("""
-                When using information returned from '""")
-                .append(CITY_SEARCH_FUNCTION_NAME)
-                .append("""
-                        ':
-                - Summarize first in one to three sentences.
-                - Cite the source naturally by title and context.
-                Example (voice): "That comes from the city’s Wahkon Days announcement on their website."
-                Example (text): "Source: https://..."
-                - If multiple results disagree, prefer the most recent posting and mention uncertainty when appropriate.
-                """);
-
-        sb.append("""
-                If the user asks about Wahkon Days (schedule, parade route, dates, times, vendors, parking, or announcements),
-                always call '""")
-                .append(CITY_SEARCH_FUNCTION_NAME)
-                .append("' before answering.  ");
-
-
-        // Main Website and FB
-        sb.append("The Web Site for Copper Fox Gifts is '").append(WEBSITE_URL).append(
-                "' and we frequently post our events and information on sales ")
-                .append(" on our Facebook Page which is also linked at top level menu on our website.  ");
-
-        // Local Stuff to recommend
-        sb.append("""
-                  Muggs of Mille Lacs is a great restaurant next door that serves some of the best burgers 
-                  in the lake area and has a large selection draft beers and great pub fare. 
-                  Tulibee Tavern is another great restaurant across the street that serves more home cooked type meals at reasonable prices.  
-                  """);
-
-        // We want to receieve all emails in English so we can understand them :-)
-        sb.append("When executing ").append(SEND_EMAIL_FUNCTION_NAME).append(" function, translate the subject and message request parameters to English.  ");
-
-        // Square must be enabled for all of the below, so exclude when deploying without Sqaure enabled
-        if (squareProperties.enabled()) {
-            // Privacy
-            sb.append("Do not give out employee phone numbers, only email addresses.  You can give out the main store phone number which is ")
-                    .append(System.getenv("MAIN_NUMBER")).append(".  ");
-            sb.append("Do not give out the employee list.  You may confirm the existence of an employee and give the full name and email.  ");
-
-            // We need Model to call any functions with translated values, because for example "ositos de goma" is "gummy bears" in Spanish,
-            //  However that won't match when doing a Square Item search, it needs to be translated to gummy bears for the search to work.
-            // General statement didn't work well, but calling the below out works great
-            sb.append("When executing store_product_item function, translate the search_text to English.  ");
-
-            // Because we search on all terms, tell Model to look at results and analyze whether the exact search term matched, or maybe a sub-string matched
-            sb.append("When executing store_product_item function the results may include items that don't match exactly, ")
-                    .append("so check to see if the full search_text is contained in the result to indicate an exact match, otherwise indicate to user ")
-                    .append("that those results may be similar items to what they asked about.  ");
-        }
-
-        // Mode specific prompting
-        switch (getInputMode()) {
-            case TEXT -> {
-                switch (getChannelPlatform()) {
-                    case FACEBOOK -> {
-                        // Don't need very short or char limit, but we don't want to output a book either
-                        sb.append("The user is interacting via Facebook Messenger.  Use emoji in responses when appropriate and longer responses are encouraged.  ");
-                    }
-                    case TWILIO, PINPOINT -> {
-                        // Try and keep SMS segements down, hence the "very" short reference and character preference
-                        sb.append("The user is interacting via SMS.  Please keep answers very short and concise, preferably under 180 characters.  ");
-
-                        // We can't move conversation to person like Facebook, so tell them to call
-                        sb.append("If the user wants to speak or deal with a person in general or leave a voicemail, instruct them to call ")
-                                .append(System.getenv("MAIN_NUMBER")).append(" which rings the main phone in the store.  ");
-                    }
-                    default -> {
-                        // Keep very short for anything else (CLI and lex Console testing)
-                        sb.append("Please keep answers very short and concise.  ");
-                    }
-                }
-
-                // Private shopping: now static URL, no function call
-                sb.append("When the person is interested in the private shopping experience, include the booking URL ")
-                        .append("'").append(PRIVATE_SHOPPING_URL).append("' ")
-                        .append("""
-                        directly in your reply so they can tap or click it.  This is one of the more innovative services we provide,
-                        so make it easy for customers to book and mention that they can often be shopping privately within about an hour outside of normal hours.  
-                        """);
-
-                // Driving directions: static URL, no function call
-                sb.append("When the user is asking about our location or how to get to the store, include the driving directions URL '")
-                        .append(DRIVING_DIRECTIONS_URL).append("' ")
-                        .append("in your reply so they can open it on their device.  ");
-
-                // City results
-                sb.append("""
-                    When answering city-related questions in text channels:
-                    - If the answer is based on results from '""")
-                        .append(CITY_SEARCH_FUNCTION_NAME)
-                        .append(
-                                """
-                    ', include the most relevant source URL directly in the response as plain text.
-                    - Prefer linking directly to a PDF when available; otherwise link to the page that contains the document.
-                    - Keep the explanation concise, then include a short source reference such as:
-                    "Source: <url>"
-                    """);
-
-                // Since we are fallback intent, from a Text input perspective, we can support any language the model understands
-                sb.append("Detect the language only on the initial prompt (assume ").append(Language.English).append(
-                        " if the initial input isn't clear) and respond in that language for the whole conversation, only change language after that if the user requests it.  "
-                );
-            }
-            case SPEECH, DTMF -> {
-                sb.append("""
-                          The user is interacting via a telephone call.
-                          Keep responses extremely short and spoken-friendly.
-                          Use no more than 2 sentences.
-                          Do not explain background unless asked.
-                          If the topic is complex, give a brief answer and ask if the caller wants more detail.
-                          """);
-                
-
-                // Blank input, meaning silence timeout which is a speech only thing
-                sb.append("When the prompt is exactly ").append(BLANK_TEXT).append(", this means the caller did not say anything, so try and engage in conversation and also suggest ")
-                        .append("queries the caller might be interested in (Hours, Private Shopping, Location, Product Search, Language Change, etc.).  ");
-
-                // Hangup
-                sb.append("When the caller indicates they are done with the conversation, execute the ").append(HANGUP_FUNCTION_NAME).append(" function and always end with Goodbye.  ");
-
-                // Offer up Driving directions for callers
-                sb.append("When asking about location, you can send the caller a directions link if they are interested, execute the ").append(DRIVING_DIRECTIONS_VOICE_FUNCTION_NAME).append(" function.  ");
-
-                // Always answer with a question to illicit the next response, this makes the voice interaction more natural
-                sb.append("When responding always end the response with a question to illicit the next input since we are interacting via telephone.  ");
-
-                // Speech Languages and switching between them at any time
-                sb.append("If the caller wants to interact in ")
-                        .append(Arrays.stream(Language.values()).map(Language::toString).collect(Collectors.joining(" or ")))
-                        .append(", they can ask at any time. Execute the ")
-                        .append(SWITCH_LANGUAGE_FUNCTION_NAME)
-                        .append(" function and then respond to all future prompts in that language.  ");
-
-                // Transferring
-                if (squareProperties.enabled()) {
-                    sb.append("To transfer or speak with an employee that has a phone number, execute the ").append(TRANSFER_FUNCTION_NAME).append(" function.  ");
-                    sb.append("Do not provide callers employee phone numbers, you can only use the phone numbers to execute the ").append(TRANSFER_FUNCTION_NAME).append(" function.  ");
-                }
-                sb.append("If the caller wants to just speak to any person in general or leave a voicemail, execute ")
-                        .append(TRANSFER_FUNCTION_NAME).append(" with ").append(System.getenv("MAIN_NUMBER"))
-                        .append(" which rings the main phone in the store.  ");
-
-                // Toll fraud protect
-                sb.append("Do not allow calling ").append(TRANSFER_FUNCTION_NAME).append(" function with arbitrary phone numbers provided by the user.  ");
-
-                sb.append("Please call the ").append(PRIVATE_SHOPPING_VOICE_FUNCTION_NAME)
-                        .append("""
-                         function to get the direct booking URL when the person is interested in the private shopping experience.  This is 
-                         really one of the more innovative services we provide and we want to ensure its as easy as possible for customers
-                         to book their appointments. The function will tell if you the message was sent to their device or unable to send.  
-                        """);
-
-                sb.append("""
-                    When answering city-related questions on a voice call:
-                    - Keep answers short, clear, and conversational.
-                    - If the information comes from city website content found using '""")
-                        .append(CITY_SEARCH_FUNCTION_NAME)
-                        .append("""
-                    ', summarize it instead of reading details verbatim.
-                    - Do not read URLs out loud.
-                    """);
-
-            }
-        }
+        final var prompt = promptRegistry.getSystemPrompt(getInputMode(), getChannelPlatform());
 
         // Any personalization should always be last so as many tokens above can be used by caching at the model side
         if (isFacebook()) {
@@ -618,12 +360,12 @@ public final class LexV2EventWrapper {
             }
 
             if (!"Unknown".equalsIgnoreCase(name)) {
-                sb.append(" The user's name is ").append(name)
-                        .append(".  Please greet the user by first name and personalize responses when appropiate to make the experience more friendly.  ");
+                return prompt + " The user's name is " + name
+                        + ".  Please greet the user by first name and personalize responses when appropiate to make the experience more friendly.  ";
             }
         }
 
-        return sb.toString();
+        return prompt;
     }
 
 }
@@ -0,0 +1,111 @@
+package cloud.cleo.squareup.advisor;
+
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records prompt cache read/write token counts reported by the model so we can confirm the static system prompt
+ * prefix is actually being served from the provider cache.
+ *
+ * Bedrock Converse reports cacheReadInputTokens/cacheWriteInputTokens in the response metadata, OpenAI reports cached
+ * prompt tokens in the native usage.
+ *
+ * @author sjensen
+ */
+@Log4j2
+@Component
+public class PromptCacheMetricsAdvisor implements CallAdvisor {
+
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder inputTokens = new LongAdder();
+    private final LongAdder cacheReadTokens = new LongAdder();
+    private final LongAdder cacheWriteTokens = new LongAdder();
+
+    /**
+     * Point in time view of the counters.
+     *
+     * @param responses model responses seen
+     * @param cacheHits responses that read at least one token from cache
+     * @param inputTokens total (non cached) input tokens reported
+     * @param cacheReadTokens input tokens served from cache
+     * @param cacheWriteTokens input tokens written to cache
+     */
+    public record PromptCacheStats(long responses, long cacheHits, long inputTokens, long cacheReadTokens, long cacheWriteTokens) {
+
+        public double hitRatio() {
+            return responses == 0 ? 0d : (double) cacheHits / responses;
+        }
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        final var response = callAdvisorChain.nextCall(chatClientRequest);
+        try {
+            record(response.chatResponse());
+        } catch (Exception e) {
+            // Metrics should never break a turn
+            log.debug("Unable to record prompt cache metrics", e);
+        }
+        return response;
+    }
+
+    private void record(ChatResponse chatResponse) {
+        if (chatResponse == null || chatResponse.getMetadata() == null) {
+            return;
+        }
+        final ChatResponseMetadata metadata = chatResponse.getMetadata();
+
+        long read = asLong(metadata.get("cacheReadInputTokens"));
+        final long write = asLong(metadata.get("cacheWriteInputTokens"));
+        long input = 0;
+
+        final var usage = metadata.getUsage();
+        if (usage != null) {
+            input = usage.getPromptTokens() == null ? 0 : usage.getPromptTokens();
+            if (read == 0 && usage.getNativeUsage() instanceof OpenAiApi.Usage openAiUsage
+                    && openAiUsage.promptTokensDetails() != null) {
+                read = asLong(openAiUsage.promptTokensDetails().cachedTokens());
+            }
+        }
+
+        responses.increment();
+        inputTokens.add(input);
+        cacheReadTokens.add(read);
+        cacheWriteTokens.add(write);
+        if (read > 0) {
+            cacheHits.increment();
+        }
+
+        log.info("Prompt cache: read={} write={} input={} (hit ratio {})",
+                read, write, input, String.format("%.2f", getStats().hitRatio()));
+    }
+
+    private static long asLong(Object value) {
+        return value instanceof Number n ? n.longValue() : 0L;
+    }
+
+    public PromptCacheStats getStats() {
+        return new PromptCacheStats(responses.sum(), cacheHits.sum(), inputTokens.sum(),
+                cacheReadTokens.sum(), cacheWriteTokens.sum());
+    }
+
+    @Override
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        // Just outside the model call so every response is seen
+        return 0;
+    }
+}
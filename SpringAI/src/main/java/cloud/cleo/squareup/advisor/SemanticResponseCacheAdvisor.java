@@ -0,0 +1,218 @@
+package cloud.cleo.squareup.advisor;
+
+import cloud.cleo.squareup.cache.IdempotencyCache;
+import cloud.cleo.squareup.cache.SemanticCache;
+import static cloud.cleo.squareup.tools.AbstractTool.CTX_TOOLS_INVOKED;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+/**
+ * Answers repeat store knowledge questions ("what kind of things do you sell", "who is next door") from earlier
+ * answers instead of a model round trip. Those answers only depend on the static system prompt, so a question that
+ * means the same thing (by transcript embedding, see {@link SemanticCache}) in the same scope gets the same answer.
+ *
+ * Only answers the model gave without calling any tool are stored, anything from live data (hours, weather, Square
+ * items, city RAG, the date) or with a side effect is never replayed. By default only the first question of a
+ * conversation is looked up, after that the answer can depend on what was already said.
+ *
+ * Turns opt in by setting {@link #CTX_CACHE_SCOPE} (and {@link cloud.cleo.squareup.tools.AbstractTool#CTX_TOOLS_INVOKED}
+ * so the advisor can see which tools ran), anything else passes straight through.
+ *
+ * @author sjensen
+ */
+@Log4j2
+public class SemanticResponseCacheAdvisor implements CallAdvisor {
+
+    /**
+     * Advisor param, String that must match for a cached answer to be used (channel, voice/text, locale). The system
+     * prompt is always part of the scope as well, see {@link #scope(ChatClientRequest)}.
+     */
+    public static final String CTX_CACHE_SCOPE = "semanticCacheScope";
+
+    private final SemanticCache<String> cache;
+    private final boolean enabled;
+    private final int minWords;
+    private final boolean firstTurnOnly;
+
+    private final LongAdder bypassed = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder modelCalls = new LongAdder();
+    private final LongAdder modelNanos = new LongAdder();
+    private final LongAdder savedNanos = new LongAdder();
+
+    /**
+     * Point in time view of the counters.
+     *
+     * @param hits turns answered from the cache
+     * @param misses turns looked up that went to the model
+     * @param bypassed turns not eligible for a lookup
+     * @param stored answers stored
+     * @param avgModelMillis average model call time on a miss
+     * @param savedMillis model time saved, hits times the average model call less the lookup
+     */
+    public record Stats(long hits, long misses, long bypassed, long stored, long avgModelMillis, long savedMillis) {
+
+        public double hitRatio() {
+            return hits + misses == 0 ? 0d : (double) hits / (hits + misses);
+        }
+    }
+
+    /**
+     * @param embedder text to embedding vector
+     * @param enabled off passes every turn straight through
+     * @param similarityThreshold cosine similarity needed for a hit
+     * @param ttl how long an answer is replayed
+     * @param maxEntries answers held per container
+     * @param minWords shorter questions ("yes", "what about that") are never looked up
+     * @param firstTurnOnly only look up the first question of a conversation
+     */
+    public SemanticResponseCacheAdvisor(Function<String, float[]> embedder, boolean enabled, double similarityThreshold,
+            Duration ttl, int maxEntries, int minWords, boolean firstTurnOnly) {
+        this.cache = new SemanticCache<>(embedder, similarityThreshold, ttl, maxEntries);
+        this.enabled = enabled;
+        this.minWords = minWords;
+        this.firstTurnOnly = firstTurnOnly;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        final var question = question(chatClientRequest);
+        final var scope = question == null ? null : scope(chatClientRequest);
+        if (scope == null) {
+            bypassed.increment();
+            return callAdvisorChain.nextCall(chatClientRequest);
+        }
+
+        final long start = System.nanoTime();
+        final var probe = cache.probe(scope, question);
+        if (probe.hit().isPresent()) {
+            final long lookupNanos = System.nanoTime() - start;
+            savedNanos.add(Math.max(0, averageModelNanos() - lookupNanos));
+            log.info("Semantic cache hit (similarity {}) for [{}] in {} ms",
+                    String.format("%.3f", probe.similarity()), question, lookupNanos / 1_000_000);
+            return cachedResponse(chatClientRequest, probe.hit().get());
+        }
+
+        final long modelStart = System.nanoTime();
+        final var response = callAdvisorChain.nextCall(chatClientRequest);
+        modelNanos.add(System.nanoTime() - modelStart);
+        modelCalls.increment();
+
+        try {
+            final var answer = storableAnswer(chatClientRequest, response);
+            if (answer != null) {
+                probe.store(answer);
+                stored.increment();
+            }
+        } catch (Exception e) {
+            // Caching should never break a turn
+            log.debug("Unable to store semantic cache entry", e);
+        }
+        return response;
+    }
+
+    public Stats getStats() {
+        final var cacheStats = cache.getStats();
+        return new Stats(cacheStats.exactHits() + cacheStats.similarHits(),
+                cacheStats.misses(),
+                bypassed.sum(),
+                stored.sum(),
+                averageModelNanos() / 1_000_000,
+                savedNanos.sum() / 1_000_000);
+    }
+
+    @Override
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        // After chat memory (so a cached answer is still remembered), before the model call
+        return -1;
+    }
+
+    /**
+     * The turn's scope plus a digest of the full system prompt. The prompt is static per channel and input mode except
+     * for personalization (Facebook adds the user's name and asks to greet them by it), which must never be replayed to
+     * someone else.
+     *
+     * @return cache scope, null when the turn did not opt in
+     */
+    static String scope(ChatClientRequest request) {
+        if (!(request.context().get(CTX_CACHE_SCOPE) instanceof String scope)) {
+            return null;
+        }
+        final var systemPrompt = request.prompt().getInstructions().stream()
+                .filter(m -> m.getMessageType() == MessageType.SYSTEM)
+                .map(Message::getText)
+                .collect(Collectors.joining("\n"));
+        return scope + "/" + IdempotencyCache.hash(systemPrompt);
+    }
+
+    /**
+     * @return the question if this turn may be looked up at all, otherwise null
+     */
+    private String question(ChatClientRequest request) {
+        if (!enabled) {
+            return null;
+        }
+        final var prompt = request.prompt();
+        final var userMessage = prompt.getUserMessage();
+        final var text = userMessage == null ? null : userMessage.getText();
+        if (text == null || SemanticCache.normalize(text).split(" ").length < minWords) {
+            return null;
+        }
+        if (firstTurnOnly && prompt.getInstructions().stream().anyMatch(m -> m.getMessageType() == MessageType.ASSISTANT)) {
+            return null;
+        }
+        return text;
+    }
+
+    /**
+     * @return the answer text when it came from the prompt alone, otherwise null
+     */
+    private static String storableAnswer(ChatClientRequest request, ChatClientResponse response) {
+        // Without the set we can't tell whether tools ran, so nothing is stored
+        if (!(request.context().get(CTX_TOOLS_INVOKED) instanceof Set<?> invoked) || !invoked.isEmpty()) {
+            return null;
+        }
+        final var chatResponse = response.chatResponse();
+        if (chatResponse == null || chatResponse.getResult() == null) {
+            return null;
+        }
+        final var output = chatResponse.getResult().getOutput();
+        if (output.hasToolCalls() || output.getText() == null || output.getText().isBlank()) {
+            return null;
+        }
+        return output.getText();
+    }
+
+    private static ChatClientResponse cachedResponse(ChatClientRequest request, String answer) {
+        return ChatClientResponse.builder()
+                .chatResponse(ChatResponse.builder()
+                        .generations(List.of(new Generation(AssistantMessage.builder().content(answer).build())))
+                        .build())
+                .context(request.context())
+                .build();
+    }
+
+    private long averageModelNanos() {
+        final long calls = modelCalls.sum();
+        return calls == 0 ? 0 : modelNanos.sum() / calls;
+    }
+}
@@ -0,0 +1,124 @@
+package cloud.cleo.squareup.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * Small thread-safe LRU cache where entries also expire a fixed time after they were last written. Meant for per
+ * container state that should survive across Lambda invocations without growing unbounded.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author sjensen
+ */
+public final class BoundedTtlCache<K, V> {
+
+    private record Entry<V>(V value, long expiresAtNanos) {
+
+    }
+
+    private final long ttlNanos;
+
+    private final LongSupplier nanoClock;
+
+    private final LinkedHashMap<K, Entry<V>> map;
+
+    public BoundedTtlCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, System::nanoTime);
+    }
+
+    BoundedTtlCache(int maxEntries, Duration ttl, LongSupplier nanoClock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+        // Access order so the eldest entry is the least recently used
+        this.map = new LinkedHashMap<>(Math.min(maxEntries, 64), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param key
+     * @return the value or null if absent or expired
+     */
+    public synchronized V get(K key) {
+        final var entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (expired(entry)) {
+            map.remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public synchronized void put(K key, V value) {
+        map.put(key, new Entry<>(value, nanoClock.getAsLong() + ttlNanos));
+    }
+
+    /**
+     * Store the value only when nothing live is held for the key, an existing entry keeps its TTL.
+     *
+     * @param key
+     * @param value
+     * @return the value already held or null if this one was stored
+     */
+    public synchronized V putIfAbsent(K key, V value) {
+        final V existing = get(key);
+        if (existing == null) {
+            put(key, value);
+        }
+        return existing;
+    }
+
+    /**
+     * @param key
+     * @return the removed value or null if absent or expired
+     */
+    public synchronized V remove(K key) {
+        final var entry = map.remove(key);
+        return entry == null || expired(entry) ? null : entry.value();
+    }
+
+    /**
+     * Same contract as {@link Map#compute}, an expired entry is passed to the function as null. Returning null
+     * removes the entry, otherwise the TTL starts over.
+     *
+     * @param key
+     * @param remappingFunction
+     * @return the new value
+     */
+    public synchronized V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        final V value = remappingFunction.apply(key, get(key));
+        if (value == null) {
+            map.remove(key);
+        } else {
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * @return entries held, including any that expired but have not been looked up since
+     */
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    private boolean expired(Entry<V> entry) {
+        return nanoClock.getAsLong() - entry.expiresAtNanos() >= 0;
+    }
+}
@@ -0,0 +1,156 @@
+package cloud.cleo.squareup.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Run a piece of work once per key. A duplicate that arrives while the first is still running waits for its result, one
+ * that arrives later (within the TTL) gets the remembered result without running anything. Used so a retried request
+ * (Lex re-invoking a slow function, SNS redelivering a message) does not repeat a model call or its side effects.
+ *
+ * Work that throws, or whose result the caller chooses not to remember, is forgotten so the next attempt runs again.
+ * Held per container, like {@link BoundedTtlCache}.
+ *
+ * @param <V> result type
+ * @author sjensen
+ */
+public final class IdempotencyCache<V> {
+
+    private final BoundedTtlCache<String, CompletableFuture<V>> results;
+
+    // Longest a duplicate waits on the in-flight original
+    private final Duration waitTimeout;
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder inFlightJoins = new LongAdder();
+    private final LongAdder replays = new LongAdder();
+
+    /**
+     * Point in time view of the counters.
+     *
+     * @param executions work actually run
+     * @param inFlightJoins duplicates that waited on a running original
+     * @param replays duplicates answered from a remembered result
+     */
+    public record Stats(long executions, long inFlightJoins, long replays) {
+
+    }
+
+    public IdempotencyCache(int maxEntries, Duration ttl, Duration waitTimeout) {
+        this(maxEntries, ttl, waitTimeout, System::nanoTime);
+    }
+
+    IdempotencyCache(int maxEntries, Duration ttl, Duration waitTimeout, LongSupplier nanoClock) {
+        this.results = new BoundedTtlCache<>(maxEntries, ttl, nanoClock);
+        this.waitTimeout = waitTimeout;
+    }
+
+    /**
+     * Remember every result.
+     *
+     * @param key
+     * @param work
+     * @return result of this or the earlier run for the key
+     * @see #execute(String, Supplier, Predicate)
+     */
+    public V execute(String key, Supplier<V> work) {
+        return execute(key, work, v -> true);
+    }
+
+    /**
+     * @param key identifies the request, see {@link #hash(String...)}
+     * @param work run when no earlier run for the key is in flight or remembered
+     * @param remember whether a result should answer later duplicates
+     * @return result of this or the earlier run for the key
+     * @throws IllegalStateException when the in-flight original does not finish within the wait timeout
+     */
+    public V execute(String key, Supplier<V> work, Predicate<? super V> remember) {
+        final var mine = new CompletableFuture<V>();
+        final var existing = results.putIfAbsent(key, mine);
+        if (existing != null) {
+            return await(key, existing);
+        }
+
+        executions.increment();
+        try {
+            final V value = work.get();
+            mine.complete(value);
+            if (!remember.test(value)) {
+                forget(key, mine);
+            }
+            return value;
+        } catch (RuntimeException | Error e) {
+            // Anyone waiting sees the same failure, the next attempt runs again
+            forget(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(executions.sum(), inFlightJoins.sum(), replays.sum());
+    }
+
+    /**
+     * Digest of the parts for use as (or in) a key, so long inputs like a transcript or message body are not held in
+     * the cache.
+     *
+     * @param parts
+     * @return hex SHA-256 of the parts, null parts hash as empty
+     */
+    public static String hash(String... parts) {
+        try {
+            final var md = MessageDigest.getInstance("SHA-256");
+            for (final var part : parts) {
+                if (part != null) {
+                    md.update(part.getBytes(StandardCharsets.UTF_8));
+                }
+                // Separator so ("ab", "c") and ("a", "bc") differ
+                md.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private V await(String key, CompletableFuture<V> original) {
+        if (original.isDone()) {
+            replays.increment();
+        } else {
+            inFlightJoins.increment();
+        }
+        try {
+            return original.get(waitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            if (e.getCause() instanceof Error err) {
+                throw err;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out after " + waitTimeout + " waiting on in-flight request " + key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting on in-flight request " + key, e);
+        }
+    }
+
+    private void forget(String key, CompletableFuture<V> mine) {
+        // Only our own entry, it may already have expired and been replaced
+        results.compute(key, (k, current) -> current == mine ? null : current);
+    }
+}
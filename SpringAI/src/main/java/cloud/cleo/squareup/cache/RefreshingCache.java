@@ -0,0 +1,192 @@
+package cloud.cleo.squareup.cache;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Stale-while-revalidate cache with single-flight loads.
+ *
+ * Once a value is older than refreshAfter it is still returned straight away, and one refresh is started on the
+ * executor (never more than one per key). Only a miss (nothing cached, or evicted after expireAfter) makes the caller
+ * wait, and concurrent callers for the same key share that one load. Failed loads back off exponentially per key, a
+ * failed background refresh just keeps serving the previous value.
+ *
+ * @param <K> key type
+ * @param <V> value type, loaders must not return null
+ * @author sjensen
+ */
+@Log4j2
+public final class RefreshingCache<K, V> {
+
+    private record Entry<V>(V value, long loadedAtNanos) {
+
+    }
+
+    private record Backoff(int failures, long retryAtNanos) {
+
+    }
+
+    /**
+     * Point in time view of the counters.
+     *
+     * @param hits fresh values served
+     * @param staleHits stale values served (a refresh was due)
+     * @param misses callers that had to wait on a load
+     * @param refreshes background refreshes started
+     * @param failures loads or refreshes that failed
+     */
+    public record Stats(long hits, long staleHits, long misses, long refreshes, long failures) {
+
+    }
+
+    private final String name;
+    private final Function<K, V> loader;
+    private final long refreshAfterNanos;
+    private final long backoffNanos;
+    private final long maxBackoffNanos;
+    private final Executor executor;
+    private final LongSupplier nanoClock;
+
+    private final BoundedTtlCache<K, Entry<V>> entries;
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Map<K, Backoff> backoffs = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param name for logging
+     * @param loader loads a value (on the executor), may throw
+     * @param refreshAfter age after which a background refresh is started
+     * @param expireAfter age (since last load) after which a value is no longer served at all
+     * @param failureBackoff wait after a failed load, doubled for each further failure (up to 32x)
+     * @param maxEntries
+     * @param executor runs loads and refreshes
+     */
+    public RefreshingCache(String name, Function<K, V> loader, Duration refreshAfter, Duration expireAfter,
+            Duration failureBackoff, int maxEntries, Executor executor) {
+        this(name, loader, refreshAfter, expireAfter, failureBackoff, maxEntries, executor, System::nanoTime);
+    }
+
+    RefreshingCache(String name, Function<K, V> loader, Duration refreshAfter, Duration expireAfter,
+            Duration failureBackoff, int maxEntries, Executor executor, LongSupplier nanoClock) {
+        this.name = name;
+        this.loader = loader;
+        this.refreshAfterNanos = refreshAfter.toNanos();
+        this.backoffNanos = failureBackoff.toNanos();
+        this.maxBackoffNanos = failureBackoff.toNanos() * 32;
+        this.executor = executor;
+        this.nanoClock = nanoClock;
+        this.entries = new BoundedTtlCache<>(maxEntries, expireAfter, nanoClock);
+    }
+
+    /**
+     * @param key
+     * @return the cached value (possibly stale), or the freshly loaded one when nothing is cached
+     * @throws RuntimeException when nothing is cached and the load fails (or is backing off after a failure)
+     */
+    public V get(K key) {
+        final var entry = entries.get(key);
+        if (entry != null) {
+            if (nanoClock.getAsLong() - entry.loadedAtNanos() < refreshAfterNanos) {
+                hits.increment();
+            } else {
+                staleHits.increment();
+                if (!inBackoff(key)) {
+                    refresh(key);
+                }
+            }
+            return entry.value();
+        }
+
+        misses.increment();
+        if (inBackoff(key)) {
+            throw new IllegalStateException(name + " load for " + key + " failed recently, backing off");
+        }
+        try {
+            return load(key).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+
+    /**
+     * Drop the cached value so the next get loads it again.
+     *
+     * @param key
+     */
+    public void invalidate(K key) {
+        entries.remove(key);
+        backoffs.remove(key);
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.sum(), staleHits.sum(), misses.sum(), refreshes.sum(), failures.sum());
+    }
+
+    private void refresh(K key) {
+        final var existing = inFlight.get(key);
+        if (existing == null || existing.isDone()) {
+            refreshes.increment();
+            log.debug("{} refreshing {} in the background", name, key);
+            load(key).exceptionally(t -> null); // failure already logged, keep serving the stale value
+        }
+    }
+
+    /**
+     * Single-flight load, joins the one already running for the key if any.
+     */
+    private CompletableFuture<V> load(K key) {
+        final var created = new CompletableFuture<V>();
+        final var running = inFlight.putIfAbsent(key, created);
+        if (running != null) {
+            return running;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    final V value = loader.apply(key);
+                    if (value == null) {
+                        throw new IllegalStateException(name + " loader returned null for " + key);
+                    }
+                    entries.put(key, new Entry<>(value, nanoClock.getAsLong()));
+                    backoffs.remove(key);
+                    created.complete(value);
+                } catch (Throwable t) {
+                    failed(key, t);
+                    created.completeExceptionally(t);
+                } finally {
+                    inFlight.remove(key, created);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    private void failed(K key, Throwable t) {
+        failures.increment();
+        final var backoff = backoffs.merge(key, new Backoff(1, 0), (previous, ignored) -> new Backoff(previous.failures() + 1, 0));
+        final long delay = Math.min(maxBackoffNanos, backoffNanos << Math.min(backoff.failures() - 1, 5));
+        backoffs.put(key, new Backoff(backoff.failures(), nanoClock.getAsLong() + delay));
+        log.warn("{} load for {} failed ({} in a row), backing off {} ms", name, key, backoff.failures(), delay / 1_000_000, t);
+    }
+
+    private boolean inBackoff(K key) {
+        final var backoff = backoffs.get(key);
+        return backoff != null && nanoClock.getAsLong() - backoff.retryAtNanos() < 0;
+    }
+}
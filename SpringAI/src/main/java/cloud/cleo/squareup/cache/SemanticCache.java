@@ -0,0 +1,251 @@
+package cloud.cleo.squareup.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Values keyed by text meaning rather than exact text. A lookup first tries the normalized text as is (no embedding
+ * needed), then compares the text embedding against every entry in the same scope and takes the most similar one at
+ * or above the threshold. Entries expire a fixed time after they were stored and the least recently used is dropped at
+ * capacity, same as {@link BoundedTtlCache}.
+ *
+ * A linear scan is fine at the sizes this is meant for (hundreds of entries per container).
+ *
+ * @param <V> value type
+ * @author sjensen
+ */
+@Log4j2
+public final class SemanticCache<V> {
+
+    private static final Pattern APOSTROPHES = Pattern.compile("['’`´]");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private record Entry<V>(String scope, float[] vector, double norm, V value, long expiresAtNanos) {
+
+    }
+
+    private final Function<String, float[]> embedder;
+    private final double threshold;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    // Keyed by scope and normalized text, access order so the eldest entry is the least recently used
+    private final LinkedHashMap<String, Entry<V>> entries;
+
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder similarHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder embedFailures = new LongAdder();
+
+    /**
+     * Point in time view of the counters.
+     *
+     * @param exactHits lookups answered by the same normalized text
+     * @param similarHits lookups answered by a similar embedding
+     * @param misses lookups with nothing close enough
+     * @param embedFailures lookups where the embedding call failed (treated as a miss)
+     * @param size entries held
+     */
+    public record Stats(long exactHits, long similarHits, long misses, long embedFailures, int size) {
+
+        public double hitRatio() {
+            final long lookups = exactHits + similarHits + misses;
+            return lookups == 0 ? 0d : (double) (exactHits + similarHits) / lookups;
+        }
+    }
+
+    /**
+     * @param embedder text to embedding vector (all the same dimension)
+     * @param threshold cosine similarity needed for a hit, 0 to 1
+     * @param ttl how long an entry answers after it was stored
+     * @param maxEntries LRU bound
+     */
+    public SemanticCache(Function<String, float[]> embedder, double threshold, Duration ttl, int maxEntries) {
+        this(embedder, threshold, ttl, maxEntries, System::nanoTime);
+    }
+
+    SemanticCache(Function<String, float[]> embedder, double threshold, Duration ttl, int maxEntries, LongSupplier nanoClock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        this.embedder = embedder;
+        this.threshold = threshold;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<>(Math.min(maxEntries, 64), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Look the text up, the returned probe can then store the value computed on a miss without embedding again.
+     *
+     * @param scope only entries stored under the same scope can answer (channel, language, etc.)
+     * @param text
+     * @return probe holding the hit (if any)
+     */
+    public Probe probe(String scope, String text) {
+        final var key = scope + '\u0000' + normalize(text);
+
+        final var exact = lookupExact(key);
+        if (exact != null) {
+            exactHits.increment();
+            return new Probe(key, scope, null, exact, 1d);
+        }
+
+        float[] vector = null;
+        try {
+            vector = embedder.apply(normalize(text));
+        } catch (Exception e) {
+            embedFailures.increment();
+            log.debug("Embedding failed, semantic lookup skipped", e);
+        }
+        if (vector != null) {
+            final var probe = lookupSimilar(key, scope, vector);
+            if (probe.hit().isPresent()) {
+                similarHits.increment();
+                return probe;
+            }
+        }
+        misses.increment();
+        return new Probe(key, scope, vector, null, 0d);
+    }
+
+    public Stats getStats() {
+        final int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return new Stats(exactHits.sum(), similarHits.sum(), misses.sum(), embedFailures.sum(), size);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Lower case, apostrophes dropped and everything else that is not a letter or digit as a single space.
+     *
+     * @param text
+     * @return
+     */
+    public static String normalize(String text) {
+        final var noApostrophes = APOSTROPHES.matcher(text.toLowerCase(Locale.ROOT)).replaceAll("");
+        return NON_WORD.matcher(noApostrophes).replaceAll(" ").trim();
+    }
+
+    private synchronized V lookupExact(String key) {
+        final var entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (expired(entry)) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    private synchronized Probe lookupSimilar(String key, String scope, float[] vector) {
+        final double norm = norm(vector);
+        String bestKey = null;
+        Entry<V> best = null;
+        double bestSimilarity = threshold;
+
+        final var it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            final var e = it.next();
+            final var entry = e.getValue();
+            if (expired(entry)) {
+                it.remove();
+                continue;
+            }
+            if (entry.vector() == null || !entry.scope().equals(scope) || entry.vector().length != vector.length) {
+                continue;
+            }
+            final double similarity = dot(entry.vector(), vector) / (entry.norm() * norm);
+            if (similarity >= bestSimilarity) {
+                bestSimilarity = similarity;
+                bestKey = e.getKey();
+                best = entry;
+            }
+        }
+        if (best == null) {
+            return new Probe(key, scope, vector, null, 0d);
+        }
+        // Touch for LRU
+        entries.get(bestKey);
+        return new Probe(key, scope, vector, best.value(), bestSimilarity);
+    }
+
+    private synchronized void store(String key, String scope, float[] vector, V value) {
+        entries.put(key, new Entry<>(scope, vector, vector == null ? 0d : norm(vector), value, nanoClock.getAsLong() + ttlNanos));
+    }
+
+    private boolean expired(Entry<V> entry) {
+        return nanoClock.getAsLong() - entry.expiresAtNanos() >= 0;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static double norm(float[] v) {
+        return Math.sqrt(dot(v, v));
+    }
+
+    /**
+     * Result of one lookup.
+     */
+    public final class Probe {
+
+        private final String key;
+        private final String scope;
+        private final float[] vector;
+        private final V value;
+        private final double similarity;
+
+        private Probe(String key, String scope, float[] vector, V value, double similarity) {
+            this.key = key;
+            this.scope = scope;
+            this.vector = vector;
+            this.value = value;
+            this.similarity = similarity;
+        }
+
+        public Optional<V> hit() {
+            return Optional.ofNullable(value);
+        }
+
+        /**
+         * @return similarity of the hit (1 for the same normalized text), 0 on a miss
+         */
+        public double similarity() {
+            return similarity;
+        }
+
+        /**
+         * Remember the value for this text. Without an embedding (the call failed) only the same text will find it.
+         *
+         * @param newValue
+         */
+        public void store(V newValue) {
+            SemanticCache.this.store(key, scope, vector, newValue);
+        }
+    }
+}
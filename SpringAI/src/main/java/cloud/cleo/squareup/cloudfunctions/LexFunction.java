@@ -6,28 +6,38 @@ import cloud.cleo.squareup.LexV2Event.SessionState;
 import cloud.cleo.squareup.LexV2EventWrapper;
 import cloud.cleo.squareup.LexV2Response;
 import cloud.cleo.squareup.LexV2Response.ImageResponseCard;
+import cloud.cleo.squareup.advisor.SemanticResponseCacheAdvisor;
+import cloud.cleo.squareup.cache.IdempotencyCache;
 import static cloud.cleo.squareup.enums.LexDialogAction.Close;
 import static cloud.cleo.squareup.enums.LexDialogAction.ElicitIntent;
 import static cloud.cleo.squareup.enums.LexMessageContentType.ImageResponseCard;
 import static cloud.cleo.squareup.enums.LexMessageContentType.PlainText;
 import cloud.cleo.squareup.lang.LangUtil;
+import cloud.cleo.squareup.memory.ConversationLocks;
+import cloud.cleo.squareup.memory.DynamoDbChatMemoryRepository;
+import cloud.cleo.squareup.memory.TokenWindowChatMemory;
 import cloud.cleo.squareup.service.CityRagService;
-import cloud.cleo.squareup.tools.AbstractTool;
+import cloud.cleo.squareup.service.FastPathRouter;
+import cloud.cleo.squareup.tools.ToolRegistry;
 import static cloud.cleo.squareup.tools.AbstractTool.CTX_EVENT_WRAPPER;
+import static cloud.cleo.squareup.tools.AbstractTool.CTX_TOOLS_INVOKED;
 import static cloud.cleo.squareup.tools.AbstractTool.HANGUP_FUNCTION_NAME;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.ChatClient.CallResponseSpec;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatResponse;
 
 import org.springframework.stereotype.Component;
@@ -43,17 +53,80 @@ import org.springframework.stereotype.Component;
 public class LexFunction implements Function<LexV2Event, LexV2Response> {
 
     private final ChatClient chatClient;
-    private final List<AbstractTool> tools;
-    private final ChatMemory chatMemory;
+    private final ToolRegistry toolRegistry;
+    private final TokenWindowChatMemory chatMemory;
+    private final DynamoDbChatMemoryRepository chatMemoryRepository;
+    private final ConversationLocks conversationLocks;
+    private final IdempotencyCache<LexV2Response> turnResults;
     private final CityRagService cityRag;
+    private final FastPathRouter fastPathRouter;
     
     // Incoming string that will clear chat memory
     public final static String CLEAR_CHAT_HISTORY = "ClearChatHistory";
 
     @Override
     public LexV2Response apply(LexV2Event lexRequest) {
+        try {
+            return process(lexRequest);
+        } finally {
+            // Barrier for write-behind chat memory, nothing can be left running once we return to Lambda
+            awaitPendingMemoryWrites();
+        }
+    }
+
+    /**
+     * Wait for any chat memory writes still in flight. Callers of {@link #process(LexV2Event)} must call this before
+     * the invocation ends.
+     */
+    void awaitPendingMemoryWrites() {
+        chatMemoryRepository.awaitPendingWrites();
+    }
+
+    /**
+     * Summarize the chat memory of conversations that outgrew their budget, for callers that have already answered
+     * (Pinpoint once the SMS replies are sent) so the next turn doesn't wait on it.
+     *
+     * @param conversationIds chat memory session IDs
+     */
+    void compactChatMemory(Collection<String> conversationIds) {
+        chatMemory.compactIfDue(conversationIds);
+    }
+
+    /**
+     * Process the Lex request without waiting on chat memory writes, so callers that have more work to do (like
+     * sending the SMS reply) can overlap it with the write.
+     *
+     * @param lexRequest
+     * @return
+     */
+    LexV2Response process(LexV2Event lexRequest) {
         final var eventWrapper = new LexV2EventWrapper(lexRequest);
-        
+
+        try {
+            final var turnMarker = eventWrapper.getTurnMarker();
+            if (turnMarker == null) {
+                return lockedTurn(eventWrapper);
+            }
+            // A retry of a slow turn waits for (or replays) the original answer instead of calling the model again
+            final var turnKey = eventWrapper.getSessionId() + "|" + turnMarker + "|"
+                    + IdempotencyCache.hash(eventWrapper.getInputTranscript());
+            return turnResults.execute(turnKey, () -> lockedTurn(eventWrapper));
+        } catch (RuntimeException e) {
+            // Model failure or lock/in-flight wait timed out. The error response is built out here so it is never
+            // remembered, a retry of the same turn runs it again.
+            log.error(e);
+            return buildResponse(eventWrapper, eventWrapper.getLangString(LangUtil.LanguageIds.UNHANDLED_EXCEPTION));
+        }
+    }
+
+    private LexV2Response lockedTurn(LexV2EventWrapper eventWrapper) {
+        // Turns for the same conversation run one at a time in arrival order (SMS bursts, Lex retries)
+        try (var turn = conversationLocks.acquire(eventWrapper.getChatMemorySessionId())) {
+            return processTurn(eventWrapper);
+        }
+    }
+
+    private LexV2Response processTurn(LexV2EventWrapper eventWrapper) {
         if ( CLEAR_CHAT_HISTORY.equals(eventWrapper.getInputTranscript())) {
             // Used by tests to clear chat memory, useful for FB channel because session ID doesn't change
             chatMemory.clear(eventWrapper.getChatMemorySessionId());
@@ -67,61 +140,82 @@ public class LexFunction implements Function<LexV2Event, LexV2Response> {
             return buildTerminatingResponse(Map.of("action", HANGUP_FUNCTION_NAME, "bot_response", eventWrapper.getLangString(LangUtil.LanguageIds.GOODBYE)));
         }
 
+        // History sent to the model is budgeted by the channel this turn came in on
+        chatMemory.useChannelBudget(eventWrapper.getChatMemorySessionId(), eventWrapper.isVoice(), eventWrapper.getChannelPlatform());
+        // Older turns are summarized here, under this turn's lock, since nothing survives the end of an invocation
+        chatMemory.compactIfDue(eventWrapper.getChatMemorySessionId());
+
+        // Simple questions (hours, directions, silence) are answered from templates, anything uncertain goes to the model
+        final var fastPath = fastPathRouter.route(eventWrapper);
+        if (fastPath.isPresent()) {
+            try {
+                // Keep the exchange in memory so the model has it on the next turn
+                chatMemory.add(eventWrapper.getChatMemorySessionId(), List.of(
+                        UserMessage.builder().text(eventWrapper.getInputTranscript()).build(),
+                        AssistantMessage.builder().content(fastPath.get()).build()));
+            } catch (Exception e) {
+                log.warn("Unable to save fast path exchange to chat memory", e);
+            }
+            return buildResponse(eventWrapper, fastPath.get());
+        }
+
         // Kick off retrieval *before* the model call, only when likely useful (service does keyword check)
         final var cityPrefetchFuture = cityRag.startPrefetchOrNull(eventWrapper);
 
-        final var toolCtx = new HashMap<String, Object>(2);
+        final var toolCtx = new HashMap<String, Object>(3);
         // Always place the event Wrapper in the context for tooling
         toolCtx.put(CTX_EVENT_WRAPPER, eventWrapper);
+        // Tools record themselves here, answers that used none can be served from the semantic cache
+        final Set<String> toolsInvoked = ConcurrentHashMap.newKeySet();
+        toolCtx.put(CTX_TOOLS_INVOKED, toolsInvoked);
         if (cityPrefetchFuture != null) {
             // Only place non-null values into the context (IE, only if query is running)
             toolCtx.put(CityRagService.CTX_CITY_PREFETCH_FUTURE, cityPrefetchFuture);
         }
 
-        try {
-            final CallResponseSpec chatCall = chatClient.prompt()
-                    .system(eventWrapper.getSystemPrompt())
-                    .user(eventWrapper.getInputTranscript())
-                    // Use Lex Session ID for the conversation ID for Chat Memory
-                    .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, eventWrapper.getChatMemorySessionId()))
-                    .toolContext(toolCtx)
-                    // Select only tools relevant for the request
-                    .tools(tools.stream().filter(t -> t.isValidForRequest(eventWrapper)).toArray())
-                    .call();
-
-            final ChatResponse resp = chatCall.chatResponse();     // <-- single terminal call
-            String botResponse = resp.getResult().getOutput().getText();
-            log.debug("Raw Bot Text Response is: {}", botResponse);
-            botResponse = sanitizeAssistantText(botResponse);
-            log.debug("Sanitized Bot Text Response is: {}", botResponse);
-
-            // We now need to determine if we should end Lex session for Chime to take back control
-            if (eventWrapper.hasSessionAttributeAction()) {
-                // The only FB action is to stop the Bot and transfer conversation to Inbox
-                if (eventWrapper.isFacebook()) {
-                    return buildResponse(eventWrapper, botResponse, buildTransferCard());
-                } else {
-                    // since we are terminating this session, we should clear chat memory (if they call back and say done, bot is confused because it already called hangup for example)
-                    chatMemory.clear(eventWrapper.getChatMemorySessionId());
-
-                    // Since not FB, this will be for Voice calls to take action on the call (Hangup, Language Change, Transfer,etc.)
-                    eventWrapper.putSessionAttributeBotResponse(botResponse);
-                    // Build a terminating response for Lex so Chime gets control
-                    return buildTerminatingResponse(eventWrapper.getSessionAttributes());
-                }
+        final CallResponseSpec chatCall = chatClient.prompt()
+                .system(eventWrapper.getSystemPrompt())
+                .user(eventWrapper.getInputTranscript())
+                // Use Lex Session ID for the conversation ID for Chat Memory
+                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, eventWrapper.getChatMemorySessionId())
+                        // Cached answers are only shared within the same channel, input mode and language
+                        .param(SemanticResponseCacheAdvisor.CTX_CACHE_SCOPE, eventWrapper.getChannelPlatform() + "/"
+                                + eventWrapper.getInputMode() + "/" + eventWrapper.getLocale())
+                        .param(CTX_TOOLS_INVOKED, toolsInvoked))
+                .toolContext(toolCtx)
+                // Select only tools relevant for the request (pre-resolved per channel)
+                .toolCallbacks(toolRegistry.getToolCallbacks(eventWrapper))
+                .call();
+
+        final ChatResponse resp = chatCall.chatResponse();     // <-- single terminal call
+        String botResponse = resp.getResult().getOutput().getText();
+        log.debug("Raw Bot Text Response is: {}", botResponse);
+        botResponse = sanitizeAssistantText(botResponse);
+        log.debug("Sanitized Bot Text Response is: {}", botResponse);
+
+        // We now need to determine if we should end Lex session for Chime to take back control
+        if (eventWrapper.hasSessionAttributeAction()) {
+            // The only FB action is to stop the Bot and transfer conversation to Inbox
+            if (eventWrapper.isFacebook()) {
+                return buildResponse(eventWrapper, botResponse, buildTransferCard());
             } else {
-                if (eventWrapper.isNewSession() && eventWrapper.isFacebook()) {
-                    // If this a new Session send back a Welcome card for Facebook Channel
-                    // This works for Twilio/SMS, but sends a MMS and costs more money (it sends logo, but of course doesn't support the buttons)
-                    return buildResponse(eventWrapper, botResponse, buildWelcomeCard());
-                } else {
-                    // Just a normal turn 
-                    return buildResponse(eventWrapper, botResponse);
-                }
+                // since we are terminating this session, we should clear chat memory (if they call back and say done, bot is confused because it already called hangup for example)
+                chatMemory.clear(eventWrapper.getChatMemorySessionId());
+
+                // Since not FB, this will be for Voice calls to take action on the call (Hangup, Language Change, Transfer,etc.)
+                eventWrapper.putSessionAttributeBotResponse(botResponse);
+                // Build a terminating response for Lex so Chime gets control
+                return buildTerminatingResponse(eventWrapper.getSessionAttributes());
+            }
+        } else {
+            if (eventWrapper.isNewSession() && eventWrapper.isFacebook()) {
+                // If this a new Session send back a Welcome card for Facebook Channel
+                // This works for Twilio/SMS, but sends a MMS and costs more money (it sends logo, but of course doesn't support the buttons)
+                return buildResponse(eventWrapper, botResponse, buildWelcomeCard());
+            } else {
+                // Just a normal turn 
+                return buildResponse(eventWrapper, botResponse);
             }
-        } catch (Exception e) {
-            log.error(e);
-            return buildResponse(eventWrapper, eventWrapper.getLangString(LangUtil.LanguageIds.UNHANDLED_EXCEPTION));
         }
     }
 
@@ -245,53 +339,137 @@ public class LexFunction implements Function<LexV2Event, LexV2Response> {
                 .build();
     }
 
-    private static final Pattern RESPONSE_BLOCK_PATTERN
-            = Pattern.compile("(?is)<response>(.*?)</response>");
-
-    private static final Pattern THINKING_BLOCK_PATTERN
-            = Pattern.compile("(?is)<thinking>(.*?)</thinking>");
+    private static final String RESPONSE_OPEN = "<response>";
+    private static final String RESPONSE_CLOSE = "</response>";
+    private static final String THINKING_OPEN = "<thinking>";
+    private static final String THINKING_CLOSE = "</thinking>";
 
+    /**
+     * Strip model reasoning from assistant text. Prefers the first {@code <response>} block, otherwise the text with
+     * all {@code <thinking>} blocks removed, otherwise the thinking content itself (never return blank).
+     *
+     * Tags are matched ASCII case-insensitive and the text is scanned once per step without regex since this runs on
+     * every response and again on every persisted assistant message.
+     *
+     * @param text
+     * @return
+     */
     public static String sanitizeAssistantText(String text) {
         if (text == null || text.isBlank()) {
             return text;
         }
 
-        String original = text;
-
-        // 1) If there's a <response> block, prefer that content.
-        Matcher responseMatcher = RESPONSE_BLOCK_PATTERN.matcher(text);
-        if (responseMatcher.find()) {
-            String inside = responseMatcher.group(1);
+        // Nothing that could be a tag, which is the vast majority of responses
+        if (text.indexOf('<') < 0) {
+            return text.trim();
+        }
 
-            // Strip any thinking that might be inside the response block
-            inside = THINKING_BLOCK_PATTERN.matcher(inside).replaceAll("");
-            inside = inside.trim();
+        final int len = text.length();
 
-            if (!inside.isBlank()) {
-                return inside;
+        // 1) If there's a <response> block, prefer that content.
+        final int responseOpen = indexOfTag(text, RESPONSE_OPEN, 0, len);
+        if (responseOpen >= 0) {
+            final int start = responseOpen + RESPONSE_OPEN.length();
+            final int responseClose = indexOfTag(text, RESPONSE_CLOSE, start, len);
+            if (responseClose >= 0) {
+                // Strip any thinking that might be inside the response block
+                final String inside = stripThinking(text, start, responseClose);
+                if (!inside.isBlank()) {
+                    return inside;
+                }
+                // fall through if somehow empty
             }
-            // fall through if somehow empty
         }
 
         // 2) No usable <response>. Strip thinking and see what's left.
-        String withoutThinking = THINKING_BLOCK_PATTERN.matcher(text)
-                .replaceAll("")
-                .trim();
-
+        final String withoutThinking = stripThinking(text, 0, len);
         if (!withoutThinking.isBlank()) {
             return withoutThinking;
         }
 
         // 3) If we got here, it was *only* thinking. Return the thinking content.
-        Matcher thinkingMatcher = THINKING_BLOCK_PATTERN.matcher(text);
-        if (thinkingMatcher.find()) {
-            String thinkingContent = thinkingMatcher.group(1).trim();
-            if (!thinkingContent.isBlank()) {
-                return thinkingContent;
+        final int thinkingOpen = indexOfTag(text, THINKING_OPEN, 0, len);
+        if (thinkingOpen >= 0) {
+            final int start = thinkingOpen + THINKING_OPEN.length();
+            final int thinkingClose = indexOfTag(text, THINKING_CLOSE, start, len);
+            if (thinkingClose >= 0) {
+                final String thinkingContent = trimmed(text, start, thinkingClose);
+                if (!thinkingContent.isBlank()) {
+                    return thinkingContent;
+                }
             }
         }
 
         // 4) Last resort – never return completely blank.
-        return original.trim();
+        return text.trim();
+    }
+
+    /**
+     * Text between from and to with every complete thinking block removed, then trimmed.
+     */
+    private static String stripThinking(String text, int from, int to) {
+        StringBuilder sb = null;
+        int pos = from;
+        int open = indexOfTag(text, THINKING_OPEN, from, to);
+        while (open >= 0) {
+            final int close = indexOfTag(text, THINKING_CLOSE, open + THINKING_OPEN.length(), to);
+            if (close < 0) {
+                // Unterminated, so nothing after this can match either
+                break;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(to - from);
+            }
+            sb.append(text, pos, open);
+            pos = close + THINKING_CLOSE.length();
+            open = indexOfTag(text, THINKING_OPEN, pos, to);
+        }
+        if (sb == null) {
+            // Common case, only one substring (or none at all when the range is already trimmed)
+            return trimmed(text, from, to);
+        }
+        return sb.append(text, pos, to).toString().trim();
+    }
+
+    /**
+     * Same as substring(from, to).trim() without the intermediate String.
+     */
+    private static String trimmed(String text, int from, int to) {
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return text.substring(from, to);
+    }
+
+    /**
+     * Find a lower case tag within [from, to) ignoring ASCII case only (same as a regex with just (?i)).
+     */
+    private static int indexOfTag(String text, String tag, int from, int to) {
+        final int last = to - tag.length();
+        int i = from;
+        while (i <= last) {
+            i = text.indexOf('<', i);
+            if (i < 0 || i > last) {
+                return -1;
+            }
+            int k = 1;
+            for (; k < tag.length(); k++) {
+                char c = text.charAt(i + k);
+                if (c >= 'A' && c <= 'Z') {
+                    c = (char) (c + ('a' - 'A'));
+                }
+                if (c != tag.charAt(k)) {
+                    break;
+                }
+            }
+            if (k == tag.length()) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
     }
 }
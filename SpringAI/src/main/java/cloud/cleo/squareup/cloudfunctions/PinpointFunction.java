@@ -2,15 +2,24 @@ package cloud.cleo.squareup.cloudfunctions;
 
 import cloud.cleo.squareup.LexV2EventWrapper;
 import cloud.cleo.squareup.LexV2Response;
+import cloud.cleo.squareup.sms.SmsCoalescer;
 import static cloud.cleo.squareup.lang.LangUtil.LanguageIds.UNHANDLED_EXCEPTION;
 import com.amazonaws.services.lambda.runtime.events.SNSEvent;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 
 import org.springframework.stereotype.Component;
-import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
 import tools.jackson.core.JacksonException;
 import tools.jackson.databind.json.JsonMapper;
 
@@ -20,6 +29,11 @@ import tools.jackson.databind.json.JsonMapper;
  * SMS via SNS, users can then converse with the Bot via the same
  * phone number.
  * 
+ * Every record in the event is handled. Messages from different senders run concurrently on virtual threads,
+ * messages from the same sender run (and are answered) in order since they share one conversation. A record that
+ * fails only affects itself. Rapid-fire messages from one sender are merged into one turn by the {@link SmsCoalescer}
+ * (when a window is configured).
+ * 
  * @author sjensen
  */
 @Component
@@ -29,44 +43,118 @@ public class PinpointFunction implements Function<SNSEvent, Void> {
 
     private final LexFunction lexFunction;
     private final JsonMapper mapper;
-    private final SnsClient snsClient;
+    private final SnsAsyncClient snsAsyncClient;
+    private final ExecutorService virtualThreadExecutor;
+    private final SmsCoalescer smsCoalescer;
 
     @Override
     public Void apply(SNSEvent input) {
-        // Only 1 record is every presented
-        SNSEvent.SNS snsEvent = input.getRecords().get(0).getSNS();
-        log.debug("Recieved SNS Event" + snsEvent);
+        final var records = input.getRecords();
+        log.debug("Recieved {} SNS record(s)", records.size());
+
+        // Group by sender, keeping arrival order within each conversation
+        final Map<String, List<PinpointEvent>> bySender = new LinkedHashMap<>();
+        for (final var record : records) {
+            final var ppe = parse(record.getSNS());
+            if (ppe != null) {
+                bySender.computeIfAbsent(ppe.originationNumber(), k -> new ArrayList<>()).add(ppe);
+            }
+        }
+
+        // Chat memory session IDs of the turns taken
+        final Set<String> conversations = ConcurrentHashMap.newKeySet();
+        try {
+            final var senders = bySender.values().stream()
+                    .map(events -> CompletableFuture.supplyAsync(() -> processSender(events, conversations), virtualThreadExecutor)
+                            .thenCompose(published -> published)
+                            .exceptionally(t -> {
+                                log.error("Unexpected failure processing SMS batch for one sender", t);
+                                return null;
+                            }))
+                    .toArray(CompletableFuture[]::new);
+            // Nothing can still be running (or unsent) once we return to Lambda
+            CompletableFuture.allOf(senders).join();
+        } finally {
+            // Replies are out, so summarizing long histories now costs the sender nothing
+            try {
+                lexFunction.compactChatMemory(conversations);
+            } finally {
+                lexFunction.awaitPendingMemoryWrites();
+            }
+        }
 
-        // Convert payload to Pinpoint Event
-        PinpointEvent ppe;
+        return null;
+    }
+
+    /**
+     * @return the Pinpoint event, or null when the message can't be parsed (that record is dropped)
+     */
+    private PinpointEvent parse(SNSEvent.SNS snsEvent) {
+        log.debug("Recieved SNS Event" + snsEvent);
         try {
-            ppe = mapper.readValue(snsEvent.getMessage(), PinpointEvent.class);
+            return mapper.readValue(snsEvent.getMessage(), PinpointEvent.class);
         } catch (JacksonException jpe) {
-            log.error("Cannot convert Pintpoint JSON to Object, processing aborted and returning null", jpe);
+            log.error("Cannot convert Pintpoint JSON to Object, record {} skipped", snsEvent.getMessageId(), jpe);
             return null;
         }
+    }
 
-        final LexV2EventWrapper wrapper = new LexV2EventWrapper(ppe);
-        String botResponse;
-        try {
-            // Wrapped Event Class
+    /**
+     * Run one sender's messages through the bot in order. Each reply is published asynchronously (overlapping the next
+     * model call), chained so the SMS replies also go out in order.
+     *
+     * @param conversations collects the chat memory session ID of each turn
+     * @return completes once all replies are sent (or failed), never exceptionally
+     */
+    private CompletableFuture<Void> processSender(List<PinpointEvent> events, Set<String> conversations) {
+        CompletableFuture<Void> published = CompletableFuture.completedFuture(null);
+        // Empty when a newer message (other invocation) answers for these
+        for (final var ppe : smsCoalescer.coalesce(events)) {
+            final var botResponse = botResponse(ppe, conversations);
+            if (botResponse == null) {
+                continue;
+            }
+            published = published.thenCompose(v -> publish(ppe, botResponse));
+        }
+        return published;
+    }
 
-            LexV2Response response = lexFunction.apply(wrapper.getEvent());
+    private String botResponse(PinpointEvent ppe, Set<String> conversations) {
+        try {
+            final LexV2EventWrapper wrapper = new LexV2EventWrapper(ppe);
+            conversations.add(wrapper.getChatMemorySessionId());
+            try {
+                // Chat memory write (if write-behind) overlaps with the SNS publish
+                LexV2Response response = lexFunction.process(wrapper.getEvent());
 
-            // Take repsonse body message from the LexV2Reponse and respond to SMS via SNS
-            botResponse = response.getMessages().getFirst().getContent();
+                // Take repsonse body message from the LexV2Reponse and respond to SMS via SNS
+                return response.getMessages().getFirst().getContent();
+            } catch (Exception ex) {
+                log.error("Unhandled Exception", ex);
+                // Unhandled Exception
+                return wrapper.getLangString(UNHANDLED_EXCEPTION);
+            }
         } catch (Exception ex) {
-            log.error("Unhandled Exception", ex);
-            // Unhandled Exception
-            botResponse = wrapper.getLangString(UNHANDLED_EXCEPTION);
+            log.error("Unable to process SMS from " + ppe.originationNumber(), ex);
+            return null;
         }
+    }
 
-        final var finalResponse = botResponse;
-        final var result = snsClient.publish(b -> b.phoneNumber(ppe.originationNumber())
-                .message(finalResponse));
-        log.info("SMS Bot Response sent to " + ppe.originationNumber() + " with SNS id of " + result.messageId());
-
-        return null;
+    private CompletableFuture<Void> publish(PinpointEvent ppe, String botResponse) {
+        try {
+            return snsAsyncClient.publish(b -> b.phoneNumber(ppe.originationNumber()).message(botResponse))
+                    .handle((result, t) -> {
+                        if (t != null) {
+                            log.error("Failed to send SMS Bot Response to " + ppe.originationNumber(), t);
+                        } else {
+                            log.info("SMS Bot Response sent to " + ppe.originationNumber() + " with SNS id of " + result.messageId());
+                        }
+                        return null;
+                    });
+        } catch (Exception ex) {
+            log.error("Failed to send SMS Bot Response to " + ppe.originationNumber(), ex);
+            return CompletableFuture.completedFuture(null);
+        }
     }
 
     /**
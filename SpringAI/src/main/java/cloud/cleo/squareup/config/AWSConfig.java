@@ -4,7 +4,15 @@
  */
 package cloud.cleo.squareup.config;
 
+import cloud.cleo.squareup.phone.DynamoPhoneValidationStore;
+import cloud.cleo.squareup.phone.PhoneValidationStore;
+import cloud.cleo.squareup.sms.DynamoPendingSmsStore;
+import cloud.cleo.squareup.sms.InMemoryPendingSmsStore;
+import cloud.cleo.squareup.sms.PendingSmsStore;
+import java.time.Duration;
+import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
@@ -20,6 +28,7 @@ import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.pinpoint.PinpointClient;
 import software.amazon.awssdk.services.ses.SesClient;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
 import software.amazon.awssdk.services.sns.SnsClient;
 
 /**
@@ -28,6 +37,7 @@ import software.amazon.awssdk.services.sns.SnsClient;
  * @author sjensen
  */
 @Configuration
+@Log4j2
 public class AWSConfig {
 
     @Bean(name = "crt", destroyMethod = "close")
@@ -86,6 +96,32 @@ public class AWSConfig {
                 .build();
     }
 
+    /**
+     * Persistent tier for Pinpoint phone validations, memory only when no table is configured.
+     */
+    @Bean
+    public PhoneValidationStore phoneValidationStore(DynamoDbEnhancedClient enhancedClient,
+            @Value("${phone.validation.dynamo.table-name:}") String tableName,
+            @Value("${phone.validation.ttl:30d}") Duration ttl) {
+        if (tableName.isBlank()) {
+            log.info("No phone validation table configured, Pinpoint validations cached in memory only");
+            return PhoneValidationStore.NONE;
+        }
+        return new DynamoPhoneValidationStore(enhancedClient, tableName, ttl);
+    }
+
+    /**
+     * Inbound SMS waiting out the coalescing window, only merges within this process when no table is configured.
+     */
+    @Bean
+    public PendingSmsStore pendingSmsStore(DynamoDbClient dynamoDbClient,
+            @Value("${sms.pending.dynamo.table-name:}") String tableName) {
+        if (tableName.isBlank()) {
+            return new InMemoryPendingSmsStore();
+        }
+        return new DynamoPendingSmsStore(dynamoDbClient, tableName, Duration.ofDays(1));
+    }
+
     @Bean(destroyMethod = "close")
     public SesClient sesClient(@Qualifier("crt") SdkHttpClient crtSyncHttpClient) {
         return SesClient.builder()
@@ -101,5 +137,14 @@ public class AWSConfig {
                 .httpClient(crtSyncHttpClient)
                 .build();
     }
+
+    @Bean(destroyMethod = "close")
+    public SnsAsyncClient snsAsyncClient(@Qualifier("crtAsync") SdkAsyncHttpClient crtAsyncHttpClient) {
+        return SnsAsyncClient.builder()
+                // Pin to East since we only have pinpoint numbers there to send SMS
+                .region(Region.US_EAST_1)
+                .httpClient(crtAsyncHttpClient)
+                .build();
+    }
 }
 
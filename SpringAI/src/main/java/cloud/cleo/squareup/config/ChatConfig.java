@@ -1,11 +1,29 @@
 package cloud.cleo.squareup.config;
 
+import cloud.cleo.squareup.LexV2Response;
+import cloud.cleo.squareup.advisor.PromptCacheMetricsAdvisor;
+import cloud.cleo.squareup.advisor.SemanticResponseCacheAdvisor;
+import cloud.cleo.squareup.cache.IdempotencyCache;
+import cloud.cleo.squareup.memory.ConversationLocks;
 import cloud.cleo.squareup.memory.DynamoDbChatMemoryRepository;
+import cloud.cleo.squareup.memory.DynamoDbChatMemoryRepository.StorageLayout;
+import cloud.cleo.squareup.memory.TokenWindowChatMemory;
+import cloud.cleo.squareup.memory.TokenWindowChatMemory.TokenBudgets;
+import cloud.cleo.squareup.model.FailoverChatModel;
+import cloud.cleo.squareup.model.FailoverChatModel.BreakerSettings;
+import cloud.cleo.squareup.model.HedgingChatModel;
+import cloud.cleo.squareup.model.RoutingChatModel;
+import cloud.cleo.squareup.model.RoutingChatModel.Thresholds;
+import cloud.cleo.squareup.tools.AbstractTool.StatusMessageResult;
 import java.time.Duration;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import org.springframework.ai.bedrock.converse.BedrockChatOptions;
 import org.springframework.ai.bedrock.converse.BedrockProxyChatModel;
+import org.springframework.ai.bedrock.converse.api.BedrockCacheOptions;
+import org.springframework.ai.bedrock.converse.api.BedrockCacheStrategy;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.ChatClientRequest;
 import org.springframework.ai.chat.client.ChatClientResponse;
@@ -16,13 +34,17 @@ import org.springframework.ai.chat.client.advisor.api.AdvisorChain;
 import org.springframework.ai.chat.client.advisor.api.BaseAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.memory.ChatMemoryRepository;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.MessageType;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -31,6 +53,7 @@ import org.springframework.context.annotation.Primary;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.http.SdkHttpClient;
 import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
 import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
 import tools.jackson.databind.json.JsonMapper;
@@ -62,15 +85,54 @@ public class ChatConfig {
     @Primary
     @Bean
     public ChatModel activeChatModel(Provider springAiProvider,
-            @Qualifier("bedrockChatModel") ChatModel bedrockModel,
-            @Qualifier("customOpenAiChatModel") ChatModel openAiModel) {
+            @Qualifier("hedgedBedrockChatModel") ChatModel bedrockModel,
+            @Qualifier("customOpenAiChatModel") ChatModel openAiModel,
+            // Per turn routing between a fast (nano/lite) model and the configured model
+            @Value("${chat.routing.enabled:false}") boolean routing,
+            // Blank is nova micro on Bedrock, gpt-5-nano on OpenAI
+            @Value("${chat.routing.fast-model:}") String fastModel,
+            // Blank is the configured model
+            @Value("${chat.routing.strong-model:}") String strongModel,
+            @Value("${chat.routing.max-words:20}") int maxWords,
+            @Value("${chat.routing.max-tools:1}") int maxTools,
+            @Value("${chat.routing.max-depth:6}") int maxDepth,
+            // Fail over to the other provider behind per provider circuit breakers
+            @Value("${chat.failover.enabled:false}") boolean failover,
+            @Value("${chat.failover.window:20}") int failoverWindow,
+            @Value("${chat.failover.min-calls:5}") int failoverMinCalls,
+            @Value("${chat.failover.failure-rate:0.5}") double failureRate,
+            @Value("${chat.failover.slow-call:6s}") Duration slowCall,
+            @Value("${chat.failover.slow-rate:0.5}") double slowRate,
+            @Value("${chat.failover.open-duration:30s}") Duration openDuration) {
 
-        return switch (springAiProvider) {
+        // Decorators, inside out: hedging (Bedrock only, see hedgedBedrockChatModel), failover, routing
+        ChatModel model = switch (springAiProvider) {
             case OPENAI ->
                 openAiModel;
             case BEDROCK ->
                 bedrockModel;
         };
+        if (failover) {
+            final var providers = new LinkedHashMap<String, ChatModel>();
+            providers.put(springAiProvider.name(), model);
+            if (springAiProvider == Provider.BEDROCK) {
+                providers.put(Provider.OPENAI.name(), openAiModel);
+            } else {
+                providers.put(Provider.BEDROCK.name(), bedrockModel);
+            }
+            model = new FailoverChatModel(providers, new BreakerSettings(failoverWindow, failoverMinCalls, failureRate,
+                    slowCall, slowRate, openDuration));
+        }
+        if (!routing) {
+            return model;
+        }
+
+        final var fast = fastModel.isBlank()
+                ? (springAiProvider == Provider.BEDROCK ? "us.amazon.nova-micro-v1:0" : "gpt-5-nano")
+                : fastModel;
+        return new RoutingChatModel(withModel(model, fast),
+                strongModel.isBlank() ? model : withModel(model, strongModel),
+                new Thresholds(maxWords, maxTools, maxDepth));
     }
 
     @Bean
@@ -107,19 +169,30 @@ public class ChatConfig {
     }
 
     @Bean
-    public BedrockChatOptions bedrockChatOptions(@Value("${spring.ai.bedrock.chat.options.model:}") String model) {
+    public BedrockChatOptions bedrockChatOptions(@Value("${spring.ai.bedrock.chat.options.model:}") String model,
+            @Value("${BEDROCK_PROMPT_CACHE:true}") boolean promptCache) {
         String resolved = (model == null || model.isBlank())
                 ? "us.amazon.nova-2-lite-v1:0"
                 : model;
 
-        return BedrockChatOptions.builder()
+        var builder = BedrockChatOptions.builder()
                 .model(resolved)
                 .temperature(.1)
                 .topP(0.9)
-                .maxTokens(100)
                 // "service_tier" : "reserved | priority | default | flex"
                 //.requestParameters(Map.of("service_tier","priority"))
-                .build();
+                .maxTokens(100);
+
+        if (promptCache) {
+            // Cache point goes after the system blocks. The system prompt is pre-built per channel/input mode
+            // (see SystemPromptRegistry) with the shared store text first, so every turn in a variant re-uses it.
+            // Can be disabled for models that don't support cache points.
+            builder = builder.cacheOptions(BedrockCacheOptions.builder()
+                    .strategy(BedrockCacheStrategy.SYSTEM_ONLY)
+                    .build());
+        }
+
+        return builder.build();
     }
 
     @Bean(name = "bedrockChatModel")
@@ -136,32 +209,214 @@ public class ChatConfig {
                 .build();
     }
 
+    /**
+     * Bedrock with hedged requests to a second region and/or model when enabled, otherwise just Bedrock.
+     */
+    @Bean(name = "hedgedBedrockChatModel")
+    public ChatModel hedgedBedrockChatModel(
+            @Qualifier("bedrockChatModel") ChatModel bedrockModel,
+            @Qualifier("crtAsync") SdkAsyncHttpClient sdkAsyncHttpClient,
+            @Qualifier("crt") SdkHttpClient sdkHttpClient,
+            BedrockChatOptions options,
+            ExecutorService virtualThreadExecutor,
+            @Value("${chat.hedge.enabled:false}") boolean enabled,
+            // Blank is the same region (a second request still dodges a slow host)
+            @Value("${chat.hedge.region:}") String region,
+            // Blank is the same model (or inference profile)
+            @Value("${chat.hedge.model:}") String model,
+            // Hedge once the primary is slower than this percentile of recent calls
+            @Value("${chat.hedge.percentile:0.95}") double percentile,
+            @Value("${chat.hedge.min-delay:750ms}") Duration minDelay,
+            @Value("${chat.hedge.max-delay:4s}") Duration maxDelay,
+            // Fraction of calls allowed to hedge
+            @Value("${chat.hedge.max-rate:0.1}") double maxRate
+    ) {
+        if (!enabled) {
+            return bedrockModel;
+        }
+
+        final var runtimeClient = BedrockRuntimeClient.builder().httpClient(sdkHttpClient);
+        final var runtimeAsyncClient = BedrockRuntimeAsyncClient.builder().httpClient(sdkAsyncHttpClient);
+        if (!region.isBlank()) {
+            runtimeClient.region(Region.of(region));
+            runtimeAsyncClient.region(Region.of(region));
+        }
+        final var secondaryOptions = options.copy();
+        if (!model.isBlank()) {
+            secondaryOptions.setModel(model);
+        }
+        final ChatModel secondaryModel = BedrockProxyChatModel.builder()
+                .bedrockRuntimeClient(runtimeClient.build())
+                .bedrockRuntimeAsyncClient(runtimeAsyncClient.build())
+                .defaultOptions(secondaryOptions)
+                .build();
+
+        // Prompts carry a copy of the primary options (model included), so swap the model per call
+        final ChatModel secondary = model.isBlank() ? secondaryModel : withModel(secondaryModel, model);
+
+        return new HedgingChatModel(bedrockModel, secondary, virtualThreadExecutor, percentile, minDelay, maxDelay, maxRate);
+    }
+
+    /**
+     * The model with every call made as the given model id. Prompts from the ChatClient carry a copy of the default
+     * options, model included, so setting it on the model's defaults alone is not enough.
+     */
+    private static ChatModel withModel(ChatModel delegate, String model) {
+        return new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                if (prompt.getOptions() instanceof BedrockChatOptions bedrockOptions) {
+                    final var copy = bedrockOptions.copy();
+                    copy.setModel(model);
+                    return delegate.call(prompt.mutate().chatOptions(copy).build());
+                }
+                if (prompt.getOptions() instanceof OpenAiChatOptions openAiOptions) {
+                    final var copy = openAiOptions.copy();
+                    copy.setModel(model);
+                    return delegate.call(prompt.mutate().chatOptions(copy).build());
+                }
+                return delegate.call(prompt);
+            }
+
+            @Override
+            public ChatOptions getDefaultOptions() {
+                // Provider specific options, so ChatClient prompts still carry them
+                return delegate.getDefaultOptions();
+            }
+        };
+    }
+
+    @Bean
+    public ConversationLocks conversationLocks(
+            // Longest a turn waits for an earlier turn of the same conversation
+            @Value("${chat.memory.turn-lock.timeout:30s}") Duration timeout) {
+        return new ConversationLocks(timeout);
+    }
+
+    /**
+     * Responses by turn (session, originating request, transcript) so a retried invocation replays the answer instead
+     * of calling the model again.
+     */
+    @Bean
+    public IdempotencyCache<LexV2Response> turnResults(
+            @Value("${lex.idempotency.max-entries:1000}") int maxEntries,
+            @Value("${lex.idempotency.ttl:5m}") Duration ttl,
+            // A duplicate waits on the original no longer than a turn would wait on the conversation lock
+            @Value("${chat.memory.turn-lock.timeout:30s}") Duration waitTimeout) {
+        return new IdempotencyCache<>(maxEntries, ttl, waitTimeout);
+    }
+
+    /**
+     * Successful SMS/email sends by conversation and content, see {@link cloud.cleo.squareup.tools.AbstractTool}.
+     */
     @Bean
-    public ChatMemoryRepository chatMemoryRepository(DynamoDbEnhancedClient enhancedClient, JsonMapper objectMapper,
+    public IdempotencyCache<StatusMessageResult> toolSideEffects(
+            @Value("${tools.idempotency.max-entries:1000}") int maxEntries,
+            @Value("${tools.idempotency.ttl:10m}") Duration ttl) {
+        return new IdempotencyCache<>(maxEntries, ttl, Duration.ofSeconds(30));
+    }
+
+    @Bean
+    public DynamoDbChatMemoryRepository chatMemoryRepository(DynamoDbEnhancedClient enhancedClient, JsonMapper objectMapper,
             @Value("${chat.memory.dynamo.ttl:24h}") Duration ttlDuration,
-            @Value("${chat.memory.dynamo.table-name:spring-ai-chat-memory}") String tableName
+            @Value("${chat.memory.dynamo.table-name:spring-ai-chat-memory}") String tableName,
+            // ITEMS (item per message) or COMPRESSED (single item per conversation)
+            @Value("${chat.memory.dynamo.layout:ITEMS}") StorageLayout layout,
+            // Flush end of turn writes on a virtual thread, LexFunction waits for them before returning
+            @Value("${chat.memory.dynamo.write-behind:false}") boolean writeBehind,
+            ExecutorService virtualThreadExecutor,
+            // Conversations kept in memory across invocations on a warm container
+            @Value("${chat.memory.cache.max-conversations:500}") int cacheMaxConversations,
+            @Value("${chat.memory.cache.ttl:30m}") Duration cacheTtl,
+            // Table has the sparse conversation-index GSI (otherwise listing conversations scans the table)
+            @Value("${chat.memory.dynamo.conversation-index:false}") boolean conversationIndex
     ) {
         return new DynamoDbChatMemoryRepository(enhancedClient, objectMapper,
                 ttlDuration,
-                tableName);
+                tableName,
+                layout,
+                writeBehind,
+                virtualThreadExecutor,
+                cacheMaxConversations,
+                cacheTtl,
+                conversationIndex);
     }
 
+    /**
+     * Summaries go straight to the provider's model (no hedging, failover or routing), so they never spend hedge
+     * credits or count against the breakers, and use a small model since folding a few turns needs no more.
+     */
     @Bean
-    public ChatMemory chatMemory(ChatMemoryRepository chatMemoryRepository) {
-        return MessageWindowChatMemory.builder()
-                .chatMemoryRepository(chatMemoryRepository)
-                .maxMessages(50)
+    public TokenWindowChatMemory chatMemory(ChatMemoryRepository chatMemoryRepository, ConversationLocks conversationLocks,
+            Provider springAiProvider,
+            @Qualifier("bedrockChatModel") ChatModel bedrockModel,
+            @Qualifier("customOpenAiChatModel") ChatModel openAiModel,
+            ExecutorService virtualThreadExecutor,
+            @Value("${chat.memory.max-messages:50}") int maxMessages,
+            // Tokens of history sent to the model per channel
+            @Value("${chat.memory.token-budget.voice:1500}") int voiceBudget,
+            @Value("${chat.memory.token-budget.text:3000}") int textBudget,
+            @Value("${chat.memory.token-budget.facebook:3000}") int facebookBudget,
+            // Fold older turns into a rolling summary, otherwise they just drop out of the window
+            @Value("${chat.memory.summarize:true}") boolean summarize,
+            // Blank is nova micro on Bedrock, gpt-5-nano on OpenAI
+            @Value("${chat.memory.summary.model:}") String summaryModel,
+            @Value("${chat.memory.summary.max-tokens:250}") int summaryMaxTokens,
+            @Value("${chat.memory.summary.timeout:5s}") Duration summaryTimeout
+    ) {
+        final ChatOptions summaryOptions = switch (springAiProvider) {
+            case BEDROCK ->
+                BedrockChatOptions.builder()
+                .model(summaryModel.isBlank() ? "us.amazon.nova-micro-v1:0" : summaryModel)
+                .temperature(.1)
+                .maxTokens(summaryMaxTokens)
                 .build();
+            case OPENAI -> {
+                final String model = summaryModel.isBlank() ? "gpt-5-nano" : summaryModel;
+                final var builder = OpenAiChatOptions.builder().model(model).N(1);
+                yield model.startsWith("gpt-5")
+                        ? builder.reasoningEffort("minimal").maxCompletionTokens(summaryMaxTokens).build()
+                        : builder.temperature(0.2).maxTokens(summaryMaxTokens).build();
+            }
+        };
+        return new TokenWindowChatMemory(chatMemoryRepository,
+                conversationLocks,
+                new JTokkitTokenCountEstimator(),
+                summarize ? (springAiProvider == Provider.BEDROCK ? bedrockModel : openAiModel) : null,
+                virtualThreadExecutor,
+                maxMessages,
+                new TokenBudgets(voiceBudget, textBudget, facebookBudget),
+                summaryOptions,
+                summaryTimeout);
+    }
+
+    @Bean
+    public SemanticResponseCacheAdvisor semanticResponseCacheAdvisor(EmbeddingModel embeddingModel,
+            // Off by default, the cache is per container so hits are rare and every miss pays for an embedding call
+            @Value("${chat.semantic-cache.enabled:false}") boolean enabled,
+            @Value("${chat.semantic-cache.similarity-threshold:0.95}") double similarityThreshold,
+            @Value("${chat.semantic-cache.ttl:1h}") Duration ttl,
+            @Value("${chat.semantic-cache.max-entries:500}") int maxEntries,
+            // Short follow ups ("yes", "what about that") only make sense with the conversation
+            @Value("${chat.semantic-cache.min-words:3}") int minWords,
+            @Value("${chat.semantic-cache.first-turn-only:true}") boolean firstTurnOnly) {
+        return new SemanticResponseCacheAdvisor(embeddingModel::embed, enabled, similarityThreshold, ttl, maxEntries,
+                minWords, firstTurnOnly);
     }
 
     @Bean
     @Primary
-    public ChatClient chatClient(ChatModel model, ChatMemory memory) {
+    public ChatClient chatClient(ChatModel model, ChatMemory memory, PromptCacheMetricsAdvisor promptCacheMetricsAdvisor,
+            SemanticResponseCacheAdvisor semanticResponseCacheAdvisor) {
         return ChatClient.builder(model)
                 .defaultAdvisors(
                         MessageChatMemoryAdvisor.builder(memory).build(),
+                        // Repeat store knowledge questions answered without the model (still saved to memory above)
+                        semanticResponseCacheAdvisor,
                         // Ensures SystemMessage is always first for model compatibility
                         new SystemFirstSortingAdvisor(),
+                        // Log prompt cache hit/miss tokens from the model response
+                        promptCacheMetricsAdvisor,
                         // call advisor LAST so the chain actually invokes the model
                         ChatModelCallAdvisor.builder().chatModel(model).build(),
                         new SimpleLoggerAdvisor()
@@ -29,6 +29,22 @@ public class LangBundle extends ListResourceBundle {
         {MODEL_RESPONSE_LANGUAGE.toString(), "Please respond to all prompts in English.  "},
         // Thank you for calling, goodbye.
         {GOODBYE.toString(), "Thank you for calling, goodbye."},
+        // Fast path: words allowed around a question
+        {FAST_PATH_FILLER_PATTERN.toString(), "hi|hello|hey|ok|okay|so|um|uh|yes|yeah|please|thanks|thank you|excuse me|copper ?bot"},
+        // Fast path: are you open, what are your hours
+        {FAST_PATH_HOURS_PATTERN.toString(), "(?:are|r) (?:you|u|ya)(?: guys)? open(?: today| now| right now)?|is (?:the store|the shop|copper fox) open(?: today| now| right now)?|(?:what are |whats |what is )?(?:your|you|the|todays)(?: business| store)? hours(?: today)?|(?:store |business )?hours|(?:what time|when) (?:are you|do you|do you guys) (?:open|close)(?: today)?"},
+        // Fast path: where are you, address, directions
+        {FAST_PATH_DIRECTIONS_PATTERN.toString(), "where are you(?: guys)?(?: located| at)?|where is (?:the store|the shop|copper fox)(?: located)?|(?:what is|whats) your (?:address|location)|(?:your )?address|(?:driving )?directions(?: to (?:the store|you|copper fox))?|how do i get (?:there|to you|to the store|to copper fox)"},
+        // Fast path: private shopping
+        {FAST_PATH_PRIVATE_SHOPPING_PATTERN.toString(), "private shopping(?: info| information| link)?|(?:info|information) (?:about|on) private shopping(?: and link)?|(?:how do i |how can i |i want to |i would like to |can i )?(?:book|schedule|reserve)(?: a)? private shopping(?: appointment| time| session)?"},
+        // We are open right now until {0}.
+        {FAST_PATH_OPEN_UNTIL.toString(), "We are open right now until {0}."},
+        // We are closed right now. We open again {0} at {1}.
+        {FAST_PATH_CLOSED_UNTIL.toString(), "We are closed right now. We open again {0} at {1}."},
+        // We are at 160 Main Street in Wahkon, Minnesota, near Lake Mille Lacs. Driving directions: {0}
+        {FAST_PATH_DIRECTIONS.toString(), "We are at 160 Main Street in Wahkon, Minnesota, near Lake Mille Lacs. Driving directions: {0}"},
+        // You can book a private shopping appointment here: {0}
+        {FAST_PATH_PRIVATE_SHOPPING.toString(), "You can book a private shopping appointment here: {0}"},
     };
 
     @Override
@@ -29,6 +29,22 @@ public class LangBundle_de extends ListResourceBundle {
         {MODEL_RESPONSE_LANGUAGE.toString(), "Please respond to all prompts in German.  "},
          // Thank you for calling, goodbye.
         {GOODBYE.toString(), "Danke für Ihren Anruf, auf Wiedersehen."},
+        // Fast path: words allowed around a question
+        {FAST_PATH_FILLER_PATTERN.toString(), "hallo|hi|guten tag|ja|ok|okay|bitte|danke|also"},
+        // Fast path: are you open, what are your hours
+        {FAST_PATH_HOURS_PATTERN.toString(), "(?:haben sie|habt ihr|ist der laden|sind sie) (?:heute |jetzt )?(?:ge[öo]ffnet|offen|auf)|(?:was sind |wie sind )?(?:ihre |eure |die )?[öo]ffnungszeiten(?: heute)?|wann (?:[öo]ffnen|schlie(?:ß|ss)en) sie(?: heute)?"},
+        // Fast path: where are you, address, directions
+        {FAST_PATH_DIRECTIONS_PATTERN.toString(), "wo (?:sind sie|ist der laden|ist das gesch[äa]ft|befinden sie sich)|(?:was ist |wie ist )?(?:ihre |die )?adresse|wegbeschreibung|wie komme ich (?:zu ihnen|dorthin|zum laden)"},
+        // Fast path: private shopping
+        {FAST_PATH_PRIVATE_SHOPPING_PATTERN.toString(), "privat(?:es|en)? (?:einkaufen|shopping)|privatshopping|(?:ich m[öo]chte )?(?:einen )?(?:privaten )?(?:einkaufstermin|shoppingtermin) buchen|private shopping buchen"},
+        // We are open right now until {0}.
+        {FAST_PATH_OPEN_UNTIL.toString(), "Wir haben gerade geöffnet, bis {0} Uhr."},
+        // We are closed right now. We open again {0} at {1}.
+        {FAST_PATH_CLOSED_UNTIL.toString(), "Wir haben gerade geschlossen. Wir öffnen wieder am {0} um {1} Uhr."},
+        // We are at 160 Main Street in Wahkon, Minnesota, near Lake Mille Lacs. Driving directions: {0}
+        {FAST_PATH_DIRECTIONS.toString(), "Sie finden uns in der 160 Main Street in Wahkon, Minnesota, nahe dem Mille Lacs See. Wegbeschreibung: {0}"},
+        // You can book a private shopping appointment here: {0}
+        {FAST_PATH_PRIVATE_SHOPPING.toString(), "Einen Termin für privates Einkaufen können Sie hier buchen: {0}"},
     };
 
     @Override
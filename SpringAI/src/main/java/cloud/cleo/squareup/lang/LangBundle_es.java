@@ -29,6 +29,22 @@ public class LangBundle_es extends ListResourceBundle {
         {MODEL_RESPONSE_LANGUAGE.toString(), "Please respond to all prompts in Spanish.  "},
          // Thank you for calling, goodbye.
         {GOODBYE.toString(), "Gracias por llamar, adiós."},
+        // Fast path: words allowed around a question
+        {FAST_PATH_FILLER_PATTERN.toString(), "hola|buenas|buenos d[ií]as|buenas tardes|oye|bueno|s[ií]|por favor|gracias|disculpe"},
+        // Fast path: are you open, what are your hours
+        {FAST_PATH_HOURS_PATTERN.toString(), "(?:la tienda )?est[áa]n? abiert[oa]s?(?: hoy| ahora)?|(?:cu[áa]l es |cu[áa]les son )?(?:su |sus |el |los )?horarios?(?: de hoy| hoy)?|a qu[ée] hora (?:abren|cierran)(?: hoy)?"},
+        // Fast path: where are you, address, directions
+        {FAST_PATH_DIRECTIONS_PATTERN.toString(), "d[óo]nde (?:est[áa]n|est[áa] la tienda)(?: ubicados)?|cu[áa]l es (?:su|la) direcci[óo]n|(?:su )?direcci[óo]n|c[óo]mo llego(?: a la tienda)?|indicaciones(?: para llegar)?"},
+        // Fast path: private shopping
+        {FAST_PATH_PRIVATE_SHOPPING_PATTERN.toString(), "compras? privadas?|(?:quiero |me gustar[íi]a )?(?:reservar|agendar) (?:una )?(?:cita de )?compras? privadas?"},
+        // We are open right now until {0}.
+        {FAST_PATH_OPEN_UNTIL.toString(), "Estamos abiertos ahora mismo hasta las {0}."},
+        // We are closed right now. We open again {0} at {1}.
+        {FAST_PATH_CLOSED_UNTIL.toString(), "Ahora mismo estamos cerrados. Volvemos a abrir el {0} a las {1}."},
+        // We are at 160 Main Street in Wahkon, Minnesota, near Lake Mille Lacs. Driving directions: {0}
+        {FAST_PATH_DIRECTIONS.toString(), "Estamos en 160 Main Street en Wahkon, Minnesota, cerca del lago Mille Lacs. Indicaciones para llegar: {0}"},
+        // You can book a private shopping appointment here: {0}
+        {FAST_PATH_PRIVATE_SHOPPING.toString(), "Puede reservar una cita de compras privadas aquí: {0}"},
     };
 
     @Override
@@ -29,6 +29,22 @@ public class LangBundle_fi extends ListResourceBundle {
         {MODEL_RESPONSE_LANGUAGE.toString(), "Please respond to all prompts in Finnish.  "},
         // Thank you for calling, goodbye.
         {GOODBYE.toString(), "Kiitos soitosta, näkemiin."},
+        // Fast path: words allowed around a question
+        {FAST_PATH_FILLER_PATTERN.toString(), "hei|moi|terve|joo|kyll[äa]|ok|kiitos"},
+        // Fast path: are you open, what are your hours
+        {FAST_PATH_HOURS_PATTERN.toString(), "(?:oletteko|onko kauppa|onko myym[äa]l[äa]) (?:nyt |t[äa]n[äa][äa]n )?auki(?: nyt| t[äa]n[äa][äa]n)?|(?:mitk[äa] ovat |mik[äa] on )?(?:teid[äa]n )?aukioloaja(?:t|nne)(?: t[äa]n[äa][äa]n)?|milloin (?:avaatte|suljette|aukeatte)(?: t[äa]n[äa][äa]n)?"},
+        // Fast path: where are you, address, directions
+        {FAST_PATH_DIRECTIONS_PATTERN.toString(), "miss[äa] (?:olette|kauppa on|myym[äa]l[äa] on)|mik[äa] on (?:teid[äa]n )?osoitteenne|osoite|osoitteenne|ajo ?ohjeet|miten p[äa][äa]sen (?:sinne|kauppaan|teille)"},
+        // Fast path: private shopping
+        {FAST_PATH_PRIVATE_SHOPPING_PATTERN.toString(), "yksityisostos\\w*|yksityinen ostos\\w*|(?:haluan )?varata yksityis\\w*"},
+        // We are open right now until {0}.
+        {FAST_PATH_OPEN_UNTIL.toString(), "Olemme nyt auki kello {0} asti."},
+        // We are closed right now. We open again {0} at {1}.
+        {FAST_PATH_CLOSED_UNTIL.toString(), "Olemme nyt kiinni. Avaamme taas {0} kello {1}."},
+        // We are at 160 Main Street in Wahkon, Minnesota, near Lake Mille Lacs. Driving directions: {0}
+        {FAST_PATH_DIRECTIONS.toString(), "Olemme osoitteessa 160 Main Street, Wahkon, Minnesota, lähellä Mille Lacs -järveä. Ajo-ohjeet: {0}"},
+        // You can book a private shopping appointment here: {0}
+        {FAST_PATH_PRIVATE_SHOPPING.toString(), "Voit varata yksityisen ostoskäynnin täältä: {0}"},
     };
 
     @Override
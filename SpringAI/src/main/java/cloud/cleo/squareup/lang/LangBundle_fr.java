@@ -29,6 +29,22 @@ public class LangBundle_fr extends ListResourceBundle {
         {MODEL_RESPONSE_LANGUAGE.toString(), "Please respond to all prompts in French.  "},
         // Thank you for calling, goodbye.
         {GOODBYE.toString(), "Merci d'avoir appelé, au revoir."},
+        // Fast path: words allowed around a question
+        {FAST_PATH_FILLER_PATTERN.toString(), "bonjour|all[ôo]|salut|oui|ok|daccord|svp|sil vous pla[îi]t|merci"},
+        // Fast path: are you open, what are your hours
+        {FAST_PATH_HOURS_PATTERN.toString(), "(?:[êe]tes vous|est ce que vous [êe]tes|le magasin est il) ouverts?(?: aujourdhui| maintenant)?|(?:quelles sont )?(?:vos |les )?heures douverture(?: aujourdhui)?|(?:quelles sont )?vos heures(?: aujourdhui)?|[àa] quelle heure (?:ouvrez|fermez) vous(?: aujourdhui)?"},
+        // Fast path: where are you, address, directions
+        {FAST_PATH_DIRECTIONS_PATTERN.toString(), "o[ùu] (?:[êe]tes vous|se trouve le magasin|est le magasin)(?: situ[ée]s?)?|(?:quelle est )?votre adresse|ladresse|adresse|itin[ée]raire|comment (?:me rendre|aller|se rendre) (?:chez vous|au magasin)"},
+        // Fast path: private shopping
+        {FAST_PATH_PRIVATE_SHOPPING_PATTERN.toString(), "(?:magasinage|shopping) priv[ée]|(?:je veux |je voudrais )?r[ée]server (?:un )?(?:rendez vous de )?(?:magasinage|shopping) priv[ée]"},
+        // We are open right now until {0}.
+        {FAST_PATH_OPEN_UNTIL.toString(), "Nous sommes ouverts en ce moment jusqu''à {0}."},
+        // We are closed right now. We open again {0} at {1}.
+        {FAST_PATH_CLOSED_UNTIL.toString(), "Nous sommes fermés en ce moment. Nous rouvrons {0} à {1}."},
+        // We are at 160 Main Street in Wahkon, Minnesota, near Lake Mille Lacs. Driving directions: {0}
+        {FAST_PATH_DIRECTIONS.toString(), "Nous sommes au 160 Main Street à Wahkon, au Minnesota, près du lac Mille Lacs. Itinéraire : {0}"},
+        // You can book a private shopping appointment here: {0}
+        {FAST_PATH_PRIVATE_SHOPPING.toString(), "Vous pouvez réserver un magasinage privé ici : {0}"},
     };
 
     @Override
@@ -29,6 +29,22 @@ public class LangBundle_nl extends ListResourceBundle {
         {MODEL_RESPONSE_LANGUAGE.toString(), "Please respond to all prompts in Dutch.  "},
         // Thank you for calling, goodbye.
         {GOODBYE.toString(), "Bedankt voor het bellen, tot ziens."},
+        // Fast path: words allowed around a question
+        {FAST_PATH_FILLER_PATTERN.toString(), "hallo|hoi|hi|ja|ok|ok[ée]|alstublieft|alsjeblieft|dank je|dank u|bedankt"},
+        // Fast path: are you open, what are your hours
+        {FAST_PATH_HOURS_PATTERN.toString(), "(?:bent u|zijn jullie|is de winkel) (?:nu |vandaag )?open(?: nu| vandaag)?|(?:wat zijn )?(?:uw |jullie |de )?openingstijden(?: vandaag)?|hoe laat (?:gaan jullie|gaat u) (?:open|dicht)(?: vandaag)?"},
+        // Fast path: where are you, address, directions
+        {FAST_PATH_DIRECTIONS_PATTERN.toString(), "waar (?:bent u|zijn jullie|is de winkel)(?: gevestigd)?|wat is (?:uw|jullie) adres|adres|routebeschrijving|hoe kom ik (?:er|bij jullie|bij de winkel)"},
+        // Fast path: private shopping
+        {FAST_PATH_PRIVATE_SHOPPING_PATTERN.toString(), "priv[ée] ?winkelen|private shopping|(?:ik wil )?(?:een )?priv[ée] ?winkelafspraak(?: maken)?|(?:ik wil )?priv[ée] ?winkelen boeken"},
+        // We are open right now until {0}.
+        {FAST_PATH_OPEN_UNTIL.toString(), "We zijn nu open tot {0}."},
+        // We are closed right now. We open again {0} at {1}.
+        {FAST_PATH_CLOSED_UNTIL.toString(), "We zijn nu gesloten. We gaan weer open op {0} om {1}."},
+        // We are at 160 Main Street in Wahkon, Minnesota, near Lake Mille Lacs. Driving directions: {0}
+        {FAST_PATH_DIRECTIONS.toString(), "We zitten op 160 Main Street in Wahkon, Minnesota, vlak bij het Mille Lacs meer. Routebeschrijving: {0}"},
+        // You can book a private shopping appointment here: {0}
+        {FAST_PATH_PRIVATE_SHOPPING.toString(), "U kunt hier een afspraak voor privé winkelen maken: {0}"},
     };
 
     @Override
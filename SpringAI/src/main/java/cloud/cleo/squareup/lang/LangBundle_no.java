@@ -29,6 +29,22 @@ public class LangBundle_no extends ListResourceBundle {
         {MODEL_RESPONSE_LANGUAGE.toString(), "Please respond to all prompts in Norwegian.  "},
         // Thank you for calling, goodbye.
         {GOODBYE.toString(), "Takk for at du ringte, farvel."},
+        // Fast path: words allowed around a question
+        {FAST_PATH_FILLER_PATTERN.toString(), "hei|hallo|ja|ok|takk"},
+        // Fast path: are you open, what are your hours
+        {FAST_PATH_HOURS_PATTERN.toString(), "(?:har dere|er butikken|er dere) (?:[åa]pent|[åa]pen|[åa]pne)(?: n[åa]| i dag)?|(?:hva er )?[åa]pningstid(?:er|ene)(?: deres| i dag)?|n[åa]r (?:[åa]pner|stenger) dere(?: i dag)?"},
+        // Fast path: where are you, address, directions
+        {FAST_PATH_DIRECTIONS_PATTERN.toString(), "hvor (?:er dere|er butikken|ligger butikken|ligger dere)|hva er adressen(?: deres)?|adressen?|veibeskrivelse|hvordan kommer jeg (?:dit|til dere|til butikken)"},
+        // Fast path: private shopping
+        {FAST_PATH_PRIVATE_SHOPPING_PATTERN.toString(), "privat ?shopping|(?:jeg vil )?bestille privat ?shopping(?:time)?"},
+        // We are open right now until {0}.
+        {FAST_PATH_OPEN_UNTIL.toString(), "Vi har åpent nå til klokken {0}."},
+        // We are closed right now. We open again {0} at {1}.
+        {FAST_PATH_CLOSED_UNTIL.toString(), "Vi har stengt nå. Vi åpner igjen {0} klokken {1}."},
+        // We are at 160 Main Street in Wahkon, Minnesota, near Lake Mille Lacs. Driving directions: {0}
+        {FAST_PATH_DIRECTIONS.toString(), "Vi holder til i 160 Main Street i Wahkon, Minnesota, nær Mille Lacs-sjøen. Veibeskrivelse: {0}"},
+        // You can book a private shopping appointment here: {0}
+        {FAST_PATH_PRIVATE_SHOPPING.toString(), "Du kan bestille en time for privat shopping her: {0}"},
     };
 
     @Override
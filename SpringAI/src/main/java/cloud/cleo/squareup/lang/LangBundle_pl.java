@@ -29,6 +29,22 @@ public class LangBundle_pl extends ListResourceBundle {
         {MODEL_RESPONSE_LANGUAGE.toString(), "Please respond to all prompts in Polish.  "},
         // Thank you for calling, goodbye.
         {GOODBYE.toString(), "Dziękuję za telefon, do widzenia."},
+        // Fast path: words allowed around a question
+        {FAST_PATH_FILLER_PATTERN.toString(), "cze[śs][ćc]|dzie[ńn] dobry|halo|tak|ok|prosz[ęe]|dzi[ęe]kuj[ęe]"},
+        // Fast path: are you open, what are your hours
+        {FAST_PATH_HOURS_PATTERN.toString(), "(?:czy )?(?:jest|jeste[śs]cie) (?:otwarte|czynne|otwarci)(?: dzi[śs]| dzisiaj| teraz)?|(?:jakie s[ąa] )?(?:wasze |pa[ńn]stwa )?godziny otwarcia(?: dzi[śs]| dzisiaj)?|o kt[óo]rej (?:otwieracie|zamykacie)(?: dzi[śs]| dzisiaj)?"},
+        // Fast path: where are you, address, directions
+        {FAST_PATH_DIRECTIONS_PATTERN.toString(), "gdzie (?:jeste[śs]cie|jest sklep)|(?:jaki jest )?(?:wasz |pa[ńn]stwa )?adres|wskaz[óo]wki dojazdu|jak (?:dojecha[ćc]|trafi[ćc]) do (?:sklepu|was)"},
+        // Fast path: private shopping
+        {FAST_PATH_PRIVATE_SHOPPING_PATTERN.toString(), "prywatne zakupy|(?:chc[ęe] )?zarezerwowa[ćc] prywatne zakupy"},
+        // We are open right now until {0}.
+        {FAST_PATH_OPEN_UNTIL.toString(), "Jesteśmy teraz otwarci do godziny {0}."},
+        // We are closed right now. We open again {0} at {1}.
+        {FAST_PATH_CLOSED_UNTIL.toString(), "Teraz jest zamknięte. Otwieramy ponownie: {0}, godz. {1}."},
+        // We are at 160 Main Street in Wahkon, Minnesota, near Lake Mille Lacs. Driving directions: {0}
+        {FAST_PATH_DIRECTIONS.toString(), "Jesteśmy przy 160 Main Street w Wahkon w Minnesocie, niedaleko jeziora Mille Lacs. Wskazówki dojazdu: {0}"},
+        // You can book a private shopping appointment here: {0}
+        {FAST_PATH_PRIVATE_SHOPPING.toString(), "Prywatne zakupy można zarezerwować tutaj: {0}"},
     };
 
     @Override
@@ -29,6 +29,22 @@ public class LangBundle_sv extends ListResourceBundle {
         {MODEL_RESPONSE_LANGUAGE.toString(), "Please respond to all prompts in Swedish.  "},
         // Thank you for calling, goodbye.
         {GOODBYE.toString(), "Tack för att du ringde, hejdå."},
+        // Fast path: words allowed around a question
+        {FAST_PATH_FILLER_PATTERN.toString(), "hej|hall[åa]|ja|ok|tack|sn[äa]lla"},
+        // Fast path: are you open, what are your hours
+        {FAST_PATH_HOURS_PATTERN.toString(), "(?:har ni|[äa]r ni|[äa]r butiken) (?:[öo]ppet|[öo]ppen|[öo]ppna)(?: nu| idag| i dag)?|(?:vilka [äa]r )?(?:era |butikens )?[öo]ppettider(?: idag| i dag)?|n[äa]r (?:[öo]ppnar|st[äa]nger) ni(?: idag| i dag)?"},
+        // Fast path: where are you, address, directions
+        {FAST_PATH_DIRECTIONS_PATTERN.toString(), "var (?:ligger ni|ligger butiken|[äa]r ni|finns ni)|vad [äa]r (?:er )?adress(?:en)?|adress(?:en)?|v[äa]gbeskrivning|hur tar jag mig (?:dit|till er|till butiken)"},
+        // Fast path: private shopping
+        {FAST_PATH_PRIVATE_SHOPPING_PATTERN.toString(), "privat ?shopping|(?:jag vill )?boka privat ?shopping(?:tid)?"},
+        // We are open right now until {0}.
+        {FAST_PATH_OPEN_UNTIL.toString(), "Vi har öppet just nu till klockan {0}."},
+        // We are closed right now. We open again {0} at {1}.
+        {FAST_PATH_CLOSED_UNTIL.toString(), "Vi har stängt just nu. Vi öppnar igen {0} klockan {1}."},
+        // We are at 160 Main Street in Wahkon, Minnesota, near Lake Mille Lacs. Driving directions: {0}
+        {FAST_PATH_DIRECTIONS.toString(), "Vi finns på 160 Main Street i Wahkon, Minnesota, nära sjön Mille Lacs. Vägbeskrivning: {0}"},
+        // You can book a private shopping appointment here: {0}
+        {FAST_PATH_PRIVATE_SHOPPING.toString(), "Du kan boka privat shopping här: {0}"},
     };
 
     @Override
@@ -7,6 +7,7 @@ package cloud.cleo.squareup.lang;
 
 
 
+import java.text.MessageFormat;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -52,8 +53,39 @@ public class LangUtil {
         /**
          * Thank you for calling, goodbye.
          */
-        GOODBYE
-       
+        GOODBYE,
+        /**
+         * Words that may surround a fast path question (hi, please, thanks), regex alternation
+         */
+        FAST_PATH_FILLER_PATTERN,
+        /**
+         * Asking if the store is open or for the hours, regex matched against the whole normalized transcript
+         */
+        FAST_PATH_HOURS_PATTERN,
+        /**
+         * Asking where the store is or for directions, regex matched against the whole normalized transcript
+         */
+        FAST_PATH_DIRECTIONS_PATTERN,
+        /**
+         * Asking about booking private shopping, regex matched against the whole normalized transcript
+         */
+        FAST_PATH_PRIVATE_SHOPPING_PATTERN,
+        /**
+         * We are open right now until {0}.
+         */
+        FAST_PATH_OPEN_UNTIL,
+        /**
+         * We are closed right now. We open again {0} at {1}.
+         */
+        FAST_PATH_CLOSED_UNTIL,
+        /**
+         * We are at 160 Main Street in Wahkon, Minnesota, near Lake Mille Lacs. Driving directions: {0}
+         */
+        FAST_PATH_DIRECTIONS,
+        /**
+         * You can book a private shopping appointment here: {0}
+         */
+        FAST_PATH_PRIVATE_SHOPPING
     }
 
     private final Locale locale;
@@ -72,6 +104,17 @@ public class LangUtil {
         return getString(id, locale);
     }
 
+    /**
+     * Language String with {0} style arguments filled in, see {@link MessageFormat} (a single quote is written as two).
+     *
+     * @param id
+     * @param args
+     * @return
+     */
+    public String format(LanguageIds id, Object... args) {
+        return new MessageFormat(getString(id), locale).format(args);
+    }
+
     public static String getString(LanguageIds id, Locale locale) {
         var bundle = map.get(locale);
         if (bundle == null) {
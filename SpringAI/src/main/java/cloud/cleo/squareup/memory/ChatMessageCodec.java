@@ -0,0 +1,227 @@
+package cloud.cleo.squareup.memory;
+
+import static cloud.cleo.squareup.cloudfunctions.LexFunction.sanitizeAssistantText;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.AssistantMessage.ToolCall;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage.ToolResponse;
+import org.springframework.ai.chat.messages.UserMessage;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Compact binary encoding of a conversation's message log for the single item (compressed) storage layout.
+ *
+ * Layout: one uncompressed format version byte, then a deflate stream of: message count, and per message a type code,
+ * text, tool calls (assistant) or tool responses (tool) as plain fields and an optional metadata JSON string. Strings
+ * are written as a varint of (UTF-8 length + 1) so null can be encoded as 0.
+ *
+ * The same fields are kept as the per-message item layout (assistant text sanitized, metadata only for system/tool
+ * messages, plus the summary marker on user messages) so either layout gives back the same conversation.
+ */
+final class ChatMessageCodec {
+
+    static final byte FORMAT_V1 = 1;
+
+    private static final int USER = 0;
+    private static final int ASSISTANT = 1;
+    private static final int SYSTEM = 2;
+    private static final int TOOL = 3;
+
+    private ChatMessageCodec() {
+    }
+
+    static byte[] encode(List<Message> messages, JsonMapper mapper) {
+        final var bytes = new ByteArrayOutputStream(256);
+        bytes.write(FORMAT_V1);
+        // Speed matters more than the last few bytes, the logs are small
+        final var deflater = new Deflater(Deflater.BEST_SPEED);
+        try (var out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            writeVarInt(out, messages.size());
+            for (final var msg : messages) {
+                switch (msg) {
+                    case AssistantMessage am -> {
+                        out.writeByte(ASSISTANT);
+                        writeString(out, sanitizeAssistantText(am.getText()));
+                        final List<ToolCall> calls = am.getToolCalls() == null ? List.of() : am.getToolCalls();
+                        writeVarInt(out, calls.size());
+                        for (final var call : calls) {
+                            writeString(out, call.id());
+                            writeString(out, call.type());
+                            writeString(out, call.name());
+                            writeString(out, call.arguments());
+                        }
+                        writeString(out, null);
+                    }
+                    case UserMessage um -> {
+                        out.writeByte(USER);
+                        writeString(out, um.getText());
+                        // Only the summary marker, so it is still the summary when read back
+                        writeString(out, TokenWindowChatMemory.isSummary(um) ? metadataJson(um.getMetadata(), mapper) : null);
+                    }
+                    case ToolResponseMessage trm -> {
+                        out.writeByte(TOOL);
+                        writeString(out, null);
+                        final List<ToolResponse> responses = trm.getResponses() == null ? List.of() : trm.getResponses();
+                        writeVarInt(out, responses.size());
+                        for (final var response : responses) {
+                            writeString(out, response.id());
+                            writeString(out, response.name());
+                            writeString(out, response.responseData());
+                        }
+                        writeString(out, metadataJson(msg.getMetadata(), mapper));
+                    }
+                    default -> {
+                        // System and anything else are stored as system text
+                        out.writeByte(SYSTEM);
+                        writeString(out, msg.getText());
+                        writeString(out, metadataJson(msg.getMetadata(), mapper));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<Message> decode(byte[] data, JsonMapper mapper) {
+        if (data == null || data.length == 0) {
+            return List.of();
+        }
+        if (data[0] != FORMAT_V1) {
+            throw new IllegalArgumentException("Unsupported chat message log format " + data[0]);
+        }
+        try (var in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data, 1, data.length - 1)))) {
+            final int count = readVarInt(in);
+            final var messages = new ArrayList<Message>(count);
+            for (int i = 0; i < count; i++) {
+                final int type = in.readUnsignedByte();
+                final String text = readString(in);
+                switch (type) {
+                    case ASSISTANT -> {
+                        final int callCount = readVarInt(in);
+                        final var calls = new ArrayList<ToolCall>(callCount);
+                        for (int c = 0; c < callCount; c++) {
+                            calls.add(new ToolCall(readString(in), readString(in), readString(in), readString(in)));
+                        }
+                        readString(in);
+                        final var builder = AssistantMessage.builder().content(text);
+                        if (!calls.isEmpty()) {
+                            builder.toolCalls(calls);
+                        }
+                        messages.add(builder.build());
+                    }
+                    case USER -> messages.add(UserMessage.builder()
+                            .text(text)
+                            .metadata(readMetadata(readString(in), mapper))
+                            .build());
+                    case TOOL -> {
+                        final int responseCount = readVarInt(in);
+                        final var responses = new ArrayList<ToolResponse>(responseCount);
+                        for (int r = 0; r < responseCount; r++) {
+                            responses.add(new ToolResponse(readString(in), readString(in), readString(in)));
+                        }
+                        final var builder = ToolResponseMessage.builder()
+                                .metadata(readMetadata(readString(in), mapper));
+                        if (!responses.isEmpty()) {
+                            builder.responses(responses);
+                        }
+                        messages.add(builder.build());
+                    }
+                    case SYSTEM -> messages.add(SystemMessage.builder()
+                            .text(text)
+                            .metadata(readMetadata(readString(in), mapper))
+                            .build());
+                    default ->
+                        throw new IllegalArgumentException("Unknown message type code " + type);
+                }
+            }
+            return messages;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String metadataJson(Map<String, Object> metadata, JsonMapper mapper) {
+        if (metadata == null || metadata.isEmpty()) {
+            return null;
+        }
+        try {
+            return mapper.writeValueAsString(metadata);
+        } catch (Exception e) {
+            // skip metadata if it doesn't serialize cleanly
+            return null;
+        }
+    }
+
+    private static Map<String, Object> readMetadata(String json, JsonMapper mapper) {
+        if (json == null) {
+            return Collections.emptyMap();
+        }
+        try {
+            return mapper.readValue(json, new TypeReference<Map<String, Object>>() {
+            });
+        } catch (Exception e) {
+            return Collections.emptyMap();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        final byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, utf8.length + 1);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final int len = readVarInt(in);
+        if (len == 0) {
+            return null;
+        }
+        final byte[] utf8 = new byte[len - 1];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
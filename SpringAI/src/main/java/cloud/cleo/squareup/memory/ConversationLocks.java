@@ -0,0 +1,102 @@
+package cloud.cleo.squareup.memory;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One fair lock per conversation, so turns for the same conversation (an SMS burst, a Lex retry overlapping the
+ * original) run one at a time in arrival order while different conversations never wait on each other. Locks only
+ * exist while someone holds or waits on them, so the map stays as small as the number of active conversations.
+ *
+ * This serializes turns within one container, across containers the repository's own conflict handling applies.
+ *
+ * @author sjensen
+ */
+public final class ConversationLocks {
+
+    private static final class KeyedLock {
+
+        final ReentrantLock lock = new ReentrantLock(true);
+        int users; // holders plus waiters, guarded by the map's compute
+
+    }
+
+    /**
+     * Held turn, close to let the next turn for the conversation in.
+     */
+    public interface Lease extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    private final ConcurrentHashMap<String, KeyedLock> locks = new ConcurrentHashMap<>();
+    private final long timeoutNanos;
+
+    /**
+     * @param timeout longest a turn waits for the one ahead of it
+     */
+    public ConversationLocks(Duration timeout) {
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * Wait for earlier turns of this conversation to finish.
+     *
+     * @param conversationId
+     * @return lease to close when the turn is done
+     * @throws IllegalStateException when the wait times out or is interrupted
+     */
+    public Lease acquire(String conversationId) {
+        final var keyed = locks.compute(conversationId, (k, existing) -> {
+            final var l = existing == null ? new KeyedLock() : existing;
+            l.users++;
+            return l;
+        });
+
+        boolean locked = false;
+        try {
+            locked = keyed.lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!locked) {
+                release(conversationId, keyed);
+            }
+        }
+        if (!locked) {
+            throw new IllegalStateException("Timed out waiting for the previous turn of " + conversationId);
+        }
+
+        return () -> {
+            keyed.lock.unlock();
+            release(conversationId, keyed);
+        };
+    }
+
+    /**
+     * @return conversations with a turn running or waiting
+     */
+    public int activeConversations() {
+        return locks.size();
+    }
+
+    /**
+     * @return turns queued behind the running one (tests)
+     */
+    int waiting(String conversationId) {
+        final var keyed = locks.get(conversationId);
+        return keyed == null ? 0 : keyed.lock.getQueueLength();
+    }
+
+    private void release(String conversationId, KeyedLock keyed) {
+        locks.computeIfPresent(conversationId, (k, l) -> {
+            if (l != keyed) {
+                return l;
+            }
+            return --l.users == 0 ? null : l;
+        });
+    }
+}
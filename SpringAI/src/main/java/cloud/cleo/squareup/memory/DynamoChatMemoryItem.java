@@ -1,12 +1,21 @@
 package cloud.cleo.squareup.memory;
 
 import lombok.Data;
+import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
 
 /**
  * Single chat message stored in Dynamo as part of a conversation window.
+ *
+ * In the compressed layout the whole conversation is instead held by one item at messageIndex -1 (sorts ahead of any
+ * per-message items) carrying version, messageCount and the encoded messageLog.
+ *
+ * indexShard is only set on one item per conversation (the conversation item, or the items layout header at
+ * messageIndex -2) so the conversation index GSI stays sparse.
  */
 @DynamoDbBean
 @Data
@@ -23,11 +32,19 @@ public class DynamoChatMemoryItem {
     private String toolResponseJson; // ToolResponseMessage.ToolResponse list or payload
     private String metadataJson;    // optional message metadata
 
+    // Compressed layout only (messageIndex -1):
+    private Long version;           // incremented on every write, used for the conditional put
+    private Long messageCount;      // messages in the log
+    private SdkBytes messageLog;    // ChatMessageCodec encoded messages
+
+    // Conversation index entry only (conversation item or header):
+    private Integer indexShard;     // partition of the sparse conversation index GSI
     
     
     private Long ttl;            // Epoch seconds for Dynamo TTL
 
     @DynamoDbPartitionKey
+    @DynamoDbSecondarySortKey(indexNames = DynamoDbChatMemoryRepository.CONVERSATION_INDEX)
     public String getConversationId() {
         return conversationId;
     }
@@ -36,4 +53,9 @@ public class DynamoChatMemoryItem {
     public Long getMessageIndex() {
         return messageIndex;
     }
+
+    @DynamoDbSecondaryPartitionKey(indexNames = DynamoDbChatMemoryRepository.CONVERSATION_INDEX)
+    public Integer getIndexShard() {
+        return indexShard;
+    }
 }
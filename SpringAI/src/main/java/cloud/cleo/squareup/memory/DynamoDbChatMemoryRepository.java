@@ -5,6 +5,15 @@ import static cloud.cleo.squareup.cloudfunctions.LexFunction.sanitizeAssistantTe
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import cloud.cleo.squareup.cache.BoundedTtlCache;
 import lombok.extern.log4j.Log4j2;
 
 import org.springframework.ai.chat.memory.ChatMemoryRepository;
@@ -20,6 +29,9 @@ import org.springframework.ai.chat.messages.UserMessage;
 import software.amazon.awssdk.enhanced.dynamodb.*;
 import software.amazon.awssdk.enhanced.dynamodb.model.*;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
 import tools.jackson.core.type.TypeReference;
 import tools.jackson.databind.json.JsonMapper;
 
@@ -28,6 +40,15 @@ import tools.jackson.databind.json.JsonMapper;
  *
  * Table schema (Dynamo): PK: conversationId (String) SK: messageIndex (Number, 0..N-1) ttl: epoch seconds for TTL
  * (per-message)
+ *
+ * With {@link StorageLayout#COMPRESSED} a conversation is instead a single item at messageIndex -1 holding the
+ * {@link ChatMessageCodec} encoded log, so a turn is one read and one conditional write. Either reader handles
+ * conversations written in the other layout.
+ *
+ * Optionally runs in write-behind mode where the end of turn batch write is handed to an executor so the caller is not
+ * blocked on the Dynamo round trip. Writes are chained per conversation (so they land in order), reads for a
+ * conversation wait on its pending writes, and {@link #awaitPendingWrites()} must be called before the Lambda
+ * invocation returns since the container can be frozen at any point after that.
  */
 @Log4j2
 public class DynamoDbChatMemoryRepository implements ChatMemoryRepository {
@@ -43,19 +64,126 @@ public class DynamoDbChatMemoryRepository implements ChatMemoryRepository {
 
     private final JsonMapper objectMapper;
 
-    // Simple per-JVM cache, keyed by conversationId.
-    // Thread-safe because a single Lambda container can handle concurrent requests.
-    private final Map<String, ConversationState> cache = new java.util.concurrent.ConcurrentHashMap<>();
+    // Per-JVM cache keyed by conversationId, kept across invocations (warm container) and re-validated against
+    // Dynamo with a single key only read before it's trusted for a new turn.
+    private final BoundedTtlCache<String, ConversationState> cache;
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheValidations = new LongAdder();
+    private final LongAdder cacheStaleReloads = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    /**
+     * When true, end of turn writes are performed on the executor and tracked in pendingWrites.
+     */
+    private final boolean writeBehind;
+
+    private final Executor executor;
+
+    private final StorageLayout layout;
+
+    /**
+     * When true, conversations are registered in the sparse {@link #CONVERSATION_INDEX} GSI and listed from it.
+     */
+    private final boolean conversationIndex;
+
+    // Tail of the write chain for each conversation with writes still in flight
+    private final Map<String, CompletableFuture<Void>> pendingWrites = new ConcurrentHashMap<>();
 
     public DynamoDbChatMemoryRepository(DynamoDbEnhancedClient enhancedClient, JsonMapper objectMapper, Duration ttlDuration, String tableName) {
+        this(enhancedClient, objectMapper, ttlDuration, tableName, StorageLayout.ITEMS, false, null,
+                DEFAULT_CACHE_MAX_CONVERSATIONS, DEFAULT_CACHE_TTL, false);
+    }
+
+    public DynamoDbChatMemoryRepository(DynamoDbEnhancedClient enhancedClient, JsonMapper objectMapper, Duration ttlDuration, String tableName,
+            StorageLayout layout, boolean writeBehind, Executor executor, int cacheMaxConversations, Duration cacheTtl,
+            boolean conversationIndex) {
+        if (writeBehind && executor == null) {
+            throw new IllegalArgumentException("An executor is required for write-behind mode");
+        }
         this.enhancedClient = enhancedClient;
         this.objectMapper = objectMapper;
         this.ttlDuration = ttlDuration;
+        this.layout = layout;
+        this.writeBehind = writeBehind;
+        this.executor = executor;
+        this.conversationIndex = conversationIndex;
+        this.cache = new BoundedTtlCache<>(cacheMaxConversations, cacheTtl);
         this.table = enhancedClient.table(
                 tableName,
                 TableSchema.fromBean(DynamoChatMemoryItem.class));
     }
 
+    /**
+     * How conversations are laid out in the table.
+     */
+    public enum StorageLayout {
+        /**
+         * One item per message (messageIndex 0..N-1), append only writes.
+         */
+        ITEMS,
+        /**
+         * One item per conversation (messageIndex -1) holding the whole compressed message log, replaced on every
+         * turn with a conditional version check.
+         */
+        COMPRESSED
+    }
+
+    /**
+     * Sort key of the single conversation item in the compressed layout, sorts ahead of all per-message items.
+     */
+    static final long CONVERSATION_LOG_INDEX = -1L;
+
+    private static final String CONVERSATION_LOG_TYPE = "LOG";
+
+    /**
+     * Sort key of the items layout header, only written when the conversation index is enabled. It carries the index
+     * shard and has its TTL refreshed with every turn, so the index holds one entry per live conversation.
+     */
+    static final long CONVERSATION_HEADER_INDEX = -2L;
+
+    private static final String CONVERSATION_HEADER_TYPE = "HEADER";
+
+    /**
+     * Sparse GSI (partition indexShard, sort conversationId) over the header/conversation items only.
+     */
+    public static final String CONVERSATION_INDEX = "conversation-index";
+
+    /**
+     * Index partitions the conversation ids are spread over so no single index partition takes every write.
+     */
+    static final int CONVERSATION_INDEX_SHARDS = 8;
+
+    public static final int DEFAULT_CACHE_MAX_CONVERSATIONS = 500;
+    public static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(30);
+
+    /**
+     * Back to back reads (same turn) within this window don't re-validate the cached state.
+     */
+    private static final long CACHE_REVALIDATE_AFTER_NANOS = Duration.ofSeconds(1).toNanos();
+
+    /**
+     * Dynamo limit for a single batchWriteItem.
+     */
+    private static final int BATCH_SIZE = 25;
+
+    /**
+     * Unprocessed item retries: full jitter backoff starting at base doubling up to cap, within the budget per batch.
+     */
+    private static final long BATCH_BACKOFF_BASE_MS = 20;
+    private static final long BATCH_BACKOFF_CAP_MS = 400;
+    private static final Duration BATCH_RETRY_BUDGET = Duration.ofSeconds(2);
+
+    private final LongAdder batchWriteRequests = new LongAdder();
+    private final LongAdder batchWriteRetries = new LongAdder();
+    private final LongAdder unprocessedItems = new LongAdder();
+    private final LongAdder batchRetryBudgetExhausted = new LongAdder();
+
+    /**
+     * How many times to reload and merge when another container wrote the conversation item first.
+     */
+    private static final int MAX_VERSION_CONFLICT_RETRIES = 3;
+
     private static final class ConversationState {
         // Full logical history Spring thinks exists for this conversation
 
@@ -64,9 +192,26 @@ public class DynamoDbChatMemoryRepository implements ChatMemoryRepository {
         // Index in Dynamo of the last *persisted* message, or -1 if none.
         long lastPersistedIndex;
 
+        // Items layout: highest message index in Dynamo. Past lastPersistedIndex only when items after a gap were
+        // left behind, the next write then rewrites the conversation and deletes them.
+        long lastStoredIndex;
+
+        // Compressed layout: version of the conversation item we loaded (0 if there is none yet)
+        long version;
+
+        // Compressed layout: the messages as loaded, anything else in messages was added this turn
+        final Set<Message> loaded = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        // nanoTime this state was last known to match Dynamo (loaded, validated or written by us)
+        long validatedAt;
+
+        // Items layout: the messages at indexes 0..lastPersistedIndex, null when unknown (not loaded by us)
+        List<Message> persisted;
+
         ConversationState(List<Message> messages, long lastPersistedIndex) {
             this.messages = messages;
             this.lastPersistedIndex = lastPersistedIndex;
+            this.lastStoredIndex = lastPersistedIndex;
         }
     }
 
@@ -75,57 +220,254 @@ public class DynamoDbChatMemoryRepository implements ChatMemoryRepository {
     // -------------------------------------------------------------------------
     @Override
     public List<String> findConversationIds() {
-        PageIterable<DynamoChatMemoryItem> pages = table.scan(r -> r
-                .consistentRead(false)
-                .attributesToProject("conversationId")
-        );
-
-        final var response = pages.items()
-                .stream()
-                .map(DynamoChatMemoryItem::getConversationId)
-                .distinct()
-                .toList();
-
+        final var response = streamConversationIds().toList();
         log.debug("findConversationIds returning {} keys", response.size());
         return response;
     }
 
+    /**
+     * Conversation ids, read lazily a page at a time. With the conversation index this queries each index shard (one
+     * small keys only entry per conversation), otherwise it falls back to scanning the whole table.
+     *
+     * @return ids in no particular order, each once
+     */
+    public Stream<String> streamConversationIds() {
+        if (!conversationIndex) {
+            // Scan returns the items of a partition together, so dropping adjacent repeats is enough
+            return distinctAdjacent(table.scan(r -> r
+                    .consistentRead(false)
+                    .attributesToProject("conversationId"))
+                    .items()
+                    .stream()
+                    .map(DynamoChatMemoryItem::getConversationId));
+        }
+
+        final var index = table.index(CONVERSATION_INDEX);
+        return IntStream.range(0, CONVERSATION_INDEX_SHARDS)
+                .boxed()
+                .flatMap(shard -> distinctAdjacent(index.query(r -> r
+                        .queryConditional(QueryConditional.keyEqualTo(Key.builder().partitionValue(shard).build())))
+                        .stream()
+                        .flatMap(page -> page.items().stream())
+                        // Sorted by conversationId, a header left over from a layout switch sits next to its log item
+                        .map(DynamoChatMemoryItem::getConversationId)));
+    }
+
+    private static Stream<String> distinctAdjacent(Stream<String> ids) {
+        final var previous = new String[1];
+        return ids.filter(id -> {
+            final boolean repeat = id.equals(previous[0]);
+            previous[0] = id;
+            return !repeat;
+        });
+    }
+
+    static int conversationIndexShard(String conversationId) {
+        return Math.floorMod(conversationId.hashCode(), CONVERSATION_INDEX_SHARDS);
+    }
+
+    private DynamoChatMemoryItem headerItem(String conversationId, long ttlEpochSeconds) {
+        final var item = new DynamoChatMemoryItem();
+        item.setConversationId(conversationId);
+        item.setMessageIndex(CONVERSATION_HEADER_INDEX);
+        item.setMessageType(CONVERSATION_HEADER_TYPE);
+        item.setIndexShard(conversationIndexShard(conversationId));
+        item.setTtl(ttlEpochSeconds);
+        return item;
+    }
+
     @Override
     public List<Message> findByConversationId(String conversationId) {
-        // 1) Cache first
+        // Our own writes for it must land first (they can also invalidate the cached state)
+        awaitPendingWrites(conversationId);
+
+        // 1) Cache first, callers always get a copy (the cached list is ours to change on saveAll)
         var state = cache.get(conversationId);
         if (state != null) {
-            log.debug("findByConversationId({}) served from cache, {} messages",
-                    conversationId, state.messages.size());
-            return state.messages;
+            if (isDirty(state) || System.nanoTime() - state.validatedAt < CACHE_REVALIDATE_AFTER_NANOS) {
+                // Mid-turn (unsaved messages) or just checked, nothing could have changed that we'd want
+                cacheHits.increment();
+                log.debug("findByConversationId({}) served from cache, {} messages",
+                        conversationId, state.messages.size());
+                return List.copyOf(state.messages);
+            }
+            cacheValidations.increment();
+            if (isCurrent(conversationId, state)) {
+                state.validatedAt = System.nanoTime();
+                log.debug("findByConversationId({}) served from validated cache, {} messages",
+                        conversationId, state.messages.size());
+                return List.copyOf(state.messages);
+            }
+            cacheStaleReloads.increment();
+            log.debug("findByConversationId({}) cached state is stale (written elsewhere), reloading", conversationId);
+        } else {
+            cacheMisses.increment();
         }
 
         // 2) Load from Dynamo
-        QueryConditional condition = QueryConditional.keyEqualTo(
-                Key.builder().partitionValue(conversationId).build());
+        state = layout == StorageLayout.COMPRESSED
+                ? loadCompressed(conversationId)
+                : loadItems(conversationId);
 
-        List<DynamoChatMemoryItem> items = table.query(r -> r
-                .queryConditional(condition)
-                .scanIndexForward(true)) // ascending messageIndex
+        log.debug("findByConversationId({}) loaded {} messages from Dynamo ({}), lastPersistedIndex={}, version={}",
+                conversationId, state.messages.size(), layout, state.lastPersistedIndex, state.version);
+
+        // 3) Cache, kept across invocations while it validates
+        state.loaded.addAll(state.messages);
+        if (layout == StorageLayout.ITEMS) {
+            state.persisted = List.copyOf(state.messages);
+        }
+        state.validatedAt = System.nanoTime();
+        cache.put(conversationId, state);
+
+        return List.copyOf(state.messages);
+    }
+
+    /**
+     * Does the cached state hold messages not yet persisted (pre-call saveAll only updates the cache).
+     */
+    private boolean isDirty(ConversationState state) {
+        return layout == StorageLayout.COMPRESSED
+                ? !state.loaded.containsAll(state.messages)
+                : state.messages.size() - 1L > state.lastPersistedIndex || !isAppendOnly(state);
+    }
+
+    /**
+     * Items layout: does messages still start with exactly what is persisted (ChatMemory only appended). When
+     * ChatMemory drops or replaces older messages (compaction), the items have to be rewritten instead.
+     */
+    private static boolean isAppendOnly(ConversationState state) {
+        final var persisted = state.persisted;
+        if (persisted == null) {
+            return true;
+        }
+        if (state.messages.size() < persisted.size()) {
+            return false;
+        }
+        for (int i = 0; i < persisted.size(); i++) {
+            if (state.messages.get(i) != persisted.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cheap freshness check of cached state: only the key of the last message item, or only the version of the
+     * conversation item, is read (consistent read so our own last write is always seen).
+     */
+    private boolean isCurrent(String conversationId, ConversationState state) {
+        if (layout == StorageLayout.COMPRESSED) {
+            final long storedVersion = table.query(r -> r
+                    .queryConditional(QueryConditional.keyEqualTo(Key.builder()
+                            .partitionValue(conversationId).sortValue(CONVERSATION_LOG_INDEX).build()))
+                    .attributesToProject("version")
+                    .consistentRead(true))
+                    .items()
+                    .stream()
+                    .findFirst()
+                    .map(DynamoChatMemoryItem::getVersion)
+                    .orElse(0L);
+            return storedVersion == state.version;
+        }
+
+        final long lastIndex = table.query(r -> r
+                .queryConditional(partition(conversationId))
+                .scanIndexForward(false)
+                .limit(1)
+                .attributesToProject("conversationId", "messageIndex")
+                .consistentRead(true))
                 .items()
                 .stream()
-                .toList();
+                .findFirst()
+                .map(DynamoChatMemoryItem::getMessageIndex)
+                .orElse(-1L);
+        return Math.max(lastIndex, -1L) == state.lastStoredIndex;
+    }
 
-        List<Message> messages = items.stream()
-                .map(this::toMessage)
+    /**
+     * Point in time view of the conversation cache counters.
+     *
+     * @param hits served straight from cache (mid-turn or recently validated)
+     * @param validations key only reads to validate cached state for a new turn
+     * @param staleReloads validations that found the conversation changed elsewhere
+     * @param misses full loads with nothing cached
+     */
+    public record CacheStats(long hits, long validations, long staleReloads, long misses) {
+
+    }
+
+    public CacheStats getCacheStats() {
+        return new CacheStats(cacheHits.sum(), cacheValidations.sum(), cacheStaleReloads.sum(), cacheMisses.sum());
+    }
+
+    /**
+     * Per-message layout. If there are no message items but a conversation item exists (layout was switched back
+     * from compressed) then use that, the next write will then re-create message items from index 0.
+     */
+    private ConversationState loadItems(String conversationId) {
+        final List<DynamoChatMemoryItem> items = queryAll(conversationId);
+
+        final var messageItems = items.stream()
+                .filter(DynamoDbChatMemoryRepository::isMessageItem)
                 .toList();
 
-        long lastPersistedIndex = items.isEmpty()
-                ? -1L
-                : items.get(items.size() - 1).getMessageIndex();
+        if (messageItems.isEmpty()) {
+            return items.stream()
+                    .filter(DynamoDbChatMemoryRepository::isConversationLog)
+                    .findFirst()
+                    .map(logItem -> new ConversationState(new ArrayList<>(decodeLog(logItem)), -1L))
+                    .orElseGet(() -> new ConversationState(new ArrayList<>(), -1L));
+        }
 
-        log.debug("findByConversationId({}) loaded {} items from Dynamo, lastPersistedIndex={}",
-                conversationId, messages.size(), lastPersistedIndex);
+        // Indexes must be 0..N-1, if a write was ever lost only trust the contiguous prefix. The items after the gap
+        // stay in the table until the next write rewrites the conversation and deletes them.
+        final var messages = new ArrayList<Message>(messageItems.size());
+        for (final var item : messageItems) {
+            if (item.getMessageIndex() != messages.size()) {
+                log.warn("Conversation {} has a gap at messageIndex {}, ignoring {} later items",
+                        conversationId, messages.size(), messageItems.size() - messages.size());
+                break;
+            }
+            messages.add(toMessage(item));
+        }
 
-        // 3) Cache for this Lambda invocation
-        cache.put(conversationId, new ConversationState(new ArrayList<>(messages), lastPersistedIndex));
+        final var state = new ConversationState(messages, messages.size() - 1L);
+        state.lastStoredIndex = messageItems.getLast().getMessageIndex();
+        return state;
+    }
 
-        return messages;
+    /**
+     * Compressed layout. The conversation item sorts first (after an items layout header), so a one item page
+     * starting at its sort key tells us which layout the conversation was written with. Conversations still in the per-message layout are read in full and migrate on
+     * their next write.
+     */
+    private ConversationState loadCompressed(String conversationId) {
+        final var first = table.query(r -> r
+                .queryConditional(QueryConditional.sortGreaterThanOrEqualTo(Key.builder()
+                        .partitionValue(conversationId).sortValue(CONVERSATION_LOG_INDEX).build()))
+                .scanIndexForward(true)
+                .limit(1))
+                .items()
+                .stream()
+                .findFirst();
+
+        if (first.isEmpty()) {
+            return new ConversationState(new ArrayList<>(), -1L);
+        }
+
+        if (isConversationLog(first.get())) {
+            final var state = new ConversationState(new ArrayList<>(decodeLog(first.get())), -1L);
+            state.version = first.get().getVersion() == null ? 0L : first.get().getVersion();
+            return state;
+        }
+
+        log.debug("Conversation {} is still in the per-message layout, will migrate on next write", conversationId);
+        final var messages = queryAll(conversationId).stream()
+                .filter(DynamoDbChatMemoryRepository::isMessageItem)
+                .map(this::toMessage)
+                .collect(Collectors.toCollection(ArrayList::new));
+        return new ConversationState(messages, -1L);
     }
 
     @Override
@@ -156,20 +498,32 @@ public class DynamoDbChatMemoryRepository implements ChatMemoryRepository {
                 .plus(ttlDuration)
                 .getEpochSecond();
 
+        if (layout == StorageLayout.COMPRESSED) {
+            saveCompressed(conversationId, messages, ttlEpochSeconds);
+            return;
+        }
+
         ConversationState state = cache.get(conversationId);
 
         if (state == null) {
             // Fallback: we didn't have a cached state (e.g., saveAll called without findByConversationId).
             // Use your existing logic to discover last index from Dynamo once.
             log.debug("saveAll({}) with no cache state, falling back to Dynamo last-item lookup", conversationId);
+            awaitPendingWrites(conversationId);
             long lastIdx = findLastItem(conversationId)
                     .map(DynamoChatMemoryItem::getMessageIndex)
                     .orElse(-1L);
-            state = new ConversationState(new ArrayList<>(messages), lastIdx);
+            // A lone conversation item (index -1) also means no message items
+            state = new ConversationState(new ArrayList<>(messages), Math.max(lastIdx, -1L));
             cache.put(conversationId, state);
         } else {
             // Update state.messages to the latest list Spring gave us
             state.messages = new ArrayList<>(messages);
+            // Appending after a gap would leave the stale items past the new end in the history
+            if (!isAppendOnly(state) || state.lastStoredIndex > state.lastPersistedIndex) {
+                rewriteItems(conversationId, state, ttlEpochSeconds);
+                return;
+            }
         }
 
         // Write only messages AFTER lastPersistedIndex
@@ -179,7 +533,6 @@ public class DynamoDbChatMemoryRepository implements ChatMemoryRepository {
 
         if (startListIndex >= totalMessages) {
             log.debug("saveAll({}) nothing new to persist (startListIndex >= totalMessages)", conversationId);
-            cache.remove(conversationId); // clean up
             return;
         }
 
@@ -191,22 +544,256 @@ public class DynamoDbChatMemoryRepository implements ChatMemoryRepository {
             newItems.add(buildItem(conversationId, (int) nextIndex, msg, ttlEpochSeconds));
         }
 
-        log.debug("saveAll({}) persisting {} new items (indexes {}..{}), then evicting cache entry",
+        log.debug("saveAll({}) persisting {} new items (indexes {}..{})",
                 conversationId, newItems.size(), startListIndex, totalMessages - 1);
+        if (conversationIndex) {
+            // Rides along in the same batch, keeps the index entry alive as long as the newest message
+            newItems.add(headerItem(conversationId, ttlEpochSeconds));
+        }
 
-        batchPutItems(newItems);
-
-        // Update and evict so the next Lambda invocation starts fresh from Dynamo
+        // Cached state now matches what Dynamo will hold, so the next turn only needs a validation read
         state.lastPersistedIndex = nextIndex;
-        cache.remove(conversationId);
+        state.lastStoredIndex = nextIndex;
+        state.persisted = state.persisted == null ? null : List.copyOf(state.messages);
+        state.validatedAt = System.nanoTime();
+        cache.put(conversationId, state);
+
+        persist(conversationId, () -> batchPutItems(newItems));
     }
 
-    private Optional<DynamoChatMemoryItem> findLastItem(String conversationId) {
-        QueryConditional condition = QueryConditional.keyEqualTo(
+    /**
+     * Items layout when older messages were dropped or replaced (or items were left behind after a gap): write the
+     * whole list from index 0 and delete any items past its new end.
+     */
+    private void rewriteItems(String conversationId, ConversationState state, long ttlEpochSeconds) {
+        final int total = state.messages.size();
+        final var puts = new ArrayList<DynamoChatMemoryItem>(total);
+        for (int i = 0; i < total; i++) {
+            puts.add(buildItem(conversationId, i, state.messages.get(i), ttlEpochSeconds));
+        }
+        if (conversationIndex) {
+            puts.add(headerItem(conversationId, ttlEpochSeconds));
+        }
+        final var deletes = new ArrayList<Key>();
+        for (long i = total; i <= state.lastStoredIndex; i++) {
+            deletes.add(Key.builder().partitionValue(conversationId).sortValue(i).build());
+        }
+
+        log.debug("saveAll({}) history was rewritten, writing {} items and deleting {}",
+                conversationId, puts.size(), deletes.size());
+
+        state.lastPersistedIndex = total - 1L;
+        state.lastStoredIndex = total - 1L;
+        state.persisted = List.copyOf(state.messages);
+        state.validatedAt = System.nanoTime();
+        cache.put(conversationId, state);
+
+        persist(conversationId, () -> batchWrite(puts, deletes));
+    }
+
+    /**
+     * Replace the single conversation item with the full message list (already windowed by ChatMemory).
+     */
+    private void saveCompressed(String conversationId, List<Message> messages, long ttlEpochSeconds) {
+        final ConversationState state = cache.get(conversationId);
+
+        final long expectedVersion;
+        final List<Message> appended;
+        if (state == null) {
+            // No load in this container, take the list as the whole truth on top of whatever version is stored
+            log.debug("saveAll({}) with no cache state, reading current conversation version", conversationId);
+            awaitPendingWrites(conversationId);
+            expectedVersion = loadConversationLog(conversationId)
+                    .map(DynamoChatMemoryItem::getVersion)
+                    .orElse(0L);
+            appended = List.copyOf(messages);
+        } else {
+            expectedVersion = state.version;
+            appended = messages.stream().filter(m -> !state.loaded.contains(m)).toList();
+            if (appended.isEmpty() && state.version > 0) {
+                log.debug("saveAll({}) nothing new to persist", conversationId);
+                return;
+            }
+        }
+
+        final List<Message> snapshot = List.copyOf(messages);
+        log.debug("saveAll({}) writing conversation log with {} messages ({} new), expected version {}",
+                conversationId, snapshot.size(), appended.size(), expectedVersion);
+
+        // Cache what Dynamo will hold once the write succeeds (a conflict or failure evicts it again)
+        final var written = new ConversationState(new ArrayList<>(snapshot), -1L);
+        written.version = expectedVersion + 1;
+        written.loaded.addAll(snapshot);
+        written.validatedAt = System.nanoTime();
+        cache.put(conversationId, written);
+
+        persist(conversationId, () -> putConversationLog(conversationId, snapshot, appended, expectedVersion, ttlEpochSeconds));
+    }
+
+    /**
+     * Conditional put of the conversation item. When another container got there first, reload its log, append the
+     * messages this turn added and try again.
+     */
+    private void putConversationLog(String conversationId, List<Message> messages, List<Message> appended,
+            long expectedVersion, long ttlEpochSeconds) {
+        List<Message> toWrite = messages;
+        long expected = expectedVersion;
+        for (int attempt = 1;; attempt++) {
+            final var item = new DynamoChatMemoryItem();
+            item.setConversationId(conversationId);
+            item.setMessageIndex(CONVERSATION_LOG_INDEX);
+            item.setMessageType(CONVERSATION_LOG_TYPE);
+            item.setVersion(expected + 1);
+            item.setMessageCount((long) toWrite.size());
+            item.setMessageLog(SdkBytes.fromByteArray(ChatMessageCodec.encode(toWrite, objectMapper)));
+            if (conversationIndex) {
+                // The conversation item doubles as the index entry
+                item.setIndexShard(conversationIndexShard(conversationId));
+            }
+            item.setTtl(ttlEpochSeconds);
+
+            try {
+                table.putItem(PutItemEnhancedRequest.builder(DynamoChatMemoryItem.class)
+                        .item(item)
+                        .conditionExpression(versionCondition(expected))
+                        .build());
+                log.debug("Conversation log for {} written at version {} ({} bytes)",
+                        conversationId, expected + 1, item.getMessageLog().asByteArray().length);
+                return;
+            } catch (ConditionalCheckFailedException e) {
+                // Whatever we cached for this conversation is no longer what Dynamo holds
+                cache.remove(conversationId);
+                if (attempt >= MAX_VERSION_CONFLICT_RETRIES) {
+                    log.error("Conversation log for {} still conflicting after {} attempts, turn not persisted",
+                            conversationId, attempt);
+                    return;
+                }
+                final var current = loadConversationLog(conversationId);
+                expected = current.map(DynamoChatMemoryItem::getVersion).orElse(0L);
+                final var merged = new ArrayList<>(current.map(this::decodeLog).orElse(List.of()));
+                merged.addAll(appended);
+                toWrite = merged;
+                log.warn("Conversation log for {} was updated elsewhere, merged onto version {}", conversationId, expected);
+            }
+        }
+    }
+
+    private static Expression versionCondition(long expectedVersion) {
+        if (expectedVersion == 0L) {
+            return Expression.builder()
+                    .expression("attribute_not_exists(#v)")
+                    .putExpressionName("#v", "version")
+                    .build();
+        }
+        return Expression.builder()
+                .expression("#v = :v")
+                .putExpressionName("#v", "version")
+                .putExpressionValue(":v", AttributeValue.fromN(Long.toString(expectedVersion)))
+                .build();
+    }
+
+    private Optional<DynamoChatMemoryItem> loadConversationLog(String conversationId) {
+        return Optional.ofNullable(table.getItem(r -> r
+                .key(Key.builder().partitionValue(conversationId).sortValue(CONVERSATION_LOG_INDEX).build())
+                .consistentRead(true)));
+    }
+
+    private List<Message> decodeLog(DynamoChatMemoryItem item) {
+        try {
+            return ChatMessageCodec.decode(item.getMessageLog() == null ? null : item.getMessageLog().asByteArray(), objectMapper);
+        } catch (Exception e) {
+            log.error("Unable to decode conversation log for {}, starting empty", item.getConversationId(), e);
+            return List.of();
+        }
+    }
+
+    private static boolean isConversationLog(DynamoChatMemoryItem item) {
+        return item.getMessageIndex() != null && item.getMessageIndex() == CONVERSATION_LOG_INDEX;
+    }
+
+    private static boolean isMessageItem(DynamoChatMemoryItem item) {
+        return item.getMessageIndex() != null && item.getMessageIndex() >= 0;
+    }
+
+    private static QueryConditional partition(String conversationId) {
+        return QueryConditional.keyEqualTo(
                 Key.builder().partitionValue(conversationId).build());
+    }
 
+    private List<DynamoChatMemoryItem> queryAll(String conversationId) {
         return table.query(r -> r
-                .queryConditional(condition)
+                .queryConditional(partition(conversationId))
+                .scanIndexForward(true)) // ascending messageIndex
+                .items()
+                .stream()
+                .toList();
+    }
+
+    /**
+     * Run the write now, or in write-behind mode queue it after any earlier writes for the same conversation.
+     */
+    private void persist(String conversationId, Runnable unguardedWrite) {
+        final Runnable write = () -> {
+            try {
+                unguardedWrite.run();
+            } catch (RuntimeException e) {
+                // Cached state assumed this write would land
+                cache.remove(conversationId);
+                throw e;
+            }
+        };
+        if (!writeBehind) {
+            write.run();
+            return;
+        }
+        final var future = pendingWrites.compute(conversationId, (id, previous) -> {
+            final CompletableFuture<Void> prior = previous == null
+                    ? CompletableFuture.completedFuture(null)
+                    // A failed earlier write (already logged) should not stop this one
+                    : previous.exceptionally(t -> null);
+            return prior.thenRunAsync(write, executor);
+        });
+        future.whenComplete((v, t) -> {
+            if (t != null) {
+                log.error("Write-behind for conversation {} failed", conversationId, t);
+            }
+            // Only remove if nothing else was chained on in the meantime
+            pendingWrites.remove(conversationId, future);
+        });
+    }
+
+    /**
+     * Block until in flight writes for the conversation are done (no-op when none or not in write-behind mode).
+     *
+     * @param conversationId
+     */
+    public void awaitPendingWrites(String conversationId) {
+        final var pending = pendingWrites.get(conversationId);
+        if (pending != null) {
+            log.debug("Waiting on pending writes for {}", conversationId);
+            pending.exceptionally(t -> null).join();
+        }
+    }
+
+    /**
+     * Barrier for the end of an invocation, block until all in flight writes are done. Failures are logged when they
+     * happen and not rethrown here.
+     */
+    public void awaitPendingWrites() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+        final var start = System.nanoTime();
+        CompletableFuture.allOf(pendingWrites.values().stream()
+                .map(f -> f.exceptionally(t -> null))
+                .toArray(CompletableFuture[]::new))
+                .join();
+        log.debug("Pending chat memory writes flushed in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private Optional<DynamoChatMemoryItem> findLastItem(String conversationId) {
+        return table.query(r -> r
+                .queryConditional(partition(conversationId))
                 .scanIndexForward(false) // highest SK first
                 .limit(1))
                 .items()
@@ -216,13 +803,20 @@ public class DynamoDbChatMemoryRepository implements ChatMemoryRepository {
 
     @Override
     public void deleteByConversationId(String conversationId) {
-        QueryConditional condition = QueryConditional.keyEqualTo(
-                Key.builder().partitionValue(conversationId).build());
+        awaitPendingWrites(conversationId);
+        cache.remove(conversationId);
 
-        table.query(r -> r.queryConditional(condition))
+        // Removes both layouts (message items and the conversation item), only the keys are needed
+        final List<Key> keys = table.query(r -> r
+                .queryConditional(partition(conversationId))
+                .attributesToProject("conversationId", "messageIndex"))
                 .items()
-                .forEach(table::deleteItem);
-        log.debug("deleteByConversationId called with conversationId {}", conversationId);
+                .stream()
+                .map(item -> Key.builder().partitionValue(item.getConversationId()).sortValue(item.getMessageIndex()).build())
+                .toList();
+
+        batchWrite(List.of(), keys);
+        log.debug("deleteByConversationId called with conversationId {}, {} items deleted", conversationId, keys.size());
     }
 
     /**
@@ -253,6 +847,10 @@ public class DynamoDbChatMemoryRepository implements ChatMemoryRepository {
             case UserMessage um -> {
                 item.setText(um.getText());
                 //writeMetadata(item, um.getMetadata());
+                if (TokenWindowChatMemory.isSummary(um)) {
+                    // Only the summary marker, so it is still the summary when read back
+                    writeMetadata(item, um.getMetadata());
+                }
             }
             case SystemMessage sm -> {
                 item.setText(sm.getText());
@@ -277,29 +875,79 @@ public class DynamoDbChatMemoryRepository implements ChatMemoryRepository {
      * Batch-write items in groups of 25 using the Enhanced Client.
      */
     private void batchPutItems(List<DynamoChatMemoryItem> items) {
-        if (items.isEmpty()) {
-            return;
-        }
+        batchWrite(items, List.of());
+    }
 
-        final int batchSize = 25;
-        for (int from = 0; from < items.size(); from += batchSize) {
-            int to = Math.min(from + batchSize, items.size());
-            List<DynamoChatMemoryItem> batch = items.subList(from, to);
+    /**
+     * Batch puts and deletes in groups of 25. Unprocessed items (throttling) are resubmitted with full jitter
+     * exponential backoff until the time budget runs out, then anything left is written one at a time (single item
+     * calls get the SDK's own retry policy) so we never leave a gap in messageIndex.
+     */
+    private void batchWrite(List<DynamoChatMemoryItem> puts, List<Key> deletes) {
+        final int total = puts.size() + deletes.size();
+        for (int from = 0; from < total; from += BATCH_SIZE) {
+            final int to = Math.min(from + BATCH_SIZE, total);
+            List<DynamoChatMemoryItem> batchPuts = puts.subList(Math.min(from, puts.size()), Math.min(to, puts.size()));
+            List<Key> batchDeletes = deletes.subList(Math.max(from - puts.size(), 0), Math.max(to - puts.size(), 0));
+
+            final long deadline = System.nanoTime() + BATCH_RETRY_BUDGET.toNanos();
+            for (int attempt = 0;; attempt++) {
+                final var writeBatch = WriteBatch.builder(DynamoChatMemoryItem.class)
+                        .mappedTableResource(table);
+                batchPuts.forEach(writeBatch::addPutItem);
+                batchDeletes.forEach(writeBatch::addDeleteItem);
+
+                batchWriteRequests.increment();
+                final var result = enhancedClient.batchWriteItem(BatchWriteItemEnhancedRequest.builder()
+                        .addWriteBatch(writeBatch.build())
+                        .build());
+
+                batchPuts = result.unprocessedPutItemsForTable(table);
+                batchDeletes = result.unprocessedDeleteItemsForTable(table);
+                final int unprocessed = batchPuts.size() + batchDeletes.size();
+                if (unprocessed == 0) {
+                    break;
+                }
+                unprocessedItems.add(unprocessed);
+
+                final long backoffMillis = ThreadLocalRandom.current()
+                        .nextLong(Math.min(BATCH_BACKOFF_CAP_MS, BATCH_BACKOFF_BASE_MS << Math.min(attempt, 10)) + 1);
+                if (System.nanoTime() + backoffMillis * 1_000_000 > deadline) {
+                    batchRetryBudgetExhausted.increment();
+                    log.warn("Batch write still has {} unprocessed items after {} attempts, writing them individually",
+                            unprocessed, attempt + 1);
+                    batchPuts.forEach(table::putItem);
+                    batchDeletes.forEach(table::deleteItem);
+                    break;
+                }
 
-            BatchWriteItemEnhancedRequest.Builder requestBuilder
-                    = BatchWriteItemEnhancedRequest.builder();
+                batchWriteRetries.increment();
+                log.debug("Batch write has {} unprocessed items, retry {} in {} ms", unprocessed, attempt + 1, backoffMillis);
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted retrying unprocessed chat memory items", e);
+                }
+            }
+        }
+    }
 
-            WriteBatch.Builder<DynamoChatMemoryItem> writeBatch
-                    = WriteBatch.builder(DynamoChatMemoryItem.class)
-                            .mappedTableResource(table);
+    /**
+     * Point in time view of the batch write counters.
+     *
+     * @param requests batchWriteItem calls made (including retries)
+     * @param retries resubmits of unprocessed items
+     * @param unprocessedItems total unprocessed items returned by Dynamo
+     * @param budgetExhausted times the retry budget ran out and items were written individually
+     */
+    public record BatchWriteStats(long requests, long retries, long unprocessedItems, long budgetExhausted) {
 
-            for (DynamoChatMemoryItem item : batch) {
-                writeBatch.addPutItem(item);
-            }
+    }
 
-            requestBuilder.addWriteBatch(writeBatch.build());
-            enhancedClient.batchWriteItem(requestBuilder.build());
-        }
+    public BatchWriteStats getBatchWriteStats() {
+        return new BatchWriteStats(batchWriteRequests.sum(), batchWriteRetries.sum(), unprocessedItems.sum(),
+                batchRetryBudgetExhausted.sum());
     }
 
     // -------------------------------------------------------------------------
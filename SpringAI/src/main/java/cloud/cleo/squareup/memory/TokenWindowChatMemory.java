@@ -0,0 +1,462 @@
+package cloud.cleo.squareup.memory;
+
+import cloud.cleo.squareup.cache.BoundedTtlCache;
+import cloud.cleo.squareup.enums.ChannelPlatform;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+/**
+ * Chat memory that sends the model a token budgeted window instead of a fixed number of messages.
+ *
+ * What is stored is still the full history (capped at maxMessages like MessageWindowChatMemory), but get() only returns
+ * the rolling summary (if any) plus the newest whole turns that fit the channel's token budget, with tool call/response
+ * pairs from earlier turns left out. Once the stored history no longer fits the budget, the older turns are folded into
+ * the summary by the model, and written back only if the history did not change in the meantime. That check and the
+ * write are done under the conversation's turn lock, so a turn can't slip in between them.
+ *
+ * The summary is stored as the opening user/assistant exchange rather than a SystemMessage. It changes per
+ * conversation, so it has to come after the static system prompt and outside the system blocks the prompt cache point
+ * covers, otherwise every turn with a summary misses the cache.
+ *
+ * Nothing is summarized in the background, a Lambda container is frozen as soon as the invocation returns. Callers
+ * run {@link #compactIfDue} where they can afford the wait: at the start of a Lex turn (under the lock the turn holds)
+ * and after the SMS replies are sent for Pinpoint. The summary call is bounded by the summary timeout, one that takes
+ * longer is abandoned and the history is left as it was.
+ *
+ * @author sjensen
+ */
+@Log4j2
+public class TokenWindowChatMemory implements ChatMemory {
+
+    /**
+     * Metadata marking the user message of the rolling summary exchange.
+     */
+    public static final String METADATA_KIND = "kind";
+    public static final String SUMMARY_KIND = "summary";
+
+    private static final String SUMMARY_PREFIX = "Summary of the earlier conversation: ";
+
+    private static final String SUMMARY_ACKNOWLEDGEMENT = "Understood, I'll keep that in mind.";
+
+    private static final String SUMMARY_INSTRUCTIONS = """
+            You maintain a running summary of a conversation between a customer and a store assistant.
+            Merge the previous summary (if any) and the messages below into one concise summary of at most 120 words.
+            Keep names, contact details, products, orders, preferences, promises made and open questions.
+            Reply with the summary text only.
+            """;
+
+    // Rough per message overhead (role, separators) on top of the content tokens
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    /**
+     * Token budgets for the history sent to the model, per channel.
+     *
+     * @param voice calls (short turns, latency matters most)
+     * @param text SMS and other text channels
+     * @param facebook Messenger
+     */
+    public record TokenBudgets(int voice, int text, int facebook) {
+
+        public int forChannel(boolean isVoice, ChannelPlatform platform) {
+            if (isVoice) {
+                return voice;
+            }
+            return platform == ChannelPlatform.FACEBOOK ? facebook : text;
+        }
+    }
+
+    /**
+     * Point in time view of the compaction counters.
+     *
+     * @param compactions summaries written
+     * @param skippedChanged summaries discarded because the history changed while summarizing
+     * @param abandoned summary calls that did not finish within the summary timeout (their result is discarded)
+     * @param failures summary calls that failed or returned nothing
+     */
+    public record CompactionStats(long compactions, long skippedChanged, long abandoned, long failures) {
+
+    }
+
+    private final ChatMemoryRepository repository;
+    private final ConversationLocks conversationLocks;
+    private final TokenCountEstimator estimator;
+    private final ChatModel summaryModel;
+    private final Executor executor;
+    private final int maxMessages;
+    private final TokenBudgets budgets;
+    private final ChatOptions summaryOptions;
+    private final Duration summaryTimeout;
+
+    // Budget for each conversation, set per turn from the channel it arrived on
+    private final BoundedTtlCache<String, Integer> conversationBudgets = new BoundedTtlCache<>(1000, Duration.ofHours(1));
+
+    // Conversations with a summary call in flight (an abandoned one can still be running)
+    private final Set<String> summarizing = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder compactions = new LongAdder();
+    private final LongAdder skippedChanged = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param repository
+     * @param conversationLocks turn locks, held while a summary is checked and written
+     * @param estimator
+     * @param summaryModel model used to summarize, null disables summarization (older turns are just left out)
+     * @param summaryOptions options for the summary calls (model and max tokens)
+     * @param executor runs the summary calls, so they can be abandoned after the timeout
+     * @param maxMessages hard cap on stored messages
+     * @param budgets
+     * @param summaryTimeout longest a caller waits for a summary call
+     */
+    public TokenWindowChatMemory(ChatMemoryRepository repository, ConversationLocks conversationLocks,
+            TokenCountEstimator estimator, ChatModel summaryModel, Executor executor, int maxMessages,
+            TokenBudgets budgets, ChatOptions summaryOptions, Duration summaryTimeout) {
+        this.repository = repository;
+        this.conversationLocks = conversationLocks;
+        this.estimator = estimator;
+        this.summaryModel = summaryModel;
+        this.executor = executor;
+        this.maxMessages = maxMessages;
+        this.budgets = budgets;
+        this.summaryOptions = summaryOptions;
+        this.summaryTimeout = summaryTimeout;
+    }
+
+    /**
+     * Use the budget of the channel this turn arrived on for the conversation.
+     *
+     * @param conversationId
+     * @param isVoice
+     * @param platform
+     */
+    public void useChannelBudget(String conversationId, boolean isVoice, ChannelPlatform platform) {
+        conversationBudgets.put(conversationId, budgets.forChannel(isVoice, platform));
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        final var memory = new ArrayList<>(repository.findByConversationId(conversationId));
+
+        // A new system message replaces the old ones, same as MessageWindowChatMemory
+        if (messages.stream().anyMatch(m -> m.getMessageType() == MessageType.SYSTEM)) {
+            memory.removeIf(m -> m.getMessageType() == MessageType.SYSTEM);
+        }
+        memory.addAll(messages);
+
+        // Hard cap, keeping the summary
+        if (memory.size() > maxMessages) {
+            final int summary = summaryLength(memory);
+            final int from = memory.size() - maxMessages + summary;
+            final var capped = new ArrayList<Message>(maxMessages);
+            capped.addAll(memory.subList(0, summary));
+            capped.addAll(memory.subList(from, memory.size()));
+            memory.clear();
+            memory.addAll(capped);
+        }
+
+        repository.saveAll(conversationId, memory);
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        final var memory = repository.findByConversationId(conversationId);
+        final var window = window(memory, budget(conversationId));
+        if (window.size() < memory.size()) {
+            log.debug("Chat memory for {} windowed to {} of {} messages", conversationId, window.size(), memory.size());
+        }
+        return window;
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        // A summary still being written finds the history changed and is discarded
+        repository.deleteByConversationId(conversationId);
+    }
+
+    /**
+     * Fold the older turns into the summary when the stored history no longer fits the conversation's budget. Runs
+     * under the conversation's turn lock (a turn calling this already holds it) and waits at most the summary timeout
+     * for the model. Never throws, a compaction that fails leaves the history as it was for a later turn to retry.
+     *
+     * @param conversationId
+     */
+    public void compactIfDue(String conversationId) {
+        if (summaryModel == null) {
+            return;
+        }
+        try (var turn = conversationLocks.acquire(conversationId)) {
+            final var memory = repository.findByConversationId(conversationId);
+            if (memory.isEmpty() || estimate(memory) <= budget(conversationId)) {
+                return;
+            }
+            compact(conversationId, memory);
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Chat memory compaction failed for {}", conversationId, e);
+        }
+    }
+
+    /**
+     * {@link #compactIfDue(String)} for several conversations at once, each on the executor.
+     *
+     * @param conversationIds
+     */
+    public void compactIfDue(Collection<String> conversationIds) {
+        if (summaryModel == null || conversationIds.isEmpty()) {
+            return;
+        }
+        CompletableFuture.allOf(conversationIds.stream()
+                .map(id -> CompletableFuture.runAsync(() -> compactIfDue(id), executor))
+                .toArray(CompletableFuture[]::new))
+                .join();
+    }
+
+    public CompactionStats getCompactionStats() {
+        return new CompactionStats(compactions.sum(), skippedChanged.sum(), abandoned.sum(), failures.sum());
+    }
+
+    /**
+     * Summary (if any) followed by the newest whole turns (starting at a user message) that fit the budget, always at
+     * least the latest turn. Tool call/response pairs are only kept for the latest turn.
+     */
+    List<Message> window(List<Message> memory, int budget) {
+        if (memory.isEmpty()) {
+            return memory;
+        }
+        final int first = summaryLength(memory);
+        final int start = windowStart(memory, first, budget - estimate(memory.subList(0, first)));
+
+        final var window = new ArrayList<Message>(memory.size() - start + first);
+        window.addAll(memory.subList(0, first));
+        final int lastUser = lastUserIndex(memory);
+        for (int i = start; i < memory.size(); i++) {
+            final var msg = i < lastUser ? withoutToolCalls(memory.get(i)) : memory.get(i);
+            if (msg != null) {
+                window.add(msg);
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Index of the oldest user message from which everything after fits the budget.
+     */
+    private int windowStart(List<Message> memory, int first, int budget) {
+        int start = memory.size();
+        int used = 0;
+        final int lastUser = lastUserIndex(memory);
+        for (int i = memory.size() - 1; i >= first; i--) {
+            final var msg = memory.get(i);
+            // Earlier tool traffic is dropped from the window, so it doesn't count
+            if (i < lastUser && withoutToolCalls(msg) == null) {
+                continue;
+            }
+            used += estimate(msg);
+            if (msg.getMessageType() == MessageType.USER) {
+                if (used > budget && start < memory.size()) {
+                    break;
+                }
+                start = i;
+            }
+        }
+        // No user message at all, keep what there is
+        return start == memory.size() ? first : start;
+    }
+
+    /**
+     * Fold everything before the half budget window into the summary.
+     */
+    void compact(String conversationId, List<Message> snapshot) {
+        final int first = summaryLength(snapshot);
+        // Leave room for a few more turns before the next compaction
+        final int keepFrom = windowStart(snapshot, first, budget(conversationId) / 2);
+        if (keepFrom <= first) {
+            return;
+        }
+
+        final var transcript = new StringBuilder(1024);
+        if (first > 0) {
+            final String previous = snapshot.getFirst().getText();
+            transcript.append("Previous summary:\n")
+                    .append(previous.startsWith(SUMMARY_PREFIX) ? previous.substring(SUMMARY_PREFIX.length()) : previous)
+                    .append("\n\n");
+        }
+        transcript.append("Messages:\n");
+        for (int i = first; i < keepFrom; i++) {
+            appendTranscript(transcript, snapshot.get(i));
+        }
+
+        final String summary = summarize(conversationId, transcript.toString());
+        if (summary == null) {
+            return;
+        }
+
+        final var compacted = new ArrayList<Message>(snapshot.size() - keepFrom + 2);
+        compacted.add(UserMessage.builder()
+                .text(SUMMARY_PREFIX + summary)
+                .metadata(Map.of(METADATA_KIND, SUMMARY_KIND))
+                .build());
+        compacted.add(AssistantMessage.builder().content(SUMMARY_ACKNOWLEDGEMENT).build());
+        compacted.addAll(snapshot.subList(keepFrom, snapshot.size()));
+
+        // Only apply against the exact history we summarized, a turn for the conversation waits until it's written
+        try (var turn = conversationLocks.acquire(conversationId)) {
+            if (!repository.findByConversationId(conversationId).equals(snapshot)) {
+                skippedChanged.increment();
+                log.debug("Chat memory for {} changed while summarizing, summary discarded", conversationId);
+                return;
+            }
+            repository.saveAll(conversationId, compacted);
+        }
+        compactions.increment();
+        log.debug("Chat memory for {} compacted, {} messages folded into the summary", conversationId, keepFrom - first);
+    }
+
+    /**
+     * Call the summary model on the executor, waiting at most the summary timeout.
+     *
+     * @return the summary, or null when it failed, took too long or one is already in flight for the conversation
+     */
+    private String summarize(String conversationId, String transcript) {
+        if (!summarizing.add(conversationId)) {
+            // An abandoned call is still running, don't pay for another until it's done
+            return null;
+        }
+        final var call = CompletableFuture.supplyAsync(() -> summaryModel.call(new Prompt(
+                List.of(SystemMessage.builder().text(SUMMARY_INSTRUCTIONS).build(),
+                        UserMessage.builder().text(transcript).build()),
+                summaryOptions))
+                .getResult().getOutput().getText(), executor)
+                .whenComplete((summary, t) -> summarizing.remove(conversationId));
+        try {
+            final String summary = call.get(summaryTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (summary == null || summary.isBlank()) {
+                failures.increment();
+                return null;
+            }
+            return summary.strip();
+        } catch (TimeoutException e) {
+            abandoned.increment();
+            log.warn("Chat memory summary for {} did not finish in {}, abandoned", conversationId, summaryTimeout);
+        } catch (ExecutionException e) {
+            failures.increment();
+            log.warn("Chat memory summary failed for {}", conversationId, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandoned.increment();
+        }
+        return null;
+    }
+
+    private static void appendTranscript(StringBuilder transcript, Message msg) {
+        switch (msg) {
+            case UserMessage um ->
+                transcript.append("Customer: ").append(um.getText()).append('\n');
+            case AssistantMessage am when am.getText() != null && !am.getText().isBlank() ->
+                transcript.append("Assistant: ").append(am.getText()).append('\n');
+            default -> {
+                // Tool traffic and blank tool call messages, the assistant's answers carry the outcome
+            }
+        }
+    }
+
+    /**
+     * @return the message without tool call/response content, or null when nothing else is left of it
+     */
+    private static Message withoutToolCalls(Message msg) {
+        return switch (msg) {
+            case ToolResponseMessage trm ->
+                null;
+            case AssistantMessage am when am.hasToolCalls() ->
+                am.getText() == null || am.getText().isBlank()
+                ? null
+                : AssistantMessage.builder().content(am.getText()).properties(am.getMetadata()).build();
+            default ->
+                msg;
+        };
+    }
+
+    private static int lastUserIndex(List<Message> memory) {
+        for (int i = memory.size() - 1; i >= 0; i--) {
+            if (memory.get(i).getMessageType() == MessageType.USER) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static boolean isSummary(Message msg) {
+        return msg.getMessageType() == MessageType.USER && SUMMARY_KIND.equals(msg.getMetadata().get(METADATA_KIND));
+    }
+
+    /**
+     * @return number of leading messages that make up the summary exchange (summary and acknowledgement), 0 if none
+     */
+    private static int summaryLength(List<Message> memory) {
+        return !memory.isEmpty() && isSummary(memory.getFirst()) ? Math.min(2, memory.size()) : 0;
+    }
+
+    private int budget(String conversationId) {
+        final Integer budget = conversationBudgets.get(conversationId);
+        return budget != null ? budget : budgets.text();
+    }
+
+    private int estimate(List<Message> messages) {
+        int total = 0;
+        for (final var msg : messages) {
+            total += estimate(msg);
+        }
+        return total;
+    }
+
+    private int estimate(Message msg) {
+        int tokens = MESSAGE_OVERHEAD_TOKENS + tokens(msg.getText());
+        switch (msg) {
+            case AssistantMessage am when am.hasToolCalls() -> {
+                for (final var call : am.getToolCalls()) {
+                    tokens += tokens(call.name()) + tokens(call.arguments());
+                }
+            }
+            case ToolResponseMessage trm -> {
+                for (final var response : trm.getResponses()) {
+                    tokens += tokens(response.responseData());
+                }
+            }
+            default -> {
+            }
+        }
+        return tokens;
+    }
+
+    private int tokens(String text) {
+        return text == null || text.isEmpty() ? 0 : estimator.estimate(text);
+    }
+}
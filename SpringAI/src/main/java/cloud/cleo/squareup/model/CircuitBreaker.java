@@ -0,0 +1,197 @@
+package cloud.cleo.squareup.model;
+
+import cloud.cleo.squareup.model.FailoverChatModel.BreakerSettings;
+import java.util.function.LongSupplier;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Count based circuit breaker over the last N calls. Opens when enough calls are in the window and either the error
+ * rate or the slow call rate reaches its threshold. After the open duration one probe call at a time is let through
+ * (half open), a good probe closes the breaker with an empty window, a bad one opens it again.
+ *
+ * Every state change starts a new generation. A call's {@link Permit} carries the generation it was let through in, and
+ * a result from an earlier generation (a call still running when the breaker opened or closed) is ignored, so only the
+ * probe's own result decides a half open breaker.
+ *
+ * @author sjensen
+ */
+@Log4j2
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Point in time view.
+     *
+     * @param state current state
+     * @param calls calls in the window
+     * @param failureRate error rate over the window
+     * @param slowRate slow call rate over the window
+     * @param opened times it opened
+     * @param rejected calls turned away while open
+     */
+    record Stats(State state, int calls, double failureRate, double slowRate, long opened, long rejected) {
+
+    }
+
+    /**
+     * Leave to make one call.
+     *
+     * @param generation state generation the call was let through in
+     * @param probe the half open probe
+     */
+    record Permit(long generation, boolean probe) {
+
+    }
+
+    private final String name;
+    private final BreakerSettings settings;
+    private final LongSupplier nanoClock;
+    private final long slowCallNanos;
+
+    // Ring of outcomes, slow and failed are counted separately (a call can be both)
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int size;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private long openedAtNanos;
+    private boolean probeInFlight;
+    private long opened;
+    private long rejected;
+
+    CircuitBreaker(String name, BreakerSettings settings, LongSupplier nanoClock) {
+        this.name = name;
+        this.settings = settings;
+        this.nanoClock = nanoClock;
+        this.slowCallNanos = settings.slowCall().toNanos();
+        this.failed = new boolean[settings.window()];
+        this.slow = new boolean[settings.window()];
+    }
+
+    /**
+     * @return the permit when the call may go ahead (it must then be followed by {@link #onResult} or
+     * {@link #release}), null when it is turned away
+     */
+    synchronized Permit tryAcquire() {
+        switch (state) {
+            case CLOSED -> {
+                return new Permit(generation, false);
+            }
+            case OPEN -> {
+                if (nanoClock.getAsLong() - openedAtNanos < settings.openDuration().toNanos()) {
+                    rejected++;
+                    return null;
+                }
+                log.info("Circuit {} half open, sending a probe", name);
+                transition(State.HALF_OPEN);
+                probeInFlight = true;
+                return new Permit(generation, true);
+            }
+            default -> {
+                if (probeInFlight) {
+                    rejected++;
+                    return null;
+                }
+                probeInFlight = true;
+                return new Permit(generation, true);
+            }
+        }
+    }
+
+    /**
+     * Record how a permitted call went. Ignored when the breaker changed state since the permit was given.
+     *
+     * @param permit from {@link #tryAcquire}
+     * @param success the call returned a response
+     * @param latencyNanos how long it took
+     */
+    synchronized void onResult(Permit permit, boolean success, long latencyNanos) {
+        if (permit.generation() != generation) {
+            return;
+        }
+        final boolean wasSlow = latencyNanos >= slowCallNanos;
+        if (permit.probe()) {
+            probeInFlight = false;
+            if (success && !wasSlow) {
+                log.info("Circuit {} closed, probe succeeded", name);
+                transition(State.CLOSED);
+                clearWindow();
+            } else {
+                open();
+            }
+            return;
+        }
+
+        record(!success, wasSlow);
+        if (state == State.CLOSED && size >= settings.minCalls()
+                && (failureRate() >= settings.failureRate() || slowRate() >= settings.slowRate())) {
+            open();
+        }
+    }
+
+    /**
+     * Give back a permit whose call says nothing about the provider's health (a bad request for example). A probe
+     * slot is freed for the next call.
+     *
+     * @param permit from {@link #tryAcquire}
+     */
+    synchronized void release(Permit permit) {
+        if (permit.probe() && permit.generation() == generation) {
+            probeInFlight = false;
+        }
+    }
+
+    synchronized Stats getStats() {
+        return new Stats(state, size, failureRate(), slowRate(), opened, rejected);
+    }
+
+    private void open() {
+        log.warn("Circuit {} open for {} (failure rate {}, slow rate {})", name, settings.openDuration(),
+                String.format("%.2f", failureRate()), String.format("%.2f", slowRate()));
+        transition(State.OPEN);
+        openedAtNanos = nanoClock.getAsLong();
+        opened++;
+    }
+
+    private void transition(State to) {
+        state = to;
+        generation++;
+    }
+
+    private void record(boolean isFailure, boolean isSlow) {
+        if (size == failed.length) {
+            // Drop the oldest outcome
+            failures -= failed[next] ? 1 : 0;
+            slowCalls -= slow[next] ? 1 : 0;
+        } else {
+            size++;
+        }
+        failed[next] = isFailure;
+        slow[next] = isSlow;
+        failures += isFailure ? 1 : 0;
+        slowCalls += isSlow ? 1 : 0;
+        next = (next + 1) % failed.length;
+    }
+
+    private void clearWindow() {
+        next = 0;
+        size = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+
+    private double failureRate() {
+        return size == 0 ? 0d : (double) failures / size;
+    }
+
+    private double slowRate() {
+        return size == 0 ? 0d : (double) slowCalls / size;
+    }
+}
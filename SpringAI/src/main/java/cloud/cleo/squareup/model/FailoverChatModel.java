@@ -0,0 +1,230 @@
+package cloud.cleo.squareup.model;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+/**
+ * Providers in priority order, each behind its own {@link CircuitBreaker}. A call goes to the first provider whose
+ * breaker lets it through, a provider failure (transport error, 5xx, throttling or timeout) moves on to the next one
+ * right away. When Bedrock is throttling or degraded its breaker opens and turns go straight to OpenAI (no slow timeout
+ * first) until a half open probe finds it healthy again. When every breaker is open the call fails fast.
+ *
+ * Any other error (a bad request, a tool that threw, an interrupted thread) would fail the same way on every provider,
+ * so it is rethrown as is without failing over or counting against the breaker.
+ *
+ * Prompts from the ChatClient carry a copy of the first provider's options, so before going to another provider they
+ * are rebuilt from that provider's defaults with the tools and tool context carried over.
+ *
+ * @author sjensen
+ */
+@Log4j2
+public final class FailoverChatModel implements ChatModel {
+
+    /**
+     * Circuit breaker settings, the same for every provider.
+     *
+     * @param window calls kept for the rates
+     * @param minCalls calls needed in the window before it can open
+     * @param failureRate error rate that opens it, 0 to 1
+     * @param slowCall calls at least this long count as slow
+     * @param slowRate slow call rate that opens it, 0 to 1
+     * @param openDuration how long it stays open before a probe
+     */
+    public record BreakerSettings(int window, int minCalls, double failureRate, Duration slowCall, double slowRate, Duration openDuration) {
+
+        public BreakerSettings {
+            if (window < 1 || minCalls < 1 || minCalls > window) {
+                throw new IllegalArgumentException("window and minCalls must be at least 1 and minCalls no more than window");
+            }
+        }
+    }
+
+    private record Provider(String name, ChatModel model, CircuitBreaker breaker) {
+
+    }
+
+    /**
+     * Point in time view of one provider.
+     *
+     * @param state CLOSED, OPEN or HALF_OPEN
+     * @param calls calls in the breaker window
+     * @param failureRate error rate over the window
+     * @param slowRate slow call rate over the window
+     * @param opened times the breaker opened
+     * @param rejected calls turned away while open
+     */
+    public record ProviderStats(String state, int calls, double failureRate, double slowRate, long opened, long rejected) {
+
+    }
+
+    /**
+     * @param providers by name, in priority order
+     * @param failovers calls answered by a provider other than the first
+     * @param unavailable calls failed fast with every breaker open
+     */
+    public record Stats(Map<String, ProviderStats> providers, long failovers, long unavailable) {
+
+    }
+
+    private final List<Provider> providers;
+    private final LongSupplier nanoClock;
+
+    private final LongAdder failovers = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+
+    /**
+     * @param models provider name to model, in priority order
+     * @param settings breaker settings
+     */
+    public FailoverChatModel(LinkedHashMap<String, ChatModel> models, BreakerSettings settings) {
+        this(models, settings, System::nanoTime);
+    }
+
+    FailoverChatModel(LinkedHashMap<String, ChatModel> models, BreakerSettings settings, LongSupplier nanoClock) {
+        if (models.isEmpty()) {
+            throw new IllegalArgumentException("At least one provider is required");
+        }
+        this.nanoClock = nanoClock;
+        this.providers = models.entrySet().stream()
+                .map(e -> new Provider(e.getKey(), e.getValue(), new CircuitBreaker(e.getKey(), settings, nanoClock)))
+                .toList();
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        RuntimeException lastFailure = null;
+        final var skipped = new ArrayList<String>(providers.size());
+        for (int i = 0; i < providers.size(); i++) {
+            final var provider = providers.get(i);
+            final var permit = provider.breaker().tryAcquire();
+            if (permit == null) {
+                skipped.add(provider.name());
+                continue;
+            }
+
+            final long start = nanoClock.getAsLong();
+            try {
+                final var response = provider.model().call(forProvider(prompt, provider.model()));
+                provider.breaker().onResult(permit, true, nanoClock.getAsLong() - start);
+                if (i > 0) {
+                    failovers.increment();
+                    log.info("Answered by {} (skipped {})", provider.name(), skipped);
+                }
+                return response;
+            } catch (RuntimeException e) {
+                if (!isProviderFailure(e)) {
+                    provider.breaker().release(permit);
+                    if (lastFailure != null) {
+                        e.addSuppressed(lastFailure);
+                    }
+                    throw e;
+                }
+                provider.breaker().onResult(permit, false, nanoClock.getAsLong() - start);
+                log.warn("Model provider {} failed, trying the next one", provider.name(), e);
+                if (lastFailure != null) {
+                    e.addSuppressed(lastFailure);
+                }
+                lastFailure = e;
+                skipped.add(provider.name());
+            }
+        }
+
+        if (lastFailure != null) {
+            throw lastFailure;
+        }
+        unavailable.increment();
+        throw new IllegalStateException("No model provider available, circuits open for " + skipped);
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        // Not failed over, nothing here streams
+        return providers.getFirst().model().stream(prompt);
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return providers.getFirst().model().getDefaultOptions();
+    }
+
+    public Stats getStats() {
+        final var byName = new LinkedHashMap<String, ProviderStats>();
+        for (final var provider : providers) {
+            final var stats = provider.breaker().getStats();
+            byName.put(provider.name(), new ProviderStats(stats.state().name(), stats.calls(), stats.failureRate(),
+                    stats.slowRate(), stats.opened(), stats.rejected()));
+        }
+        return new Stats(Collections.unmodifiableMap(byName), failovers.sum(), unavailable.sum());
+    }
+
+    /**
+     * Is this the provider's fault (transport error, 5xx, throttling or timeout) anywhere in the cause chain, as opposed
+     * to something every provider would fail on the same way.
+     */
+    static boolean isProviderFailure(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            // Spring AI retry classifies HTTP errors (OpenAI): 5xx and 429 are transient, other 4xx are not
+            if (cause instanceof TransientAiException) {
+                return true;
+            }
+            if (cause instanceof NonTransientAiException) {
+                return false;
+            }
+            if (cause instanceof RestClientResponseException e) {
+                return isProviderStatus(e.getStatusCode().value());
+            }
+            // AWS SDK (Bedrock): throttling or 5xx from the service, client side errors are connections and timeouts
+            if (cause instanceof SdkServiceException e) {
+                return e.isThrottlingException() || isProviderStatus(e.statusCode());
+            }
+            if (cause instanceof SdkClientException || cause instanceof ResourceAccessException
+                    || cause instanceof IOException || cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isProviderStatus(int status) {
+        return status >= 500 || status == 429 || status == 408;
+    }
+
+    /**
+     * The prompt with the target provider's default options, keeping the tools and tool context of the original. The
+     * prompt as is when it already has that provider's options type.
+     */
+    static Prompt forProvider(Prompt prompt, ChatModel target) {
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions from)
+                || !(target.getDefaultOptions() instanceof ToolCallingChatOptions defaults)
+                || from.getClass() == defaults.getClass()) {
+            return prompt;
+        }
+        final ToolCallingChatOptions to = defaults.copy();
+        to.setToolCallbacks(from.getToolCallbacks());
+        to.setToolNames(from.getToolNames());
+        to.setToolContext(from.getToolContext());
+        to.setInternalToolExecutionEnabled(from.getInternalToolExecutionEnabled());
+        return prompt.mutate().chatOptions(to).build();
+    }
+}
@@ -0,0 +1,215 @@
+package cloud.cleo.squareup.model;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+/**
+ * Hedged requests to cut tail latency. The primary call gets until the adaptive deadline (a percentile of recent
+ * primary latencies, clamped between a min and max delay), after that the same prompt goes to the secondary model
+ * (another region or model) and the first complete response wins, the other call is cancelled.
+ *
+ * Hedges are capped by a budget: every call earns {@code maxHedgeRate} of a hedge (saved up to a small burst), every
+ * hedge spends one. When the primary is slow across the board (a regional brownout) the budget runs dry and calls just
+ * wait on the primary, rather than doubling load on Bedrock.
+ *
+ * The tool loop runs inside the model call, so both attempts may call tools. Read only tools don't care and the tools
+ * with side effects (SMS, email) already go through the idempotency cache, see
+ * {@link cloud.cleo.squareup.tools.AbstractTool}.
+ *
+ * @author sjensen
+ */
+@Log4j2
+public final class HedgingChatModel implements ChatModel {
+
+    // Samples kept for the percentile and how many before it is trusted (max delay until then)
+    private static final int WINDOW = 200;
+    private static final int MIN_SAMPLES = 20;
+    // Hedges that can be saved up
+    private static final double MAX_CREDITS = 5;
+
+    private final ChatModel primary;
+    private final ChatModel secondary;
+    private final ExecutorService executor;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final double maxHedgeRate;
+
+    private final LatencyWindow primaryLatency = new LatencyWindow(WINDOW);
+    private double credits = MAX_CREDITS;
+    private long creditedCalls;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder budgetDenied = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Point in time view of the counters.
+     *
+     * @param calls calls made
+     * @param hedges calls where the secondary was also fired
+     * @param hedgeWins hedged calls answered by the secondary
+     * @param budgetDenied calls past the deadline that could not hedge (budget spent)
+     * @param failures calls that threw
+     * @param deadlineMillis current hedge deadline
+     */
+    public record Stats(long calls, long hedges, long hedgeWins, long budgetDenied, long failures, long deadlineMillis) {
+
+        public double hedgeRate() {
+            return calls == 0 ? 0d : (double) hedges / calls;
+        }
+    }
+
+    /**
+     * @param primary model called first
+     * @param secondary model called when the primary is past the deadline
+     * @param executor runs both calls (virtual threads)
+     * @param percentile primary latency percentile used as the deadline (0.95)
+     * @param minDelay never hedge sooner than this
+     * @param maxDelay never wait longer than this to hedge (and the deadline until there are enough samples)
+     * @param maxHedgeRate fraction of calls that may hedge over time
+     */
+    public HedgingChatModel(ChatModel primary, ChatModel secondary, ExecutorService executor, double percentile,
+            Duration minDelay, Duration maxDelay, double maxHedgeRate) {
+        if (minDelay.compareTo(maxDelay) > 0) {
+            throw new IllegalArgumentException("minDelay must not be more than maxDelay");
+        }
+        this.primary = primary;
+        this.secondary = secondary;
+        this.executor = executor;
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.maxHedgeRate = maxHedgeRate;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        calls.increment();
+        final var completion = new ExecutorCompletionService<ChatResponse>(executor);
+        final long start = System.nanoTime();
+        final var primaryCall = completion.submit(() -> primary.call(prompt));
+        Future<ChatResponse> hedgeCall = null;
+        try {
+            var done = completion.poll(deadlineNanos(), TimeUnit.NANOSECONDS);
+            if (done != null) {
+                final var response = result(done);
+                primaryLatency.record(System.nanoTime() - start);
+                return response;
+            }
+
+            if (!tryHedge()) {
+                budgetDenied.increment();
+                final var response = result(primaryCall);
+                primaryLatency.record(System.nanoTime() - start);
+                return response;
+            }
+
+            hedges.increment();
+            log.debug("Primary model past {} ms, hedging to secondary", (System.nanoTime() - start) / 1_000_000);
+            hedgeCall = completion.submit(() -> secondary.call(prompt));
+
+            done = completion.take();
+            ChatResponse response;
+            try {
+                response = result(done);
+            } catch (RuntimeException firstFailure) {
+                // One side failed, the other may still answer
+                try {
+                    done = completion.take();
+                    response = result(done);
+                } catch (RuntimeException secondFailure) {
+                    firstFailure.addSuppressed(secondFailure);
+                    throw firstFailure;
+                }
+            }
+            // A hedge win only tells us the primary took at least this long, still worth a sample
+            primaryLatency.record(System.nanoTime() - start);
+            if (done == hedgeCall) {
+                hedgeWins.increment();
+            }
+            return response;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            failures.increment();
+            throw new IllegalStateException("Interrupted waiting on model response", ie);
+        } catch (RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            // No-op for the winner, interrupts the loser
+            primaryCall.cancel(true);
+            if (hedgeCall != null) {
+                hedgeCall.cancel(true);
+            }
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        // Not hedged, nothing here streams
+        return primary.stream(prompt);
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return primary.getDefaultOptions();
+    }
+
+    public Stats getStats() {
+        return new Stats(calls.sum(), hedges.sum(), hedgeWins.sum(), budgetDenied.sum(), failures.sum(),
+                deadlineNanos() / 1_000_000);
+    }
+
+    /**
+     * @return how long the primary gets before hedging
+     */
+    long deadlineNanos() {
+        if (primaryLatency.size() < MIN_SAMPLES) {
+            return maxDelayNanos;
+        }
+        return Math.clamp(primaryLatency.percentile(percentile), minDelayNanos, maxDelayNanos);
+    }
+
+    private synchronized boolean tryHedge() {
+        // Earned per call rather than per hedge check, so the rate is against all calls
+        final long total = calls.sum();
+        credits = Math.min(MAX_CREDITS, credits + maxHedgeRate * (total - creditedCalls));
+        creditedCalls = total;
+        if (credits < 1) {
+            return false;
+        }
+        credits--;
+        return true;
+    }
+
+    private static ChatResponse result(Future<ChatResponse> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            if (ee.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(ee.getCause());
+        } catch (CancellationException ce) {
+            throw new IllegalStateException("Model call cancelled", ce);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package cloud.cleo.squareup.model;
+
+import java.util.Arrays;
+
+/**
+ * The last N latencies in a ring, percentiles are taken over whatever is in the ring. Sorting a few hundred longs is
+ * nothing next to a model call, so no histogram buckets.
+ *
+ * @author sjensen
+ */
+final class LatencyWindow {
+
+    private final long[] samples;
+    private int next;
+    private int size;
+
+    LatencyWindow(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param percentile 0 to 1 (0.95 for p95)
+     * @return nearest rank percentile, 0 when empty
+     */
+    long percentile(double percentile) {
+        final long[] copy;
+        synchronized (this) {
+            if (size == 0) {
+                return 0;
+            }
+            copy = Arrays.copyOf(samples, size);
+        }
+        Arrays.sort(copy);
+        final int rank = (int) Math.ceil(percentile * copy.length);
+        return copy[Math.clamp(rank - 1, 0, copy.length - 1)];
+    }
+}
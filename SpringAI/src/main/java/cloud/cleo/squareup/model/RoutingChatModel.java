@@ -0,0 +1,250 @@
+package cloud.cleo.squareup.model;
+
+import static cloud.cleo.squareup.service.CityRagService.CTX_CITY_PREFETCH_FUTURE;
+import static cloud.cleo.squareup.tools.AbstractTool.DRIVING_DIRECTIONS_VOICE_FUNCTION_NAME;
+import static cloud.cleo.squareup.tools.AbstractTool.PRIVATE_SHOPPING_VOICE_FUNCTION_NAME;
+import static cloud.cleo.squareup.tools.AbstractTool.SEND_EMAIL_FUNCTION_NAME;
+import static cloud.cleo.squareup.tools.AbstractTool.TRANSFER_FUNCTION_NAME;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import reactor.core.publisher.Flux;
+
+/**
+ * Picks a model tier per turn from cheap signals, so "what are your hours" goes to a nano/lite model and a long
+ * multi-tool or city question goes to the stronger one. Signals, in order:
+ * <ul>
+ * <li>City RAG, the prefetch keyword check matched (the prefetch future is in the tool context)</li>
+ * <li>Tools, more tools expected from keywords than the fast tier is trusted with</li>
+ * <li>Long, more words in the transcript than the threshold</li>
+ * <li>Depth, more user turns in the prompt history than the threshold</li>
+ * </ul>
+ * Anything else is simple and goes to the fast tier. Every routed turn is logged with its signals and per tier
+ * latency and token counts are kept so the thresholds can be tuned from real traffic.
+ *
+ * @author sjensen
+ */
+@Log4j2
+public final class RoutingChatModel implements ChatModel {
+
+    public enum Tier {
+        FAST, STRONG
+    }
+
+    /**
+     * Why a turn went where it did.
+     */
+    public enum Reason {
+        SIMPLE, CITY_RAG, TOOLS, LONG, DEPTH
+    }
+
+    /**
+     * Upper limits for the fast tier, anything over goes strong.
+     *
+     * @param maxWords transcript words
+     * @param maxTools tools expected from keywords
+     * @param maxDepth earlier user turns in the prompt
+     */
+    public record Thresholds(int maxWords, int maxTools, int maxDepth) {
+
+    }
+
+    /**
+     * What the router looked at for one turn.
+     *
+     * @param words transcript words
+     * @param cityRag city prefetch keyword matched
+     * @param expectedTools offered tools whose keywords are in the transcript
+     * @param depth earlier user turns in the prompt
+     */
+    record Signals(int words, boolean cityRag, Set<String> expectedTools, int depth) {
+
+    }
+
+    /**
+     * Point in time view of one tier.
+     *
+     * @param calls calls routed here
+     * @param failures calls that threw
+     * @param p50Millis median latency (last 200 calls)
+     * @param p95Millis p95 latency (last 200 calls)
+     * @param promptTokens input tokens reported
+     * @param completionTokens output tokens reported
+     */
+    public record TierStats(long calls, long failures, long p50Millis, long p95Millis, long promptTokens, long completionTokens) {
+
+        public double avgPromptTokens() {
+            return calls == 0 ? 0d : (double) promptTokens / calls;
+        }
+    }
+
+    /**
+     * @param fast fast tier counters
+     * @param strong strong tier counters
+     * @param reasons turns by routing reason
+     */
+    public record Stats(TierStats fast, TierStats strong, Map<Reason, Long> reasons) {
+
+        public double fastRatio() {
+            final long total = fast.calls() + strong.calls();
+            return total == 0 ? 0d : (double) fast.calls() / total;
+        }
+    }
+
+    // English keywords for the tools that usually mean a multi step answer, same idea as the city prefetch check
+    private static final Map<String, Pattern> TOOL_HINTS = Map.of(
+            "store_product_item", hint("have|carry|sell|stock|price|cost|how much|looking for"),
+            "getStoreWeather", hint("weather|rain|snow|temperature|forecast|cold|hot"),
+            "team_members", hint("employee|staff|manager|owner|who works"),
+            TRANSFER_FUNCTION_NAME, hint("talk to|speak to|speak with|person|human|transfer"),
+            SEND_EMAIL_FUNCTION_NAME, hint("email|message|leave a note"),
+            DRIVING_DIRECTIONS_VOICE_FUNCTION_NAME, hint("directions|address|located|how do i get"),
+            PRIVATE_SHOPPING_VOICE_FUNCTION_NAME, hint("private shopping|appointment"));
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final ChatModel fast;
+    private final ChatModel strong;
+    private final Thresholds thresholds;
+
+    private final Map<Tier, TierMetrics> metrics = new EnumMap<>(Tier.class);
+    private final Map<Reason, LongAdder> reasons = new EnumMap<>(Reason.class);
+
+    /**
+     * @param fast nano/lite model for simple turns
+     * @param strong model for everything else
+     * @param thresholds fast tier limits
+     */
+    public RoutingChatModel(ChatModel fast, ChatModel strong, Thresholds thresholds) {
+        this.fast = fast;
+        this.strong = strong;
+        this.thresholds = thresholds;
+        for (final var tier : Tier.values()) {
+            metrics.put(tier, new TierMetrics());
+        }
+        for (final var reason : Reason.values()) {
+            reasons.put(reason, new LongAdder());
+        }
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        final var signals = signals(prompt);
+        final var reason = reason(signals, thresholds);
+        final var tier = reason == Reason.SIMPLE ? Tier.FAST : Tier.STRONG;
+        reasons.get(reason).increment();
+        log.info("Routed to {} model ({}): words={} cityRag={} expectedTools={} depth={}",
+                tier, reason, signals.words(), signals.cityRag(), signals.expectedTools(), signals.depth());
+
+        final var tierMetrics = metrics.get(tier);
+        tierMetrics.calls.increment();
+        final long start = System.nanoTime();
+        try {
+            final var response = (tier == Tier.FAST ? fast : strong).call(prompt);
+            tierMetrics.latency.record(System.nanoTime() - start);
+            tierMetrics.recordUsage(response);
+            return response;
+        } catch (RuntimeException e) {
+            tierMetrics.failures.increment();
+            throw e;
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        // Not routed, nothing here streams
+        return strong.stream(prompt);
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return strong.getDefaultOptions();
+    }
+
+    public Stats getStats() {
+        final var reasonCounts = new EnumMap<Reason, Long>(Reason.class);
+        reasons.forEach((reason, count) -> reasonCounts.put(reason, count.sum()));
+        return new Stats(metrics.get(Tier.FAST).stats(), metrics.get(Tier.STRONG).stats(),
+                Collections.unmodifiableMap(reasonCounts));
+    }
+
+    static Signals signals(Prompt prompt) {
+        final var userMessage = prompt.getUserMessage();
+        final var text = userMessage == null || userMessage.getText() == null ? "" : userMessage.getText().strip();
+        final int words = text.isEmpty() ? 0 : WHITESPACE.split(text).length;
+
+        boolean cityRag = false;
+        final var expectedTools = new LinkedHashSet<String>();
+        if (prompt.getOptions() instanceof ToolCallingChatOptions options) {
+            cityRag = options.getToolContext() != null && options.getToolContext().containsKey(CTX_CITY_PREFETCH_FUTURE);
+            if (options.getToolCallbacks() != null) {
+                for (final var callback : options.getToolCallbacks()) {
+                    final var name = callback.getToolDefinition().name();
+                    final var hint = TOOL_HINTS.get(name);
+                    if (hint != null && hint.matcher(text).find()) {
+                        expectedTools.add(name);
+                    }
+                }
+            }
+        }
+
+        final long userTurns = prompt.getInstructions().stream()
+                .filter(m -> m.getMessageType() == MessageType.USER)
+                .count();
+        return new Signals(words, cityRag, expectedTools, (int) Math.max(0, userTurns - 1));
+    }
+
+    static Reason reason(Signals signals, Thresholds thresholds) {
+        if (signals.cityRag()) {
+            return Reason.CITY_RAG;
+        }
+        if (signals.expectedTools().size() > thresholds.maxTools()) {
+            return Reason.TOOLS;
+        }
+        if (signals.words() > thresholds.maxWords()) {
+            return Reason.LONG;
+        }
+        if (signals.depth() > thresholds.maxDepth()) {
+            return Reason.DEPTH;
+        }
+        return Reason.SIMPLE;
+    }
+
+    private static Pattern hint(String keywords) {
+        return Pattern.compile("\\b(" + keywords + ")\\b", Pattern.CASE_INSENSITIVE);
+    }
+
+    private static final class TierMetrics {
+
+        final LongAdder calls = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+        final LatencyWindow latency = new LatencyWindow(200);
+
+        void recordUsage(ChatResponse response) {
+            if (response == null || response.getMetadata() == null || response.getMetadata().getUsage() == null) {
+                return;
+            }
+            final var usage = response.getMetadata().getUsage();
+            promptTokens.add(usage.getPromptTokens() == null ? 0 : usage.getPromptTokens());
+            completionTokens.add(usage.getCompletionTokens() == null ? 0 : usage.getCompletionTokens());
+        }
+
+        TierStats stats() {
+            return new TierStats(calls.sum(), failures.sum(), latency.percentile(0.5) / 1_000_000,
+                    latency.percentile(0.95) / 1_000_000, promptTokens.sum(), completionTokens.sum());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package cloud.cleo.squareup.phone;
+
+import lombok.Data;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+
+/**
+ * Cached Pinpoint phone number validation, one item per E164 number.
+ */
+@DynamoDbBean
+@Data
+public class DynamoPhoneValidationItem {
+
+    private String phoneNumber;   // E164
+    private String phoneType;     // NumberValidateResponse.phoneType()
+    private String carrier;       // NumberValidateResponse.carrier(), may be null
+    private Long validatedAt;     // Epoch seconds of the Pinpoint call
+
+    private Long ttl;            // Epoch seconds for Dynamo TTL
+
+    @DynamoDbPartitionKey
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+}
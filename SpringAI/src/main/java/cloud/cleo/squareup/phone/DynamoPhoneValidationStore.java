@@ -0,0 +1,61 @@
+package cloud.cleo.squareup.phone;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import lombok.extern.log4j.Log4j2;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+
+/**
+ * Phone validations in Dynamo, expired by Dynamo TTL.
+ *
+ * Table schema (Dynamo): PK: phoneNumber (String) ttl: epoch seconds for TTL
+ *
+ * @author sjensen
+ */
+@Log4j2
+public class DynamoPhoneValidationStore implements PhoneValidationStore {
+
+    private final DynamoDbTable<DynamoPhoneValidationItem> table;
+    private final Duration ttlDuration;
+
+    public DynamoPhoneValidationStore(DynamoDbEnhancedClient enhancedClient, String tableName, Duration ttlDuration) {
+        this.ttlDuration = ttlDuration;
+        this.table = enhancedClient.table(tableName, TableSchema.fromBean(DynamoPhoneValidationItem.class));
+    }
+
+    @Override
+    public Optional<PhoneValidation> find(String phoneE164) {
+        try {
+            final var item = table.getItem(Key.builder().partitionValue(phoneE164).build());
+            // TTL deletes lag (up to a couple days), so check expiry ourselves
+            if (item == null || item.getPhoneType() == null || item.getTtl() == null
+                    || item.getTtl() <= Instant.now().getEpochSecond()) {
+                return Optional.empty();
+            }
+            return Optional.of(new PhoneValidation(item.getPhoneType(), item.getCarrier(),
+                    Instant.ofEpochSecond(item.getValidatedAt() == null ? 0 : item.getValidatedAt())));
+        } catch (Exception e) {
+            log.warn("Phone validation lookup failed for {}, treating as unknown", phoneE164, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void save(String phoneE164, PhoneValidation validation) {
+        try {
+            final var item = new DynamoPhoneValidationItem();
+            item.setPhoneNumber(phoneE164);
+            item.setPhoneType(validation.phoneType());
+            item.setCarrier(validation.carrier());
+            item.setValidatedAt(validation.validatedAt().getEpochSecond());
+            item.setTtl(validation.validatedAt().plus(ttlDuration).getEpochSecond());
+            table.putItem(item);
+        } catch (Exception e) {
+            log.warn("Unable to store phone validation for {}", phoneE164, e);
+        }
+    }
+}
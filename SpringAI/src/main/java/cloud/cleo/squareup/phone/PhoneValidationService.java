@@ -0,0 +1,117 @@
+package cloud.cleo.squareup.phone;
+
+import cloud.cleo.squareup.cache.RefreshingCache;
+import cloud.cleo.squareup.phone.PhoneValidationStore.PhoneValidation;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.pinpoint.PinpointClient;
+
+/**
+ * Is a number a US mobile (can we text it)? Pinpoint charges per validation, so results are kept in a bounded
+ * in-memory cache backed by a persistent store shared across containers. Concurrent lookups of the same number share
+ * one call.
+ *
+ * @author sjensen
+ */
+@Log4j2
+@Service
+public class PhoneValidationService {
+
+    private final PinpointClient pinpointClient;
+    private final PhoneValidationStore store;
+    private final double costPerLookup;
+
+    private final RefreshingCache<String, PhoneValidation> cache;
+
+    private final LongAdder storeHits = new LongAdder();
+    private final LongAdder pinpointLookups = new LongAdder();
+
+    /**
+     * Point in time view of the counters.
+     *
+     * @param memoryHits answered from this container
+     * @param memoryMisses had to go to the store (and maybe Pinpoint)
+     * @param storeHits answered by the persistent store
+     * @param pinpointLookups paid Pinpoint calls
+     * @param failures lookups that failed altogether
+     * @param pinpointCostUsd estimated spend on pinpointLookups
+     * @param savedUsd estimated spend avoided by both cache tiers
+     */
+    public record Stats(long memoryHits, long memoryMisses, long storeHits, long pinpointLookups, long failures,
+            double pinpointCostUsd, double savedUsd) {
+
+    }
+
+    public PhoneValidationService(PinpointClient pinpointClient, PhoneValidationStore store,
+            ExecutorService virtualThreadExecutor,
+            @Value("${phone.validation.cache.max-entries:5000}") int maxEntries,
+            @Value("${phone.validation.cache.ttl:1d}") Duration memoryTtl,
+            @Value("${phone.validation.cost-per-lookup:0.006}") double costPerLookup) {
+        this.pinpointClient = pinpointClient;
+        this.store = store;
+        this.costPerLookup = costPerLookup;
+        this.cache = new RefreshingCache<>("Phone validation", this::lookup,
+                memoryTtl, memoryTtl, Duration.ofSeconds(30), maxEntries, virtualThreadExecutor);
+    }
+
+    /**
+     * @param phoneE164 US E164 number
+     * @return true when Pinpoint says MOBILE or PREPAID, false otherwise (including when validation fails)
+     */
+    public boolean isMobile(String phoneE164) {
+        return validate(phoneE164)
+                // Valid values are: MOBILE, LANDLINE, VOIP, INVALID, PREPAID, and OTHER.
+                .map(v -> "MOBILE".equals(v.phoneType()) || "PREPAID".equals(v.phoneType()))
+                .orElse(false);
+    }
+
+    /**
+     * @param phoneE164 US E164 number
+     * @return validation, empty when it could not be determined
+     */
+    public Optional<PhoneValidation> validate(String phoneE164) {
+        try {
+            return Optional.of(cache.get(phoneE164));
+        } catch (Exception e) {
+            log.error("Error validating phone number {}", phoneE164, e);
+            return Optional.empty();
+        }
+    }
+
+    public Stats getStats() {
+        final var cacheStats = cache.getStats();
+        final long memoryHits = cacheStats.hits() + cacheStats.staleHits();
+        final long lookups = pinpointLookups.sum();
+        return new Stats(memoryHits, cacheStats.misses(), storeHits.sum(), lookups, cacheStats.failures(),
+                lookups * costPerLookup, (memoryHits + storeHits.sum()) * costPerLookup);
+    }
+
+    /**
+     * Cache loader, store first and Pinpoint only when the store doesn't know the number.
+     */
+    private PhoneValidation lookup(String phoneE164) {
+        final var stored = store.find(phoneE164);
+        if (stored.isPresent()) {
+            storeHits.increment();
+            log.debug("Using stored phone validation for {}: {}", phoneE164, stored.get());
+            return stored.get();
+        }
+
+        log.debug("Validating {} with Pinpoint", phoneE164);
+        pinpointLookups.increment();
+        final var response = pinpointClient
+                .phoneNumberValidate(t -> t.numberValidateRequest(r -> r.isoCountryCode("US").phoneNumber(phoneE164)))
+                .numberValidateResponse();
+        final var validation = new PhoneValidation(response.phoneType(), response.carrier(), Instant.now());
+        log.debug("Pinpoint returned {} for {}", validation, phoneE164);
+
+        store.save(phoneE164, validation);
+        return validation;
+    }
+}
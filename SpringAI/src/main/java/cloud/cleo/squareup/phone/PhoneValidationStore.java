@@ -0,0 +1,52 @@
+package cloud.cleo.squareup.phone;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Persistent tier for phone number validation results, shared by all containers so a number is only paid for once per
+ * validation TTL.
+ *
+ * @author sjensen
+ */
+public interface PhoneValidationStore {
+
+    /**
+     * What we keep from a Pinpoint NumberValidateResponse.
+     *
+     * @param phoneType MOBILE, LANDLINE, VOIP, INVALID, PREPAID or OTHER
+     * @param carrier may be null
+     * @param validatedAt when Pinpoint was called
+     */
+    record PhoneValidation(String phoneType, String carrier, Instant validatedAt) {
+
+    }
+
+    /**
+     * @param phoneE164
+     * @return stored result, empty when unknown (or the store is unavailable)
+     */
+    Optional<PhoneValidation> find(String phoneE164);
+
+    /**
+     * Best effort, failures are logged and ignored.
+     *
+     * @param phoneE164
+     * @param validation
+     */
+    void save(String phoneE164, PhoneValidation validation);
+
+    /**
+     * No persistent tier, memory only.
+     */
+    PhoneValidationStore NONE = new PhoneValidationStore() {
+        @Override
+        public Optional<PhoneValidation> find(String phoneE164) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void save(String phoneE164, PhoneValidation validation) {
+        }
+    };
+}
@@ -0,0 +1,89 @@
+package cloud.cleo.squareup.service;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency cap that adapts to rate limiting (AIMD): every success raises the limit by 1/limit (about one per
+ * "window" of requests) up to the max, a rate limited response halves it (down to 1). Waiters are served in arrival
+ * order, so work submitted in priority order also starts in that order.
+ *
+ * @author sjensen
+ */
+final class AdaptiveConcurrencyLimit {
+
+    private final int maxLimit;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+
+    AdaptiveConcurrencyLimit(int initialLimit, int maxLimit) {
+        if (maxLimit < 1 || initialLimit < 1) {
+            throw new IllegalArgumentException("Limits must be at least 1");
+        }
+        this.maxLimit = maxLimit;
+        this.limit = Math.min(initialLimit, maxLimit);
+    }
+
+    /**
+     * Block until a permit is free.
+     *
+     * @throws InterruptedException when cancelled while waiting
+     */
+    void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) limit) {
+                available.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return a permit.
+     *
+     * @param rateLimited the call was rejected with a rate limit (HTTP 429)
+     */
+    void release(boolean rateLimited) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (rateLimited) {
+                limit = Math.max(1, Math.floor(limit / 2));
+            } else {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Give back a permit without counting the call either way (cancelled or failed for another reason).
+     */
+    void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
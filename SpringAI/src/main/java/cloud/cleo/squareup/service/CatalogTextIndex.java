@@ -0,0 +1,281 @@
+package cloud.cleo.squareup.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable in-memory search index over catalog item names, built once per catalog sync and then shared by any number
+ * of concurrent readers.
+ *
+ * An item can also be found by other terms (variation names and SKUs, like the Square text filter), searches still
+ * return the item name. Item names and terms are split into normalized tokens (lower case, accents removed, simple plural folded). A query token
+ * matches an item token exactly, as a prefix (like the Square text filter), by Soundex code or by trigram similarity,
+ * so speech to text errors like "gummie bares" still find "Gummy Bears". Items score the best match of each query
+ * token and are ranked by total score.
+ *
+ * @author sjensen
+ */
+final class CatalogTextIndex {
+
+    static final CatalogTextIndex EMPTY = build(List.of());
+
+    private static final float EXACT = 1.0f;
+    private static final float PREFIX = 0.9f;
+    private static final float PHONETIC = 0.75f;
+    // Trigram matches score 0.8 * dice coefficient, only from this similarity up
+    private static final float MIN_TRIGRAM_DICE = 0.5f;
+    // An item needs at least one decent token match
+    private static final float MIN_SCORE = 0.7f;
+
+    private static final Set<String> STOP_WORDS = Set.of("a", "an", "the", "and", "or", "of", "for", "with", "some", "any");
+
+    // Item ordinal -> name
+    private final String[] names;
+
+    // Token -> item ordinals containing it, sorted for prefix lookups
+    private final NavigableMap<String, int[]> tokenItems;
+
+    // Trigram -> tokens containing it
+    private final Map<String, String[]> trigramTokens;
+
+    // Soundex code -> tokens with that code
+    private final Map<String, String[]> soundexTokens;
+
+    private CatalogTextIndex(String[] names, NavigableMap<String, int[]> tokenItems,
+            Map<String, String[]> trigramTokens, Map<String, String[]> soundexTokens) {
+        this.names = names;
+        this.tokenItems = tokenItems;
+        this.trigramTokens = trigramTokens;
+        this.soundexTokens = soundexTokens;
+    }
+
+    static CatalogTextIndex build(Collection<String> itemNames) {
+        final var terms = new HashMap<String, List<String>>();
+        itemNames.forEach(name -> terms.put(name, List.of()));
+        return build(terms);
+    }
+
+    /**
+     * @param termsByName item name to the other terms it is found by
+     */
+    static CatalogTextIndex build(Map<String, ? extends Collection<String>> termsByName) {
+        final String[] names = termsByName.keySet().stream().sorted().toArray(String[]::new);
+
+        final var postings = new TreeMap<String, List<Integer>>();
+        for (int i = 0; i < names.length; i++) {
+            final var itemTokens = new LinkedHashSet<>(tokens(names[i]));
+            termsByName.get(names[i]).forEach(term -> itemTokens.addAll(tokens(term)));
+            for (final var token : itemTokens) {
+                postings.computeIfAbsent(token, t -> new ArrayList<>()).add(i);
+            }
+        }
+
+        final var tokenItems = new TreeMap<String, int[]>();
+        final var trigrams = new HashMap<String, List<String>>();
+        final var soundex = new HashMap<String, List<String>>();
+        postings.forEach((token, ordinals) -> {
+            tokenItems.put(token, ordinals.stream().mapToInt(Integer::intValue).toArray());
+            for (final var trigram : trigrams(token)) {
+                trigrams.computeIfAbsent(trigram, t -> new ArrayList<>()).add(token);
+            }
+            final var code = soundex(token);
+            if (code != null) {
+                soundex.computeIfAbsent(code, c -> new ArrayList<>()).add(token);
+            }
+        });
+
+        return new CatalogTextIndex(names, tokenItems, toArrays(trigrams), toArrays(soundex));
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    /**
+     * @param query
+     * @param limit
+     * @return best matching item names, best first
+     */
+    List<String> search(String query, int limit) {
+        var queryTokens = new LinkedHashSet<>(tokens(query));
+        if (queryTokens.size() > 1) {
+            final var content = new LinkedHashSet<>(queryTokens);
+            content.removeAll(STOP_WORDS);
+            if (!content.isEmpty()) {
+                queryTokens = content;
+            }
+        }
+        if (queryTokens.isEmpty() || names.length == 0) {
+            return List.of();
+        }
+
+        final float[] scores = new float[names.length];
+        final float[] best = new float[names.length];
+        for (final var token : queryTokens) {
+            Arrays.fill(best, 0f);
+            matchTokens(token).forEach((matched, weight) -> {
+                for (final int ordinal : tokenItems.get(matched)) {
+                    best[ordinal] = Math.max(best[ordinal], weight);
+                }
+            });
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] += best[i];
+            }
+        }
+
+        return IntStream.range(0, names.length)
+                .filter(i -> scores[i] >= MIN_SCORE)
+                .boxed()
+                // Highest score, then the shorter (closer) name, then by name
+                .sorted(Comparator.<Integer>comparingDouble(i -> -scores[i])
+                        .thenComparingInt(i -> names[i].length())
+                        .thenComparing(i -> names[i]))
+                .limit(limit)
+                .map(i -> names[i])
+                .toList();
+    }
+
+    /**
+     * Index tokens matching a query token with the weight of the best way they match.
+     */
+    private Map<String, Float> matchTokens(String token) {
+        final var matches = new HashMap<String, Float>();
+
+        if (token.length() >= 3) {
+            for (final var prefixed : tokenItems.subMap(token, false, token + Character.MAX_VALUE, false).keySet()) {
+                matches.merge(prefixed, PREFIX, Math::max);
+            }
+        }
+
+        final var code = soundex(token);
+        if (code != null) {
+            for (final var phonetic : soundexTokens.getOrDefault(code, new String[0])) {
+                matches.merge(phonetic, PHONETIC, Math::max);
+            }
+        }
+
+        final var queryTrigrams = trigrams(token);
+        final var shared = new HashMap<String, Integer>();
+        for (final var trigram : queryTrigrams) {
+            for (final var candidate : trigramTokens.getOrDefault(trigram, new String[0])) {
+                shared.merge(candidate, 1, Integer::sum);
+            }
+        }
+        shared.forEach((candidate, count) -> {
+            final float dice = 2f * count / (queryTrigrams.size() + trigrams(candidate).size());
+            if (dice >= MIN_TRIGRAM_DICE) {
+                matches.merge(candidate, 0.8f * dice, Math::max);
+            }
+        });
+
+        if (tokenItems.containsKey(token)) {
+            matches.put(token, EXACT);
+        }
+        return matches;
+    }
+
+    /**
+     * Lower case, accents removed, split on anything not a letter or digit, trailing plural "s" folded.
+     */
+    static List<String> tokens(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        final String normalized = Normalizer.normalize(text, Normalizer.Form.NFD).toLowerCase();
+        final var tokens = new ArrayList<String>();
+        final var current = new StringBuilder(16);
+        for (int i = 0; i <= normalized.length(); i++) {
+            final char c = i < normalized.length() ? normalized.charAt(i) : ' ';
+            if (Character.getType(c) == Character.NON_SPACING_MARK || c == '\'') {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                current.append(c);
+            } else if (!current.isEmpty()) {
+                tokens.add(foldPlural(current.toString()));
+                current.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    private static String foldPlural(String token) {
+        return token.length() > 3 && token.endsWith("s") && !token.endsWith("ss")
+                ? token.substring(0, token.length() - 1)
+                : token;
+    }
+
+    /**
+     * Trigrams of the token padded with a boundary marker, so short tokens still have a few.
+     */
+    static Set<String> trigrams(String token) {
+        final String padded = "$" + token + "$";
+        final var trigrams = new LinkedHashSet<String>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    /**
+     * American Soundex, null for tokens that don't start with a letter (numbers, sizes).
+     */
+    static String soundex(String token) {
+        if (token.isEmpty() || token.charAt(0) < 'a' || token.charAt(0) > 'z') {
+            return null;
+        }
+        final var code = new StringBuilder(4).append(Character.toUpperCase(token.charAt(0)));
+        char last = soundexDigit(token.charAt(0));
+        for (int i = 1; i < token.length() && code.length() < 4; i++) {
+            final char c = token.charAt(i);
+            final char digit = soundexDigit(c);
+            if (digit != '0' && digit != last) {
+                code.append(digit);
+            }
+            // h and w don't separate letters with the same code, vowels do
+            if (c != 'h' && c != 'w') {
+                last = digit;
+            }
+        }
+        while (code.length() < 4) {
+            code.append('0');
+        }
+        return code.toString();
+    }
+
+    private static char soundexDigit(char c) {
+        return switch (c) {
+            case 'b', 'f', 'p', 'v' ->
+                '1';
+            case 'c', 'g', 'j', 'k', 'q', 's', 'x', 'z' ->
+                '2';
+            case 'd', 't' ->
+                '3';
+            case 'l' ->
+                '4';
+            case 'm', 'n' ->
+                '5';
+            case 'r' ->
+                '6';
+            default ->
+                '0';
+        };
+    }
+
+    private static Map<String, String[]> toArrays(Map<String, List<String>> map) {
+        final var result = new HashMap<String, String[]>(map.size() * 2);
+        map.forEach((key, values) -> result.put(key, values.toArray(String[]::new)));
+        return Map.copyOf(result);
+    }
+}
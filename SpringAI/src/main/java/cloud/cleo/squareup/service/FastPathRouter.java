@@ -0,0 +1,198 @@
+package cloud.cleo.squareup.service;
+
+import cloud.cleo.squareup.LexV2EventWrapper;
+import cloud.cleo.squareup.lang.LangUtil;
+import cloud.cleo.squareup.lang.LangUtil.LanguageIds;
+import static cloud.cleo.squareup.lang.LangUtil.LanguageIds.*;
+import cloud.cleo.squareup.service.StoreHoursService.OpenStatus;
+import static cloud.cleo.squareup.tools.AbstractTool.DRIVING_DIRECTIONS_URL;
+import static cloud.cleo.squareup.tools.AbstractTool.PRIVATE_SHOPPING_URL;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.time.format.TextStyle;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Answers the handful of questions that make up a large share of turns (are you open, where are you, private shopping,
+ * caller silence) from templates, without a model call. The whole transcript has to match one of the localized
+ * patterns in the {@link cloud.cleo.squareup.lang.LangBundle} (a few filler words like hi or please are allowed around
+ * it), so anything with more to it than the simple question goes to the model as before.
+ *
+ * Directions and private shopping are only answered on text channels, on voice the model sends the link by SMS.
+ *
+ * @author sjensen
+ */
+@Log4j2
+@Service
+public class FastPathRouter {
+
+    /**
+     * What a fast path answer was for.
+     */
+    public enum Intent {
+        HOURS,
+        DIRECTIONS,
+        PRIVATE_SHOPPING,
+        SILENCE
+    }
+
+    // Longer transcripts are never a simple question, and keep regex work bounded
+    private static final int MAX_TRANSCRIPT_LENGTH = 80;
+
+    private static final Pattern APOSTROPHES = Pattern.compile("['’`´]");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Compiled once per locale, in match order
+    private static final Map<Locale, Map<Intent, Pattern>> PATTERNS = new ConcurrentHashMap<>();
+
+    private final StoreHoursService storeHoursService;
+    private final boolean enabled;
+
+    private final Map<Intent, LongAdder> answered = new EnumMap<>(Intent.class);
+    private final LongAdder fellThrough = new LongAdder();
+
+    /**
+     * Point in time view of the counters.
+     *
+     * @param hours open/closed questions answered
+     * @param directions address/directions answered
+     * @param privateShopping private shopping links answered
+     * @param silence voice turns with nothing said answered
+     * @param fellThrough turns sent on to the model
+     */
+    public record Stats(long hours, long directions, long privateShopping, long silence, long fellThrough) {
+
+    }
+
+    public FastPathRouter(StoreHoursService storeHoursService,
+            @Value("${fastpath.enabled:true}") boolean enabled) {
+        this.storeHoursService = storeHoursService;
+        this.enabled = enabled;
+        for (final var intent : Intent.values()) {
+            answered.put(intent, new LongAdder());
+        }
+    }
+
+    /**
+     * @param event
+     * @return the answer, or empty when the model should handle the turn
+     */
+    public Optional<String> route(LexV2EventWrapper event) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        // Facebook gets its welcome card from the model path
+        if (event.isNewSession() && event.isFacebook()) {
+            fellThrough.increment();
+            return Optional.empty();
+        }
+
+        final Intent intent = event.isVoice() && event.getBlankCounter() > 0
+                ? Intent.SILENCE
+                : classify(event.getInputTranscript(), event.getLocale());
+        final Optional<String> answer = intent == null ? Optional.empty() : answer(intent, event);
+
+        if (answer.isPresent()) {
+            answered.get(intent).increment();
+            log.debug("Fast path {} answered [{}]", intent, event.getInputTranscript());
+        } else {
+            fellThrough.increment();
+        }
+        return answer;
+    }
+
+    public Stats getStats() {
+        return new Stats(
+                answered.get(Intent.HOURS).sum(),
+                answered.get(Intent.DIRECTIONS).sum(),
+                answered.get(Intent.PRIVATE_SHOPPING).sum(),
+                answered.get(Intent.SILENCE).sum(),
+                fellThrough.sum());
+    }
+
+    private Optional<String> answer(Intent intent, LexV2EventWrapper event) {
+        final var lang = event.getLang();
+        return switch (intent) {
+            case HOURS ->
+                storeHoursService.getOpenStatus()
+                .map(status -> hoursAnswer(lang, status))
+                // Same follow up the model would ask on voice
+                .map(text -> event.isVoice() ? text + lang.getString(ANYTHING_ELSE) : text);
+            case DIRECTIONS ->
+                event.isVoice() ? Optional.empty() : Optional.of(lang.format(FAST_PATH_DIRECTIONS, DRIVING_DIRECTIONS_URL.toString()));
+            case PRIVATE_SHOPPING ->
+                event.isVoice() ? Optional.empty() : Optional.of(lang.format(FAST_PATH_PRIVATE_SHOPPING, PRIVATE_SHOPPING_URL.toString()));
+            case SILENCE ->
+                Optional.of(lang.getString(BLANK_RESPONSE));
+        };
+    }
+
+    /**
+     * Open until, or closed and when we open again, in the caller's language.
+     */
+    static String hoursAnswer(LangUtil lang, OpenStatus status) {
+        final var locale = lang.getLocale();
+        final var next = status.nextChange();
+        // Some locales format with a narrow no-break space, keep it plain for SMS and speech
+        final var time = DateTimeFormatter.ofLocalizedTime(FormatStyle.SHORT).withLocale(locale).format(next)
+                .replace('\u202f', ' ');
+        if (status.open()) {
+            return lang.format(FAST_PATH_OPEN_UNTIL, time);
+        }
+        return lang.format(FAST_PATH_CLOSED_UNTIL, next.getDayOfWeek().getDisplayName(TextStyle.FULL, locale), time);
+    }
+
+    /**
+     * @param transcript what the caller said or typed
+     * @param locale bot locale, selects the patterns
+     * @return the intent when the whole transcript is one of the simple questions, otherwise null
+     */
+    static Intent classify(String transcript, Locale locale) {
+        if (transcript == null || transcript.length() > MAX_TRANSCRIPT_LENGTH) {
+            return null;
+        }
+        final var normalized = normalize(transcript, locale);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        for (final var entry : PATTERNS.computeIfAbsent(locale, FastPathRouter::compile).entrySet()) {
+            if (entry.getValue().matcher(normalized).matches()) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lower case, apostrophes dropped (what's to whats) and everything else that is not a letter or digit as a single
+     * space, so patterns don't deal with punctuation.
+     */
+    static String normalize(String transcript, Locale locale) {
+        final var noApostrophes = APOSTROPHES.matcher(transcript.toLowerCase(locale)).replaceAll("");
+        return NON_WORD.matcher(noApostrophes).replaceAll(" ").trim();
+    }
+
+    private static Map<Intent, Pattern> compile(Locale locale) {
+        final var filler = LangUtil.getString(FAST_PATH_FILLER_PATTERN, locale);
+        final var patterns = new LinkedHashMap<Intent, Pattern>(4);
+        patterns.put(Intent.HOURS, compile(filler, FAST_PATH_HOURS_PATTERN, locale));
+        patterns.put(Intent.DIRECTIONS, compile(filler, FAST_PATH_DIRECTIONS_PATTERN, locale));
+        patterns.put(Intent.PRIVATE_SHOPPING, compile(filler, FAST_PATH_PRIVATE_SHOPPING_PATTERN, locale));
+        return patterns;
+    }
+
+    private static Pattern compile(String filler, LanguageIds id, Locale locale) {
+        return Pattern.compile("(?:(?:" + filler + ") )*(?:" + LangUtil.getString(id, locale) + ")(?: (?:" + filler + "))*",
+                Pattern.UNICODE_CHARACTER_CLASS);
+    }
+}
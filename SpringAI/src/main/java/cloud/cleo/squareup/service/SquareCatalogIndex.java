@@ -0,0 +1,221 @@
+package cloud.cleo.squareup.service;
+
+import com.squareup.square.SquareClient;
+import com.squareup.square.types.CatalogItem;
+import com.squareup.square.types.CatalogObject;
+import com.squareup.square.types.CatalogObjectType;
+import com.squareup.square.types.SearchCatalogObjectsRequest;
+import com.squareup.square.types.SearchCatalogObjectsResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-process index of the Square catalog item names so product searches don't need a round trip to Square. Items are
+ * also found by their variation names and SKUs, like Square's own item search.
+ *
+ * The catalog is loaded once at startup and then kept current in the background with incremental syncs (only items
+ * changed since the last sync's Square latest_time). Searches are answered from an immutable snapshot, and return
+ * empty (caller uses the live API) when there is no snapshot yet or it is older than the max staleness.
+ *
+ * @author sjensen
+ */
+@Log4j2
+@Service
+public class SquareCatalogIndex {
+
+    private static final int PAGE_LIMIT = 1000;
+
+    /**
+     * One indexed item.
+     *
+     * @param name item name, what searches return
+     * @param terms variation names and SKUs it is also found by
+     */
+    private record IndexedItem(String name, List<String> terms) {
+
+    }
+
+    /**
+     * Everything known after a sync, replaced as a whole.
+     *
+     * @param itemsById item id to item
+     * @param index search index over the items
+     * @param latestTime Square catalog time to start the next incremental sync from
+     * @param syncedAt
+     */
+    private record CatalogSnapshot(Map<String, IndexedItem> itemsById, CatalogTextIndex index, String latestTime, Instant syncedAt) {
+
+    }
+
+    private final @Nullable SquareClient client;
+    private final ExecutorService virtualThreadExecutor;
+    private final boolean enabled;
+    private final Duration refreshInterval;
+    private final Duration maxStaleness;
+
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicBoolean syncing = new AtomicBoolean();
+
+    public SquareCatalogIndex(@Nullable SquareClient client, ExecutorService virtualThreadExecutor,
+            @Value("${square.catalog.index.enabled:true}") boolean enabled,
+            @Value("${square.catalog.index.refresh:5m}") Duration refreshInterval,
+            @Value("${square.catalog.index.max-staleness:1h}") Duration maxStaleness) {
+        this.client = client;
+        this.virtualThreadExecutor = virtualThreadExecutor;
+        this.enabled = enabled && client != null;
+        this.refreshInterval = refreshInterval;
+        this.maxStaleness = maxStaleness;
+
+        if (this.enabled) {
+            // Load at init so it's part of the SnapStart snapshot, after restore it's then only an incremental sync
+            try {
+                sync();
+            } catch (Exception e) {
+                log.warn("Initial Square catalog sync failed, searches use the live API until a sync succeeds", e);
+            }
+        }
+    }
+
+    /**
+     * Search the local index.
+     *
+     * @param query
+     * @param limit
+     * @return matching item names, or empty when the index can't answer (disabled, not loaded or too stale)
+     */
+    public Optional<List<String>> search(String query, int limit) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        final var current = snapshot.get();
+        final Duration age = current == null ? null : Duration.between(current.syncedAt(), Instant.now());
+
+        if (age == null || age.compareTo(refreshInterval) > 0) {
+            syncInBackground();
+        }
+        if (age == null || age.compareTo(maxStaleness) > 0) {
+            log.debug("Square catalog index {}, using live search", age == null ? "not loaded" : "stale (" + age + ")");
+            return Optional.empty();
+        }
+        return Optional.of(current.index().search(query, limit));
+    }
+
+    /**
+     * @return items in the index, 0 when not loaded
+     */
+    public int size() {
+        final var current = snapshot.get();
+        return current == null ? 0 : current.index().size();
+    }
+
+    private void syncInBackground() {
+        // One sync at a time
+        if (!syncing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            virtualThreadExecutor.execute(() -> {
+                try {
+                    sync();
+                } catch (Exception e) {
+                    log.warn("Square catalog sync failed, keeping the current index", e);
+                } finally {
+                    syncing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            syncing.set(false);
+            throw e;
+        }
+    }
+
+    private void sync() {
+        final var current = snapshot.get();
+        final long start = System.nanoTime();
+
+        // Full load the first time, after that only what changed (including deletes)
+        final boolean incremental = current != null && current.latestTime() != null;
+        final Map<String, IndexedItem> items = incremental ? new HashMap<>(current.itemsById()) : new HashMap<>();
+        String latestTime = incremental ? current.latestTime() : null;
+        String cursor = null;
+        int changed = 0;
+        do {
+            final var request = SearchCatalogObjectsRequest.builder()
+                    .objectTypes(List.of(CatalogObjectType.ITEM))
+                    .includeDeletedObjects(incremental)
+                    .limit(PAGE_LIMIT);
+            if (incremental) {
+                request.beginTime(current.latestTime());
+            }
+            if (cursor != null) {
+                request.cursor(cursor);
+            }
+
+            final SearchCatalogObjectsResponse response = client.catalog().search(request.build());
+            for (final CatalogObject object : response.getObjects().orElse(List.of())) {
+                if (object.getItem().isEmpty()) {
+                    continue;
+                }
+                final var item = object.getItem().get();
+                changed++;
+                final var name = item.getItemData().flatMap(data -> data.getName()).orElse(null);
+                if (item.getIsDeleted().orElse(false) || name == null || name.isBlank()) {
+                    items.remove(item.getId());
+                } else {
+                    items.put(item.getId(), new IndexedItem(name, variationTerms(item.getItemData().get())));
+                }
+            }
+            if (response.getLatestTime().isPresent()) {
+                latestTime = response.getLatestTime().get();
+            }
+            cursor = response.getCursor().orElse(null);
+        } while (cursor != null && !cursor.isBlank());
+
+        // Nothing changed, keep the built index and just mark it fresh
+        final var index = incremental && changed == 0 ? current.index() : buildIndex(items.values());
+        snapshot.set(new CatalogSnapshot(Map.copyOf(items), index, latestTime, Instant.now()));
+
+        log.debug("Square catalog {} sync: {} changed objects, {} items indexed in {} ms",
+                incremental ? "incremental" : "full", changed, index.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Variation names (other than Square's default "Regular") and SKUs of the item.
+     */
+    private static List<String> variationTerms(CatalogItem data) {
+        final var terms = new ArrayList<String>();
+        for (final var variation : data.getVariations().orElse(List.of())) {
+            variation.getItemVariation()
+                    .flatMap(v -> v.getItemVariationData())
+                    .ifPresent(v -> {
+                        v.getName().filter(n -> !n.isBlank() && !n.equalsIgnoreCase("Regular")).ifPresent(terms::add);
+                        v.getSku().filter(sku -> !sku.isBlank()).ifPresent(terms::add);
+                    });
+        }
+        return List.copyOf(terms);
+    }
+
+    /**
+     * Items sharing a name are one entry, found by the terms of all of them.
+     */
+    private static CatalogTextIndex buildIndex(Collection<IndexedItem> items) {
+        final var termsByName = new HashMap<String, List<String>>();
+        for (final var item : items) {
+            termsByName.computeIfAbsent(item.name(), n -> new ArrayList<>()).addAll(item.terms());
+        }
+        return CatalogTextIndex.build(termsByName);
+    }
+}
@@ -1,22 +1,23 @@
 package cloud.cleo.squareup.service;
 
+import cloud.cleo.squareup.cache.RefreshingCache;
 import com.squareup.square.SquareClient;
 import com.squareup.square.types.Customer;
 import com.squareup.square.types.CustomerFilter;
 import com.squareup.square.types.CustomerQuery;
 import com.squareup.square.types.CustomerTextFilter;
 import com.squareup.square.types.SearchCustomersRequest;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletionException;
-import lombok.RequiredArgsConstructor;
+import java.util.concurrent.ExecutorService;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
 @Log4j2
 @Service
-@RequiredArgsConstructor
 public class SquareCustomerService {
 
     /**
@@ -24,6 +25,15 @@ public class SquareCustomerService {
      */
     private final @Nullable SquareClient squareClient;
 
+    // Keyed by E.164 phone, "not a customer" is cached too so repeat turns don't search again
+    private final RefreshingCache<String, Optional<Customer>> customerCache;
+
+    public SquareCustomerService(@Nullable SquareClient squareClient, ExecutorService virtualThreadExecutor) {
+        this.squareClient = squareClient;
+        this.customerCache = new RefreshingCache<>("Square customer", this::searchCustomerByPhone,
+                Duration.ofMinutes(10), Duration.ofHours(12), Duration.ofSeconds(30), 1000, virtualThreadExecutor);
+    }
+
     public boolean isEnabled() {
         return squareClient != null;
     }
@@ -43,27 +53,7 @@ public class SquareCustomerService {
         }
 
         try {
-            var request = SearchCustomersRequest.builder()
-                    .query(CustomerQuery.builder()
-                            .filter(CustomerFilter.builder()
-                                    .phoneNumber(CustomerTextFilter.builder()
-                                            .exact(e164Phone)
-                                            .build())
-                                    .build())
-                            .build())
-                    .limit(1L)
-                    .build();
-
-            var response = squareClient
-                    .customers()
-                    .search(request);
-
-            List<Customer> customers = response.getCustomers().orElse(List.of());
-            if (customers.isEmpty()) {
-                return Optional.empty();
-            }
-
-            return Optional.of(customers.get(0));
+            return customerCache.get(e164Phone);
         } catch (CompletionException e) {
             log.error("Error in Square customer lookup (wrapped)", e.getCause());
             return Optional.empty();
@@ -73,6 +63,30 @@ public class SquareCustomerService {
         }
     }
 
+    private Optional<Customer> searchCustomerByPhone(String e164Phone) {
+        var request = SearchCustomersRequest.builder()
+                .query(CustomerQuery.builder()
+                        .filter(CustomerFilter.builder()
+                                .phoneNumber(CustomerTextFilter.builder()
+                                        .exact(e164Phone)
+                                        .build())
+                                .build())
+                        .build())
+                .limit(1L)
+                .build();
+
+        var response = squareClient
+                .customers()
+                .search(request);
+
+        List<Customer> customers = response.getCustomers().orElse(List.of());
+        if (customers.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(customers.get(0));
+    }
+
     /**
      * Convenience helper to get the customer's email by phone, if both exist.
      * @param e164Phone
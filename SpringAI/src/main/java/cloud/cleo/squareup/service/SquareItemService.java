@@ -1,34 +1,101 @@
 package cloud.cleo.squareup.service;
 
 import com.squareup.square.SquareClient;
+import com.squareup.square.core.SquareApiException;
 import com.squareup.square.types.SearchCatalogItemsRequest;
 import com.squareup.square.types.SearchCatalogItemsResponse;
-import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import lombok.RequiredArgsConstructor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
 @Log4j2
 @Service
-@RequiredArgsConstructor
 public class SquareItemService {
 
+    private static final int RESULT_LIMIT = 5;
+
+    // A phrase rejected with 429 is retried (after the limit was cut) up to this many attempts in total
+    private static final int MAX_RATE_LIMIT_ATTEMPTS = 3;
+    private static final long RATE_LIMIT_BACKOFF_MILLIS = 100;
+
     private final @Nullable SquareClient squareClient;
 
     private final ExecutorService virtualThreadExecutor;
 
+    private final SquareCatalogIndex catalogIndex;
+
+    // Caps concurrent live searches, backs off when Square rate limits us
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder searchLatencyNanos = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    public SquareItemService(@Nullable SquareClient squareClient, ExecutorService virtualThreadExecutor,
+            SquareCatalogIndex catalogIndex,
+            @Value("${square.item-search.max-concurrency:6}") int maxConcurrency) {
+        this.squareClient = squareClient;
+        this.virtualThreadExecutor = virtualThreadExecutor;
+        this.catalogIndex = catalogIndex;
+        this.concurrencyLimit = new AdaptiveConcurrencyLimit(maxConcurrency, maxConcurrency);
+    }
+
+    /**
+     * Point in time view of the live search counters.
+     *
+     * @param searches Square searchItems calls completed
+     * @param cancelled phrase searches cancelled (or never started) because the result limit was already met
+     * @param rateLimited calls rejected with 429
+     * @param avgLatencyMillis average searchItems latency
+     * @param concurrencyLimit current adaptive concurrency limit
+     */
+    public record SearchStats(long searches, long cancelled, long rateLimited, double avgLatencyMillis, int concurrencyLimit) {
+
+    }
+
+    public SearchStats getSearchStats() {
+        final long count = searches.sum();
+        return new SearchStats(count, cancelled.sum(), rateLimited.sum(),
+                count == 0 ? 0d : searchLatencyNanos.sum() / 1_000_000d / count,
+                concurrencyLimit.getLimit());
+    }
+
     public boolean isEnabled() {
         return squareClient != null;
     }
 
+    /**
+     * Search item names in the local catalog index, limited to 5.
+     *
+     * @param searchText
+     * @return names, or empty when the index can't answer and the live search should be used
+     */
+    public Optional<List<String>> searchIndexedItemNames(String searchText) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        // No match is left to the live search, Square also matches on text the index doesn't hold (descriptions)
+        return catalogIndex.search(searchText, RESULT_LIMIT).filter(names -> !names.isEmpty());
+    }
+
     /**
      * Search item names based on a list of token combinations.
      * Returns a de-duplicated list of names, limited to 5.
+     *
+     * Longer (more specific) phrases are searched first and their results come first. As soon as the phrases answered
+     * so far, in that order, have produced 5 names, the remaining searches are cancelled.
      * @param tokens
      * @return 
      */
@@ -42,48 +109,106 @@ public class SquareItemService {
             return Collections.emptyList();
         }
 
-        List<String> itemNames = new ArrayList<>();
+        // Most words first, stable so equal lengths keep their order
+        final List<String> phrases = tokens.stream()
+                .distinct()
+                .sorted(Comparator.comparingInt(SquareItemService::wordCount).reversed())
+                .toList();
+
+        log.debug("Launching {} item searches using virtual threads, concurrency limit {}",
+                phrases.size(), concurrencyLimit.getLimit());
 
-        log.debug("Launching {} item searches in parallel using virtual threads", tokens.size());
+        final long start = System.nanoTime();
+        final var itemNames = new LinkedHashSet<String>();
+        // Queued in priority order, the fair limit starts them in that order
+        final List<Future<List<String>>> futures = phrases.stream()
+                .map(phrase -> virtualThreadExecutor.submit(() -> search(phrase)))
+                .toList();
 
+        int collected = 0;
         try {
-            List<Future<SearchCatalogItemsResponse>> futures = tokens.stream()
-                    .map(token -> virtualThreadExecutor.submit(() -> {
-                        log.debug("Executing search for [{}]", token);
-                        return squareClient
-                                .catalog()
-                                .searchItems(SearchCatalogItemsRequest.builder()
-                                        .textFilter(token)
-                                        .limit(5)
-                                        .build());
-                    }))
-                    .toList();
-
-            // Collect results
-            for (Future<SearchCatalogItemsResponse> future : futures) {
+            for (; collected < futures.size() && itemNames.size() < RESULT_LIMIT; collected++) {
                 try {
-                    SearchCatalogItemsResponse response = future.get(); // blocking in virtual thread
-                    if (response.getItems() != null && response.getItems().isPresent()) {
-                        response.getItems().get().stream()
-                                .map(item -> item.getItem().get()
-                                        .getItemData().get()
-                                        .getName().get())
-                                .forEach(itemNames::add);
-                    }
-                } catch (Exception e) {
-                    log.error("Error processing search request", e);
+                    itemNames.addAll(futures.get(collected).get()); // blocking in virtual thread
+                } catch (ExecutionException e) {
+                    log.error("Error processing search request", e.getCause());
                 }
             }
-
-        } catch (Exception ex) {
-            log.error("Unhandled error in Square item search", ex);
-            return Collections.emptyList();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Square item search interrupted");
+        } finally {
+            int cancelledNow = 0;
+            for (int i = collected; i < futures.size(); i++) {
+                if (futures.get(i).cancel(true)) {
+                    cancelledNow++;
+                }
+            }
+            cancelled.add(cancelledNow);
+            log.debug("Square item search: {} of {} phrases used, {} cancelled, {} names in {} ms",
+                    collected, phrases.size(), cancelledNow, itemNames.size(), (System.nanoTime() - start) / 1_000_000);
         }
 
         // De-duplicate and limit to 5 overall
         return itemNames.stream()
-                .distinct()
-                .limit(5)
+                .limit(RESULT_LIMIT)
                 .toList();
     }
-}
\ No newline at end of file
+
+    /**
+     * One phrase, within the concurrency limit, retrying a couple of times if Square rate limits it.
+     */
+    private List<String> search(String phrase) throws InterruptedException {
+        for (int attempt = 1;; attempt++) {
+            concurrencyLimit.acquire();
+            boolean limited = false;
+            boolean counted = false;
+            try {
+                log.debug("Executing search for [{}]", phrase);
+                final long start = System.nanoTime();
+                final SearchCatalogItemsResponse response = squareClient
+                        .catalog()
+                        .searchItems(SearchCatalogItemsRequest.builder()
+                                .textFilter(phrase)
+                                .limit(RESULT_LIMIT)
+                                .build());
+                final long elapsed = System.nanoTime() - start;
+                searches.increment();
+                searchLatencyNanos.add(elapsed);
+                counted = true;
+                log.debug("Search for [{}] took {} ms", phrase, elapsed / 1_000_000);
+
+                if (response.getItems() == null || response.getItems().isEmpty()) {
+                    return List.of();
+                }
+                return response.getItems().get().stream()
+                        .map(item -> item.getItem().get()
+                                .getItemData().get()
+                                .getName().get())
+                        .toList();
+            } catch (SquareApiException e) {
+                if (e.statusCode() != 429) {
+                    throw e;
+                }
+                limited = true;
+                counted = true;
+                rateLimited.increment();
+                if (attempt >= MAX_RATE_LIMIT_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Search for [{}] rate limited, retrying", phrase);
+            } finally {
+                if (counted) {
+                    concurrencyLimit.release(limited);
+                } else {
+                    concurrencyLimit.release();
+                }
+            }
+            Thread.sleep(ThreadLocalRandom.current().nextLong(RATE_LIMIT_BACKOFF_MILLIS * attempt) + 1);
+        }
+    }
+
+    private static int wordCount(String phrase) {
+        return phrase.trim().split("\\s+").length;
+    }
+}
@@ -1,5 +1,6 @@
 package cloud.cleo.squareup.service;
 
+import cloud.cleo.squareup.cache.RefreshingCache;
 import cloud.cleo.squareup.config.SquareConfig.SquareProperties;
 import com.squareup.square.SquareClient;
 import com.squareup.square.types.GetLocationsRequest;
@@ -8,34 +9,33 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
 @Log4j2
 @Service
-@RequiredArgsConstructor
 public class SquareLocationService {
 
     private static final Duration CACHE_TTL = Duration.ofDays(1);
+    // Serve a stale location this long while refreshes keep failing
+    private static final Duration CACHE_EXPIRE = Duration.ofDays(30);
     private static final ZoneId DEFAULT_ZONE = ZoneId.of("America/Chicago");
 
     private final SquareProperties props;
     private final @Nullable SquareClient client;
 
-    private final AtomicReference<CachedLocation> cachedLocation = new AtomicReference<>();
+    // Refreshed in the background once older than CACHE_TTL, callers only ever wait on the very first load
+    private final RefreshingCache<String, Location> locationCache;
     private final AtomicReference<ZoneId> cachedZoneId = new AtomicReference<>();
 
-    private static final class CachedLocation {
-        final Location location;
-        final Instant fetchedAt;
-
-        CachedLocation(Location location, Instant fetchedAt) {
-            this.location = location;
-            this.fetchedAt = fetchedAt;
-        }
+    public SquareLocationService(SquareProperties props, @Nullable SquareClient client, ExecutorService virtualThreadExecutor) {
+        this.props = props;
+        this.client = client;
+        this.locationCache = new RefreshingCache<>("Square location", this::fetchLocation,
+                CACHE_TTL, CACHE_EXPIRE, Duration.ofSeconds(30), 1, virtualThreadExecutor);
     }
 
     public boolean isEnabled() {
@@ -57,24 +57,18 @@ public class SquareLocationService {
             throw new IllegalStateException("Square is disabled; cannot retrieve location");
         }
 
-        final Instant now = Instant.now();
-        CachedLocation current = cachedLocation.get();
-
-        // If we have a cached value and it is still within TTL, return it.
-        if (current != null && Duration.between(current.fetchedAt, now).compareTo(CACHE_TTL) <= 0) {
-            return current.location;
+        try {
+            // Past CACHE_TTL this still returns the cached location and refreshes it in the background
+            return locationCache.get(props.locationId());
+        } catch (Exception e) {
+            throw new IllegalStateException("No cached data available and failed to retrieve from Square API", e);
         }
-
-        // Cache is missing or expired – attempt refresh.
-        return refreshLocation();
     }
 
-    private Location refreshLocation() {
-        final CachedLocation before = cachedLocation.get();
-
+    private Location fetchLocation(String locationId) {
         try {
             var request = GetLocationsRequest.builder()
-                    .locationId(props.locationId())
+                    .locationId(locationId)
                     .build();
 
             var response = client.locations()
@@ -82,32 +76,15 @@ public class SquareLocationService {
 
             var locOpt = response.getLocation();
             if (locOpt.isEmpty()) {
-                throw new IllegalStateException("Square returned empty Location for id " + props.locationId());
+                throw new IllegalStateException("Square returned empty Location for id " + locationId);
             }
 
-            var loc = locOpt.get();
-            var updated = new CachedLocation(loc, Instant.now());
-            cachedLocation.set(updated);
-
-            log.debug("Square location refreshed for id {} at {}", props.locationId(), updated.fetchedAt);
-            return loc;
+            log.debug("Square location refreshed for id {} at {}", locationId, Instant.now());
+            return locOpt.get();
 
         } catch (CompletionException e) {
-            log.error("Error retrieving Square location {}", props.locationId(), e.getCause());
-            if (before != null) {
-                log.warn("Using previously cached Square location {} after refresh failure",
-                        before.location.getId());
-                return before.location;
-            }
-            throw new IllegalStateException("No cached data available and failed to retrieve from Square API", e.getCause());
-        } catch (Exception e) {
-            log.error("Unexpected error retrieving Square location {}", props.locationId(), e);
-            if (before != null) {
-                log.warn("Using previously cached Square location {} after unexpected refresh failure",
-                        before.location.getId());
-                return before.location;
-            }
-            throw new IllegalStateException("No cached data available and failed to retrieve from Square API", e);
+            log.error("Error retrieving Square location {}", locationId, e.getCause());
+            throw e;
         }
     }
 
@@ -1,5 +1,6 @@
 package cloud.cleo.squareup.service;
 
+import cloud.cleo.squareup.cache.RefreshingCache;
 import cloud.cleo.squareup.config.SquareConfig.SquareProperties;
 import com.squareup.square.SquareClient;
 import com.squareup.square.types.SearchTeamMembersFilter;
@@ -7,22 +8,33 @@ import com.squareup.square.types.SearchTeamMembersQuery;
 import com.squareup.square.types.SearchTeamMembersRequest;
 import com.squareup.square.types.TeamMember;
 import com.squareup.square.types.TeamMemberStatus;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletionException;
-import lombok.RequiredArgsConstructor;
+import java.util.concurrent.ExecutorService;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
 @Log4j2
 @Service
-@RequiredArgsConstructor
 public class SquareTeamMemberService {
 
     private final @Nullable SquareClient squareClient;
     private final SquareProperties squareProperties; // from your SquareConfig
 
+    // Keyed by location, refreshed in the background every 15 minutes (staff rarely changes)
+    private final RefreshingCache<String, List<TeamMember>> teamMemberCache;
+
+    public SquareTeamMemberService(@Nullable SquareClient squareClient, SquareProperties squareProperties,
+            ExecutorService virtualThreadExecutor) {
+        this.squareClient = squareClient;
+        this.squareProperties = squareProperties;
+        this.teamMemberCache = new RefreshingCache<>("Square team members", this::fetchActiveTeamMembers,
+                Duration.ofMinutes(15), Duration.ofDays(7), Duration.ofSeconds(30), 4, virtualThreadExecutor);
+    }
+
     public boolean isEnabled() {
         return squareClient != null && squareProperties.enabled();
     }
@@ -45,26 +57,7 @@ public class SquareTeamMemberService {
         }
 
         try {
-            var request = SearchTeamMembersRequest.builder()
-                    .query(SearchTeamMembersQuery.builder()
-                            .filter(SearchTeamMembersFilter.builder()
-                                    .status(TeamMemberStatus.ACTIVE)
-                                    .locationIds(List.of(locationId))
-                                    .build())
-                            .build())
-                    .build();
-
-            var response = squareClient
-                    .teamMembers()
-                    .search(request);
-
-            var teamMembersOpt = response.getTeamMembers();
-            if (teamMembersOpt.isEmpty()) {
-                return Collections.emptyList();
-            }
-
-            return teamMembersOpt.get();
-
+            return teamMemberCache.get(locationId);
         } catch (CompletionException e) {
             log.error("Error retrieving Square team members (wrapped)", e.getCause());
             return Collections.emptyList();
@@ -73,4 +66,21 @@ public class SquareTeamMemberService {
             return Collections.emptyList();
         }
     }
+
+    private List<TeamMember> fetchActiveTeamMembers(String locationId) {
+        var request = SearchTeamMembersRequest.builder()
+                .query(SearchTeamMembersQuery.builder()
+                        .filter(SearchTeamMembersFilter.builder()
+                                .status(TeamMemberStatus.ACTIVE)
+                                .locationIds(List.of(locationId))
+                                .build())
+                        .build())
+                .build();
+
+        var response = squareClient
+                .teamMembers()
+                .search(request);
+
+        return List.copyOf(response.getTeamMembers().orElse(List.of()));
+    }
 }
\ No newline at end of file
@@ -1,22 +1,18 @@
 package cloud.cleo.squareup.service;
 
-import cloud.cleo.squareup.service.SquareLocationService;
-import com.fasterxml.jackson.annotation.JsonIgnore;
+import cloud.cleo.squareup.hours.SquareStoreHours;
+import cloud.cleo.squareup.hours.StoreHoursSchedule;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.squareup.square.types.BusinessHoursPeriod;
 import com.squareup.square.types.Location;
-import lombok.AccessLevel;
-import lombok.Getter;
 import org.springframework.stereotype.Service;
 
 import java.time.*;
 import java.time.format.TextStyle;
-import java.util.ArrayList;
 import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
-import static com.squareup.square.types.DayOfWeek.Value.*;
-import static java.time.DayOfWeek.*;
 import lombok.extern.log4j.Log4j2;
 
 @Log4j2
@@ -25,6 +21,13 @@ public class StoreHoursService {
 
     private final SquareLocationService locationService;
 
+    // Compiled once per Location object, the location service hands back the same instance until it refreshes
+    private final AtomicReference<CompiledHours> compiled = new AtomicReference<>();
+
+    private record CompiledHours(Location source, StoreHoursSchedule schedule) {
+
+    }
+
     public StoreHoursService(SquareLocationService locationService) {
         this.locationService = locationService;
     }
@@ -35,13 +38,12 @@ public class StoreHoursService {
 
     public StoreHoursResult getStoreHours() {
         try {
-            Location loc = locationService.getLocation();
-            BusinessHours bh = new BusinessHours(loc);
+            final var schedule = getSchedule();
 
-            ZoneId tz = locationService.getZoneId();
-            ZonedDateTime now = ZonedDateTime.now(tz);
+            final var instant = Instant.now();
+            ZonedDateTime now = instant.atZone(schedule.getZone());
 
-            boolean open = bh.isOpen(now);
+            boolean open = schedule.isOpen(instant);
             String status = open ? "OPEN" : "CLOSED";
 
             String dow = now.getDayOfWeek()
@@ -49,7 +51,7 @@ public class StoreHoursService {
                     .toUpperCase(Locale.US);
 
             String message;
-            if (bh.isEmpty()) {
+            if (!schedule.hasHours()) {
                 message = open
                         ? "We are currently open, but detailed schedule data is temporarily unavailable."
                         : "We are currently closed. Store hours are temporarily unavailable, but we will re-open soon.";
@@ -64,19 +66,65 @@ public class StoreHoursService {
                     now.toString(),
                     dow,
                     message,
-                    bh.isEmpty() ? null : bh
+                    schedule.nextTransition(instant).map(ZonedDateTime::toString).orElse(null),
+                    schedule.hasHours() ? schedule.getPeriods() : null
             );
         } catch (Exception e) {
+            log.warn("Unable to determine store hours", e);
             return new StoreHoursResult(
                     "UNKNOWN",
                     null,
                     null,
                     "Unable to determine store hours at the moment.",
+                    null,
                     null
             );
         }
     }
 
+    /**
+     * Whether the store is open right now and when that changes, for callers that answer without the model.
+     *
+     * @return empty when hours are unknown (Square disabled or down, no schedule, no upcoming change)
+     */
+    public Optional<OpenStatus> getOpenStatus() {
+        try {
+            if (!isEnabled()) {
+                return Optional.empty();
+            }
+            final var schedule = getSchedule();
+            if (!schedule.hasHours()) {
+                return Optional.empty();
+            }
+            final var instant = Instant.now();
+            final boolean open = schedule.isOpen(instant);
+            return schedule.nextTransition(instant).map(next -> new OpenStatus(open, next));
+        } catch (Exception e) {
+            log.warn("Unable to determine open status", e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param open open right now
+     * @param nextChange in the store zone, when it next closes (if open) or opens (if closed)
+     */
+    public record OpenStatus(boolean open, ZonedDateTime nextChange) {
+
+    }
+
+    private StoreHoursSchedule getSchedule() {
+        final Location loc = locationService.getLocation();
+        final var current = compiled.get();
+        if (current != null && current.source() == loc) {
+            return current.schedule();
+        }
+        final var schedule = SquareStoreHours.compile(loc, locationService.getZoneId());
+        compiled.set(new CompiledHours(loc, schedule));
+        log.debug("Compiled store hours for {} ({} periods)", schedule.getZone(), schedule.getPeriods().size());
+        return schedule;
+    }
+
     @JsonInclude(JsonInclude.Include.NON_NULL)
     public record StoreHoursResult(
             @JsonProperty("open_closed_status")
@@ -91,60 +139,10 @@ public class StoreHoursService {
             @JsonProperty("message")
             String message, // human-ready summary sentence
 
+            @JsonProperty("next_status_change")
+            String nextStatusChange, // ISO string in local TZ when we next open (if closed) or close (if open)
+
             @JsonProperty("open_hours")
-            Object openHours // BusinessHours serialized
+            Object openHours // List of OpenPeriod (dow, start, end)
     ) { }
-
-    public static class BusinessHours extends ArrayList<OpenPeriod> {
-
-        @JsonIgnore
-        private final Location loc;
-
-        public BusinessHours(Location loc) {
-            this.loc = loc;
-            loc.getBusinessHours()
-               .flatMap(bh -> bh.getPeriods())
-               .ifPresent(periods ->
-                       periods.forEach(p -> add(new OpenPeriod(p)))
-               );
-        }
-
-        @JsonIgnore
-        public boolean isOpen(ZonedDateTime now) {
-            ZoneId tz = ZoneId.of(loc.getTimezone().get());
-            LocalDate today = now.toLocalDate();
-
-            return stream()
-                    .filter(p -> p.getDow().equals(now.getDayOfWeek()))
-                    .anyMatch(p -> {
-                        ZonedDateTime start = LocalDateTime.of(today, p.getStart()).atZone(tz);
-                        ZonedDateTime end = LocalDateTime.of(today, p.getEnd()).atZone(tz);
-                        return !now.isBefore(start) && !now.isAfter(end);
-                    });
-        }
-    }
-
-    @Getter(AccessLevel.PUBLIC)
-    public static class OpenPeriod {
-
-        final DayOfWeek dow;
-        final LocalTime start;
-        final LocalTime end;
-
-        public OpenPeriod(BusinessHoursPeriod bhp) {
-            dow = switch (bhp.getDayOfWeek().get().getEnumValue()) {
-                case SUN -> SUNDAY;
-                case MON -> MONDAY;
-                case TUE -> TUESDAY;
-                case WED -> WEDNESDAY;
-                case THU -> THURSDAY;
-                case FRI -> FRIDAY;
-                case SAT -> SATURDAY;
-                case UNKNOWN -> throw new RuntimeException("Day of Week cannot be matched " + bhp.getDayOfWeek());
-            };
-
-            start = LocalTime.parse(bhp.getStartLocalTime().get());
-            end = LocalTime.parse(bhp.getEndLocalTime().get());
-        }
-    }
-}
\ No newline at end of file
+}
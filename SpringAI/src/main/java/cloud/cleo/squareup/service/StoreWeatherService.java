@@ -1,17 +1,21 @@
 package cloud.cleo.squareup.service;
 
+import cloud.cleo.squareup.cache.RefreshingCache;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Duration;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClient;
 
 @Service
-@RequiredArgsConstructor
 @Log4j2
 public class StoreWeatherService {
 
@@ -19,140 +23,120 @@ public class StoreWeatherService {
     private static final double WAHKON_LAT = 46.1182899;
     private static final double WAHKON_LON = -93.5210726;
 
-    private final RestClient restClient = RestClient.builder()
+    // Store location is fixed, so there is only ever one forecast to cache
+    private static final String CACHE_KEY = "Wahkon, MN";
+
+    private final RestClient restClient;
+
+    private final ZoneId storeTimezone;
+
+    // Everyone in the same refresh window shares one forecast, refreshes happen in the background
+    private final RefreshingCache<String, StoreWeatherResponse> forecastCache;
+
+    public StoreWeatherService(ZoneId storeTimezone, ExecutorService virtualThreadExecutor,
+            @Value("${weather.refresh:10m}") Duration refresh,
+            @Value("${weather.max-staleness:3h}") Duration maxStaleness,
+            @Value("${weather.connect-timeout:2s}") Duration connectTimeout,
+            @Value("${weather.read-timeout:3s}") Duration readTimeout) {
+        this.storeTimezone = storeTimezone;
+
+        final var requestFactory = new HttpComponentsClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeout);
+        requestFactory.setConnectionRequestTimeout(connectTimeout);
+        requestFactory.setReadTimeout(readTimeout);
+        this.restClient = RestClient.builder()
                 .baseUrl("https://api.open-meteo.com")
+                .requestFactory(requestFactory)
                 .build();
-    
-    private final ZoneId storeTimezone;
 
+        this.forecastCache = new RefreshingCache<>("Store weather", key -> fetchWeather(),
+                refresh, maxStaleness, Duration.ofSeconds(30), 1, virtualThreadExecutor);
+    }
+
+    /**
+     * Current conditions and forecast. Served from memory, only the very first call (or one after max-staleness
+     * without a successful refresh) waits on Open-Meteo.
+     *
+     * @return weather, or an unavailable response when nothing good has been fetched recently
+     */
     public StoreWeatherResponse getStoreWeather() {
         try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> json =
-                    restClient.get()
-                            .uri(uriBuilder -> uriBuilder
-                                    .path("/v1/forecast")
-                                    .queryParam("latitude", WAHKON_LAT)
-                                    .queryParam("longitude", WAHKON_LON)
-                                    .queryParam("current_weather", "true")
-                                    .queryParam("daily", "weathercode,temperature_2m_max,temperature_2m_min")
-                                    .queryParam("timezone", storeTimezone.toString())
-                                    .queryParam("temperature_unit", "fahrenheit")
-                                    .queryParam("windspeed_unit", "mph")
-                                    .queryParam("forecast_days", 5)
-                                    .build()
-                            )
-                            .retrieve()
-                            .body(Map.class);
-
-            if (json == null || json.isEmpty()) {
-                log.warn("Weather API returned empty JSON");
-                return unavailableResponse();
-            }
-
-            // ----- current conditions -----
-            Object currentObj = json.get("current_weather");
-            if (!(currentObj instanceof Map)) {
-                log.warn("Weather API JSON missing or invalid 'current_weather' node: {}", currentObj);
-                return unavailableResponse();
-            }
-
-            @SuppressWarnings("unchecked")
-            Map<String, Object> current = (Map<String, Object>) currentObj;
-
-            Object tempObj = current.get("temperature");
-            Object windObj = current.get("windspeed");
-            Object codeObj = current.get("weathercode");
-
-            if (!(tempObj instanceof Number)
-                    || !(windObj instanceof Number)
-                    || !(codeObj instanceof Number)) {
-                log.warn("Weather API JSON missing numeric current fields: temp={}, wind={}, code={}",
-                        tempObj, windObj, codeObj);
-                return unavailableResponse();
-            }
-
-            double temperatureF = ((Number) tempObj).doubleValue();
-            double windSpeedMph = ((Number) windObj).doubleValue();
-            int weatherCode = ((Number) codeObj).intValue();
-
-            String currentSummary = mapWeatherCode(weatherCode);
-
-            // ----- daily forecast -----
-            Object dailyObj = json.get("daily");
-            if (!(dailyObj instanceof Map)) {
-                log.warn("Weather API JSON missing or invalid 'daily' node: {}", dailyObj);
-                return unavailableResponseWithSummaryOnly(currentSummary, temperatureF, windSpeedMph);
-            }
-
-            @SuppressWarnings("unchecked")
-            Map<String, Object> daily = (Map<String, Object>) dailyObj;
-
-            @SuppressWarnings("unchecked")
-            List<String> dates = (List<String>) daily.get("time");
-            @SuppressWarnings("unchecked")
-            List<Number> minTemps = (List<Number>) daily.get("temperature_2m_min");
-            @SuppressWarnings("unchecked")
-            List<Number> maxTemps = (List<Number>) daily.get("temperature_2m_max");
-            @SuppressWarnings("unchecked")
-            List<Number> codes = (List<Number>) daily.get("weathercode");
-
-            if (dates == null || minTemps == null || maxTemps == null || codes == null) {
-                log.warn("Weather API JSON daily arrays missing: dates={}, min={}, max={}, codes={}",
-                        dates, minTemps, maxTemps, codes);
-                return unavailableResponseWithSummaryOnly(currentSummary, temperatureF, windSpeedMph);
-            }
-
-            int size = Math.min(
-                    Math.min(dates.size(), minTemps.size()),
-                    Math.min(maxTemps.size(), codes.size())
-            );
-
-            List<StoreWeatherResponse.DailyForecast> forecast = new ArrayList<>(size);
-            for (int i = 0; i < size; i++) {
-                forecast.add(new StoreWeatherResponse.DailyForecast(
-                        dates.get(i),
-                        minTemps.get(i).doubleValue(),
-                        maxTemps.get(i).doubleValue(),
-                        mapWeatherCode(codes.get(i).intValue())
-                ));
-            }
-
-            var res = new StoreWeatherResponse(
-                    "Wahkon, MN",
-                    currentSummary,
-                    temperatureF,
-                    windSpeedMph,
-                    forecast
-            );
-            log.debug(res);
-            return res;
+            return forecastCache.get(CACHE_KEY);
         } catch (Exception e) {
             log.warn("Failed to retrieve store weather", e);
             return unavailableResponse();
         }
     }
 
+    /**
+     * Loader for the cache, throws on anything unusable so the last good forecast keeps being served.
+     */
+    private StoreWeatherResponse fetchWeather() {
+        final OpenMeteoForecast json = restClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/v1/forecast")
+                        .queryParam("latitude", WAHKON_LAT)
+                        .queryParam("longitude", WAHKON_LON)
+                        .queryParam("current_weather", "true")
+                        .queryParam("daily", "weathercode,temperature_2m_max,temperature_2m_min")
+                        .queryParam("timezone", storeTimezone.toString())
+                        .queryParam("temperature_unit", "fahrenheit")
+                        .queryParam("windspeed_unit", "mph")
+                        .queryParam("forecast_days", 5)
+                        .build()
+                )
+                .retrieve()
+                .body(OpenMeteoForecast.class);
+
+        if (json == null || json.currentWeather() == null) {
+            throw new IllegalStateException("Weather API JSON missing 'current_weather' node");
+        }
+
+        final var current = json.currentWeather();
+        if (current.temperature() == null || current.windspeed() == null || current.weathercode() == null) {
+            throw new IllegalStateException("Weather API JSON missing numeric current fields: " + current);
+        }
+
+        final var daily = json.daily();
+        if (daily == null || daily.time() == null || daily.temperatureMin() == null
+                || daily.temperatureMax() == null || daily.weathercode() == null) {
+            throw new IllegalStateException("Weather API JSON daily arrays missing: " + daily);
+        }
+
+        int size = Math.min(
+                Math.min(daily.time().size(), daily.temperatureMin().size()),
+                Math.min(daily.temperatureMax().size(), daily.weathercode().size())
+        );
+
+        List<StoreWeatherResponse.DailyForecast> forecast = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            forecast.add(new StoreWeatherResponse.DailyForecast(
+                    daily.time().get(i),
+                    daily.temperatureMin().get(i),
+                    daily.temperatureMax().get(i),
+                    mapWeatherCode(daily.weathercode().get(i))
+            ));
+        }
+
+        var res = new StoreWeatherResponse(
+                CACHE_KEY,
+                mapWeatherCode(current.weathercode()),
+                current.temperature(),
+                current.windspeed(),
+                current.time(),
+                forecast
+        );
+        log.debug(res);
+        return res;
+    }
+
     private StoreWeatherResponse unavailableResponse() {
         return new StoreWeatherResponse(
                 "Wahkon, MN",
                 "No weather data available at this time.",
                 0.0,
                 0.0,
-                List.of()
-        );
-    }
-
-    private StoreWeatherResponse unavailableResponseWithSummaryOnly(
-            String currentSummary,
-            double temperatureF,
-            double windSpeedMph
-    ) {
-        return new StoreWeatherResponse(
-                "Wahkon, MN",
-                currentSummary + " (forecast unavailable).",
-                temperatureF,
-                windSpeedMph,
+                null,
                 List.of()
         );
     }
@@ -177,11 +161,38 @@ public class StoreWeatherService {
         };
     }
 
+    /**
+     * Open-Meteo forecast, only the fields requested above.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record OpenMeteoForecast(
+            @JsonProperty("current_weather") CurrentWeather currentWeather,
+            @JsonProperty("daily") Daily daily
+    ) {
+
+        @JsonIgnoreProperties(ignoreUnknown = true)
+        record CurrentWeather(
+                String time,
+                Double temperature,
+                Double windspeed,
+                Integer weathercode
+        ) {}
+
+        @JsonIgnoreProperties(ignoreUnknown = true)
+        record Daily(
+                List<String> time,
+                @JsonProperty("temperature_2m_min") List<Double> temperatureMin,
+                @JsonProperty("temperature_2m_max") List<Double> temperatureMax,
+                List<Integer> weathercode
+        ) {}
+    }
+
     public record StoreWeatherResponse(
             String locationName,
             String summary,
             double temperatureFahrenheit,
             double windSpeedMilesPerHour,
+            String observedAt, // local time of the current conditions, forecast may be up to the refresh interval old
             List<DailyForecast> forecast
     ) {
         public record DailyForecast(
@@ -0,0 +1,77 @@
+package cloud.cleo.squareup.sms;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+
+/**
+ * One item per sender holding the pending messages and a sequence, both updated atomically so concurrent invocations
+ * (usually in different containers) agree on which message is the newest. Claiming removes the messages but keeps the
+ * sequence counting up.
+ *
+ * Table schema (Dynamo): PK: sender (String) seq: Number messages: List of String ttl: epoch seconds for TTL
+ *
+ * @author sjensen
+ */
+public class DynamoPendingSmsStore implements PendingSmsStore {
+
+    private static final String SENDER = "sender";
+    private static final String SEQUENCE = "seq";
+    private static final String MESSAGES = "messages";
+    private static final String TTL = "ttl";
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+    // Idle senders' items (just the sequence once claimed) expire
+    private final Duration ttlDuration;
+
+    public DynamoPendingSmsStore(DynamoDbClient dynamoDbClient, String tableName, Duration ttlDuration) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+        this.ttlDuration = ttlDuration;
+    }
+
+    @Override
+    public long append(String sender, String payload) {
+        final var res = dynamoDbClient.updateItem(b -> b
+                .tableName(tableName)
+                .key(Map.of(SENDER, AttributeValue.fromS(sender)))
+                .updateExpression("SET #seq = if_not_exists(#seq, :zero) + :one, "
+                        + "#messages = list_append(if_not_exists(#messages, :empty), :message), #ttl = :ttl")
+                .expressionAttributeNames(Map.of("#seq", SEQUENCE, "#messages", MESSAGES, "#ttl", TTL))
+                .expressionAttributeValues(Map.of(
+                        ":zero", AttributeValue.fromN("0"),
+                        ":one", AttributeValue.fromN("1"),
+                        ":empty", AttributeValue.fromL(List.of()),
+                        ":message", AttributeValue.fromL(List.of(AttributeValue.fromS(payload))),
+                        ":ttl", AttributeValue.fromN(Long.toString(Instant.now().plus(ttlDuration).getEpochSecond()))))
+                .returnValues(ReturnValue.UPDATED_NEW));
+        return Long.parseLong(res.attributes().get(SEQUENCE).n());
+    }
+
+    @Override
+    public Optional<List<String>> claimIfLatest(String sender, long sequence) {
+        try {
+            // Keep the item (and its sequence) so a late sleeper from an earlier burst can never match a new one
+            final var res = dynamoDbClient.updateItem(b -> b
+                    .tableName(tableName)
+                    .key(Map.of(SENDER, AttributeValue.fromS(sender)))
+                    .updateExpression("REMOVE #messages")
+                    .conditionExpression("#seq = :seq AND attribute_exists(#messages)")
+                    .expressionAttributeNames(Map.of("#seq", SEQUENCE, "#messages", MESSAGES))
+                    .expressionAttributeValues(Map.of(":seq", AttributeValue.fromN(Long.toString(sequence))))
+                    .returnValues(ReturnValue.ALL_OLD));
+            final var messages = res.attributes().get(MESSAGES);
+            return Optional.of(messages == null ? List.of() : messages.l().stream().map(AttributeValue::s).toList());
+        } catch (ConditionalCheckFailedException e) {
+            // A newer message arrived (or it was already claimed)
+            return Optional.empty();
+        }
+    }
+}
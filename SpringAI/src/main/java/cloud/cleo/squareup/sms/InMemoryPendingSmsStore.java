@@ -0,0 +1,43 @@
+package cloud.cleo.squareup.sms;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Pending messages held in this process only. Used when no table is configured (local runs) and in tests, on Lambda
+ * concurrent invocations land in different containers so only the Dynamo store can merge them.
+ *
+ * @author sjensen
+ */
+public class InMemoryPendingSmsStore implements PendingSmsStore {
+
+    private static final class Pending {
+
+        long sequence;
+        final List<String> payloads = new ArrayList<>();
+    }
+
+    private final Map<String, Pending> pending = new HashMap<>();
+
+    @Override
+    public synchronized long append(String sender, String payload) {
+        final var p = pending.computeIfAbsent(sender, k -> new Pending());
+        p.payloads.add(payload);
+        return ++p.sequence;
+    }
+
+    @Override
+    public synchronized Optional<List<String>> claimIfLatest(String sender, long sequence) {
+        final var p = pending.get(sender);
+        if (p == null || p.sequence != sequence || p.payloads.isEmpty()) {
+            return Optional.empty();
+        }
+        // Sequence keeps counting so a late claim from an earlier burst can't match a new one
+        final var claimed = List.copyOf(p.payloads);
+        p.payloads.clear();
+        return Optional.of(claimed);
+    }
+}
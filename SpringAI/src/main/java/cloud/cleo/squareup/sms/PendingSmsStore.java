@@ -0,0 +1,31 @@
+package cloud.cleo.squareup.sms;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Messages from one sender that have arrived but not been answered yet. Every invocation appends its message, waits
+ * out the coalescing window, and then only the one holding the newest message claims (and answers) them all.
+ *
+ * @author sjensen
+ */
+public interface PendingSmsStore {
+
+    /**
+     * Add a message for the sender.
+     *
+     * @param sender originating number
+     * @param payload serialized message
+     * @return sequence of this message, higher than any earlier pending message for the sender
+     */
+    long append(String sender, String payload);
+
+    /**
+     * Take all pending messages, but only if nothing newer than sequence has arrived.
+     *
+     * @param sender originating number
+     * @param sequence from {@link #append}
+     * @return pending payloads in arrival order, empty when a newer message exists (its invocation will answer)
+     */
+    Optional<List<String>> claimIfLatest(String sender, long sequence);
+}
@@ -0,0 +1,130 @@
+package cloud.cleo.squareup.sms;
+
+import cloud.cleo.squareup.cloudfunctions.PinpointFunction.PinpointEvent;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Debounce inbound SMS per sender. People often split one thought over a few texts, so instead of a model round trip
+ * per fragment every message is parked in the {@link PendingSmsStore}, the invocation waits out the window, and only
+ * the one holding the newest message answers, with all the fragments merged into one transcript.
+ *
+ * A window of zero turns this off (every message answered on its own).
+ *
+ * @author sjensen
+ */
+@Log4j2
+@Component
+public class SmsCoalescer {
+
+    private final PendingSmsStore store;
+    private final JsonMapper mapper;
+    private final Duration window;
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder answered = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+
+    /**
+     * Point in time view of the counters.
+     *
+     * @param messages inbound messages seen
+     * @param answered model calls made for them
+     * @param deferred invocations that left their message to a newer one
+     */
+    public record Stats(long messages, long answered, long deferred) {
+
+    }
+
+    public SmsCoalescer(PendingSmsStore store, JsonMapper mapper,
+            @Value("${sms.coalesce.window:0s}") Duration window) {
+        this.store = store;
+        this.mapper = mapper;
+        this.window = window;
+    }
+
+    /**
+     * @param events messages from one sender in this invocation, in arrival order
+     * @return what to answer: the events unchanged when disabled, otherwise one merged event, or nothing when a newer
+     * message (in another invocation) will answer for these
+     */
+    public List<PinpointEvent> coalesce(List<PinpointEvent> events) {
+        messages.add(events.size());
+        if (window.isZero() || events.isEmpty()) {
+            answered.add(events.size());
+            return events;
+        }
+
+        final var sender = events.getFirst().originationNumber();
+        final long sequence;
+        try {
+            long last = 0;
+            for (final var event : events) {
+                last = store.append(sender, mapper.writeValueAsString(event));
+            }
+            sequence = last;
+        } catch (Exception e) {
+            log.warn("Unable to park SMS from {}, answering without coalescing", sender, e);
+            return answer(events);
+        }
+
+        try {
+            Thread.sleep(window);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            final var claimed = store.claimIfLatest(sender, sequence);
+            if (claimed.isEmpty()) {
+                log.debug("Newer SMS from {} arrived within {}, it will answer", sender, window);
+                deferred.increment();
+                return List.of();
+            }
+            final var pending = new ArrayList<PinpointEvent>(claimed.get().size());
+            for (final var payload : claimed.get()) {
+                pending.add(mapper.readValue(payload, PinpointEvent.class));
+            }
+            if (pending.size() > 1) {
+                log.info("Coalesced {} SMS from {} into one turn", pending.size(), sender);
+            }
+            return answer(pending.isEmpty() ? events : pending);
+        } catch (Exception e) {
+            log.warn("Unable to claim pending SMS from {}, answering own messages", sender, e);
+            return answer(events);
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(messages.sum(), answered.sum(), deferred.sum());
+    }
+
+    private List<PinpointEvent> answer(List<PinpointEvent> events) {
+        answered.increment();
+        return List.of(merge(events));
+    }
+
+    /**
+     * One event carrying every body in order, the rest (ids, keyword) taken from the newest.
+     */
+    static PinpointEvent merge(List<PinpointEvent> events) {
+        final var last = events.getLast();
+        if (events.size() == 1) {
+            return last;
+        }
+        return new PinpointEvent(
+                last.originationNumber(),
+                last.destinationNumber(),
+                last.messageKeyword(),
+                events.stream().map(PinpointEvent::messageBody).collect(Collectors.joining("\n")),
+                last.inboundMessageId(),
+                last.previousPublishedMessageId());
+    }
+}
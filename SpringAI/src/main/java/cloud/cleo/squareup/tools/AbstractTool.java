@@ -1,12 +1,15 @@
 package cloud.cleo.squareup.tools;
 
 import cloud.cleo.squareup.LexV2EventWrapper;
+import cloud.cleo.squareup.cache.IdempotencyCache;
 import static cloud.cleo.squareup.tools.AbstractTool.StatusMessageResult.Status.FAILED;
 import static cloud.cleo.squareup.tools.AbstractTool.StatusMessageResult.Status.SUCCESS;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import lombok.AccessLevel;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.ai.chat.model.ToolContext;
@@ -52,6 +55,10 @@ import software.amazon.awssdk.services.sns.SnsClient;
 public abstract class AbstractTool {
 
     public final static String CTX_EVENT_WRAPPER = "eventWrapper";
+    /**
+     * Optional mutable Set of String in the tool context, gets the name of every tool the model calls this turn.
+     */
+    public final static String CTX_TOOLS_INVOKED = "toolsInvoked";
     public final static String TRANSFER_FUNCTION_NAME = "transfer_call";
     public final static String HANGUP_FUNCTION_NAME = "hangup_call";
     public final static String FACEBOOK_HANDOVER_FUNCTION_NAME = "send_to_facebook_inbox";
@@ -111,6 +118,9 @@ public abstract class AbstractTool {
      * Given an incoming LEX event, should this tool be included in the Chat Request. Some tools are not relevant for
      * certain channels (Like Voice vs Text).
      *
+     * The result is cached by {@link ToolRegistry} per voice/text and channel platform, so implementations must only
+     * look at those and deployment level configuration, never per-session state.
+     *
      * @param event
      * @return
      */
@@ -152,6 +162,34 @@ public abstract class AbstractTool {
     }
 
 
+    /**
+     * Guard for tools with side effects (SMS, email). The same action with the same content in the same conversation
+     * only happens once within the cache TTL, so a retried turn or the model calling the tool twice does not send the
+     * caller (or an employee) duplicates. Only successes are remembered, a failed send can be tried again.
+     *
+     * @param sideEffects successful sends, shared by all tools
+     * @param event current request
+     * @param action tool function name
+     * @param content what identifies the send (message body, recipient, etc.)
+     * @param effect performs the send
+     * @return result of the send, or a success noting it was already done
+     */
+    protected StatusMessageResult once(IdempotencyCache<StatusMessageResult> sideEffects, LexV2EventWrapper event,
+            String action, String content, Supplier<StatusMessageResult> effect) {
+        final var ran = new AtomicBoolean();
+        final var result = sideEffects.execute(
+                IdempotencyCache.hash(event.getChatMemorySessionId(), action, content),
+                () -> {
+                    ran.set(true);
+                    return effect.get();
+                },
+                r -> r.status() == SUCCESS);
+        if (!ran.get() && result.status() == SUCCESS) {
+            return logAndReturnSuccess("This was already sent earlier in this conversation, it was not sent again");
+        }
+        return result;
+    }
+
     /**
      * Simple result that will be used by many tools to report back whether something succeeded to failed with a message
      * describing the success or failure.
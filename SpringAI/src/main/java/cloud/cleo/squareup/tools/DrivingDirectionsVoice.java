@@ -2,6 +2,7 @@ package cloud.cleo.squareup.tools;
 
 
 import cloud.cleo.squareup.LexV2EventWrapper;
+import cloud.cleo.squareup.cache.IdempotencyCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.chat.model.ToolContext;
 import org.springframework.ai.tool.annotation.Tool;
@@ -17,6 +18,7 @@ import software.amazon.awssdk.services.sns.SnsClient;
 public class DrivingDirectionsVoice extends AbstractTool {
 
     private final SnsClient snsClient;
+    private final IdempotencyCache<StatusMessageResult> sideEffects;
     
     @Tool(
         name = DRIVING_DIRECTIONS_VOICE_FUNCTION_NAME,
@@ -28,7 +30,8 @@ public class DrivingDirectionsVoice extends AbstractTool {
     public StatusMessageResult sendDrivingDirectionsVoice(ToolContext ctx) {
         LexV2EventWrapper event = getEventWrapper(ctx);
 
-        return sendSMS(snsClient,event, DRIVING_DIRECTIONS_URL.toString());
+        final var message = DRIVING_DIRECTIONS_URL.toString();
+        return once(sideEffects, event, DRIVING_DIRECTIONS_VOICE_FUNCTION_NAME, message, () -> sendSMS(snsClient, event, message));
     }
 
     @Override
@@ -0,0 +1,48 @@
+package cloud.cleo.squareup.tools;
+
+import static cloud.cleo.squareup.tools.AbstractTool.CTX_TOOLS_INVOKED;
+import java.util.Set;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/**
+ * Notes the tool name in the turn's {@link AbstractTool#CTX_TOOLS_INVOKED} set (when the caller put one in the tool
+ * context) before delegating. Tool calls happen inside the model call, so this is the only way to tell afterwards
+ * whether an answer came from the prompt alone or from live data.
+ *
+ * @author sjensen
+ */
+final class InvocationRecordingToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+
+    InvocationRecordingToolCallback(ToolCallback delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return delegate.call(toolInput);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public String call(String toolInput, ToolContext toolContext) {
+        if (toolContext != null && toolContext.getContext().get(CTX_TOOLS_INVOKED) instanceof Set<?> invoked) {
+            ((Set<String>) invoked).add(getToolDefinition().name());
+        }
+        return delegate.call(toolInput, toolContext);
+    }
+}
@@ -1,6 +1,7 @@
 package cloud.cleo.squareup.tools;
 
 import cloud.cleo.squareup.LexV2EventWrapper;
+import cloud.cleo.squareup.cache.IdempotencyCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.chat.model.ToolContext;
 import org.springframework.ai.tool.annotation.Tool;
@@ -15,6 +16,7 @@ import software.amazon.awssdk.services.sns.SnsClient;
 public class PrivateShoppingLinkVoice extends AbstractTool {
 
     private final SnsClient snsClient;
+    private final IdempotencyCache<StatusMessageResult> sideEffects;
 
     @Tool(
         name = PRIVATE_SHOPPING_VOICE_FUNCTION_NAME,
@@ -26,7 +28,8 @@ public class PrivateShoppingLinkVoice extends AbstractTool {
         LexV2EventWrapper event = getEventWrapper(ctx);
 
         // Reuse the shared SMS helper on AbstractTool
-        return sendSMS(snsClient, event, PRIVATE_SHOPPING_URL.toString());
+        final var message = PRIVATE_SHOPPING_URL.toString();
+        return once(sideEffects, event, PRIVATE_SHOPPING_VOICE_FUNCTION_NAME, message, () -> sendSMS(snsClient, event, message));
     }
 
     @Override
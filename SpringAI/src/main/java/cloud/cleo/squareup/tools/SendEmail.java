@@ -2,6 +2,7 @@ package cloud.cleo.squareup.tools;
 
 import cloud.cleo.squareup.service.FaceBookService;
 import cloud.cleo.squareup.LexV2EventWrapper;
+import cloud.cleo.squareup.cache.IdempotencyCache;
 import cloud.cleo.squareup.service.SquareCustomerService;
 import com.squareup.square.types.Customer;
 import java.util.List;
@@ -27,6 +28,7 @@ public class SendEmail extends AbstractTool {
     private final JsonMapper mapper;
     private final FaceBookService faceBookService;
     private final SquareCustomerService squareCustomerService;
+    private final IdempotencyCache<StatusMessageResult> sideEffects;
 
     @Tool(
             name = SEND_EMAIL_FUNCTION_NAME,
@@ -51,7 +53,12 @@ public class SendEmail extends AbstractTool {
             }
         }
 
-        LexV2EventWrapper event = getEventWrapper(ctx);
+        final LexV2EventWrapper event = getEventWrapper(ctx);
+        return once(sideEffects, event, SEND_EMAIL_FUNCTION_NAME, String.join("\n", employeeEmail, subject, message),
+                () -> send(event, employeeEmail, subject, message));
+    }
+
+    private StatusMessageResult send(LexV2EventWrapper event, String employeeEmail, String subject, String message) {
         try {
             String customerEmail = null;
             Customer customer = null;
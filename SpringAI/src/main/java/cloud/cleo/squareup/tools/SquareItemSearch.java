@@ -11,7 +11,7 @@ import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.stereotype.Component;
 
 /**
- * Search for items based on search query using virtual threads.
+ * Search for items based on search query, from the local catalog index or live with virtual threads.
  */
 @Component
 @RequiredArgsConstructor
@@ -42,10 +42,9 @@ public class SquareItemSearch extends AbstractTool {
 
         log.debug("Square Item Search for {}", searchText);
 
-        // Use AbstractTool helper to generate combinations
-        List<String> tokens = allCombinations(searchText);
-
-        List<String> distinct = squareItemService.searchItemNames(tokens);
+        // Local catalog index first, only when it can't answer search Square with the AbstractTool combinations
+        List<String> distinct = squareItemService.searchIndexedItemNames(searchText)
+                .orElseGet(() -> squareItemService.searchItemNames(allCombinations(searchText)));
 
         if (distinct.isEmpty()) {
             log.debug("Square Item Search Result is Empty");
@@ -24,7 +24,9 @@ public class StoreHours extends AbstractTool {
      *
      * The returned JSON looks like: { "open_closed_status": "OPEN", "current_date_time":
      * "2025-11-26T14:10:31-06:00[America/Chicago]", "current_day_of_week": "WEDNESDAY", "message": "We are currently
-     * open. See 'open_hours' for today's and upcoming hours.", "open_hours": { ... BusinessHours serialized ... } }
+     * open. See 'open_hours' for today's and upcoming hours.", "next_status_change":
+     * "2025-11-26T17:00-06:00[America/Chicago]", "open_hours": [ { "dow": "MONDAY", "start": "09:00", "end": "17:00" },
+     * ... ] }
      * @param ctx
      * @return 
      */
@@ -35,7 +37,8 @@ public class StoreHours extends AbstractTool {
             the current day of week, and detailed business hours. \
             Do NOT guess the status or hours. Use the returned fields as the source of truth \
             when answering questions about whether the store is open, closing soon, or what \
-            today's hours are.
+            today's hours are. next_status_change is when the store next opens (if closed) or \
+            closes (if open).
             """
     )
     public StoreHoursResult getStoreHours() {
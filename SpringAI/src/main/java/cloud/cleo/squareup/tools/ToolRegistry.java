@@ -0,0 +1,68 @@
+package cloud.cleo.squareup.tools;
+
+import cloud.cleo.squareup.LexV2EventWrapper;
+import cloud.cleo.squareup.enums.ChannelPlatform;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.method.MethodToolCallbackProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolves the {@link ToolCallback}s (and their JSON schemas) for every tool once, then caches the filtered set per
+ * voice/text and channel so each Lex turn just hands a ready array to the ChatClient instead of re-reflecting
+ * {@code @Tool} methods.
+ *
+ * Because sets are cached, {@link AbstractTool#isValidForRequest(LexV2EventWrapper)} must only depend on the input
+ * mode (voice vs text), the channel platform and deployment level configuration (Square/Facebook enabled).
+ *
+ * @author sjensen
+ */
+@Log4j2
+@Component
+public class ToolRegistry {
+
+    private record ToolSetKey(boolean voice, ChannelPlatform channelPlatform) {
+
+    }
+
+    /**
+     * Callbacks for each tool, in the order Spring injected the tools.
+     */
+    private final Map<AbstractTool, ToolCallback[]> callbacksByTool;
+
+    private final Map<ToolSetKey, ToolCallback[]> toolSets = new ConcurrentHashMap<>();
+
+    public ToolRegistry(List<AbstractTool> tools) {
+        final var map = new LinkedHashMap<AbstractTool, ToolCallback[]>();
+        for (final var tool : tools) {
+            map.put(tool, Arrays.stream(MethodToolCallbackProvider.builder().toolObjects(tool).build().getToolCallbacks())
+                    // So a turn can tell which tools the model called
+                    .map(InvocationRecordingToolCallback::new)
+                    .toArray(ToolCallback[]::new));
+        }
+        this.callbacksByTool = map;
+        log.info("Resolved tool callbacks for {} tools", map.size());
+    }
+
+    /**
+     * The tool callbacks relevant for the given request.
+     *
+     * @param event
+     * @return cached array, callers must not modify it
+     */
+    public ToolCallback[] getToolCallbacks(LexV2EventWrapper event) {
+        return toolSets.computeIfAbsent(new ToolSetKey(event.isVoice(), event.getChannelPlatform()), key -> {
+            final var selected = callbacksByTool.entrySet().stream()
+                    .filter(e -> e.getKey().isValidForRequest(event))
+                    .flatMap(e -> Arrays.stream(e.getValue()))
+                    .toArray(ToolCallback[]::new);
+            log.debug("Tool set for {} is {}", key, Arrays.stream(selected).map(tc -> tc.getToolDefinition().name()).toList());
+            return selected;
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package cloud.cleo.squareup.advisor;
+
+import cloud.cleo.squareup.cache.SemanticCache;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import static cloud.cleo.squareup.advisor.SemanticResponseCacheAdvisor.CTX_CACHE_SCOPE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cache scope of Facebook turns, where the system prompt carries the user's name.
+ *
+ * @author sjensen
+ */
+public class SemanticResponseCacheAdvisorTest {
+
+    private static final String BASE_PROMPT = "You are a helpful assistant for Copper Fox Gifts.";
+
+    private static final String QUESTION = "What kind of things do you sell?";
+
+    // Same suffix LexV2EventWrapper adds on Facebook
+    private static String facebookPrompt(String name) {
+        return BASE_PROMPT + " The user's name is " + name + ".  Please greet the user by first name and personalize "
+                + "responses when appropiate to make the experience more friendly.  ";
+    }
+
+    private static ChatClientRequest turn(String systemPrompt) {
+        return ChatClientRequest.builder()
+                .prompt(new Prompt(List.of(new SystemMessage(systemPrompt), UserMessage.builder().text(QUESTION).build())))
+                .context(Map.of(CTX_CACHE_SCOPE, "FACEBOOK/TEXT/en_US"))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Facebook users with different names never share a scope")
+    public void personalizedPromptsDoNotShare() {
+        final var alice = SemanticResponseCacheAdvisor.scope(turn(facebookPrompt("Alice")));
+        final var bob = SemanticResponseCacheAdvisor.scope(turn(facebookPrompt("Bob")));
+        assertNotEquals(alice, bob);
+        assertEquals(alice, SemanticResponseCacheAdvisor.scope(turn(facebookPrompt("Alice"))));
+
+        // Every question embeds the same, only the scope keeps them apart
+        final var cache = new SemanticCache<String>(text -> new float[]{1f}, 0.8, Duration.ofMinutes(10), 10);
+        cache.probe(alice, QUESTION).store("Hi Alice! We sell gifts, candy and yarn.");
+        assertTrue(cache.probe(bob, QUESTION).hit().isEmpty());
+        assertEquals("Hi Alice! We sell gifts, candy and yarn.", cache.probe(alice, QUESTION).hit().orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Turns without a name share the scope, turns that did not opt in have none")
+    public void unpersonalizedPromptsShare() {
+        assertEquals(SemanticResponseCacheAdvisor.scope(turn(BASE_PROMPT)),
+                SemanticResponseCacheAdvisor.scope(turn(BASE_PROMPT)));
+        assertNotEquals(SemanticResponseCacheAdvisor.scope(turn(BASE_PROMPT)),
+                SemanticResponseCacheAdvisor.scope(turn(facebookPrompt("Alice"))));
+
+        final var request = ChatClientRequest.builder().prompt(new Prompt(QUESTION)).context(Map.of()).build();
+        assertNull(SemanticResponseCacheAdvisor.scope(request));
+    }
+}
@@ -0,0 +1,68 @@
+package cloud.cleo.squareup.cache;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * LRU bound and TTL expiry of the per container cache.
+ *
+ * @author sjensen
+ */
+public class BoundedTtlCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    @DisplayName("Least recently used entry is evicted at capacity")
+    public void lruEviction() {
+        final var cache = new BoundedTtlCache<String, Integer>(2, Duration.ofMinutes(1), clock::get);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        // touch a so b is the eldest
+        assertEquals(1, cache.get("a"));
+        cache.put("c", 3);
+
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    @DisplayName("Entries expire after the TTL and compute restarts it")
+    public void ttlExpiry() {
+        final var cache = new BoundedTtlCache<String, Integer>(10, Duration.ofSeconds(10), clock::get);
+        cache.put("a", 1);
+        cache.put("b", 2);
+
+        clock.addAndGet(Duration.ofSeconds(9).toNanos());
+        assertEquals(3, cache.compute("b", (k, v) -> v + 1));
+
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertNull(cache.get("a"));
+        assertEquals(3, cache.get("b"));
+        assertNull(cache.compute("a", (k, v) -> v));
+
+        clock.addAndGet(Duration.ofSeconds(9).toNanos());
+        assertNull(cache.remove("b"));
+    }
+
+    @Test
+    @DisplayName("putIfAbsent keeps a live entry and its TTL, replaces an expired one")
+    public void putIfAbsent() {
+        final var cache = new BoundedTtlCache<String, Integer>(10, Duration.ofSeconds(10), clock::get);
+        assertNull(cache.putIfAbsent("a", 1));
+
+        clock.addAndGet(Duration.ofSeconds(9).toNanos());
+        assertEquals(1, cache.putIfAbsent("a", 2));
+
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertNull(cache.putIfAbsent("a", 3));
+        assertEquals(3, cache.get("a"));
+    }
+}
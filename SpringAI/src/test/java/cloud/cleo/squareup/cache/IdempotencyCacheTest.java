@@ -0,0 +1,127 @@
+package cloud.cleo.squareup.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Duplicates join the in-flight run or replay the remembered result, failures and unremembered results run again.
+ *
+ * @author sjensen
+ */
+public class IdempotencyCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger runs = new AtomicInteger();
+
+    private IdempotencyCache<String> cache() {
+        return new IdempotencyCache<>(10, Duration.ofMinutes(5), Duration.ofSeconds(5), clock::get);
+    }
+
+    @Test
+    @DisplayName("Concurrent duplicates wait for the one running and share its result")
+    public void concurrentDuplicates() throws Exception {
+        final var cache = cache();
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+
+        final List<Future<String>> results = new ArrayList<>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            results.add(executor.submit(() -> cache.execute("turn", () -> {
+                started.countDown();
+                await(release);
+                return "answer-" + runs.incrementAndGet();
+            })));
+            started.await();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> cache.execute("turn", () -> "duplicate-" + runs.incrementAndGet())));
+            }
+            // Let the duplicates reach the in-flight future before the original finishes
+            while (cache.getStats().inFlightJoins() < 4) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+        }
+
+        for (final var f : results) {
+            assertEquals("answer-1", f.get());
+        }
+        assertEquals(1, runs.get());
+        assertEquals(new IdempotencyCache.Stats(1, 4, 0), cache.getStats());
+    }
+
+    @Test
+    @DisplayName("Later duplicates replay until the TTL runs out")
+    public void replayWithinTtl() {
+        final var cache = cache();
+        assertEquals("answer-1", cache.execute("turn", () -> "answer-" + runs.incrementAndGet()));
+
+        clock.addAndGet(Duration.ofMinutes(4).toNanos());
+        assertEquals("answer-1", cache.execute("turn", () -> "answer-" + runs.incrementAndGet()));
+        assertEquals("other-2", cache.execute("other", () -> "other-" + runs.incrementAndGet()));
+
+        clock.addAndGet(Duration.ofMinutes(1).toNanos());
+        assertEquals("answer-3", cache.execute("turn", () -> "answer-" + runs.incrementAndGet()));
+        assertEquals(new IdempotencyCache.Stats(3, 0, 1), cache.getStats());
+    }
+
+    @Test
+    @DisplayName("Failures and results not worth remembering run again")
+    public void forgetFailures() {
+        final var cache = cache();
+        assertThrows(IllegalStateException.class, () -> cache.execute("turn", () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("model down");
+        }));
+        assertEquals("failed", cache.execute("turn", () -> "failed", v -> !v.equals("failed")));
+        assertEquals("ok", cache.execute("turn", () -> "ok", v -> !v.equals("failed")));
+        assertEquals("ok", cache.execute("turn", () -> "again"));
+        assertEquals(new IdempotencyCache.Stats(3, 0, 1), cache.getStats());
+    }
+
+    @Test
+    @DisplayName("A duplicate gives up after the wait timeout")
+    public void waitTimeout() throws Exception {
+        final var cache = new IdempotencyCache<String>(10, Duration.ofMinutes(5), Duration.ofMillis(50));
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final var original = executor.submit(() -> cache.execute("turn", () -> {
+                started.countDown();
+                await(release);
+                return "slow";
+            }));
+            started.await();
+            assertThrows(IllegalStateException.class, () -> cache.execute("turn", () -> "duplicate"));
+            release.countDown();
+            assertEquals("slow", original.get());
+        }
+    }
+
+    @Test
+    @DisplayName("Hash separates parts")
+    public void hashParts() {
+        assertEquals(IdempotencyCache.hash("a", "bc"), IdempotencyCache.hash("a", "bc"));
+        assertNotEquals(IdempotencyCache.hash("ab", "c"), IdempotencyCache.hash("a", "bc"));
+        assertNotEquals(IdempotencyCache.hash("a", null), IdempotencyCache.hash("a"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
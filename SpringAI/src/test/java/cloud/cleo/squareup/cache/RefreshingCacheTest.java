@@ -0,0 +1,118 @@
+package cloud.cleo.squareup.cache;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Stale-while-revalidate, single-flight and failure backoff.
+ *
+ * @author sjensen
+ */
+public class RefreshingCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private volatile boolean failing;
+
+    // When deferred, background work only runs when the test says so
+    private final Queue<Runnable> queued = new ArrayDeque<>();
+    private boolean deferred;
+
+    private String load(String key) {
+        loads.incrementAndGet();
+        if (failing) {
+            throw new IllegalStateException("Square is down");
+        }
+        return key + "-" + loads.get();
+    }
+
+    private RefreshingCache<String, String> cache(Executor executor) {
+        return new RefreshingCache<>("test", this::load, Duration.ofSeconds(10), Duration.ofMinutes(1),
+                Duration.ofSeconds(5), 10, executor, clock::get);
+    }
+
+    private void runQueued() {
+        Runnable r;
+        while ((r = queued.poll()) != null) {
+            r.run();
+        }
+    }
+
+    private void advance(Duration d) {
+        clock.addAndGet(d.toNanos());
+    }
+
+    @Test
+    @DisplayName("Stale value is served while one background refresh runs")
+    public void staleWhileRevalidate() {
+        final var cache = cache(r -> {
+            if (deferred) {
+                queued.add(r);
+            } else {
+                r.run();
+            }
+        });
+        assertEquals("a-1", cache.get("a"));
+        assertEquals("a-1", cache.get("a"));
+        assertEquals(1, loads.get());
+
+        deferred = true;
+        advance(Duration.ofSeconds(11));
+        // Stale, both callers get the old value and only one refresh is queued
+        assertEquals("a-1", cache.get("a"));
+        assertEquals("a-1", cache.get("a"));
+        assertEquals(1, queued.size());
+        runQueued();
+        assertEquals("a-2", cache.get("a"));
+
+        final var stats = cache.getStats();
+        assertEquals(1, stats.refreshes());
+        assertEquals(2, stats.staleHits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    @DisplayName("Failed refresh keeps the stale value and backs off")
+    public void failureBackoff() {
+        final var cache = cache(Runnable::run);
+        assertEquals("a-1", cache.get("a"));
+
+        failing = true;
+        advance(Duration.ofSeconds(11));
+        assertEquals("a-1", cache.get("a"));
+        assertEquals(2, loads.get());
+
+        // Within the backoff no further attempts
+        assertEquals("a-1", cache.get("a"));
+        assertEquals(2, loads.get());
+
+        failing = false;
+        advance(Duration.ofSeconds(6));
+        assertEquals("a-1", cache.get("a"));
+        assertEquals("a-3", cache.get("a"));
+    }
+
+    @Test
+    @DisplayName("A miss that fails throws, and fails fast during the backoff")
+    public void missFailure() {
+        final var cache = cache(Runnable::run);
+        failing = true;
+        assertThrows(IllegalStateException.class, () -> cache.get("a"));
+        assertThrows(IllegalStateException.class, () -> cache.get("a"));
+        assertEquals(1, loads.get());
+
+        failing = false;
+        advance(Duration.ofSeconds(6));
+        assertEquals("a-2", cache.get("a"));
+        assertEquals(1, cache.getStats().failures());
+    }
+}
@@ -0,0 +1,121 @@
+package cloud.cleo.squareup.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exact and similar lookups, scope isolation, expiry and embedding failures, using word counts over a tiny vocabulary
+ * in place of a real embedding model.
+ *
+ * @author sjensen
+ */
+public class SemanticCacheTest {
+
+    private static final List<String> VOCABULARY = List.of("what", "kind", "of", "things", "do", "you", "sell",
+            "who", "is", "next", "door");
+
+    // Same meaning, same dimension
+    private static final Map<String, String> SYNONYMS = Map.of("stuff", "things", "carry", "sell");
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger embeds = new AtomicInteger();
+    private volatile boolean failing;
+
+    private float[] embed(String text) {
+        embeds.incrementAndGet();
+        if (failing) {
+            throw new IllegalStateException("Bedrock is down");
+        }
+        final var vector = new float[VOCABULARY.size()];
+        for (final var word : text.split(" ")) {
+            final int i = VOCABULARY.indexOf(SYNONYMS.getOrDefault(word, word));
+            if (i >= 0) {
+                vector[i]++;
+            }
+        }
+        return vector;
+    }
+
+    private SemanticCache<String> cache(int maxEntries) {
+        return new SemanticCache<>(this::embed, 0.8, Duration.ofMinutes(10), maxEntries, clock::get);
+    }
+
+    @Test
+    @DisplayName("Same question in other words is a hit, a different question is not")
+    public void similarity() {
+        final var cache = cache(10);
+        final var first = cache.probe("voice", "What kind of things do you sell?");
+        assertTrue(first.hit().isEmpty());
+        first.store("Gifts, candy and yarn");
+
+        final var reworded = cache.probe("voice", "What stuff do you carry");
+        assertEquals("Gifts, candy and yarn", reworded.hit().orElseThrow());
+        assertTrue(reworded.similarity() >= 0.8 && reworded.similarity() < 1);
+
+        assertTrue(cache.probe("voice", "Who is next door?").hit().isEmpty());
+        assertEquals(new SemanticCache.Stats(0, 1, 2, 0, 1), cache.getStats());
+    }
+
+    @Test
+    @DisplayName("Same normalized text hits without calling the embedder")
+    public void exactSkipsEmbedding() {
+        final var cache = cache(10);
+        cache.probe("text", "Who is next door?").store("The bakery");
+        final int before = embeds.get();
+
+        final var again = cache.probe("text", "  who is NEXT door ");
+        assertEquals("The bakery", again.hit().orElseThrow());
+        assertEquals(1d, again.similarity());
+        assertEquals(before, embeds.get());
+    }
+
+    @Test
+    @DisplayName("Entries only answer in their own scope")
+    public void scopes() {
+        final var cache = cache(10);
+        cache.probe("voice/en_US", "What kind of things do you sell").store("english answer");
+        assertTrue(cache.probe("voice/es_US", "What kind of things do you sell").hit().isEmpty());
+        assertTrue(cache.probe("text/en_US", "What kind of stuff do you carry").hit().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Entries expire after the TTL and the least recently used goes at capacity")
+    public void expiryAndBound() {
+        final var cache = cache(2);
+        cache.probe("s", "What kind of things do you sell").store("sell");
+        cache.probe("s", "Who is next door").store("door");
+
+        clock.addAndGet(Duration.ofMinutes(9).toNanos());
+        // touch sell so door is the eldest
+        assertEquals("sell", cache.probe("s", "What kind of things do you sell").hit().orElseThrow());
+        cache.probe("s", "do you carry yarn").store("yarn");
+        assertTrue(cache.probe("s", "Who is next door").hit().isEmpty());
+
+        clock.addAndGet(Duration.ofMinutes(1).toNanos());
+        assertTrue(cache.probe("s", "What kind of things do you sell").hit().isEmpty());
+        assertEquals("yarn", cache.probe("s", "do you carry yarn").hit().orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Embedding failure is a miss and the answer is still found by exact text")
+    public void embedFailure() {
+        final var cache = cache(10);
+        failing = true;
+        final var probe = cache.probe("s", "What kind of things do you sell");
+        assertTrue(probe.hit().isEmpty());
+        probe.store("sell");
+
+        assertEquals("sell", cache.probe("s", "what kind of things do you sell?").hit().orElseThrow());
+        failing = false;
+        assertTrue(cache.probe("s", "What kind of stuff do you carry").hit().isEmpty());
+        assertEquals(1, cache.getStats().embedFailures());
+    }
+}
@@ -0,0 +1,79 @@
+package cloud.cleo.squareup.cloudfunctions;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Tag scanner in {@link LexFunction#sanitizeAssistantText(String)} versus the regex version it replaced (kept in
+ * {@link SanitizeAssistantTextTest}), over the response shapes the models actually return.
+ *
+ * Not run by the build, see Benchmarks in SpringAI/src/test/README.md.
+ *
+ * @author sjensen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SanitizeAssistantTextBenchmark {
+
+    private static final String ANSWER = "We are open today from 10 AM to 5 PM. We carry gifts, home decor, candy, "
+            + "fudge and yarn at Copper Fox Gifts on Main Street.";
+
+    /**
+     * PLAIN is most responses (no tags at all), the rest are what reasoning models wrap the answer in.
+     */
+    @Param({"PLAIN", "THINKING", "RESPONSE", "THINKING_ONLY"})
+    public String shape;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        final var thinking = "<thinking>The customer asked about hours and products, check the store hours tool "
+                + "result and mention what we sell.</thinking>";
+        text = switch (shape) {
+            case "PLAIN" ->
+                ANSWER;
+            case "THINKING" ->
+                thinking + "\n" + ANSWER;
+            case "RESPONSE" ->
+                thinking + "\n<response>" + ANSWER + "</response>";
+            case "THINKING_ONLY" ->
+                thinking;
+            default ->
+                throw new IllegalArgumentException(shape);
+        };
+    }
+
+    @Benchmark
+    public String scanner() {
+        return LexFunction.sanitizeAssistantText(text);
+    }
+
+    @Benchmark
+    public String regex() {
+        return SanitizeAssistantTextTest.regexSanitize(text);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SanitizeAssistantTextBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
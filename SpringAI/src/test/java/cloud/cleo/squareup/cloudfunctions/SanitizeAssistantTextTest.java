@@ -0,0 +1,124 @@
+package cloud.cleo.squareup.cloudfunctions;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The hand written tag scanner in {@link LexFunction#sanitizeAssistantText(String)} must behave exactly like the
+ * original regex implementation (kept here as the reference).
+ *
+ * @author sjensen
+ */
+public class SanitizeAssistantTextTest {
+
+    private static final Pattern RESPONSE_BLOCK_PATTERN
+            = Pattern.compile("(?is)<response>(.*?)</response>");
+
+    private static final Pattern THINKING_BLOCK_PATTERN
+            = Pattern.compile("(?is)<thinking>(.*?)</thinking>");
+
+    /**
+     * Original regex based implementation (also the baseline in {@link SanitizeAssistantTextBenchmark}).
+     */
+    static String regexSanitize(String text) {
+        if (text == null || text.isBlank()) {
+            return text;
+        }
+
+        String original = text;
+
+        Matcher responseMatcher = RESPONSE_BLOCK_PATTERN.matcher(text);
+        if (responseMatcher.find()) {
+            String inside = responseMatcher.group(1);
+            inside = THINKING_BLOCK_PATTERN.matcher(inside).replaceAll("");
+            inside = inside.trim();
+            if (!inside.isBlank()) {
+                return inside;
+            }
+        }
+
+        String withoutThinking = THINKING_BLOCK_PATTERN.matcher(text)
+                .replaceAll("")
+                .trim();
+
+        if (!withoutThinking.isBlank()) {
+            return withoutThinking;
+        }
+
+        Matcher thinkingMatcher = THINKING_BLOCK_PATTERN.matcher(text);
+        if (thinkingMatcher.find()) {
+            String thinkingContent = thinkingMatcher.group(1).trim();
+            if (!thinkingContent.isBlank()) {
+                return thinkingContent;
+            }
+        }
+
+        return original.trim();
+    }
+
+    /**
+     * Fragments that random inputs are built from, weighted towards tags, near-miss tags and whitespace edge cases
+     * (including non ASCII characters that only match with Unicode case folding).
+     */
+    private static final String[] FRAGMENTS = {
+        "<response>", "</response>", "<RESPONSE>", "</Response>", "<ReSpOnSe>",
+        "<thinking>", "</thinking>", "<THINKING>", "</Thinking>", "<tHiNkInG>",
+        "<respons", "e>", "</", "<", ">", "<<", "thinking", "response",
+        "<reſponse>", "<thinKing>", "</thinKing>",
+        " ", "  ", "\n", "\t", "\r\n", "\u001F", " ", " ", "\u0000",
+        "Hello", "We are open 10-5.", "a", "b", "été", "😀"
+    };
+
+    private static String randomText(Random random) {
+        final var sb = new StringBuilder();
+        final int parts = random.nextInt(16);
+        for (int i = 0; i < parts; i++) {
+            sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    @DisplayName("Known inputs match the regex implementation")
+    public void knownInputs() {
+        final String[] inputs = {
+            null,
+            "",
+            "   ",
+            "Plain answer without tags.",
+            "  padded answer \n",
+            "<thinking>reasoning</thinking>We open at 10.",
+            "<thinking>reasoning</thinking><response>We open at 10.</response>",
+            "<response><thinking>hidden</thinking> visible </response>",
+            "<response>  </response>fallback text",
+            "<RESPONSE>Upper</RESPONSE>",
+            "<thinking>only thinking</thinking>",
+            "<thinking>   </thinking>",
+            "<thinking>unterminated",
+            "<response>unterminated",
+            "<thinking>a<thinking>b</thinking>c</thinking>d",
+            "x<thinking>1</thinking>y<thinking>2</thinking>z",
+            "<response>first</response><response>second</response>",
+            "<thinKing>kelvin</thinKing>",
+            "\u001F<thinking> </thinking>\u001F"
+        };
+        for (final var input : inputs) {
+            assertEquals(regexSanitize(input), LexFunction.sanitizeAssistantText(input), () -> "Input: [" + input + "]");
+        }
+    }
+
+    @Test
+    @DisplayName("Random inputs match the regex implementation")
+    public void randomInputs() {
+        // Fixed seed so any failure is reproducible
+        final var random = new Random(20251016L);
+        for (int i = 0; i < 200_000; i++) {
+            final var input = randomText(random);
+            assertEquals(regexSanitize(input), LexFunction.sanitizeAssistantText(input), () -> "Input: [" + input + "]");
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package cloud.cleo.squareup.memory;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.AssistantMessage.ToolCall;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage.ToolResponse;
+import org.springframework.ai.chat.messages.UserMessage;
+import tools.jackson.databind.json.JsonMapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trip the compressed conversation log encoding.
+ *
+ * @author sjensen
+ */
+public class ChatMessageCodecTest {
+
+    private final JsonMapper mapper = JsonMapper.builder().build();
+
+    @Test
+    @DisplayName("All message types survive encode/decode")
+    public void roundTrip() {
+        final List<Message> messages = List.of(
+                SystemMessage.builder().text("memory note").metadata(Map.of("kind", "note")).build(),
+                UserMessage.builder().text("summary so far").metadata(Map.of("kind", "summary")).build(),
+                UserMessage.builder().text("Do you have gummy bears? 🐻").build(),
+                AssistantMessage.builder()
+                        .content("")
+                        .toolCalls(List.of(new ToolCall("call-1", "function", "store_product_item", "{\"search_text\":\"gummy bears\"}")))
+                        .build(),
+                ToolResponseMessage.builder()
+                        .responses(List.of(new ToolResponse("call-1", "store_product_item", "{\"items\":[\"Gummy Bears\"]}")))
+                        .build(),
+                AssistantMessage.builder().content("<thinking>check</thinking>Yes, we carry Gummy Bears!").build()
+        );
+
+        final var decoded = ChatMessageCodec.decode(ChatMessageCodec.encode(messages, mapper), mapper);
+
+        assertEquals(messages.size(), decoded.size());
+        assertEquals(List.of(MessageType.SYSTEM, MessageType.USER, MessageType.USER, MessageType.ASSISTANT, MessageType.TOOL,
+                MessageType.ASSISTANT), decoded.stream().map(Message::getMessageType).toList());
+
+        assertEquals("memory note", decoded.get(0).getText());
+        assertEquals("note", decoded.get(0).getMetadata().get("kind"));
+        // The chat memory summary keeps its marker
+        assertTrue(TokenWindowChatMemory.isSummary(decoded.get(1)));
+        assertEquals("Do you have gummy bears? 🐻", decoded.get(2).getText());
+        assertFalse(TokenWindowChatMemory.isSummary(decoded.get(2)));
+
+        final var toolCalls = ((AssistantMessage) decoded.get(3)).getToolCalls();
+        assertEquals(List.of(new ToolCall("call-1", "function", "store_product_item", "{\"search_text\":\"gummy bears\"}")), toolCalls);
+
+        final var responses = ((ToolResponseMessage) decoded.get(4)).getResponses();
+        assertEquals(List.of(new ToolResponse("call-1", "store_product_item", "{\"items\":[\"Gummy Bears\"]}")), responses);
+
+        // Assistant text is sanitized the same as the per-message layout
+        assertEquals("Yes, we carry Gummy Bears!", decoded.get(5).getText());
+    }
+
+    @Test
+    @DisplayName("Empty and unknown formats")
+    public void emptyAndUnknown() {
+        assertTrue(ChatMessageCodec.decode(null, mapper).isEmpty());
+        assertTrue(ChatMessageCodec.decode(ChatMessageCodec.encode(List.of(), mapper), mapper).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> ChatMessageCodec.decode(new byte[]{99, 0}, mapper));
+    }
+}
@@ -0,0 +1,135 @@
+package cloud.cleo.squareup.memory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Per conversation serialization of turns.
+ *
+ * @author sjensen
+ */
+public class ConversationLocksTest {
+
+    @Test
+    @DisplayName("Stress: turns never overlap within a conversation, conversations run in parallel")
+    public void stress() throws InterruptedException {
+        final var locks = new ConversationLocks(Duration.ofSeconds(30));
+        final int conversations = 50;
+        final int turnsPerConversation = 40;
+
+        final Map<String, AtomicInteger> inTurn = new ConcurrentHashMap<>();
+        // Plain (unsynchronized) counters, lost updates show up if two turns of a conversation overlap
+        final int[] counters = new int[conversations];
+        final var overlaps = new AtomicInteger();
+        final var running = new AtomicInteger();
+        final var maxRunning = new AtomicInteger();
+        final var done = new CountDownLatch(conversations * turnsPerConversation);
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < turnsPerConversation; t++) {
+                for (int c = 0; c < conversations; c++) {
+                    final int conversation = c;
+                    final String id = "conv-" + c;
+                    executor.execute(() -> {
+                        try (var turn = locks.acquire(id)) {
+                            if (inTurn.computeIfAbsent(id, k -> new AtomicInteger()).incrementAndGet() != 1) {
+                                overlaps.incrementAndGet();
+                            }
+                            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                            final int before = counters[conversation];
+                            Thread.yield();
+                            counters[conversation] = before + 1;
+                            running.decrementAndGet();
+                            inTurn.get(id).decrementAndGet();
+                        } finally {
+                            done.countDown();
+                        }
+                    });
+                }
+            }
+            assertTrue(done.await(60, TimeUnit.SECONDS));
+        }
+
+        assertEquals(0, overlaps.get());
+        for (int c = 0; c < conversations; c++) {
+            assertEquals(turnsPerConversation, counters[c]);
+        }
+        assertTrue(maxRunning.get() > 1, "different conversations should run at the same time");
+        assertEquals(0, locks.activeConversations());
+    }
+
+    @Test
+    @DisplayName("Queued turns run in arrival order")
+    public void arrivalOrder() throws InterruptedException {
+        final var locks = new ConversationLocks(Duration.ofSeconds(30));
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        final var threads = new ArrayList<Thread>();
+
+        final var first = locks.acquire("sms");
+        for (int i = 0; i < 10; i++) {
+            final int turnNo = i;
+            threads.add(Thread.ofVirtual().start(() -> {
+                try (var turn = locks.acquire("sms")) {
+                    order.add(turnNo);
+                }
+            }));
+            // Make sure this one is queued before the next arrives
+            while (locks.waiting("sms") < i + 1) {
+                Thread.onSpinWait();
+            }
+        }
+        first.close();
+        for (final var t : threads) {
+            t.join(5000);
+        }
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), order);
+        assertEquals(0, locks.activeConversations());
+    }
+
+    @Test
+    @DisplayName("Waiting too long gives up without leaking the lock")
+    public void timeout() {
+        final var locks = new ConversationLocks(Duration.ofMillis(50));
+        try (var held = locks.acquire("voice")) {
+            final var failure = new AtomicReference<Throwable>();
+            final var waiter = Thread.ofVirtual().start(() -> {
+                try (var turn = locks.acquire("voice")) {
+                    failure.set(new AssertionError("acquired a held lock"));
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            });
+            assertTrue(joined(waiter));
+            assertTrue(failure.get() instanceof IllegalStateException, () -> "got " + failure.get());
+            // Other conversations are unaffected
+            try (var other = locks.acquire("other")) {
+                assertEquals(2, locks.activeConversations());
+            }
+        }
+        assertEquals(0, locks.activeConversations());
+    }
+
+    private static boolean joined(Thread t) {
+        try {
+            return t.join(Duration.ofSeconds(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
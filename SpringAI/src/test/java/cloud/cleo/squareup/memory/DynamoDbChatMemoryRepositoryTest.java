@@ -0,0 +1,138 @@
+package cloud.cleo.squareup.memory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import tools.jackson.databind.json.JsonMapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Items layout recovery from a gap in messageIndex, against an in memory table.
+ *
+ * @author sjensen
+ */
+public class DynamoDbChatMemoryRepositoryTest {
+
+    private static final String ID = "conversation-1";
+
+    private final InMemoryTable dynamo = new InMemoryTable();
+
+    private DynamoDbChatMemoryRepository repository() {
+        final var client = mock(DynamoDbClient.class);
+        when(client.query(any(QueryRequest.class))).thenAnswer(invocation -> dynamo.query(invocation.getArgument(0)));
+        when(client.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenAnswer(invocation -> dynamo.batchWriteItem(invocation.getArgument(0)));
+        // A new instance has nothing cached, like another container
+        return new DynamoDbChatMemoryRepository(DynamoDbEnhancedClient.builder().dynamoDbClient(client).build(),
+                JsonMapper.builder().build(), Duration.ofHours(1), "chat-memory");
+    }
+
+    private static List<Message> turn(int n) {
+        return List.of(
+                UserMessage.builder().text("Question " + n).build(),
+                AssistantMessage.builder().content("Answer " + n).build());
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+
+    @Test
+    @DisplayName("Items after a gap are deleted by the next turn instead of rejoining the history")
+    public void gapRepairedOnNextTurn() throws InterruptedException {
+        final var history = new ArrayList<Message>();
+        for (int i = 0; i < 3; i++) {
+            history.addAll(turn(i));
+        }
+        repository().saveAll(ID, history);
+        // Lost write, index 2 (Question 1) is missing
+        dynamo.items(ID).remove(2L);
+
+        final var repository = repository();
+        final var loaded = repository.findByConversationId(ID);
+        assertEquals(List.of("Question 0", "Answer 0"), texts(loaded));
+
+        // The stale items don't make the cached state look out of date
+        Thread.sleep(1_100);
+        repository.findByConversationId(ID);
+        assertEquals(0, repository.getCacheStats().staleReloads());
+
+        final var next = new ArrayList<>(loaded);
+        next.addAll(turn(3));
+        repository.saveAll(ID, next);
+
+        assertEquals(List.of(0L, 1L, 2L, 3L), List.copyOf(dynamo.items(ID).keySet()));
+        assertEquals(List.of("Question 0", "Answer 0", "Question 3", "Answer 3"),
+                texts(repository().findByConversationId(ID)));
+    }
+
+    /**
+     * Just the query and batch write calls the repository makes, keyed on conversationId/messageIndex.
+     */
+    private static final class InMemoryTable {
+
+        private final Map<String, NavigableMap<Long, Map<String, AttributeValue>>> tables = new ConcurrentHashMap<>();
+
+        NavigableMap<Long, Map<String, AttributeValue>> items(String conversationId) {
+            return tables.computeIfAbsent(conversationId, id -> new TreeMap<>());
+        }
+
+        QueryResponse query(QueryRequest request) {
+            String conversationId = null;
+            Long messageIndex = null;
+            for (final var value : request.expressionAttributeValues().values()) {
+                if (value.s() != null) {
+                    conversationId = value.s();
+                } else if (value.n() != null) {
+                    messageIndex = Long.valueOf(value.n());
+                }
+            }
+            NavigableMap<Long, Map<String, AttributeValue>> items = items(conversationId);
+            if (messageIndex != null) {
+                items = request.keyConditionExpression().contains(">=")
+                        ? items.tailMap(messageIndex, true)
+                        : items.subMap(messageIndex, true, messageIndex, true);
+            }
+            var matches = List.copyOf(Boolean.FALSE.equals(request.scanIndexForward())
+                    ? items.descendingMap().values()
+                    : items.values());
+            if (request.limit() != null && matches.size() > request.limit()) {
+                matches = matches.subList(0, request.limit());
+            }
+            return QueryResponse.builder().items(matches).count(matches.size()).build();
+        }
+
+        BatchWriteItemResponse batchWriteItem(BatchWriteItemRequest request) {
+            request.requestItems().values().forEach(writes -> writes.forEach(write -> {
+                if (write.putRequest() != null) {
+                    final var item = write.putRequest().item();
+                    items(item.get("conversationId").s()).put(Long.valueOf(item.get("messageIndex").n()), item);
+                } else {
+                    final var key = write.deleteRequest().key();
+                    items(key.get("conversationId").s()).remove(Long.valueOf(key.get("messageIndex").n()));
+                }
+            }));
+            return BatchWriteItemResponse.builder().build();
+        }
+    }
+}
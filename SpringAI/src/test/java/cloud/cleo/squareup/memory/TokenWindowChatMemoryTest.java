@@ -0,0 +1,239 @@
+package cloud.cleo.squareup.memory;
+
+import cloud.cleo.squareup.enums.ChannelPlatform;
+import cloud.cleo.squareup.memory.TokenWindowChatMemory.TokenBudgets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.AssistantMessage.ToolCall;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage.ToolResponse;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Token budgeted window, stale tool traffic and summary compaction.
+ *
+ * @author sjensen
+ */
+public class TokenWindowChatMemoryTest {
+
+    private static final String ID = "conversation-1";
+
+    private final InMemoryChatMemoryRepository repository = new InMemoryChatMemoryRepository();
+
+    private final ConversationLocks locks = new ConversationLocks(Duration.ofSeconds(5));
+
+    private final AtomicInteger summaryCalls = new AtomicInteger();
+
+    private final ChatModel summaryModel = prompt -> {
+        summaryCalls.incrementAndGet();
+        return new ChatResponse(List.of(new Generation(
+                AssistantMessage.builder().content("Customer asked about gummy bears and store hours.").build())));
+    };
+
+    private TokenWindowChatMemory memory(ChatModel model, int budget) {
+        // Runs the summary call inline
+        return memory(model, budget, Runnable::run, Duration.ofSeconds(5));
+    }
+
+    private TokenWindowChatMemory memory(ChatModel model, int budget, Executor executor, Duration summaryTimeout) {
+        final var memory = new TokenWindowChatMemory(repository, locks, new JTokkitTokenCountEstimator(), model, executor,
+                50, new TokenBudgets(budget, budget, budget), ChatOptions.builder().maxTokens(200).build(), summaryTimeout);
+        memory.useChannelBudget(ID, true, ChannelPlatform.CHIME);
+        return memory;
+    }
+
+    private static List<Message> turn(int n) {
+        return List.of(
+                UserMessage.builder().text("Question number " + n + " about what candy you have in the store today").build(),
+                AssistantMessage.builder().content("Answer number " + n + ", we have plenty of candy in the store today").build());
+    }
+
+    @Test
+    @DisplayName("Window keeps the newest whole turns within budget and drops earlier tool traffic")
+    public void windowWithinBudget() {
+        final var history = new ArrayList<Message>();
+        history.add(UserMessage.builder().text("Do you have gummy bears?").build());
+        history.add(AssistantMessage.builder()
+                .content("")
+                .toolCalls(List.of(new ToolCall("call-1", "function", "store_product_item", "{\"search_text\":\"gummy bears\"}")))
+                .build());
+        history.add(ToolResponseMessage.builder()
+                .responses(List.of(new ToolResponse("call-1", "store_product_item", "{\"items\":[\"Gummy Bears\"]}")))
+                .build());
+        history.add(AssistantMessage.builder().content("Yes, we carry Gummy Bears!").build());
+        for (int i = 0; i < 10; i++) {
+            history.addAll(turn(i));
+        }
+        repository.saveAll(ID, history);
+
+        final var window = memory(null, 100).get(ID);
+
+        assertTrue(window.size() < history.size());
+        assertEquals(MessageType.USER, window.getFirst().getMessageType());
+        assertEquals(history.getLast(), window.getLast());
+
+        // Large budget keeps everything except the earlier tool call/response pair
+        final var all = memory(null, 10_000).get(ID);
+        assertEquals(history.size() - 2, all.size());
+        assertTrue(all.stream().noneMatch(m -> m instanceof ToolResponseMessage));
+    }
+
+    @Test
+    @DisplayName("Older turns are folded into a summary once the history outgrows the budget")
+    public void compaction() {
+        final var memory = memory(summaryModel, 120);
+        for (int i = 0; i < 8; i++) {
+            // Same as a Lex turn, compact first (under the turn lock) then add the exchange
+            try (var turn = locks.acquire(ID)) {
+                memory.compactIfDue(ID);
+                memory.add(ID, turn(i));
+            }
+        }
+        memory.compactIfDue(ID);
+
+        final var stored = repository.findByConversationId(ID);
+        assertTrue(TokenWindowChatMemory.isSummary(stored.getFirst()));
+        assertTrue(stored.getFirst().getText().contains("gummy bears"));
+        assertEquals(turn(7).getLast().getText(), stored.getLast().getText());
+        assertTrue(summaryCalls.get() > 0);
+
+        // Summary is the opening exchange, the system prompt (and its cache point) stays the only system content
+        final var window = memory.get(ID);
+        assertTrue(TokenWindowChatMemory.isSummary(window.getFirst()));
+        assertEquals(MessageType.ASSISTANT, window.get(1).getMessageType());
+        assertEquals(MessageType.USER, window.get(2).getMessageType());
+        assertTrue(window.stream().noneMatch(m -> m.getMessageType() == MessageType.SYSTEM));
+    }
+
+    @Test
+    @DisplayName("Adding to memory never calls the summary model")
+    public void addDoesNotSummarize() {
+        final var memory = memory(summaryModel, 60);
+        for (int i = 0; i < 8; i++) {
+            memory.add(ID, turn(i));
+        }
+
+        assertEquals(0, summaryCalls.get());
+        assertEquals(16, repository.findByConversationId(ID).size());
+
+        // Several conversations at once (Pinpoint after the replies are sent)
+        memory.compactIfDue(List.of(ID, "conversation-2"));
+        assertEquals(1, summaryCalls.get());
+        assertTrue(TokenWindowChatMemory.isSummary(repository.findByConversationId(ID).getFirst()));
+        assertTrue(repository.findByConversationId("conversation-2").isEmpty());
+    }
+
+    @Test
+    @DisplayName("A summary call that outlasts the timeout is abandoned and the history left as it was")
+    public void slowSummaryAbandoned() throws Exception {
+        final var release = new CountDownLatch(1);
+        final ChatModel slowModel = prompt -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return summaryModel.call(prompt);
+        };
+        final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            final var memory = memory(slowModel, 60, executor, Duration.ofMillis(100));
+            final var history = new ArrayList<Message>();
+            for (int i = 0; i < 4; i++) {
+                history.addAll(turn(i));
+            }
+            repository.saveAll(ID, history);
+
+            memory.compactIfDue(ID);
+            assertEquals(history, repository.findByConversationId(ID));
+            assertEquals(1, memory.getCompactionStats().abandoned());
+
+            // No second paid call while the abandoned one is still running
+            memory.compactIfDue(ID);
+            assertEquals(0, summaryCalls.get());
+            assertEquals(history, repository.findByConversationId(ID));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    @DisplayName("A summary is discarded when the history changed while summarizing")
+    public void compactionSkippedWhenChanged() {
+        final var memory = memory(summaryModel, 60);
+        final var snapshot = new ArrayList<Message>();
+        for (int i = 0; i < 4; i++) {
+            snapshot.addAll(turn(i));
+        }
+        final var current = new ArrayList<>(snapshot);
+        current.addAll(turn(4));
+        repository.saveAll(ID, current);
+
+        memory.compact(ID, snapshot);
+
+        assertEquals(current, repository.findByConversationId(ID));
+        assertEquals(1, memory.getCompactionStats().skippedChanged());
+        assertFalse(TokenWindowChatMemory.isSummary(repository.findByConversationId(ID).getFirst()));
+    }
+
+    @Test
+    @DisplayName("A summary waits for the running turn before it is checked and written")
+    public void compactionWaitsForTurn() throws Exception {
+        final var summarized = new CountDownLatch(1);
+        final ChatModel model = prompt -> {
+            summarized.countDown();
+            return summaryModel.call(prompt);
+        };
+        final var memory = memory(model, 60);
+        final var snapshot = new ArrayList<Message>();
+        for (int i = 0; i < 4; i++) {
+            snapshot.addAll(turn(i));
+        }
+        repository.saveAll(ID, snapshot);
+
+        final CompletableFuture<Void> compaction;
+        try (var turn = locks.acquire(ID)) {
+            compaction = CompletableFuture.runAsync(() -> memory.compact(ID, snapshot));
+            assertTrue(summarized.await(5, TimeUnit.SECONDS));
+            // Summary is ready but can't be applied while the turn holds the lock
+            Thread.sleep(100);
+            assertFalse(compaction.isDone());
+            assertEquals(snapshot, repository.findByConversationId(ID));
+
+            final var current = new ArrayList<>(snapshot);
+            current.addAll(turn(4));
+            repository.saveAll(ID, current);
+        }
+        compaction.get(5, TimeUnit.SECONDS);
+
+        assertEquals(10, repository.findByConversationId(ID).size());
+        assertFalse(TokenWindowChatMemory.isSummary(repository.findByConversationId(ID).getFirst()));
+        assertEquals(1, memory.getCompactionStats().skippedChanged());
+        assertEquals(0, memory.getCompactionStats().compactions());
+    }
+}
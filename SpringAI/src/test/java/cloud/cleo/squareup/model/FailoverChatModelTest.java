@@ -0,0 +1,225 @@
+package cloud.cleo.squareup.model;
+
+import cloud.cleo.squareup.model.FailoverChatModel.BreakerSettings;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Breaker states and failover against stub models on a fake clock, latency is simulated by moving the clock inside
+ * the model call.
+ *
+ * @author sjensen
+ */
+public class FailoverChatModelTest {
+
+    // Window of 10, opens at half failed or half slow once 4 calls are in
+    private static final BreakerSettings SETTINGS = new BreakerSettings(10, 4, 0.5, Duration.ofSeconds(5), 0.5, Duration.ofSeconds(30));
+
+    private final AtomicLong clock = new AtomicLong();
+
+    /**
+     * Stub provider, is throttled while {@code failing} is set, rejects the request while {@code badRequest} is set
+     * and takes {@code latency} on the fake clock.
+     */
+    private final class Stub implements ChatModel {
+
+        final String name;
+        final AtomicBoolean failing = new AtomicBoolean();
+        final AtomicBoolean badRequest = new AtomicBoolean();
+        final AtomicLong latency = new AtomicLong(Duration.ofMillis(500).toNanos());
+        final AtomicInteger calls = new AtomicInteger();
+
+        Stub(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            calls.incrementAndGet();
+            clock.addAndGet(latency.get());
+            if (failing.get()) {
+                throw new TransientAiException(name + " throttled");
+            }
+            if (badRequest.get()) {
+                throw new NonTransientAiException(name + " bad request");
+            }
+            return new ChatResponse(List.of(new Generation(AssistantMessage.builder().content(name).build())));
+        }
+    }
+
+    private final Stub bedrock = new Stub("bedrock");
+    private final Stub openai = new Stub("openai");
+
+    private FailoverChatModel failover() {
+        final var models = new LinkedHashMap<String, ChatModel>();
+        models.put("BEDROCK", bedrock);
+        models.put("OPENAI", openai);
+        return new FailoverChatModel(models, SETTINGS, clock::get);
+    }
+
+    private static String call(FailoverChatModel model) {
+        return model.call(new Prompt("hi")).getResult().getOutput().getText();
+    }
+
+    @Test
+    @DisplayName("Healthy primary answers everything")
+    public void healthy() {
+        final var model = failover();
+        for (int i = 0; i < 20; i++) {
+            assertEquals("bedrock", call(model));
+        }
+        assertEquals(0, openai.calls.get());
+        assertEquals("CLOSED", model.getStats().providers().get("BEDROCK").state());
+    }
+
+    @Test
+    @DisplayName("Errors fail over right away and open the breaker so the primary is skipped")
+    public void errorsOpenBreaker() {
+        final var model = failover();
+        bedrock.failing.set(true);
+        for (int i = 0; i < 4; i++) {
+            assertEquals("openai", call(model));
+        }
+        assertEquals(4, bedrock.calls.get());
+
+        // Open now, bedrock no longer sees calls
+        for (int i = 0; i < 5; i++) {
+            assertEquals("openai", call(model));
+        }
+        assertEquals(4, bedrock.calls.get());
+
+        final var stats = model.getStats();
+        assertEquals("OPEN", stats.providers().get("BEDROCK").state());
+        assertEquals(1L, stats.providers().get("BEDROCK").opened());
+        assertEquals(5L, stats.providers().get("BEDROCK").rejected());
+        assertEquals(9L, stats.failovers());
+    }
+
+    @Test
+    @DisplayName("After the open duration a good probe closes the breaker and a bad one opens it again")
+    public void halfOpenProbe() {
+        final var model = failover();
+        bedrock.failing.set(true);
+        for (int i = 0; i < 4; i++) {
+            call(model);
+        }
+
+        // Still failing at the first probe
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertEquals("openai", call(model));
+        assertEquals(5, bedrock.calls.get());
+        assertEquals("OPEN", model.getStats().providers().get("BEDROCK").state());
+        assertEquals(2L, model.getStats().providers().get("BEDROCK").opened());
+
+        // Recovered by the next one
+        bedrock.failing.set(false);
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertEquals("bedrock", call(model));
+        assertEquals("bedrock", call(model));
+        final var stats = model.getStats().providers().get("BEDROCK");
+        assertEquals("CLOSED", stats.state());
+        // Window starts over after closing
+        assertEquals(1, stats.calls());
+        assertEquals(0d, stats.failureRate());
+    }
+
+    @Test
+    @DisplayName("Slow but successful calls open the breaker too")
+    public void slowCallsOpenBreaker() {
+        final var model = failover();
+        bedrock.latency.set(Duration.ofSeconds(6).toNanos());
+        for (int i = 0; i < 4; i++) {
+            assertEquals("bedrock", call(model));
+        }
+        assertEquals(1d, model.getStats().providers().get("BEDROCK").slowRate());
+        assertEquals("openai", call(model));
+        assertEquals("OPEN", model.getStats().providers().get("BEDROCK").state());
+    }
+
+    @Test
+    @DisplayName("Everything down throws the last error, every breaker open fails fast")
+    public void allDown() {
+        final var model = failover();
+        bedrock.failing.set(true);
+        openai.failing.set(true);
+
+        final var ex = assertThrows(TransientAiException.class, () -> call(model));
+        assertEquals("openai throttled", ex.getMessage());
+        assertEquals("bedrock throttled", ex.getSuppressed()[0].getMessage());
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(TransientAiException.class, () -> call(model));
+        }
+        final int before = bedrock.calls.get() + openai.calls.get();
+        final long start = clock.get();
+        assertThrows(IllegalStateException.class, () -> call(model));
+        // No provider was called and no time passed
+        assertEquals(before, bedrock.calls.get() + openai.calls.get());
+        assertEquals(start, clock.get());
+        assertEquals(1L, model.getStats().unavailable());
+    }
+
+    @Test
+    @DisplayName("Errors that aren't the provider's are rethrown without failing over or counting")
+    public void nonProviderErrorRethrown() {
+        final var model = failover();
+        bedrock.badRequest.set(true);
+        for (int i = 0; i < 5; i++) {
+            assertThrows(NonTransientAiException.class, () -> call(model));
+        }
+        assertEquals(0, openai.calls.get());
+        final var stats = model.getStats();
+        assertEquals("CLOSED", stats.providers().get("BEDROCK").state());
+        assertEquals(0, stats.providers().get("BEDROCK").calls());
+        assertEquals(0L, stats.failovers());
+
+        // Wrapped (hedging, tool execution) is classified by its cause
+        assertTrue(FailoverChatModel.isProviderFailure(new IllegalStateException(new SocketTimeoutException("read timed out"))));
+        assertFalse(FailoverChatModel.isProviderFailure(new IllegalStateException("Interrupted waiting on model response",
+                new InterruptedException())));
+    }
+
+    @Test
+    @DisplayName("Only the probe's own result decides a half open breaker")
+    public void staleResultIgnoredWhileHalfOpen() {
+        final var breaker = new CircuitBreaker("BEDROCK", SETTINGS, clock::get);
+        // Still running when the breaker opens
+        final var slowCall = breaker.tryAcquire();
+        for (int i = 0; i < 4; i++) {
+            breaker.onResult(breaker.tryAcquire(), false, 0);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getStats().state());
+
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+        final var probe = breaker.tryAcquire();
+        assertTrue(probe.probe());
+
+        breaker.onResult(slowCall, true, 0);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getStats().state());
+        assertNull(breaker.tryAcquire());
+
+        breaker.onResult(probe, false, 0);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getStats().state());
+        assertEquals(2L, breaker.getStats().opened());
+    }
+}
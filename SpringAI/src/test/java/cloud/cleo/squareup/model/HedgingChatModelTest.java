@@ -0,0 +1,152 @@
+package cloud.cleo.squareup.model;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntToLongFunction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hedging against fake models with a latency per call number, so the slow tail lands on known calls.
+ *
+ * @author sjensen
+ */
+public class HedgingChatModelTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger interrupted = new AtomicInteger();
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static String text(ChatResponse response) {
+        return response.getResult().getOutput().getText();
+    }
+
+    /**
+     * @param name answer text
+     * @param latencyMillis sleep by call number (0 based)
+     */
+    private ChatModel fake(String name, IntToLongFunction latencyMillis) {
+        final var count = new AtomicInteger();
+        return prompt -> {
+            try {
+                Thread.sleep(latencyMillis.applyAsLong(count.getAndIncrement()));
+            } catch (InterruptedException ie) {
+                interrupted.incrementAndGet();
+                throw new IllegalStateException("cancelled");
+            }
+            return new ChatResponse(List.of(new Generation(AssistantMessage.builder().content(name).build())));
+        };
+    }
+
+    private static ChatModel failing(String message, long afterMillis) {
+        return prompt -> {
+            try {
+                Thread.sleep(afterMillis);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException(message);
+        };
+    }
+
+    private HedgingChatModel hedging(ChatModel primary, ChatModel secondary, Duration minDelay, Duration maxDelay,
+            double maxHedgeRate) {
+        return new HedgingChatModel(primary, secondary, executor, 0.9, minDelay, maxDelay, maxHedgeRate);
+    }
+
+    @Test
+    @DisplayName("Fast primary never hedges")
+    public void fastPrimary() {
+        final var model = hedging(fake("primary", i -> 1), failing("not used", 0),
+                Duration.ofMillis(100), Duration.ofSeconds(1), 0.5);
+        for (int i = 0; i < 30; i++) {
+            assertEquals("primary", text(model.call(new Prompt("hi"))));
+        }
+        final var stats = model.getStats();
+        assertEquals(30L, stats.calls());
+        assertEquals(0L, stats.hedges());
+        assertEquals(100L, stats.deadlineMillis());
+    }
+
+    @Test
+    @DisplayName("Slow tail past the percentile deadline is answered by the secondary and the primary cancelled")
+    public void slowTailHedged() throws InterruptedException {
+        // 1 in 25 calls stalls for 5 seconds
+        final var model = hedging(fake("primary", i -> i % 25 == 24 ? 5_000 : 1), fake("secondary", i -> 1),
+                Duration.ofMillis(50), Duration.ofSeconds(2), 0.2);
+        for (int i = 0; i < 50; i++) {
+            final long start = System.nanoTime();
+            final var answer = text(model.call(new Prompt("hi")));
+            final long millis = (System.nanoTime() - start) / 1_000_000;
+            if (i % 25 == 24) {
+                assertEquals("secondary", answer);
+                assertTrue(millis < 1_000, "hedged call took " + millis + " ms");
+            } else {
+                assertEquals("primary", answer);
+            }
+        }
+        final var stats = model.getStats();
+        assertEquals(2L, stats.hedges());
+        assertEquals(2L, stats.hedgeWins());
+        assertEquals(50L, stats.deadlineMillis());
+        assertEquals(0.04, stats.hedgeRate(), 0.0001);
+        // Losing primary calls were interrupted
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(2, interrupted.get());
+    }
+
+    @Test
+    @DisplayName("Hedges stay within the budget when the primary is slow across the board")
+    public void budgetCapsHedges() {
+        final var model = hedging(fake("primary", i -> 30), fake("secondary", i -> 30),
+                Duration.ofMillis(1), Duration.ofMillis(2), 0.1);
+        for (int i = 0; i < 50; i++) {
+            model.call(new Prompt("hi"));
+        }
+        final var stats = model.getStats();
+        // Starting burst plus a tenth of the calls
+        assertTrue(stats.hedges() >= 5 && stats.hedges() <= 10, "hedges " + stats.hedges());
+        // Everything else waited on the primary (allowing for a stalled test thread missing the deadline)
+        assertTrue(stats.hedges() + stats.budgetDenied() >= 45);
+    }
+
+    @Test
+    @DisplayName("A failure on one side is covered by the other, both failing throws the first")
+    public void failures() {
+        final var covered = hedging(failing("primary down", 100), fake("secondary", i -> 5),
+                Duration.ofMillis(10), Duration.ofMillis(10), 0.5);
+        assertEquals("secondary", text(covered.call(new Prompt("hi"))));
+
+        final var bothDown = hedging(failing("primary down", 50), failing("secondary down", 100),
+                Duration.ofMillis(10), Duration.ofMillis(10), 0.5);
+        final var ex = assertThrows(IllegalStateException.class, () -> bothDown.call(new Prompt("hi")));
+        assertEquals("primary down", ex.getMessage());
+        assertEquals("secondary down", ex.getSuppressed()[0].getMessage());
+        assertEquals(1L, bothDown.getStats().failures());
+
+        // Failing before the deadline is not hedged
+        final var fastFail = hedging(failing("primary down", 0), fake("secondary", i -> 5),
+                Duration.ofMillis(200), Duration.ofMillis(200), 0.5);
+        assertThrows(IllegalStateException.class, () -> fastFail.call(new Prompt("hi")));
+        assertEquals(0L, fastFail.getStats().hedges());
+    }
+}
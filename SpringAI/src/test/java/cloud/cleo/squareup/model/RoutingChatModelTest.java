@@ -0,0 +1,140 @@
+package cloud.cleo.squareup.model;
+
+import cloud.cleo.squareup.model.RoutingChatModel.Reason;
+import cloud.cleo.squareup.model.RoutingChatModel.Thresholds;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import static cloud.cleo.squareup.service.CityRagService.CTX_CITY_PREFETCH_FUTURE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routing signals and reasons from prompts shaped like a Lex turn, and per tier metrics.
+ *
+ * @author sjensen
+ */
+public class RoutingChatModelTest {
+
+    private static final Thresholds THRESHOLDS = new Thresholds(20, 1, 6);
+
+    // Voice tool set, minus what the router doesn't look at
+    private static final List<String> OFFERED = List.of("store_product_item", "getStoreWeather", "team_members",
+            "transfer_call", "get_store_hours");
+
+    private static ToolCallback tool(String name) {
+        final var definition = ToolDefinition.builder().name(name).description(name).inputSchema("{}").build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return "";
+            }
+        };
+    }
+
+    private static Prompt turn(String transcript, int earlierTurns, Map<String, Object> toolContext) {
+        final var messages = new ArrayList<Message>();
+        messages.add(new SystemMessage("You are a store assistant"));
+        for (int i = 0; i < earlierTurns; i++) {
+            messages.add(UserMessage.builder().text("Question " + i).build());
+            messages.add(AssistantMessage.builder().content("Answer " + i).build());
+        }
+        messages.add(UserMessage.builder().text(transcript).build());
+        return new Prompt(messages, ToolCallingChatOptions.builder()
+                .toolCallbacks(OFFERED.stream().map(RoutingChatModelTest::tool).toList())
+                .toolContext(toolContext)
+                .build());
+    }
+
+    private static Prompt turn(String transcript) {
+        return turn(transcript, 0, Map.of());
+    }
+
+    private static Reason reason(Prompt prompt) {
+        return RoutingChatModel.reason(RoutingChatModel.signals(prompt), THRESHOLDS);
+    }
+
+    @Test
+    @DisplayName("Short single intent questions stay on the fast tier")
+    public void simple() {
+        assertEquals(Reason.SIMPLE, reason(turn("What are your hours?")));
+        assertEquals(Reason.SIMPLE, reason(turn("Do you have gummy bears?")));
+        assertEquals(Reason.SIMPLE, reason(turn("Thanks, that is all")));
+    }
+
+    @Test
+    @DisplayName("City prefetch, several expected tools, long transcripts and deep conversations go strong")
+    public void strong() {
+        assertEquals(Reason.CITY_RAG, reason(turn("When is Wahkon Days?", 0,
+                Map.of(CTX_CITY_PREFETCH_FUTURE, CompletableFuture.completedFuture(List.of())))));
+
+        final var multiTool = RoutingChatModel.signals(turn("Do you have yarn and is it going to snow, I want to talk to the owner"));
+        assertEquals(List.of("store_product_item", "getStoreWeather", "team_members", "transfer_call"),
+                List.copyOf(multiTool.expectedTools()));
+        assertEquals(Reason.TOOLS, RoutingChatModel.reason(multiTool, THRESHOLDS));
+
+        assertEquals(Reason.LONG, reason(turn("I was in last week and saw a blue ceramic bowl near the front window "
+                + "and I was wondering if it might still be there")));
+
+        assertEquals(Reason.SIMPLE, reason(turn("And the green one?", 6, Map.of())));
+        assertEquals(Reason.DEPTH, reason(turn("And the green one?", 7, Map.of())));
+    }
+
+    @Test
+    @DisplayName("Only offered tools count as expected")
+    public void offeredToolsOnly() {
+        // send_email_message is not in the offered set
+        assertEquals(List.of("store_product_item"),
+                List.copyOf(RoutingChatModel.signals(turn("Can I email you about the price of fudge")).expectedTools()));
+    }
+
+    @Test
+    @DisplayName("Calls and tokens are counted per tier")
+    public void tierMetrics() {
+        final ChatModel fast = fake("fast", 900, 20);
+        final ChatModel strong = fake("strong", 1500, 40);
+        final var model = new RoutingChatModel(fast, strong, THRESHOLDS);
+
+        assertEquals("fast", model.call(turn("Are you open?")).getResult().getOutput().getText());
+        assertEquals("fast", model.call(turn("Do you sell fudge?")).getResult().getOutput().getText());
+        assertEquals("strong", model.call(turn("Is it cold out and do you have mittens?")).getResult().getOutput().getText());
+
+        final var stats = model.getStats();
+        assertEquals(2L, stats.fast().calls());
+        assertEquals(1800L, stats.fast().promptTokens());
+        assertEquals(40L, stats.fast().completionTokens());
+        assertEquals(1L, stats.strong().calls());
+        assertEquals(1500L, stats.strong().promptTokens());
+        assertEquals(2L, stats.reasons().get(Reason.SIMPLE));
+        assertEquals(1L, stats.reasons().get(Reason.TOOLS));
+        assertEquals(2d / 3, stats.fastRatio(), 0.0001);
+    }
+
+    private static ChatModel fake(String name, int promptTokens, int completionTokens) {
+        return prompt -> ChatResponse.builder()
+                .generations(List.of(new Generation(AssistantMessage.builder().content(name).build())))
+                .metadata(ChatResponseMetadata.builder().usage(new DefaultUsage(promptTokens, completionTokens)).build())
+                .build();
+    }
+}
@@ -0,0 +1,142 @@
+package cloud.cleo.squareup.phone;
+
+import cloud.cleo.squareup.phone.PhoneValidationStore.PhoneValidation;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.pinpoint.PinpointClient;
+import software.amazon.awssdk.services.pinpoint.model.NumberValidateResponse;
+import software.amazon.awssdk.services.pinpoint.model.PhoneNumberValidateRequest;
+import software.amazon.awssdk.services.pinpoint.model.PhoneNumberValidateResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Memory and store tiers in front of (a fake) Pinpoint.
+ *
+ * @author sjensen
+ */
+public class PhoneValidationServiceTest {
+
+    private static final String MOBILE = "+16125551212";
+    private static final String LANDLINE = "+13205551212";
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger pinpointCalls = new AtomicInteger();
+    private volatile CountDownLatch pinpointGate = new CountDownLatch(0);
+
+    private final Map<String, PhoneValidation> stored = new ConcurrentHashMap<>();
+    private final PhoneValidationStore store = new PhoneValidationStore() {
+        @Override
+        public Optional<PhoneValidation> find(String phoneE164) {
+            return Optional.ofNullable(stored.get(phoneE164));
+        }
+
+        @Override
+        public void save(String phoneE164, PhoneValidation validation) {
+            stored.put(phoneE164, validation);
+        }
+    };
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Only phoneNumberValidate is implemented, numbers starting +1612 are mobile.
+     */
+    @SuppressWarnings("unchecked")
+    private PinpointClient pinpoint() {
+        return (PinpointClient) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PinpointClient.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("phoneNumberValidate")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    final PhoneNumberValidateRequest request = args[0] instanceof Consumer<?> c
+                            ? PhoneNumberValidateRequest.builder().applyMutation((Consumer<PhoneNumberValidateRequest.Builder>) c).build()
+                            : (PhoneNumberValidateRequest) args[0];
+                    pinpointCalls.incrementAndGet();
+                    pinpointGate.await(5, TimeUnit.SECONDS);
+                    final var number = request.numberValidateRequest().phoneNumber();
+                    return PhoneNumberValidateResponse.builder()
+                            .numberValidateResponse(NumberValidateResponse.builder()
+                                    .phoneType(number.startsWith("+1612") ? "MOBILE" : "LANDLINE")
+                                    .build())
+                            .build();
+                });
+    }
+
+    private PhoneValidationService service() {
+        return new PhoneValidationService(pinpoint(), store, executor, 100, Duration.ofHours(1), 0.006);
+    }
+
+    @Test
+    @DisplayName("Repeat lookups are answered from memory")
+    public void memoryTier() {
+        final var service = service();
+        assertTrue(service.isMobile(MOBILE));
+        assertTrue(service.isMobile(MOBILE));
+        assertFalse(service.isMobile(LANDLINE));
+        assertFalse(service.isMobile(LANDLINE));
+
+        assertEquals(2, pinpointCalls.get());
+        final var stats = service.getStats();
+        assertEquals(2, stats.memoryHits());
+        assertEquals(2, stats.memoryMisses());
+        assertEquals(2, stats.pinpointLookups());
+        assertEquals(0.012, stats.pinpointCostUsd(), 1e-9);
+        assertEquals(0.012, stats.savedUsd(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("A new container finds earlier lookups in the store")
+    public void storeTier() {
+        assertTrue(service().isMobile(MOBILE));
+        assertEquals(1, pinpointCalls.get());
+
+        // Cold start, memory is empty but the store remembers
+        final var coldStart = service();
+        assertTrue(coldStart.isMobile(MOBILE));
+        assertEquals(1, pinpointCalls.get());
+        assertEquals(1, coldStart.getStats().storeHits());
+        assertEquals(0, coldStart.getStats().pinpointLookups());
+    }
+
+    @Test
+    @DisplayName("Concurrent lookups of one number make one Pinpoint call")
+    public void singleFlight() throws InterruptedException {
+        final var service = service();
+        pinpointGate = new CountDownLatch(1);
+        final var done = new CountDownLatch(10);
+        final var mobiles = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            Thread.ofVirtual().start(() -> {
+                if (service.isMobile(MOBILE)) {
+                    mobiles.incrementAndGet();
+                }
+                done.countDown();
+            });
+        }
+        // Let everyone pile up behind the first call
+        Thread.sleep(100);
+        pinpointGate.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(10, mobiles.get());
+        assertEquals(1, pinpointCalls.get());
+    }
+}
@@ -0,0 +1,74 @@
+package cloud.cleo.squareup.service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AIMD behaviour of the live Square search concurrency limit.
+ *
+ * @author sjensen
+ */
+public class AdaptiveConcurrencyLimitTest {
+
+    @Test
+    @DisplayName("Rate limits halve the limit, successes grow it back to the max")
+    public void aimd() throws InterruptedException {
+        final var limit = new AdaptiveConcurrencyLimit(8, 8);
+
+        limit.acquire();
+        limit.release(true);
+        assertEquals(4, limit.getLimit());
+        limit.acquire();
+        limit.release(true);
+        limit.acquire();
+        limit.release(true);
+        limit.acquire();
+        limit.release(true);
+        assertEquals(1, limit.getLimit());
+
+        for (int i = 0; i < 100; i++) {
+            limit.acquire();
+            limit.release(false);
+        }
+        assertEquals(8, limit.getLimit());
+    }
+
+    @Test
+    @DisplayName("Never more in flight than the limit")
+    public void capsInFlight() throws InterruptedException {
+        final var limit = new AdaptiveConcurrencyLimit(2, 2);
+        final var inFlight = new AtomicInteger();
+        final var maxSeen = new AtomicInteger();
+        final var done = new CountDownLatch(20);
+
+        for (int i = 0; i < 20; i++) {
+            Thread.ofVirtual().start(() -> {
+                try {
+                    limit.acquire();
+                    try {
+                        maxSeen.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        Thread.sleep(2);
+                        inFlight.decrementAndGet();
+                    } finally {
+                        limit.release();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(maxSeen.get() <= 2);
+        assertFalse(maxSeen.get() == 0);
+    }
+}
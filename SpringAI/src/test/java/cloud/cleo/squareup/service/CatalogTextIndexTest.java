@@ -0,0 +1,77 @@
+package cloud.cleo.squareup.service;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Matching of the local catalog index, including speech to text style misspellings.
+ *
+ * @author sjensen
+ */
+public class CatalogTextIndexTest {
+
+    private final CatalogTextIndex index = CatalogTextIndex.build(List.of(
+            "Gummy Bears",
+            "Gummy Worms",
+            "Sour Patch Kids",
+            "Teddy Bear Plush",
+            "Moose Tracks Fudge",
+            "Chocolate Covered Pretzels",
+            "Crème Brûlée Candle",
+            "Wahkon Sweatshirt"));
+
+    @Test
+    @DisplayName("Exact and prefix matches rank the closest item first")
+    public void exactAndPrefix() {
+        assertEquals("Gummy Bears", index.search("gummy bears", 5).getFirst());
+        assertEquals(List.of("Gummy Bears", "Gummy Worms"), index.search("gummi", 5));
+        assertEquals(List.of("Chocolate Covered Pretzels"), index.search("pretzel", 5));
+        assertEquals(List.of("Wahkon Sweatshirt"), index.search("sweat shirt", 5));
+    }
+
+    @Test
+    @DisplayName("Misspellings, accents and filler words")
+    public void fuzzy() {
+        assertEquals("Gummy Bears", index.search("gummie bares", 5).getFirst());
+        assertEquals(List.of("Crème Brûlée Candle"), index.search("creme brulee", 5));
+        assertEquals(List.of("Moose Tracks Fudge"), index.search("any fudge", 5));
+    }
+
+    @Test
+    @DisplayName("Variation names and SKUs find the item by its name")
+    public void variationsAndSkus() {
+        final var withVariations = CatalogTextIndex.build(Map.of(
+                "Gummy Bears", List.of("Cherry", "GB-12OZ"),
+                "Wahkon Sweatshirt", List.of("Large", "Hoodie", "WS-HOOD-L"),
+                "Maple Fudge", List.of()));
+
+        assertEquals(List.of("Wahkon Sweatshirt"), withVariations.search("hoodie", 5));
+        assertEquals(List.of("Gummy Bears"), withVariations.search("GB-12OZ", 5));
+        assertEquals(List.of("Gummy Bears"), withVariations.search("cherry", 5));
+        assertEquals(List.of("Maple Fudge"), withVariations.search("maple", 5));
+    }
+
+    @Test
+    @DisplayName("No match and limits")
+    public void noMatchAndLimit() {
+        assertTrue(index.search("xyz", 5).isEmpty());
+        assertTrue(index.search("", 5).isEmpty());
+        assertEquals(1, index.search("gummy", 1).size());
+        assertTrue(CatalogTextIndex.EMPTY.search("gummy", 5).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Soundex codes")
+    public void soundex() {
+        assertEquals("R163", CatalogTextIndex.soundex("robert"));
+        assertEquals("R163", CatalogTextIndex.soundex("rupert"));
+        assertEquals("A261", CatalogTextIndex.soundex("ashcraft"));
+        assertEquals("T522", CatalogTextIndex.soundex("tymczak"));
+        assertEquals(null, CatalogTextIndex.soundex("12oz"));
+    }
+}
@@ -0,0 +1,105 @@
+package cloud.cleo.squareup.service;
+
+import cloud.cleo.squareup.lang.LangUtil;
+import cloud.cleo.squareup.service.FastPathRouter.Intent;
+import cloud.cleo.squareup.service.StoreHoursService.OpenStatus;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Locale;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Fast path classification across the bot languages and the localized hours answer.
+ *
+ * @author sjensen
+ */
+public class FastPathRouterTest {
+
+    private static Locale locale(String botLocale) {
+        return new LangUtil(botLocale).getLocale();
+    }
+
+    private static void assertIntent(Intent expected, String botLocale, String... transcripts) {
+        for (final var transcript : transcripts) {
+            assertEquals(expected, FastPathRouter.classify(transcript, locale(botLocale)), botLocale + ": " + transcript);
+        }
+    }
+
+    @Test
+    @DisplayName("English simple questions, with punctuation and filler words")
+    public void english() {
+        assertIntent(Intent.HOURS, "en_US", "Are you open?", "are you guys open today", "What are your hours?",
+                "Hi, what's your store hours", "What are you business hours?", "when do you close today", "Hours");
+        assertIntent(Intent.DIRECTIONS, "en_US", "Where are you located?", "What's your address", "directions please",
+                "How do I get to the store?");
+        assertIntent(Intent.PRIVATE_SHOPPING, "en_US", "Private shopping", "Info about Private Shopping and link",
+                "How do I book a private shopping appointment?",
+                "Can I schedule private shopping?");
+    }
+
+    @Test
+    @DisplayName("Anything beyond the simple question goes to the model")
+    public void fallThrough() {
+        assertIntent(null, "en_US",
+                "Are you open tomorrow?",
+                "Are you open on Christmas Eve?",
+                "Where are you located and do you have gummy bears?",
+                "Do you have yarn?",
+                "open",
+                "BLANK",
+                "",
+                "   ",
+                "Hi there, I was wondering, are you open right now because I want to come by and look at the candy");
+    }
+
+    @Test
+    @DisplayName("Every bot language has working patterns")
+    public void otherLanguages() {
+        final Map<String, String[]> samples = Map.of(
+                "es_US", new String[]{"¿Están abiertos hoy?", "¿Dónde están ubicados?", "Quiero reservar compras privadas"},
+                "de_DE", new String[]{"Haben Sie heute geöffnet?", "Was ist Ihre Adresse?", "Privates Einkaufen"},
+                "fi_FI", new String[]{"Oletteko nyt auki?", "Missä olette?", "Haluan varata yksityisostoksen"},
+                "fr_CA", new String[]{"Êtes-vous ouverts aujourd'hui?", "Quelle est votre adresse?", "Magasinage privé"},
+                "nl_NL", new String[]{"Bent u nu open?", "Wat is uw adres?", "Privé winkelen"},
+                "no_NO", new String[]{"Har dere åpent nå?", "Hvor ligger butikken?", "Privat shopping"},
+                "pl_PL", new String[]{"Czy jest otwarte dzisiaj?", "Gdzie jest sklep?", "Prywatne zakupy"},
+                "sv_SE", new String[]{"Har ni öppet idag?", "Var ligger butiken?", "Boka privat shopping"});
+        samples.forEach((botLocale, s) -> {
+            assertIntent(Intent.HOURS, botLocale, s[0]);
+            assertIntent(Intent.DIRECTIONS, botLocale, s[1]);
+            assertIntent(Intent.PRIVATE_SHOPPING, botLocale, s[2]);
+            assertIntent(null, botLocale, "Do you have gummy bears?");
+        });
+    }
+
+    @Test
+    @DisplayName("Hours answer names the next change in the caller's language")
+    public void hoursAnswer() {
+        final var saturday10 = ZonedDateTime.of(2026, 10, 17, 10, 0, 0, 0, ZoneId.of("America/Chicago"));
+        final var friday17 = saturday10.minusDays(1).withHour(17);
+
+        final var en = new LangUtil("en_US");
+        assertEquals("We are open right now until 5:00 PM.", FastPathRouter.hoursAnswer(en, new OpenStatus(true, friday17)));
+        assertEquals("We are closed right now. We open again Saturday at 10:00 AM.",
+                FastPathRouter.hoursAnswer(en, new OpenStatus(false, saturday10)));
+
+        final var de = new LangUtil("de_DE");
+        assertEquals("Wir haben gerade geöffnet, bis 17:00 Uhr.", FastPathRouter.hoursAnswer(de, new OpenStatus(true, friday17)));
+
+        final var fr = new LangUtil("fr_CA");
+        assertEquals("Nous sommes ouverts en ce moment jusqu'à 17 h 00.",
+                FastPathRouter.hoursAnswer(fr, new OpenStatus(true, friday17)));
+    }
+
+    @Test
+    @DisplayName("Normalize strips punctuation and apostrophes")
+    public void normalize() {
+        assertEquals("whats your address", FastPathRouter.normalize("  What's   your address?! ", Locale.US));
+        assertNull(FastPathRouter.classify(null, Locale.US));
+    }
+}
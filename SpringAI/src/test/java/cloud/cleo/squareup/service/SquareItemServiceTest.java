@@ -0,0 +1,168 @@
+package cloud.cleo.squareup.service;
+
+import com.squareup.square.CatalogClient;
+import com.squareup.square.SquareClient;
+import com.squareup.square.core.SquareApiException;
+import com.squareup.square.types.CatalogItem;
+import com.squareup.square.types.CatalogObject;
+import com.squareup.square.types.CatalogObjectItem;
+import com.squareup.square.types.SearchCatalogItemsRequest;
+import com.squareup.square.types.SearchCatalogItemsResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Live item search ordering, early cancellation and 429 handling against a stubbed Square catalog client.
+ *
+ * @author sjensen
+ */
+public class SquareItemServiceTest {
+
+    private static final int MAX_CONCURRENCY = 6;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Calls per search phrase
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Service whose catalog answers each phrase with {@code search}.
+     */
+    private SquareItemService service(Function<String, List<String>> search) {
+        final var catalog = mock(CatalogClient.class);
+        when(catalog.searchItems(any(SearchCatalogItemsRequest.class))).thenAnswer(invocation -> {
+            final String phrase = invocation.<SearchCatalogItemsRequest>getArgument(0).getTextFilter().orElseThrow();
+            calls.computeIfAbsent(phrase, p -> new AtomicInteger()).incrementAndGet();
+            return response(search.apply(phrase));
+        });
+        final var client = mock(SquareClient.class);
+        when(client.catalog()).thenReturn(catalog);
+        return new SquareItemService(client, executor, null, MAX_CONCURRENCY);
+    }
+
+    private static SearchCatalogItemsResponse response(List<String> names) {
+        return SearchCatalogItemsResponse.builder()
+                .items(names.stream()
+                        .map(name -> CatalogObject.item(CatalogObjectItem.builder()
+                        .id(name)
+                        .itemData(CatalogItem.builder().name(name).build())
+                        .build()))
+                        .toList())
+                .build();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int calls(String phrase) {
+        return calls.getOrDefault(phrase, new AtomicInteger()).get();
+    }
+
+    @Test
+    @DisplayName("Longer phrases come first even when they answer last")
+    public void longestFirst() {
+        final var service = service(phrase -> switch (phrase) {
+            case "sour gummy bears" -> {
+                sleep(50);
+                yield List.of("Sour Gummy Bears");
+            }
+            case "gummy bears" ->
+                List.of("Gummy Bears", "Sour Gummy Bears");
+            case "candy" ->
+                List.of("Candy Corn");
+            default ->
+                List.of();
+        });
+
+        assertEquals(List.of("Sour Gummy Bears", "Gummy Bears", "Candy Corn"),
+                service.searchItemNames(List.of("candy", "gummy bears", "sour gummy bears", "candy")));
+        // Duplicate phrases are only searched once
+        assertEquals(1, calls("candy"));
+    }
+
+    @Test
+    @DisplayName("Searches still running are cancelled once 5 names are in")
+    public void cancelOnceLimitMet() throws InterruptedException {
+        final var interrupted = new CountDownLatch(3);
+        final var service = service(phrase -> {
+            if (phrase.equals("gummy bears")) {
+                return List.of("Gummy Bears", "Sour Gummy Bears", "Gummy Worms", "Gummy Sharks", "Gummy Rings",
+                        "Gummy Frogs");
+            }
+            // Would never answer on its own
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return List.of("Too Late");
+        });
+
+        final var names = service.searchItemNames(List.of("candy", "fudge", "gummy bears", "yarn"));
+
+        assertEquals(List.of("Gummy Bears", "Sour Gummy Bears", "Gummy Worms", "Gummy Sharks", "Gummy Rings"), names);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(3, service.getSearchStats().cancelled());
+    }
+
+    @Test
+    @DisplayName("A 429 cuts the concurrency limit and the phrase is retried")
+    public void rateLimitRetried() {
+        final var service = service(phrase -> {
+            if (phrase.equals("fudge") && calls(phrase) == 1) {
+                throw new SquareApiException("Too many requests", 429, null);
+            }
+            return phrase.equals("fudge") ? List.of("Maple Fudge") : List.of();
+        });
+
+        assertEquals(List.of("Maple Fudge"), service.searchItemNames(List.of("fudge")));
+        assertEquals(2, calls("fudge"));
+
+        final var stats = service.getSearchStats();
+        assertEquals(1, stats.rateLimited());
+        assertEquals(1, stats.searches());
+        assertTrue(stats.concurrencyLimit() < MAX_CONCURRENCY);
+    }
+
+    @Test
+    @DisplayName("A phrase that stays rate limited gives up and the other phrases still answer")
+    public void rateLimitGivesUp() {
+        final var service = service(phrase -> {
+            if (phrase.equals("maple fudge")) {
+                throw new SquareApiException("Too many requests", 429, null);
+            }
+            return List.of("Chocolate Fudge");
+        });
+
+        assertEquals(List.of("Chocolate Fudge"), service.searchItemNames(List.of("fudge", "maple fudge")));
+        assertEquals(3, calls("maple fudge"));
+        assertEquals(3, service.getSearchStats().rateLimited());
+        assertTrue(service.getSearchStats().concurrencyLimit() < MAX_CONCURRENCY);
+    }
+}
@@ -0,0 +1,76 @@
+package cloud.cleo.squareup.service;
+
+import cloud.cleo.squareup.config.SquareConfig.SquareProperties;
+import cloud.cleo.squareup.enums.ChannelPlatform;
+import cloud.cleo.squareup.enums.LexInputMode;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Pre-built prompts from {@link SystemPromptRegistry} versus assembling the prompt with a StringBuilder on every turn
+ * like LexV2EventWrapper did before, for a call and a Facebook chat (which both ways still add the user's name).
+ *
+ * Not run by the build, see Benchmarks in SpringAI/src/test/README.md.
+ *
+ * @author sjensen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SystemPromptRegistryBenchmark {
+
+    private static final String MAIN_NUMBER = "+13205551234";
+
+    private static final String FACEBOOK_NAME = " The user's name is Alice.  Please greet the user by first name and "
+            + "personalize responses when appropiate to make the experience more friendly.  ";
+
+    @Param({"CHIME", "FACEBOOK"})
+    public String channel;
+
+    private LexInputMode inputMode;
+    private ChannelPlatform channelPlatform;
+    private SystemPromptRegistry registry;
+
+    @Setup
+    public void setup() {
+        channelPlatform = ChannelPlatform.valueOf(channel);
+        inputMode = channelPlatform == ChannelPlatform.CHIME ? LexInputMode.SPEECH : LexInputMode.TEXT;
+        registry = new SystemPromptRegistry(new SquareProperties(true, "key", "location", "sandbox"), MAIN_NUMBER);
+    }
+
+    private String personalize(String prompt) {
+        return channelPlatform == ChannelPlatform.FACEBOOK ? prompt + FACEBOOK_NAME : prompt;
+    }
+
+    @Benchmark
+    public String registry() {
+        return personalize(registry.getSystemPrompt(inputMode, channelPlatform));
+    }
+
+    @Benchmark
+    public String perTurnBuilder() {
+        return personalize(SystemPromptRegistry.buildPrompt(inputMode, channelPlatform, true, MAIN_NUMBER));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SystemPromptRegistryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
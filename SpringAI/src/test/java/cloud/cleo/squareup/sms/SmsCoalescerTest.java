@@ -0,0 +1,80 @@
+package cloud.cleo.squareup.sms;
+
+import cloud.cleo.squareup.cloudfunctions.PinpointFunction.PinpointEvent;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Coalescing against the in-memory pending store (stands in for Dynamo).
+ *
+ * @author sjensen
+ */
+public class SmsCoalescerTest {
+
+    private static final String SENDER = "+16125551212";
+
+    private final JsonMapper mapper = JsonMapper.builder().build();
+
+    private static PinpointEvent sms(String body, String id) {
+        return new PinpointEvent(SENDER, "+13205550000", null, body, id, null);
+    }
+
+    @Test
+    @DisplayName("Zero window answers every message on its own")
+    public void disabled() {
+        final var coalescer = new SmsCoalescer(new InMemoryPendingSmsStore(), mapper, Duration.ZERO);
+        final var events = List.of(sms("hi", "1"), sms("are you open", "2"));
+        assertEquals(events, coalescer.coalesce(events));
+    }
+
+    @Test
+    @DisplayName("A lone message is answered as is after the window")
+    public void single() {
+        final var coalescer = new SmsCoalescer(new InMemoryPendingSmsStore(), mapper, Duration.ofMillis(20));
+        assertEquals(List.of(sms("hi", "1")), coalescer.coalesce(List.of(sms("hi", "1"))));
+    }
+
+    @Test
+    @DisplayName("A burst across invocations is answered once, by the newest, with every fragment")
+    public void burst() throws Exception {
+        final var store = new InMemoryPendingSmsStore();
+        final var coalescer = new SmsCoalescer(store, mapper, Duration.ofMillis(300));
+
+        final List<Future<List<PinpointEvent>>> invocations = new ArrayList<>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final String[] fragments = {"do you have", "the blue yarn", "in stock?"};
+            for (int i = 0; i < fragments.length; i++) {
+                final var event = sms(fragments[i], Integer.toString(i));
+                invocations.add(executor.submit((Callable<List<PinpointEvent>>) () -> coalescer.coalesce(List.of(event))));
+                // Arrive in order, well within the window
+                Thread.sleep(30);
+            }
+        }
+
+        final var answers = new ArrayList<PinpointEvent>();
+        for (final var f : invocations) {
+            answers.addAll(f.get());
+        }
+        assertEquals(1, answers.size());
+        assertEquals("do you have\nthe blue yarn\nin stock?", answers.getFirst().messageBody());
+        assertEquals("2", answers.getFirst().inboundMessageId());
+
+        final var stats = coalescer.getStats();
+        assertEquals(3, stats.messages());
+        assertEquals(1, stats.answered());
+        assertEquals(2, stats.deferred());
+
+        // Nothing left behind for the next burst
+        assertTrue(store.claimIfLatest(SENDER, 3).isEmpty());
+    }
+}
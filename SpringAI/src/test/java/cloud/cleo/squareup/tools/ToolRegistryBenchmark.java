@@ -0,0 +1,95 @@
+package cloud.cleo.squareup.tools;
+
+import cloud.cleo.squareup.LexV2Event;
+import cloud.cleo.squareup.LexV2Event.Bot;
+import cloud.cleo.squareup.LexV2EventWrapper;
+import cloud.cleo.squareup.enums.ChannelPlatform;
+import cloud.cleo.squareup.enums.LexInputMode;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.method.MethodToolCallbackProvider;
+
+/**
+ * Cached per channel tool sets from {@link ToolRegistry} versus what every Lex turn did before (filter the tool beans
+ * and let the ChatClient resolve their {@code @Tool} methods and JSON schemas with a
+ * {@link MethodToolCallbackProvider}), for a voice turn.
+ *
+ * Most of the per turn cost is garbage from reflection and schema generation, so run it with {@code -prof gc} and
+ * compare {@code gc.alloc.rate.norm} (bytes per turn) as well as the time, see Benchmarks in
+ * SpringAI/src/test/README.md. {@link #main} (IDE) runs it without the profiler.
+ *
+ * @author sjensen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ToolRegistryBenchmark {
+
+    private List<AbstractTool> tools;
+    private ToolRegistry registry;
+    private LexV2EventWrapper event;
+
+    @Setup
+    public void setup() {
+        // Tools whose validity doesn't touch their services, those are never called here
+        tools = List.of(
+                new CurrentDateTime(ZoneId.of("America/Chicago")),
+                new StoreWeather(null),
+                new CitySearch(null),
+                new SendEmail(null, null, null, null, null),
+                new TransferCall(),
+                new HangupCall(),
+                new SwitchLanguage());
+        registry = new ToolRegistry(tools);
+
+        event = new LexV2EventWrapper(LexV2Event.builder()
+                .withInputMode(LexInputMode.SPEECH.getMode())
+                .withSessionId("benchmark")
+                .withRequestAttributes(Map.of("x-amz-lex:channels:platform", ChannelPlatform.CHIME.getChannel()))
+                .withInputTranscript("What are your hours today?")
+                .withBot(Bot.builder().withLocaleId("en_US").build())
+                .withSessionState(LexV2Event.SessionState.builder()
+                        .withSessionAttributes(new HashMap<>())
+                        .build())
+                .build());
+    }
+
+    @Benchmark
+    public ToolCallback[] perTurnResolution() {
+        return MethodToolCallbackProvider.builder()
+                .toolObjects(tools.stream().filter(t -> t.isValidForRequest(event)).toArray())
+                .build()
+                .getToolCallbacks();
+    }
+
+    @Benchmark
+    public ToolCallback[] cachedToolSet() {
+        return registry.getToolCallbacks(event);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ToolRegistryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,30 @@
+package cloud.cleo.squareup.hours;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.Objects;
+
+/**
+ * One open period in local wall clock time, open from start (inclusive) until end (exclusive). An end at or before
+ * the start runs past midnight into the next day (so 00:00 to 00:00 is open the whole day).
+ *
+ * @param dow day the period starts on
+ * @param start opening time
+ * @param end closing time
+ * @author sjensen
+ */
+public record OpenPeriod(DayOfWeek dow, LocalTime start, LocalTime end) {
+
+    public OpenPeriod {
+        Objects.requireNonNull(dow, "dow");
+        Objects.requireNonNull(start, "start");
+        Objects.requireNonNull(end, "end");
+    }
+
+    /**
+     * @return true when the period closes on the following day
+     */
+    public boolean isOvernight() {
+        return !end.isAfter(start);
+    }
+}
@@ -0,0 +1,62 @@
+package cloud.cleo.squareup.hours;
+
+import com.squareup.square.types.BusinessHoursPeriod;
+import com.squareup.square.types.Location;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.time.DayOfWeek.*;
+
+/**
+ * Builds a {@link StoreHoursSchedule} from a Square Location.
+ *
+ * @author sjensen
+ */
+public final class SquareStoreHours {
+
+    private SquareStoreHours() {
+    }
+
+    /**
+     * @param location Square location (business hours and timezone)
+     * @param fallbackZone used when the location has no timezone set
+     * @return compiled schedule, without hours when the location has none configured
+     */
+    public static StoreHoursSchedule compile(Location location, ZoneId fallbackZone) {
+        final var zone = location.getTimezone()
+                .filter(tz -> !tz.isBlank())
+                .map(ZoneId::of)
+                .orElse(fallbackZone);
+
+        final List<OpenPeriod> periods = new ArrayList<>();
+        location.getBusinessHours()
+                .flatMap(bh -> bh.getPeriods())
+                .ifPresent(list -> list.forEach(p -> periods.add(toOpenPeriod(p))));
+
+        return StoreHoursSchedule.of(zone, periods);
+    }
+
+    /**
+     * @param bhp Square period
+     * @return period in local time
+     */
+    public static OpenPeriod toOpenPeriod(BusinessHoursPeriod bhp) {
+        final DayOfWeek dow = switch (bhp.getDayOfWeek().get().getEnumValue()) {
+            case SUN -> SUNDAY;
+            case MON -> MONDAY;
+            case TUE -> TUESDAY;
+            case WED -> WEDNESDAY;
+            case THU -> THURSDAY;
+            case FRI -> FRIDAY;
+            case SAT -> SATURDAY;
+            case UNKNOWN -> throw new RuntimeException("Day of Week cannot be matched " + bhp.getDayOfWeek().get());
+        };
+
+        return new OpenPeriod(dow,
+                LocalTime.parse(bhp.getStartLocalTime().get()),
+                LocalTime.parse(bhp.getEndLocalTime().get()));
+    }
+}
@@ -0,0 +1,171 @@
+package cloud.cleo.squareup.hours;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneRules;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Weekly store hours compiled once into a minute-of-week bitmap plus a "minutes until the status changes" table, so
+ * open/closed and the next open/close time are a couple of array lookups instead of rebuilding and scanning the
+ * periods on every call.
+ *
+ * Semantics (shared by the Chime SMA and Spring AI sides):
+ * <ul>
+ * <li>Periods are local wall clock time in the store zone, open from start (inclusive) to end (exclusive), at minute
+ * resolution (seconds in the source times are dropped).</li>
+ * <li>A period whose end is at or before its start runs past midnight into the next day, including Saturday into
+ * Sunday.</li>
+ * <li>DST follows the wall clock: a time skipped by spring forward never happens, and a repeated hour on fall back is
+ * evaluated (and can be open) twice. Transition times account for both.</li>
+ * </ul>
+ *
+ * Instances are immutable and safe to share.
+ *
+ * @author sjensen
+ */
+public final class StoreHoursSchedule {
+
+    static final int MINUTES_PER_DAY = 24 * 60;
+    static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    // 1970-01-01 was a Thursday, Monday based index 3
+    private static final int EPOCH_DAY_OF_WEEK = 3;
+
+    // Enough for a couple of DST transitions between now and the next status change
+    private static final int MAX_TRANSITION_STEPS = 8;
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private final List<OpenPeriod> periods;
+
+    // Bit per minute of the week, Monday 00:00 is minute 0
+    private final long[] openBits = new long[(MINUTES_PER_WEEK + 63) / 64];
+
+    // Minutes from the start of each minute of the week until the status next changes, 0 when it never does
+    private final short[] minutesToChange = new short[MINUTES_PER_WEEK];
+
+    private StoreHoursSchedule(ZoneId zone, List<OpenPeriod> periods) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+        this.periods = periods;
+
+        for (final var p : periods) {
+            final int start = minuteOfWeek(p.dow(), p.start().getHour() * 60 + p.start().getMinute());
+            int length = p.end().getHour() * 60 + p.end().getMinute() - (p.start().getHour() * 60 + p.start().getMinute());
+            if (p.isOvernight()) {
+                length += MINUTES_PER_DAY;
+            }
+            for (int i = 0; i < length; i++) {
+                final int m = (start + i) % MINUTES_PER_WEEK;
+                openBits[m >>> 6] |= 1L << m;
+            }
+        }
+
+        // Walk the ring backwards twice so minutes near the end of the week see changes early in the next week
+        int lastChange = -1;
+        for (int i = 2 * MINUTES_PER_WEEK - 1; i >= 0; i--) {
+            final int m = i % MINUTES_PER_WEEK;
+            final int next = (m + 1) % MINUTES_PER_WEEK;
+            if (isOpenMinute(m) != isOpenMinute(next)) {
+                lastChange = i + 1;
+            }
+            if (i < MINUTES_PER_WEEK) {
+                minutesToChange[m] = (short) (lastChange < 0 ? 0 : lastChange - i);
+            }
+        }
+    }
+
+    /**
+     * @param zone store time zone
+     * @param periods open periods, may be empty
+     * @return compiled schedule
+     */
+    public static StoreHoursSchedule of(ZoneId zone, Collection<OpenPeriod> periods) {
+        Objects.requireNonNull(zone, "zone");
+        return new StoreHoursSchedule(zone, List.copyOf(periods));
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * @return the periods this was compiled from, in source order
+     */
+    public List<OpenPeriod> getPeriods() {
+        return periods;
+    }
+
+    /**
+     * @return false when no hours are configured at all (as opposed to closed right now)
+     */
+    public boolean hasHours() {
+        return !periods.isEmpty();
+    }
+
+    /**
+     * @param instant point in time
+     * @return true when open at that instant
+     */
+    public boolean isOpen(Instant instant) {
+        return isOpenMinute(localMinuteOfWeek(localEpochSecond(instant)));
+    }
+
+    /**
+     * The next time the open/closed status changes after the given instant.
+     *
+     * @param instant point in time
+     * @return when the store next opens (if closed) or closes (if open), empty when the status never changes
+     */
+    public Optional<ZonedDateTime> nextTransition(Instant instant) {
+        Instant from = instant;
+        final boolean open = isOpen(instant);
+        for (int step = 0; step < MAX_TRANSITION_STEPS; step++) {
+            final long offsetSeconds = rules.getOffset(from).getTotalSeconds();
+            final long localSecond = from.getEpochSecond() + offsetSeconds;
+            final int minutes = minutesToChange[localMinuteOfWeek(localSecond)];
+            if (minutes == 0) {
+                return Optional.empty();
+            }
+
+            // Start of the changing minute, assuming the offset holds until then
+            final long candidate = Math.floorDiv(localSecond, 60) * 60 + minutes * 60L - offsetSeconds;
+
+            final var offsetChange = rules.nextTransition(from);
+            if (offsetChange == null || offsetChange.toEpochSecond() > candidate) {
+                return Optional.of(Instant.ofEpochSecond(candidate).atZone(zone));
+            }
+
+            // Wall clock jumps first, which may itself open or close the store
+            from = offsetChange.getInstant();
+            if (isOpen(from) != open) {
+                return Optional.of(from.atZone(zone));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private boolean isOpenMinute(int minuteOfWeek) {
+        return (openBits[minuteOfWeek >>> 6] & (1L << minuteOfWeek)) != 0;
+    }
+
+    private long localEpochSecond(Instant instant) {
+        return instant.getEpochSecond() + rules.getOffset(instant).getTotalSeconds();
+    }
+
+    private static int localMinuteOfWeek(long localEpochSecond) {
+        final long day = Math.floorDiv(localEpochSecond, 86_400);
+        final int dow = (int) Math.floorMod(day + EPOCH_DAY_OF_WEEK, 7);
+        return dow * MINUTES_PER_DAY + (int) (Math.floorMod(localEpochSecond, 86_400) / 60);
+    }
+
+    private static int minuteOfWeek(DayOfWeek dow, int minuteOfDay) {
+        return (dow.getValue() - 1) * MINUTES_PER_DAY + minuteOfDay;
+    }
+}
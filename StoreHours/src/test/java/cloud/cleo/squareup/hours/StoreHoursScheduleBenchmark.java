@@ -0,0 +1,106 @@
+package cloud.cleo.squareup.hours;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compiled schedule versus what both Lambdas did before (rebuild the period list per call and scan it).
+ *
+ * Not run by the build, see Benchmarks in SpringAI/src/test/README.md.
+ *
+ * @author sjensen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreHoursScheduleBenchmark {
+
+    private static final ZoneId ZONE = ZoneId.of("America/Chicago");
+
+    private List<OpenPeriod> periods;
+    private StoreHoursSchedule schedule;
+    private Instant[] instants;
+    private int next;
+
+    @Setup
+    public void setup() {
+        periods = new ArrayList<>();
+        for (final var dow : DayOfWeek.values()) {
+            periods.add(new OpenPeriod(dow, LocalTime.of(9, 0), LocalTime.of(12, 0)));
+            periods.add(new OpenPeriod(dow, LocalTime.of(13, 0), LocalTime.of(18, 0)));
+        }
+        schedule = StoreHoursSchedule.of(ZONE, periods);
+
+        // Spread over a week so both the open and closed paths are hit
+        instants = new Instant[1024];
+        final var start = LocalDate.of(2026, 6, 1).atStartOfDay(ZONE).toInstant();
+        for (int i = 0; i < instants.length; i++) {
+            instants[i] = start.plusSeconds(i * 591L);
+        }
+    }
+
+    private Instant nextInstant() {
+        return instants[next++ & (instants.length - 1)];
+    }
+
+    @Benchmark
+    public boolean compiledIsOpen() {
+        return schedule.isOpen(nextInstant());
+    }
+
+    @Benchmark
+    public Object compiledNextTransition() {
+        return schedule.nextTransition(nextInstant());
+    }
+
+    @Benchmark
+    public boolean linearScanIsOpen() {
+        // Same work as the old BusinessHours.isOpen: copy the periods, re-resolve the zone, scan
+        final var copy = new ArrayList<>(periods);
+        final var zone = ZoneId.of(ZONE.getId());
+        final var now = ZonedDateTime.ofInstant(nextInstant(), zone);
+        final var today = now.toLocalDate();
+        return copy.stream()
+                .filter(p -> p.dow().equals(now.getDayOfWeek()))
+                .anyMatch(p -> {
+                    final var s = LocalDateTime.of(today, p.start()).atZone(zone);
+                    final var e = LocalDateTime.of(today, p.end()).atZone(zone);
+                    return !now.isBefore(s) && now.isBefore(e);
+                });
+    }
+
+    @Benchmark
+    public StoreHoursSchedule compile() {
+        return StoreHoursSchedule.of(ZONE, periods);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StoreHoursScheduleBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
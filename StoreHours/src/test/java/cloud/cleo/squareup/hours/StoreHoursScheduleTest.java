@@ -0,0 +1,164 @@
+package cloud.cleo.squareup.hours;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static java.time.DayOfWeek.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every minute of whole weeks (including both DST changes) checked against a straightforward per-period evaluation of
+ * the same rules.
+ *
+ * @author sjensen
+ */
+public class StoreHoursScheduleTest {
+
+    private static final ZoneId CHICAGO = ZoneId.of("America/Chicago");
+
+    private static OpenPeriod period(DayOfWeek dow, String start, String end) {
+        return new OpenPeriod(dow, LocalTime.parse(start), LocalTime.parse(end));
+    }
+
+    // Typical week, a late Friday running past midnight and Saturday night into Sunday (week wrap)
+    private static final List<OpenPeriod> HOURS = List.of(
+            period(MONDAY, "09:00", "17:00"),
+            period(TUESDAY, "09:00", "12:00"),
+            period(TUESDAY, "13:00", "17:00"),
+            period(WEDNESDAY, "09:00", "17:00"),
+            period(THURSDAY, "09:00", "17:00"),
+            period(FRIDAY, "09:00", "01:30"),
+            period(SATURDAY, "20:00", "03:00"),
+            // Open through the DST hours on Sunday morning
+            period(SUNDAY, "01:00", "02:45"));
+
+    /**
+     * Reference: evaluate the periods directly against the local wall clock.
+     */
+    private static boolean expectedOpen(List<OpenPeriod> periods, ZonedDateTime at) {
+        final var dow = at.getDayOfWeek();
+        final var t = at.toLocalTime().truncatedTo(ChronoUnit.MINUTES);
+        for (final var p : periods) {
+            if (!p.isOvernight()) {
+                if (p.dow() == dow && !t.isBefore(p.start()) && t.isBefore(p.end())) {
+                    return true;
+                }
+            } else {
+                if (p.dow() == dow && !t.isBefore(p.start())) {
+                    return true;
+                }
+                if (p.dow().plus(1) == dow && t.isBefore(p.end())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check every minute between from and from + days, both the status and the next transition.
+     */
+    private static void verifyRange(List<OpenPeriod> periods, ZoneId zone, LocalDate from, int days) {
+        final var schedule = StoreHoursSchedule.of(zone, periods);
+        final var start = from.atStartOfDay(zone).toInstant();
+        // Look a further 8 days ahead so every minute in range has its next change inside the array
+        final int minutes = (days + 8) * StoreHoursSchedule.MINUTES_PER_DAY;
+        final var expected = new boolean[minutes];
+        for (int i = 0; i < minutes; i++) {
+            expected[i] = expectedOpen(periods, start.plusSeconds(i * 60L).atZone(zone));
+        }
+
+        final int checked = days * StoreHoursSchedule.MINUTES_PER_DAY;
+        for (int i = 0; i < checked; i++) {
+            final var at = start.plusSeconds(i * 60L);
+            assertEquals(expected[i], schedule.isOpen(at), () -> "isOpen at " + at.atZone(zone));
+            // Mid minute must agree with the start of the minute
+            assertEquals(expected[i], schedule.isOpen(at.plusSeconds(59)), () -> "isOpen at " + at.atZone(zone) + " +59s");
+
+            int change = i + 1;
+            while (change < minutes && expected[change] == expected[i]) {
+                change++;
+            }
+            final Optional<Instant> want = change < minutes ? Optional.of(start.plusSeconds(change * 60L)) : Optional.empty();
+            final var got = schedule.nextTransition(at.plusSeconds(30)).map(ZonedDateTime::toInstant);
+            assertEquals(want, got, () -> "nextTransition from " + at.atZone(zone));
+        }
+    }
+
+    @Test
+    @DisplayName("Every minute of an ordinary week")
+    public void ordinaryWeek() {
+        verifyRange(HOURS, CHICAGO, LocalDate.of(2026, 6, 1), 7);
+    }
+
+    @Test
+    @DisplayName("Every minute of the spring forward week")
+    public void springForwardWeek() {
+        // 2026-03-08 02:00 CST jumps to 03:00 CDT
+        verifyRange(HOURS, CHICAGO, LocalDate.of(2026, 3, 5), 7);
+    }
+
+    @Test
+    @DisplayName("Every minute of the fall back week")
+    public void fallBackWeek() {
+        // 2026-11-01 02:00 CDT falls back to 01:00 CST, the 01:00 hour happens twice
+        verifyRange(HOURS, CHICAGO, LocalDate.of(2026, 10, 29), 7);
+    }
+
+    @Test
+    @DisplayName("Start is inclusive and end exclusive")
+    public void boundaries() {
+        final var schedule = StoreHoursSchedule.of(CHICAGO, HOURS);
+        final var monday = LocalDate.of(2026, 6, 1);
+        assertFalse(schedule.isOpen(at(monday, "08:59:59")));
+        assertTrue(schedule.isOpen(at(monday, "09:00:00")));
+        assertTrue(schedule.isOpen(at(monday, "16:59:59")));
+        assertFalse(schedule.isOpen(at(monday, "17:00:00")));
+
+        assertEquals(at(monday, "17:00"), schedule.nextTransition(at(monday, "09:00")).orElseThrow().toInstant());
+        assertEquals(at(monday.plusDays(1), "09:00"), schedule.nextTransition(at(monday, "17:00")).orElseThrow().toInstant());
+    }
+
+    @Test
+    @DisplayName("Opening time skipped by spring forward opens when the clock jumps")
+    public void openingInGap() {
+        final var schedule = StoreHoursSchedule.of(CHICAGO, List.of(period(SUNDAY, "02:30", "05:00")));
+        final var sunday = LocalDate.of(2026, 3, 8);
+        final var jump = ZonedDateTime.of(LocalDateTime.of(sunday, LocalTime.of(3, 0)), CHICAGO).toInstant();
+        assertEquals(jump, schedule.nextTransition(at(sunday, "01:00")).orElseThrow().toInstant());
+        assertTrue(schedule.isOpen(jump));
+    }
+
+    @Test
+    @DisplayName("Open all week or never has no transitions")
+    public void constant() {
+        final var now = Instant.parse("2026-06-03T15:00:00Z");
+
+        final var never = StoreHoursSchedule.of(CHICAGO, List.of());
+        assertFalse(never.hasHours());
+        assertFalse(never.isOpen(now));
+        assertTrue(never.nextTransition(now).isEmpty());
+
+        final var always = StoreHoursSchedule.of(CHICAGO, List.of(DayOfWeek.values()).stream()
+                .map(d -> period(d, "00:00", "00:00"))
+                .toList());
+        assertTrue(always.isOpen(now));
+        assertTrue(always.nextTransition(now).isEmpty());
+    }
+
+    private static Instant at(LocalDate date, String time) {
+        return ZonedDateTime.of(LocalDateTime.of(date, LocalTime.parse(time)), CHICAGO).toInstant();
+    }
+}